@@ -0,0 +1,127 @@
+package com.arcblaze.arccore.common.log;
+
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Writes the access log, one JSON line for each web request, through an {@link AsyncLogWriter} so that request threads
+ * never wait on the log file. Requests that fail with a server error are always kept when the log is under pressure.
+ */
+public class AccessLog extends AsyncLogWriter<AccessLog.Entry> {
+    /** The request attribute holding the matched route template, set when the request is routed to a resource. */
+    public final static String ROUTE_ATTRIBUTE = AccessLog.class.getName() + ".route";
+
+    /** The maximum number of entries waiting to be written. */
+    public final static int CAPACITY = 8192;
+
+    /**
+     * The details of a single completed web request.
+     */
+    public static class Entry {
+        private final long timestamp;
+        private final String method;
+        private final String route;
+        private final int status;
+        private final long latency;
+        private final String user;
+        private final long bytes;
+
+        /**
+         * @param timestamp
+         *            the time at which the request was received
+         * @param method
+         *            the HTTP method of the request
+         * @param route
+         *            the matched route template, or the requested URI if the request was not routed to a resource
+         * @param status
+         *            the HTTP status code of the response
+         * @param latency
+         *            the number of milliseconds taken to process the request
+         * @param user
+         *            the login of the authenticated user, or {@code null} if the request was not authenticated
+         * @param bytes
+         *            the number of bytes written in the response
+         */
+        public Entry(final long timestamp, final String method, final String route, final int status,
+                final long latency, final String user, final long bytes) {
+            this.timestamp = timestamp;
+            this.method = method;
+            this.route = route;
+            this.status = status;
+            this.latency = latency;
+            this.user = user;
+            this.bytes = bytes;
+        }
+    }
+
+    /** Used to format the timestamps, only on the writer thread. */
+    private final SimpleDateFormat fmt;
+
+    /**
+     * @param output
+     *            the destination of the access log, which is closed along with the access log
+     */
+    public AccessLog(final Writer output) {
+        super("access-log", CAPACITY, output);
+
+        this.fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        this.fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * May be invoked by any thread, and never blocks.
+     * 
+     * @param entry
+     *            the details of the completed request
+     * 
+     * @return whether the entry will be written
+     */
+    public boolean log(final Entry entry) {
+        return log(entry, entry != null && entry.status >= 500);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void format(final Entry entry, final StringBuilder out) {
+        out.append("{\"time\":\"").append(this.fmt.format(new Date(entry.timestamp))).append('"');
+        out.append(",\"method\":");
+        quote(entry.method, out);
+        out.append(",\"route\":");
+        quote(entry.route, out);
+        out.append(",\"status\":").append(entry.status);
+        out.append(",\"latency_ms\":").append(entry.latency);
+        out.append(",\"user\":");
+        quote(entry.user, out);
+        out.append(",\"bytes\":").append(entry.bytes);
+        out.append("}\n");
+    }
+
+    /**
+     * @param value
+     *            the value to append as a JSON string, possibly {@code null}
+     * @param out
+     *            the buffer to which the value is appended
+     */
+    protected static void quote(final String value, final StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                out.append('\\').append(c);
+            else if (c < 0x20)
+                out.append(String.format("\\u%04x", (int) c));
+            else
+                out.append(c);
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,203 @@
+package com.arcblaze.arccore.common.log;
+
+import static org.apache.commons.lang.Validate.notEmpty;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes log events from a single background thread, so that the threads producing the events never wait on the
+ * output. Events are handed to the writer through a {@link RingBuffer}, formatted on the writer thread, and written to
+ * the output in batches. The writer thread parks while the buffer is empty and is woken by the next event.
+ * <p>
+ * Under pressure events are never blocked on. Once the buffer is more than half full, only one in every
+ * {@link #SAMPLE_RATE} events that are not important is kept, and when the buffer is full new events are dropped. The
+ * number of sampled and dropped events is reported periodically.
+ * 
+ * @param <E>
+ *            the type of log events written
+ */
+public abstract class AsyncLogWriter<E> implements Closeable {
+    private final static Logger log = LoggerFactory.getLogger(AsyncLogWriter.class);
+
+    /** The maximum number of events written to the output at once. */
+    public final static int BATCH_SIZE = 512;
+
+    /** Once the buffer is more than half full, one in this many events that are not important is kept. */
+    public final static int SAMPLE_RATE = 10;
+
+    /** The number of milliseconds between reports of the sampled and dropped events. */
+    private final static long REPORT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /** Holds the events waiting to be written. */
+    private final RingBuffer<E> buffer;
+
+    /** The destination of the formatted events. */
+    private final Writer output;
+
+    /** The thread that formats and writes the events. */
+    private final Thread writer;
+
+    /** Used to choose the events kept while sampling. */
+    private final AtomicLong sampleCount = new AtomicLong();
+
+    /** The number of events discarded while sampling since the last report. */
+    private final AtomicLong sampled = new AtomicLong();
+
+    /** The number of events dropped because the buffer was full since the last report. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Whether this writer has been closed. */
+    private volatile boolean closed = false;
+
+    /** Whether the writer thread is parked waiting for events, in which case the next event wakes it. */
+    private volatile boolean waiting = false;
+
+    /**
+     * @param name
+     *            the name of the writer thread
+     * @param capacity
+     *            the maximum number of events waiting to be written
+     * @param output
+     *            the destination of the formatted events, which is closed along with this writer
+     */
+    protected AsyncLogWriter(final String name, final int capacity, final Writer output) {
+        notEmpty(name, "Invalid blank name");
+        notNull(output, "Invalid null output");
+
+        this.buffer = new RingBuffer<>(capacity);
+        this.output = output;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, name);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * May be invoked by any thread, and never blocks.
+     * 
+     * @param event
+     *            the event to write
+     * @param important
+     *            whether the event should be kept while sampling, such as errors
+     * 
+     * @return whether the event will be written
+     */
+    public boolean log(final E event, final boolean important) {
+        if (this.closed || event == null)
+            return false;
+
+        if (!important && this.buffer.size() > this.buffer.capacity() / 2
+                && this.sampleCount.incrementAndGet() % SAMPLE_RATE != 0) {
+            this.sampled.incrementAndGet();
+            return false;
+        }
+        if (!this.buffer.offer(event)) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+        if (this.waiting) {
+            this.waiting = false;
+            LockSupport.unpark(this.writer);
+        }
+        return true;
+    }
+
+    /**
+     * Invoked on the writer thread to format an event.
+     * 
+     * @param event
+     *            the event to format
+     * @param out
+     *            the batch to which the formatted event, including any line ending, is appended
+     */
+    protected abstract void format(final E event, final StringBuilder out);
+
+    /**
+     * The writer thread loop, which runs until this writer is closed and all of the waiting events are written.
+     */
+    protected void write() {
+        final StringBuilder batch = new StringBuilder(BATCH_SIZE * 128);
+        long lastReport = System.currentTimeMillis();
+        while (true) {
+            int count = 0;
+            E event;
+            while (count < BATCH_SIZE && (event = this.buffer.poll()) != null) {
+                try {
+                    format(event, batch);
+                } catch (final RuntimeException formatFailed) {
+                    log.error("Failed to format log event", formatFailed);
+                }
+                count++;
+            }
+
+            if (batch.length() > 0) {
+                try {
+                    this.output.write(batch.toString());
+                    this.output.flush();
+                } catch (final IOException writeFailed) {
+                    log.error("Failed to write log events", writeFailed);
+                }
+                batch.setLength(0);
+            }
+
+            final long now = System.currentTimeMillis();
+            if (now - lastReport >= REPORT_INTERVAL) {
+                report();
+                lastReport = now;
+            }
+
+            if (count == 0) {
+                if (this.closed)
+                    break;
+
+                // The buffer is checked again after announcing the wait, so an event offered before a producer saw
+                // the announcement is never left waiting until the next report.
+                this.waiting = true;
+                if (this.buffer.size() == 0 && !this.closed)
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(1, REPORT_INTERVAL
+                            - (System.currentTimeMillis() - lastReport))));
+                this.waiting = false;
+            }
+        }
+        report();
+    }
+
+    private void report() {
+        final long sampledCount = this.sampled.getAndSet(0);
+        final long droppedCount = this.dropped.getAndSet(0);
+        if (sampledCount > 0 || droppedCount > 0)
+            log.warn("{} skipped {} sampled and {} dropped log events under load", this.writer.getName(),
+                    sampledCount, droppedCount);
+    }
+
+    /**
+     * Stop accepting events, wait for the waiting events to be written, and close the output.
+     * 
+     * @throws IOException
+     *             if there is a problem closing the output
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (final InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        this.output.close();
+    }
+}
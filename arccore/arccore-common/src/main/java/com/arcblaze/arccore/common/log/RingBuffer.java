@@ -0,0 +1,114 @@
+package com.arcblaze.arccore.common.log;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer through which any number of threads hand events to a single consumer thread.
+ * Producers claim a slot with a compare-and-set on the shared tail position and never wait: when the buffer is full the
+ * event is rejected instead. Each slot carries a sequence number that tells producers and the consumer whether the slot
+ * is free or holds a published event, so no locks are needed on either side.
+ * 
+ * @param <E>
+ *            the type of events held in the buffer
+ */
+public class RingBuffer<E> {
+    /** The events held in the buffer. */
+    private final AtomicReferenceArray<E> events;
+
+    /** The sequence number of each slot, which is the position that may next be written or read in that slot. */
+    private final AtomicLongArray sequences;
+
+    /** Used to map a position onto a slot, since the capacity is a power of two. */
+    private final int mask;
+
+    /** The position at which the next event will be added, shared by the producers. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The position from which the next event will be removed, only updated by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity
+     *            the minimum number of events the buffer can hold, which is rounded up to a power of two
+     * 
+     * @throws IllegalArgumentException
+     *             if the capacity is not positive
+     */
+    public RingBuffer(final int capacity) {
+        isTrue(capacity > 0 && capacity <= 1 << 30, "Invalid capacity: " + capacity);
+
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.events = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int slot = 0; slot < size; slot++)
+            this.sequences.set(slot, slot);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the number of events the buffer can hold
+     */
+    public int capacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * @return the approximate number of events waiting in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity(), this.tail.get() - this.head.get()));
+    }
+
+    /**
+     * May be invoked by any thread.
+     * 
+     * @param event
+     *            the event to add to the buffer
+     * 
+     * @return whether the event was added, or {@code false} if the buffer is full
+     */
+    public boolean offer(final E event) {
+        notNull(event, "Invalid null event");
+
+        long position = this.tail.get();
+        while (true) {
+            final int slot = (int) position & this.mask;
+            final long available = this.sequences.get(slot) - position;
+            if (available == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.events.lazySet(slot, event);
+                    // Publishes the event to the consumer.
+                    this.sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (available < 0)
+                // The slot still holds an event from the previous lap, so the buffer is full.
+                return false;
+            position = this.tail.get();
+        }
+    }
+
+    /**
+     * Must only be invoked by the single consumer thread.
+     * 
+     * @return the oldest event in the buffer, or {@code null} if the buffer is empty
+     */
+    public E poll() {
+        final long position = this.head.get();
+        final int slot = (int) position & this.mask;
+        if (this.sequences.get(slot) != position + 1)
+            return null;
+
+        final E event = this.events.get(slot);
+        this.events.lazySet(slot, null);
+        // Frees the slot for the producers on the next lap.
+        this.sequences.set(slot, position + capacity());
+        this.head.lazySet(position + 1);
+        return event;
+    }
+}
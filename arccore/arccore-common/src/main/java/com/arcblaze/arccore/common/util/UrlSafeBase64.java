@@ -0,0 +1,85 @@
+package com.arcblaze.arccore.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Encodes bytes as unpadded URL-safe base64 (RFC 4648 section 5), as used in the opaque tokens handed to clients in
+ * URLs and cookies. This is implemented here rather than relying on {@code javax.xml.bind}, which is not available on
+ * newer Java platforms.
+ */
+public final class UrlSafeBase64 {
+    /** The characters used to encode each 6-bit value. */
+    private final static char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .toCharArray();
+
+    /** The 6-bit value of each character, or -1 for characters outside the alphabet. */
+    private final static int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length; i++)
+            VALUES[ALPHABET[i]] = i;
+    }
+
+    private UrlSafeBase64() {
+        // Not instantiated.
+    }
+
+    /**
+     * @param bytes
+     *            the bytes to encode
+     * 
+     * @return the unpadded URL-safe base64 encoding of the provided bytes
+     */
+    public static String encode(final byte[] bytes) {
+        final StringBuilder encoded = new StringBuilder((bytes.length * 4 + 2) / 3);
+        for (int i = 0; i < bytes.length; i += 3) {
+            final int remaining = Math.min(3, bytes.length - i);
+            int block = (bytes[i] & 0xff) << 16;
+            if (remaining > 1)
+                block |= (bytes[i + 1] & 0xff) << 8;
+            if (remaining > 2)
+                block |= bytes[i + 2] & 0xff;
+
+            // Each byte in the block contributes one character, plus one for the bits left over.
+            for (int c = 0; c <= remaining; c++)
+                encoded.append(ALPHABET[(block >> (18 - 6 * c)) & 0x3f]);
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @param encoded
+     *            the unpadded URL-safe base64 value to decode
+     * 
+     * @return the decoded bytes
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided value is not a valid unpadded URL-safe base64 encoding
+     */
+    public static byte[] decode(final String encoded) {
+        if (encoded == null || encoded.length() % 4 == 1)
+            throw new IllegalArgumentException("Invalid base64 value");
+
+        final byte[] bytes = new byte[encoded.length() * 3 / 4];
+        int position = 0;
+        for (int i = 0; i < encoded.length(); i += 4) {
+            final int chars = Math.min(4, encoded.length() - i);
+            int block = 0;
+            for (int c = 0; c < 4; c++)
+                block = block << 6 | (c < chars ? value(encoded.charAt(i + c)) : 0);
+
+            // A block of n characters holds n - 1 bytes.
+            for (int b = 0; b < chars - 1; b++)
+                bytes[position++] = (byte) (block >> (16 - 8 * b));
+        }
+        return bytes;
+    }
+
+    private static int value(final char c) {
+        final int value = c < VALUES.length ? VALUES[c] : -1;
+        if (value < 0)
+            throw new IllegalArgumentException("Invalid base64 character: " + c);
+        return value;
+    }
+}
@@ -0,0 +1,84 @@
+package com.arcblaze.arccore.common.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Perform testing on the ring buffer class.
+ */
+public class RingBufferTest {
+    /**
+     * Test the capacity of the buffer and the behavior when it is full.
+     */
+    @Test
+    public void testFull() {
+        final RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        assertNull(buffer.poll());
+
+        for (int i = 0; i < 4; i++)
+            assertTrue(buffer.offer(i));
+        assertEquals(4, buffer.size());
+        assertFalse(buffer.offer(4));
+
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        for (int i = 1; i < 5; i++)
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    /**
+     * Test that events offered by many threads are each received once, in order for each thread.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting for the producers
+     */
+    @Test
+    public void testProducers() throws InterruptedException {
+        final int producers = 4;
+        final int events = 10000;
+        final RingBuffer<long[]> buffer = new RingBuffer<>(64);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int e = 0; e < events; e++)
+                        while (!buffer.offer(new long[] { producer, e }))
+                            Thread.yield();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        final int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * events) {
+            final long[] event = buffer.poll();
+            if (event == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[(int) event[0]]++, event[1]);
+            received++;
+        }
+        for (final Thread thread : threads)
+            thread.join();
+
+        assertNull(buffer.poll());
+        for (int p = 0; p < producers; p++)
+            assertEquals(events, next[p]);
+    }
+}
@@ -0,0 +1,68 @@
+package com.arcblaze.arccore.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Perform testing on the URL-safe base64 encoding.
+ */
+public class UrlSafeBase64Test {
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Test the encoding against the test vectors from RFC 4648, without padding.
+     */
+    @Test
+    public void testVectors() {
+        final String[] values = { "", "f", "fo", "foo", "foob", "fooba", "foobar" };
+        final String[] encoded = { "", "Zg", "Zm8", "Zm9v", "Zm9vYg", "Zm9vYmE", "Zm9vYmFy" };
+        for (int v = 0; v < values.length; v++) {
+            assertEquals(encoded[v], UrlSafeBase64.encode(values[v].getBytes(UTF8)));
+            assertEquals(values[v], new String(UrlSafeBase64.decode(encoded[v]), UTF8));
+        }
+    }
+
+    /**
+     * Test that the URL-safe characters are used in place of {@code +} and {@code /}.
+     */
+    @Test
+    public void testUrlSafe() {
+        final byte[] bytes = { (byte) 0xfb, (byte) 0xff, (byte) 0xbf };
+        assertEquals("-_-_", UrlSafeBase64.encode(bytes));
+        assertArrayEquals(bytes, UrlSafeBase64.decode("-_-_"));
+    }
+
+    /**
+     * Test that random bytes survive a round trip.
+     */
+    @Test
+    public void testRoundTrip() {
+        final Random random = new Random(1);
+        for (int length = 0; length < 64; length++) {
+            final byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            assertArrayEquals(bytes, UrlSafeBase64.decode(UrlSafeBase64.encode(bytes)));
+        }
+    }
+
+    /**
+     * Test that characters outside the URL-safe alphabet are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalidCharacter() {
+        UrlSafeBase64.decode("ab+/");
+    }
+
+    /**
+     * Test that values with an impossible length are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalidLength() {
+        UrlSafeBase64.decode("abcde");
+    }
+}
@@ -0,0 +1,289 @@
+package com.arcblaze.arccore.db;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.arcblaze.arccore.db.cache.EntityCache;
+
+/**
+ * A connection manager that hands out a single database connection to every caller. The DAOs close each connection
+ * they retrieve when they are done with it, so the connections returned from this class ignore calls to
+ * {@link Connection#close()}; the underlying connection is only released back to the pool by {@link #release()}.
+ * <p>
+ * While a transaction is active on the bound connection, the entity caches are bypassed so that uncommitted data is
+ * never cached, and the invalidations performed by the DAOs are repeated once the transaction is committed.
+ */
+public class BoundConnectionManager extends ConnectionManager {
+    /** The connection manager from which the bound connection is retrieved when needed. */
+    private final ConnectionManager parent;
+
+    /** Whether this object retrieved the bound connection and is therefore responsible for releasing it. */
+    private final boolean owner;
+
+    /** The underlying database connection, or {@code null} if no connection has been retrieved yet. */
+    private Connection connection = null;
+
+    /** Wraps the underlying database connection so that it is not closed by the DAOs. */
+    private Connection wrapper = null;
+
+    /** The views of the shared entity caches handed out by this connection manager, keyed by cache name. */
+    private final Map<String, SessionCache<?, ?>> caches = new HashMap<>();
+
+    /**
+     * Create a connection manager that retrieves a connection from the parent the first time one is needed, and keeps
+     * it until {@link #release()} is invoked.
+     * 
+     * @param parent
+     *            the connection manager from which the bound connection will be retrieved
+     */
+    public BoundConnectionManager(final ConnectionManager parent) {
+        super(parent);
+
+        this.parent = parent;
+        this.owner = true;
+    }
+
+    /**
+     * Create a connection manager bound to an existing connection, which remains the responsibility of the caller.
+     * 
+     * @param parent
+     *            the connection manager that created the provided connection
+     * @param connection
+     *            the existing database connection to hand out
+     */
+    public BoundConnectionManager(final ConnectionManager parent, final Connection connection) {
+        super(parent);
+        notNull(connection, "Invalid null connection");
+
+        this.parent = parent;
+        this.owner = false;
+        this.connection = connection;
+        this.wrapper = wrap(connection);
+    }
+
+    /**
+     * @return the connection manager from which the bound connection is retrieved, for work that must not use the
+     *         bound connection
+     */
+    public ConnectionManager getParent() {
+        return this.parent;
+    }
+
+    /**
+     * @return whether a database connection is currently bound to this connection manager
+     */
+    public synchronized boolean isBound() {
+        return this.connection != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Connection getConnection() throws SQLException {
+        if (this.connection == null) {
+            this.connection = this.parent.getConnection();
+            this.wrapper = wrap(this.connection);
+        }
+        return this.wrapper;
+    }
+
+    /**
+     * @return whether a transaction is currently active on the bound connection
+     */
+    public synchronized boolean isTransactionActive() {
+        try {
+            return this.connection != null && !this.connection.getAutoCommit();
+        } catch (final SQLException sqlException) {
+            // Assume the worst, which means the entity caches are bypassed.
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <K, V> EntityCache<K, V> getCache(final String name) {
+        SessionCache<?, ?> cache = this.caches.get(name);
+        if (cache == null) {
+            cache = new SessionCache<>(this.parent.<K, V> getCache(name));
+            this.caches.put(name, cache);
+        }
+        return (EntityCache<K, V>) cache;
+    }
+
+    /**
+     * Invoked when the transaction on the bound connection completes, repeating the entity cache invalidations
+     * performed during the transaction if it was committed, since other threads may have cached the previously
+     * committed data in the meantime.
+     * 
+     * @param committed
+     *            whether the transaction was committed, as opposed to rolled back
+     */
+    public void transactionCompleted(final boolean committed) {
+        final List<SessionCache<?, ?>> views;
+        synchronized (this) {
+            views = new ArrayList<SessionCache<?, ?>>(this.caches.values());
+        }
+        for (final SessionCache<?, ?> cache : views)
+            cache.complete(committed);
+    }
+
+    /**
+     * Release the bound connection back to the pool, if this object retrieved it. A new connection will be retrieved
+     * the next time one is needed.
+     * 
+     * @throws SQLException
+     *             if there is a problem closing the bound connection
+     */
+    public synchronized void release() throws SQLException {
+        if (!this.owner || this.connection == null)
+            return;
+
+        try {
+            this.connection.close();
+        } finally {
+            this.connection = null;
+            this.wrapper = null;
+        }
+    }
+
+    /**
+     * Does nothing, the connection pool belongs to the parent connection manager.
+     */
+    @Override
+    public void close() {
+        // Nothing to do.
+    }
+
+    /**
+     * A view of a shared entity cache that is bypassed while a transaction is active on the bound connection.
+     */
+    protected class SessionCache<K, V> implements EntityCache<K, V> {
+        private final EntityCache<K, V> cache;
+        private final Set<K> keys = new HashSet<>();
+        private final Set<Integer> companyIds = new HashSet<>();
+        private boolean all = false;
+
+        /**
+         * @param cache
+         *            the shared entity cache
+         */
+        public SessionCache(final EntityCache<K, V> cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public String getName() {
+            return this.cache.getName();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return this.cache.isEnabled() && !isTransactionActive();
+        }
+
+        @Override
+        public long stamp() {
+            return this.cache.stamp();
+        }
+
+        @Override
+        public V get(final K key) {
+            return isTransactionActive() ? null : this.cache.get(key);
+        }
+
+        @Override
+        public void put(final long stamp, final Integer companyId, final K key, final V value) {
+            if (!isTransactionActive())
+                this.cache.put(stamp, companyId, key, value);
+        }
+
+        @Override
+        public void invalidate(final K key) {
+            this.cache.invalidate(key);
+            if (isTransactionActive()) {
+                synchronized (this) {
+                    this.keys.add(key);
+                }
+            }
+        }
+
+        @Override
+        public void invalidate(final Collection<? extends K> keys) {
+            this.cache.invalidate(keys);
+            if (keys != null && isTransactionActive()) {
+                synchronized (this) {
+                    this.keys.addAll(keys);
+                }
+            }
+        }
+
+        @Override
+        public void invalidateCompany(final Integer companyId) {
+            this.cache.invalidateCompany(companyId);
+            if (isTransactionActive()) {
+                synchronized (this) {
+                    this.companyIds.add(companyId);
+                }
+            }
+        }
+
+        @Override
+        public void invalidateAll() {
+            this.cache.invalidateAll();
+            if (isTransactionActive()) {
+                synchronized (this) {
+                    this.all = true;
+                }
+            }
+        }
+
+        protected synchronized void complete(final boolean committed) {
+            if (committed && this.all)
+                this.cache.invalidateAll();
+            else if (committed) {
+                if (!this.keys.isEmpty())
+                    this.cache.invalidate(this.keys);
+                for (final Integer companyId : this.companyIds)
+                    this.cache.invalidateCompany(companyId);
+            }
+            this.keys.clear();
+            this.companyIds.clear();
+            this.all = false;
+        }
+    }
+
+    protected static Connection wrap(final Connection connection) {
+        final InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if ("close".equals(method.getName()) && method.getParameterTypes().length == 0)
+                    return null;
+
+                try {
+                    return method.invoke(connection, args);
+                } catch (final InvocationTargetException invocationException) {
+                    throw invocationException.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, handler);
+    }
+}
@@ -1,30 +1,171 @@
 package com.arcblaze.arccore.db;
 
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
-import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.lang.StringUtils;
 
 import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.db.cache.EntityCache;
+import com.arcblaze.arccore.db.cache.LruEntityCache;
+import com.arcblaze.arccore.db.pool.ConnectionPool;
+import com.arcblaze.arccore.db.pool.ConnectionPoolType;
+import com.arcblaze.arccore.db.pool.DbcpConnectionPool;
+import com.arcblaze.arccore.db.pool.HikariConnectionPool;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 /**
  * Used to manage database connections.
  */
 public class ConnectionManager {
     /** Used to pool connections to the database. */
-    private final BasicDataSource dataSource;
+    private final ConnectionPool pool;
+
+    /** Whether the database is MySQL, which uses its own syntax for some statements instead of standard SQL. */
+    private final boolean mySql;
+
+    /** The maximum number of statements to include in a single JDBC batch. */
+    private final int batchSize;
+
+    /** The number of rows to retrieve from the database at a time when streaming large query results. */
+    private final int fetchSize;
+
+    /** The number of milliseconds a connection may be held before it is considered leaked, or 0 if disabled. */
+    private final long leakThreshold;
+
+    /** Tracks how long callers wait to retrieve connections from the pool. */
+    private final Timer acquireTimer;
+
+    /** The number of callers currently waiting to retrieve a connection from the pool. */
+    private final AtomicInteger waiting;
+
+    /** The connections currently checked out of the pool, mapped to the time they were retrieved. */
+    private final ConcurrentMap<Connection, Long> checkouts;
+
+    /** The maximum number of entries to hold in each entity cache, or 0 if entity caching is disabled. */
+    private final int entityCacheSize;
+
+    /** The number of milliseconds after which an entry in an entity cache expires. */
+    private final long entityCacheTtl;
+
+    /** The maximum number of entities to hold in each per-company search index, or 0 if search indexes are disabled. */
+    private final int searchIndexMaxSize;
+
+    /** The entity caches shared by the DAOs using this connection manager, keyed by cache name. */
+    private final ConcurrentMap<String, LruEntityCache<?, ?>> entityCaches;
+
+    /** Whether the statements handed out record themselves into the {@link SqlProfile} bound to the thread. */
+    private final boolean profiling;
+
+    /** The registry into which metrics are added, or {@code null} if metrics have not been registered. */
+    private final AtomicReference<MetricRegistry> metricRegistry;
 
     /**
      * @param config
      *            contains the system configuration properties used to configure connections
      */
     public ConnectionManager(final Config config) {
-        this.dataSource = new BasicDataSource();
-        this.dataSource.setDriverClassName(config.getString(DatabaseProperty.DB_DRIVER));
-        this.dataSource.setUrl(config.getString(DatabaseProperty.DB_URL));
-        this.dataSource.setUsername(config.getString(DatabaseProperty.DB_USERNAME));
-        this.dataSource.setPassword(config.getString(DatabaseProperty.DB_PASSWORD));
-        this.dataSource.setDefaultAutoCommit(true);
+        this.pool = createPool(config);
+        this.mySql = StringUtils.startsWith(config.getString(DatabaseProperty.DB_URL), "jdbc:mysql:");
+        this.batchSize = Math.max(1, config.getInt(DatabaseProperty.DB_BATCH_SIZE));
+        this.fetchSize = Math.max(1, config.getInt(DatabaseProperty.DB_FETCH_SIZE));
+        this.leakThreshold = Math.max(0, config.getLong(DatabaseProperty.DB_POOL_LEAK_THRESHOLD));
+        this.acquireTimer = new Timer();
+        this.waiting = new AtomicInteger();
+        this.checkouts = new ConcurrentHashMap<>();
+        this.entityCacheSize = Math.max(0, config.getInt(DatabaseProperty.DB_CACHE_MAX_SIZE));
+        this.entityCacheTtl = Math.max(0, config.getLong(DatabaseProperty.DB_CACHE_TTL));
+        this.searchIndexMaxSize = Math.max(0, config.getInt(DatabaseProperty.DB_SEARCH_INDEX_MAX_SIZE));
+        this.entityCaches = new ConcurrentHashMap<>();
+        this.profiling = config.getBoolean(DatabaseProperty.DB_PROFILE_ENABLED);
+        this.metricRegistry = new AtomicReference<>();
+    }
+
+    /**
+     * Used by sub-classes that hand out connections on behalf of an existing connection manager, sharing its
+     * connection pool and configuration rather than creating a new pool.
+     * 
+     * @param parent
+     *            the connection manager whose connection pool and configuration will be shared
+     */
+    protected ConnectionManager(final ConnectionManager parent) {
+        notNull(parent, "Invalid null parent connection manager");
+
+        this.pool = parent.pool;
+        this.mySql = parent.mySql;
+        this.batchSize = parent.batchSize;
+        this.fetchSize = parent.fetchSize;
+        this.leakThreshold = parent.leakThreshold;
+        this.acquireTimer = parent.acquireTimer;
+        this.waiting = parent.waiting;
+        this.checkouts = parent.checkouts;
+        this.entityCacheSize = parent.entityCacheSize;
+        this.entityCacheTtl = parent.entityCacheTtl;
+        this.searchIndexMaxSize = parent.searchIndexMaxSize;
+        this.entityCaches = parent.entityCaches;
+        this.profiling = parent.profiling;
+        this.metricRegistry = parent.metricRegistry;
+    }
+
+    /**
+     * @param config
+     *            contains the system configuration properties used to configure the connection pool
+     * 
+     * @return the connection pool implementation specified in the configuration
+     */
+    protected static ConnectionPool createPool(final Config config) {
+        notNull(config, "Invalid null config");
+
+        final ConnectionPoolType poolType = ConnectionPoolType.parse(config.getString(DatabaseProperty.DB_POOL_TYPE));
+        if (ConnectionPoolType.HIKARI.equals(poolType))
+            return new HikariConnectionPool(config);
+        else if (ConnectionPoolType.DBCP.equals(poolType))
+            return new DbcpConnectionPool(config);
+        throw new IllegalArgumentException("Invalid connection pool type: "
+                + config.getString(DatabaseProperty.DB_POOL_TYPE));
+    }
+
+    /**
+     * @return whether the database is MySQL, which uses its own syntax for some statements instead of standard SQL
+     */
+    public boolean isMySql() {
+        return this.mySql;
+    }
+
+    /**
+     * @return the maximum number of statements to include in a single JDBC batch
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * @return the number of rows to retrieve from the database at a time when streaming large query results
+     */
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    /**
+     * @return the maximum number of entities to hold in each per-company search index, or 0 if search indexes are
+     *         disabled
+     */
+    public int getSearchIndexMaxSize() {
+        return this.searchIndexMaxSize;
     }
 
     /**
@@ -34,16 +175,252 @@ public class ConnectionManager {
      *             if there is a database connection problem
      */
     public Connection getConnection() throws SQLException {
-        return this.dataSource.getConnection();
+        final Connection conn;
+        this.waiting.incrementAndGet();
+        try (final Timer.Context timer = this.acquireTimer.time()) {
+            conn = this.pool.getConnection();
+        } finally {
+            this.waiting.decrementAndGet();
+        }
+
+        if (this.leakThreshold <= 0 && !this.profiling)
+            return conn;
+
+        if (this.leakThreshold > 0)
+            this.checkouts.put(conn, System.currentTimeMillis());
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ManagedConnection(conn));
     }
 
     /**
-     * Close all of the cached connections in the connection pool.
+     * Retrieve the entity cache with the provided name, which is shared by all of the DAOs using this connection
+     * manager. The cache is created the first time it is requested.
+     * 
+     * @param name
+     *            the unique name of the entity cache to retrieve
+     * 
+     * @return the requested entity cache
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> EntityCache<K, V> getCache(final String name) {
+        notNull(name, "Invalid null cache name");
+
+        LruEntityCache<?, ?> cache = this.entityCaches.get(name);
+        if (cache == null) {
+            final LruEntityCache<?, ?> created = new LruEntityCache<>(name, this.entityCacheSize, this.entityCacheTtl);
+            cache = this.entityCaches.putIfAbsent(name, created);
+            if (cache == null) {
+                cache = created;
+                final MetricRegistry registry = this.metricRegistry.get();
+                if (registry != null)
+                    created.registerMetrics(registry);
+            }
+        }
+        return (EntityCache<K, V>) cache;
+    }
+
+    /**
+     * @return the number of connections currently checked out for longer than the configured leak threshold
+     */
+    public int getLeaked() {
+        if (this.leakThreshold <= 0)
+            return 0;
+
+        final long cutoff = System.currentTimeMillis() - this.leakThreshold;
+        int leaked = 0;
+        for (final Long checkout : this.checkouts.values())
+            if (checkout < cutoff)
+                leaked++;
+        return leaked;
+    }
+
+    /**
+     * Register the connection pool metrics with the provided registry.
+     * 
+     * @param metricRegistry
+     *            the registry into which the connection pool metrics will be added
+     */
+    public void registerMetrics(final MetricRegistry metricRegistry) {
+        notNull(metricRegistry, "Invalid null metric registry");
+
+        metricRegistry.register("db.pool.active", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return ConnectionManager.this.pool.getActive();
+            }
+        });
+        metricRegistry.register("db.pool.idle", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return ConnectionManager.this.pool.getIdle();
+            }
+        });
+        metricRegistry.register("db.pool.waiting", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return ConnectionManager.this.waiting.get();
+            }
+        });
+        metricRegistry.register("db.pool.leaked", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getLeaked();
+            }
+        });
+        metricRegistry.register("db.pool.acquire", this.acquireTimer);
+
+        // Entity caches created later are registered when they are created.
+        if (this.metricRegistry.compareAndSet(null, metricRegistry))
+            for (final LruEntityCache<?, ?> cache : this.entityCaches.values())
+                cache.registerMetrics(metricRegistry);
+    }
+
+    /**
+     * Close all of the cached connections in the connection pool and clear the entity caches.
      * 
      * @throws SQLException
      *             if there is a problem closing the data source
      */
     public void close() throws SQLException {
-        this.dataSource.close();
+        for (final LruEntityCache<?, ?> cache : this.entityCaches.values())
+            cache.invalidateAll();
+        this.pool.close();
+    }
+
+    /**
+     * Wraps the connections handed out by this connection manager, tracking when each connection is returned to the
+     * pool and profiling the statements created from the connection. Prepared statements are cached by the pool or
+     * the driver, behind the connection retrieved from the pool.
+     */
+    protected class ManagedConnection implements InvocationHandler {
+        private final Connection conn;
+
+        /**
+         * @param conn
+         *            the connection retrieved from the pool
+         */
+        public ManagedConnection(final Connection conn) {
+            this.conn = conn;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            final Class<?>[] types = method.getParameterTypes();
+            if ("close".equals(name) && types.length == 0)
+                ConnectionManager.this.checkouts.remove(this.conn);
+
+            final Object result = invokeOn(this.conn, method, args);
+            if (ConnectionManager.this.profiling && result instanceof Statement) {
+                // The SQL of prepared statements and calls is only known when they are created.
+                final String sql = types.length > 0 && types[0] == String.class ? (String) args[0] : null;
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                        new Class<?>[] { method.getReturnType() }, new ProfiledStatement((Statement) result, sql));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Wraps the statements handed out by this connection manager, recording each statement executed, and the rows read
+     * from its results, into the {@link SqlProfile} bound to the executing thread, if any.
+     */
+    protected static class ProfiledStatement implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+
+        /**
+         * @param statement
+         *            the statement to profile
+         * @param sql
+         *            the SQL of the prepared statement or call, or {@code null} for a plain statement
+         */
+        public ProfiledStatement(final Statement statement, final String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            final SqlProfile profile = SqlProfile.current();
+            if (profile == null)
+                return invokeOn(this.statement, method, args);
+
+            if ("getResultSet".equals(name))
+                return profile(invokeOn(this.statement, method, args));
+            else if (!name.startsWith("execute"))
+                return invokeOn(this.statement, method, args);
+
+            final String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0]
+                    : this.sql;
+            final long start = System.nanoTime();
+            Object result = null;
+            try {
+                result = invokeOn(this.statement, method, args);
+                return profile(result);
+            } finally {
+                long updated = 0;
+                if (result instanceof Integer)
+                    updated = (Integer) result;
+                else if (result instanceof int[])
+                    for (final int count : (int[]) result)
+                        updated += Math.max(0, count);
+                profile.executed(executed, System.nanoTime() - start, updated);
+            }
+        }
+
+        protected Object profile(final Object result) {
+            if (!(result instanceof ResultSet))
+                return result;
+            return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                    new ProfiledResultSet((ResultSet) result));
+        }
+    }
+
+    /**
+     * Wraps the query results of profiled statements, recording the rows read into the {@link SqlProfile} bound to the
+     * reading thread, if any.
+     */
+    protected static class ProfiledResultSet implements InvocationHandler {
+        private final ResultSet resultSet;
+
+        /**
+         * @param resultSet
+         *            the query results to profile
+         */
+        public ProfiledResultSet(final ResultSet resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final SqlProfile profile = SqlProfile.current();
+            if (profile == null || !"next".equals(method.getName()))
+                return invokeOn(this.resultSet, method, args);
+
+            final long start = System.nanoTime();
+            final boolean next = this.resultSet.next();
+            profile.fetched(next ? 1 : 0, System.nanoTime() - start);
+            return next;
+        }
+    }
+
+    protected static Object invokeOn(final Object target, final Method method, final Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException invocationException) {
+            throw invocationException.getCause();
+        }
     }
 }
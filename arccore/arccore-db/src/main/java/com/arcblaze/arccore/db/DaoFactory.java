@@ -1,5 +1,7 @@
 package com.arcblaze.arccore.db;
 
+import static org.apache.commons.lang.Validate.notNull;
+
 import java.sql.SQLException;
 
 import com.arcblaze.arccore.common.config.Config;
@@ -26,6 +28,9 @@ public class DaoFactory {
     /** Used to generate connections for the JDBC database type. */
     private final ConnectionManager connectionManager;
 
+    /** The unit of work to which the DAOs are bound, or {@code null} if the DAOs use the connection pool directly. */
+    private final DaoSession session;
+
     private CompanyDao cachedCompanyDao = null;
     private UserDao cachedUserDao = null;
     private RoleDao cachedRoleDao = null;
@@ -44,6 +49,7 @@ public class DaoFactory {
             this.connectionManager = new ConnectionManager(config);
         else
             this.connectionManager = null;
+        this.session = null;
     }
 
     /**
@@ -53,6 +59,19 @@ public class DaoFactory {
     public DaoFactory(final ConnectionManager connectionManager) {
         this.databaseType = DatabaseType.JDBC;
         this.connectionManager = connectionManager;
+        this.session = null;
+    }
+
+    /**
+     * @param session
+     *            the unit of work to which all of the DAOs created by this factory will be bound
+     */
+    public DaoFactory(final DaoSession session) {
+        notNull(session, "Invalid null session");
+
+        this.databaseType = DatabaseType.JDBC;
+        this.connectionManager = session.getConnectionManager();
+        this.session = session;
     }
 
     /**
@@ -69,6 +88,36 @@ public class DaoFactory {
         return this.connectionManager;
     }
 
+    /**
+     * @return the unit of work to which the DAOs created by this factory are bound, or {@code null} if this factory
+     *         is not bound to a session
+     */
+    public DaoSession getSession() {
+        return this.session;
+    }
+
+    /**
+     * Open a new unit of work. The DAOs retrieved from the returned factory all share a single database connection,
+     * which is returned to the pool when the returned factory is closed.
+     * 
+     * @return a new factory whose DAOs are bound to a new {@link DaoSession}
+     * 
+     * @throws IllegalStateException
+     *             if this factory is already bound to a session
+     */
+    public DaoFactory openSession() {
+        return new DaoFactory(createSession());
+    }
+
+    protected DaoSession createSession() {
+        if (this.session != null)
+            throw new IllegalStateException("A session is already open");
+        if (!DatabaseType.JDBC.equals(this.databaseType))
+            throw new RuntimeException("Invalid database type: " + this.databaseType);
+
+        return new DaoSession(this.connectionManager);
+    }
+
     /**
      * @return a {@link CompanyDao} based on the currently configured database
      */
@@ -154,13 +203,16 @@ public class DaoFactory {
     }
 
     /**
-     * Close any resources associated with the internal DAOs.
+     * Close any resources associated with the internal DAOs. When this factory is bound to a session, the session is
+     * closed and its connection returned to the pool, otherwise the connection pool itself is closed.
      * 
      * @throws DatabaseException
      *             if there is a problem closing resources
      */
     public void close() throws DatabaseException {
-        if (this.connectionManager != null) {
+        if (this.session != null)
+            this.session.close();
+        else if (this.connectionManager != null) {
             try {
                 this.connectionManager.close();
             } catch (final SQLException sqlException) {
@@ -0,0 +1,134 @@
+package com.arcblaze.arccore.db;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A unit of work against the database. All of the DAOs created from a session share a single database connection,
+ * retrieved from the pool the first time it is needed and returned to the pool when the session is closed. By default
+ * each statement is committed as it is executed; {@link #begin()}, {@link #commit()} and {@link #rollback()} are used
+ * to group the statements executed by multiple DAOs into a single transaction.
+ */
+public class DaoSession implements AutoCloseable {
+    /** Hands out the single connection shared by everything in this session. */
+    private final BoundConnectionManager connectionManager;
+
+    /** Whether a transaction is currently active within this session. */
+    private boolean transaction = false;
+
+    /**
+     * @param connectionManager
+     *            the connection manager from which the session connection will be retrieved
+     */
+    public DaoSession(final ConnectionManager connectionManager) {
+        notNull(connectionManager, "Invalid null connection manager");
+
+        this.connectionManager = new BoundConnectionManager(connectionManager);
+    }
+
+    /**
+     * @return the connection manager that hands out the connection bound to this session
+     */
+    public ConnectionManager getConnectionManager() {
+        return this.connectionManager;
+    }
+
+    /**
+     * @return whether a transaction is currently active within this session
+     */
+    public boolean isTransactionActive() {
+        return this.transaction;
+    }
+
+    /**
+     * Start a transaction, after which statements executed within this session are not committed until
+     * {@link #commit()} is invoked.
+     * 
+     * @throws DatabaseException
+     *             if there is a problem starting the transaction
+     * @throws IllegalStateException
+     *             if a transaction is already active
+     */
+    public void begin() throws DatabaseException {
+        if (this.transaction)
+            throw new IllegalStateException("A transaction is already active");
+
+        try {
+            this.connectionManager.getConnection().setAutoCommit(false);
+            this.transaction = true;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Commit the active transaction, returning the session to auto-commit mode.
+     * 
+     * @throws DatabaseException
+     *             if there is a problem committing the transaction
+     * @throws IllegalStateException
+     *             if no transaction is active
+     */
+    public void commit() throws DatabaseException {
+        if (!this.transaction)
+            throw new IllegalStateException("No transaction is active");
+
+        try {
+            final Connection conn = this.connectionManager.getConnection();
+            conn.commit();
+            conn.setAutoCommit(true);
+            this.transaction = false;
+            this.connectionManager.transactionCompleted(true);
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Roll back the active transaction, returning the session to auto-commit mode.
+     * 
+     * @throws DatabaseException
+     *             if there is a problem rolling back the transaction
+     * @throws IllegalStateException
+     *             if no transaction is active
+     */
+    public void rollback() throws DatabaseException {
+        if (!this.transaction)
+            throw new IllegalStateException("No transaction is active");
+
+        try {
+            final Connection conn = this.connectionManager.getConnection();
+            try {
+                conn.rollback();
+            } finally {
+                this.transaction = false;
+                this.connectionManager.transactionCompleted(false);
+                conn.setAutoCommit(true);
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Roll back any transaction that was not committed and return the session connection to the pool.
+     * 
+     * @throws DatabaseException
+     *             if there is a problem rolling back the transaction or releasing the connection
+     */
+    @Override
+    public void close() throws DatabaseException {
+        try {
+            if (this.transaction)
+                rollback();
+        } finally {
+            try {
+                this.connectionManager.release();
+            } catch (final SQLException sqlException) {
+                throw new DatabaseException(sqlException);
+            }
+        }
+    }
+}
@@ -16,6 +16,40 @@ public enum DatabaseProperty implements Property {
     DB_USERNAME(""),
     /** The password to use when authenticating with the database. */
     DB_PASSWORD(""),
+    /** The maximum number of statements to send to the database in a single JDBC batch. */
+    DB_BATCH_SIZE("100"),
+    /** The number of rows to retrieve from the database at a time when streaming large query results. */
+    DB_FETCH_SIZE("500"),
+    /** The connection pool implementation to use, one of {@code hikari} or {@code dbcp}. */
+    DB_POOL_TYPE("hikari"),
+    /** The maximum number of connections to keep open in the pool, both idle and in use. */
+    DB_POOL_MAX_SIZE("20"),
+    /** The minimum number of idle connections to keep open in the pool. */
+    DB_POOL_MIN_IDLE("2"),
+    /** The maximum number of milliseconds to wait for a connection to become available in the pool. */
+    DB_POOL_ACQUIRE_TIMEOUT("30000"),
+    /** The number of milliseconds a connection may sit idle in the pool before it is closed. */
+    DB_POOL_IDLE_TIMEOUT("600000"),
+    /** The maximum number of milliseconds a connection may remain in the pool before it is replaced. */
+    DB_POOL_MAX_LIFETIME("1800000"),
+    /** The SQL used to validate connections, or empty to use the JDBC driver connection validation. */
+    DB_POOL_VALIDATION_QUERY(""),
+    /** The maximum number of milliseconds to wait for a connection to be validated. */
+    DB_POOL_VALIDATION_TIMEOUT("5000"),
+    /** The number of milliseconds a connection may be held before it is considered leaked, or 0 to disable. */
+    DB_POOL_LEAK_THRESHOLD("60000"),
+    /** The maximum number of prepared statements to cache for each pooled connection, or 0 to disable. */
+    DB_POOL_STATEMENT_CACHE_SIZE("250"),
+    /** The maximum number of entries to hold in each of the entity caches, or 0 to disable entity caching. */
+    DB_CACHE_MAX_SIZE("10000"),
+    /** The number of milliseconds after which an entry in the entity caches expires. */
+    DB_CACHE_TTL("300000"),
+    /** The maximum number of entities to hold in each per-company search index, or 0 to disable search indexes. */
+    DB_SEARCH_INDEX_MAX_SIZE("20000"),
+    /** Whether to count the statements, rows and database time of each request, always enabled in development mode. */
+    DB_PROFILE_ENABLED("false"),
+    /** The number of times a request may run the same shape of SQL before a warning is logged, or 0 to disable. */
+    DB_PROFILE_REPEAT_THRESHOLD("20"),
 
     ;
 
@@ -0,0 +1,176 @@
+package com.arcblaze.arccore.db;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Collects the statements run against the database on behalf of a single request: the number of statements executed,
+ * the number of rows read or updated, the time spent waiting on the database, and how many times each shape of SQL was
+ * executed, which is used to find requests that run the same query for each of a list of entities. A profile is bound
+ * to the thread processing the request between {@link #start()} and {@link #stop()}, and the statements handed out by
+ * the {@link ConnectionManager} record themselves into the profile bound to the thread executing them.
+ * <p>
+ * A profile is only ever used by the thread to which it is bound, so it is not thread-safe.
+ */
+public class SqlProfile {
+    /** The profile bound to each thread, if any. */
+    private final static ThreadLocal<SqlProfile> current = new ThreadLocal<>();
+
+    /** Matches quoted string literals, which are replaced when finding the shape of the SQL. */
+    private final static Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    /** Matches numeric literals, which are replaced when finding the shape of the SQL. */
+    private final static Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    /** Matches lists of placeholders, such as those in {@code IN} clauses, which vary in length with the parameters. */
+    private final static Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    /** Matches runs of whitespace. */
+    private final static Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** The number of statements executed. */
+    private int statements = 0;
+
+    /** The number of rows read from query results and updated by statements. */
+    private long rows = 0;
+
+    /** The number of nanoseconds spent executing statements and reading results. */
+    private long nanos = 0;
+
+    /** The number of times each SQL string was executed, which is only reduced to shapes when needed. */
+    private final Map<String, Integer> executions = new HashMap<>();
+
+    /**
+     * Bind a new profile to the current thread, replacing any profile already bound to it.
+     * 
+     * @return the new profile bound to the current thread
+     */
+    public static SqlProfile start() {
+        final SqlProfile profile = new SqlProfile();
+        current.set(profile);
+        return profile;
+    }
+
+    /**
+     * @return the profile bound to the current thread, or {@code null} if no statements are being profiled
+     */
+    public static SqlProfile current() {
+        return current.get();
+    }
+
+    /**
+     * Remove the profile bound to the current thread.
+     * 
+     * @return the profile that was bound to the current thread, or {@code null} if no profile was bound
+     */
+    public static SqlProfile stop() {
+        final SqlProfile profile = current.get();
+        current.remove();
+        return profile;
+    }
+
+    /**
+     * @param sql
+     *            the SQL that was executed, possibly {@code null} if unknown, such as for a batch of plain statements
+     * @param elapsed
+     *            the number of nanoseconds taken to execute the statement
+     * @param updated
+     *            the number of rows updated by the statement
+     */
+    public void executed(final String sql, final long elapsed, final long updated) {
+        this.statements++;
+        this.nanos += elapsed;
+        this.rows += Math.max(0, updated);
+
+        final String key = StringUtils.defaultString(sql);
+        final Integer count = this.executions.get(key);
+        this.executions.put(key, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * @param fetched
+     *            the number of rows read from a query result
+     * @param elapsed
+     *            the number of nanoseconds taken to read the rows
+     */
+    public void fetched(final long fetched, final long elapsed) {
+        this.rows += fetched;
+        this.nanos += elapsed;
+    }
+
+    /**
+     * @return the number of statements executed
+     */
+    public int getStatements() {
+        return this.statements;
+    }
+
+    /**
+     * @return the number of rows read from query results and updated by statements
+     */
+    public long getRows() {
+        return this.rows;
+    }
+
+    /**
+     * @param unit
+     *            the unit in which the time will be returned
+     * 
+     * @return the time spent executing statements and reading results
+     */
+    public long getTime(final TimeUnit unit) {
+        return unit.convert(this.nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param threshold
+     *            the number of times a shape of SQL may be executed before it is considered repeated
+     * 
+     * @return the shapes of the SQL executed more than the threshold number of times, mapped to the number of times
+     *         each was executed
+     */
+    public Map<String, Integer> getRepeated(final int threshold) {
+        final Map<String, Integer> shapes = new TreeMap<>();
+        if (this.statements <= threshold)
+            return shapes;
+
+        for (final Map.Entry<String, Integer> execution : this.executions.entrySet()) {
+            final String shape = getShape(execution.getKey());
+            final Integer count = shapes.get(shape);
+            shapes.put(shape, execution.getValue() + (count == null ? 0 : count));
+        }
+        for (final String shape : shapes.keySet().toArray(new String[shapes.size()]))
+            if (shapes.get(shape) <= threshold)
+                shapes.remove(shape);
+        return shapes;
+    }
+
+    /**
+     * @param sql
+     *            the SQL for which the shape will be found
+     * 
+     * @return the shape of the provided SQL, with the literal values replaced by placeholders, each list of
+     *         placeholders reduced to one, and the whitespace normalized
+     */
+    public static String getShape(final String sql) {
+        String shape = STRING_LITERAL.matcher(StringUtils.defaultString(sql)).replaceAll("?");
+        shape = NUMERIC_LITERAL.matcher(shape).replaceAll("?");
+        shape = PLACEHOLDER_LIST.matcher(shape).replaceAll("?");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "statements=%d; rows=%d; time=%.1fms", this.statements, this.rows,
+                this.nanos / 1e6);
+    }
+}
@@ -0,0 +1,106 @@
+package com.arcblaze.arccore.db.cache;
+
+import static org.apache.commons.lang.Validate.notEmpty;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import com.arcblaze.arccore.db.ConnectionManager;
+import com.arcblaze.arccore.db.DatabaseException;
+
+/**
+ * Caches the results of {@code COUNT(*)} queries used to report the total number of rows available when paging
+ * through results. The counts are held in the {@code counts} entity cache, owned by the company they were counted in,
+ * so writes within a company only need to drop the counts for that company. A cached count is approximate: it may be
+ * stale for up to the entity cache expiration time when rows are changed outside of this application.
+ */
+public class CountCache {
+    /** The name of the entity cache holding the counts, keyed by the query and its parameters. */
+    public final static String CACHE = "counts";
+
+    /** Used to retrieve database connection objects. */
+    private final ConnectionManager connectionManager;
+
+    /**
+     * @param connectionManager
+     *            used to retrieve database connection objects
+     */
+    public CountCache(final ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    protected EntityCache<String, Integer> getCache() {
+        return this.connectionManager.getCache(CACHE);
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company in which the rows are counted, or {@code null} for counts that are not
+     *            specific to a company
+     * @param sql
+     *            the {@code SELECT COUNT(*)} query to run
+     * @param params
+     *            the parameters to bind to the query, which may be strings, integers, booleans or dates
+     * 
+     * @return the (possibly cached) count returned from the query
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided SQL is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    public int count(final Integer companyId, final String sql, final Object... params) throws DatabaseException {
+        notEmpty(sql, "Invalid empty sql");
+
+        final StringBuilder key = new StringBuilder(sql);
+        for (final Object param : params)
+            key.append('\u0000').append(param);
+
+        final Integer cached = getCache().get(key.toString());
+        if (cached != null)
+            return cached;
+
+        final long stamp = getCache().stamp();
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (final Object param : params) {
+                if (param instanceof Integer)
+                    ps.setInt(index++, (Integer) param);
+                else if (param instanceof Boolean)
+                    ps.setBoolean(index++, (Boolean) param);
+                else if (param instanceof Date)
+                    ps.setTimestamp(index++, new Timestamp(((Date) param).getTime()));
+                else
+                    ps.setString(index++, param == null ? null : String.valueOf(param));
+            }
+            try (final ResultSet rs = ps.executeQuery()) {
+                final int count = rs.next() ? rs.getInt(1) : 0;
+                getCache().put(stamp, companyId, key.toString(), count);
+                return count;
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company whose counts have changed, or {@code null} for the counts that are not
+     *            specific to a company
+     */
+    public void invalidate(final Integer companyId) {
+        getCache().invalidateCompany(companyId);
+    }
+
+    /**
+     * Drop all of the cached counts, used when the affected companies are not known.
+     */
+    public void invalidateAll() {
+        getCache().invalidateAll();
+    }
+}
@@ -0,0 +1,77 @@
+package com.arcblaze.arccore.db.cache;
+
+import java.util.Collection;
+
+/**
+ * A read-through cache of entities loaded from the database. Each entry belongs to the company that owns the cached
+ * entity so that all of the entries for a single company can be dropped at once.
+ * <p>
+ * To avoid caching data that was read before a concurrent modification, callers retrieve a {@link #stamp()} before
+ * loading an entity from the database and pass it back to {@link #put(long, Integer, Object, Object)}; the entity is
+ * only cached if nothing was invalidated in the meantime.
+ * 
+ * @param <K>
+ *            the type of key used to identify the cached entries
+ * @param <V>
+ *            the type of the cached values
+ */
+public interface EntityCache<K, V> {
+    /**
+     * @return the unique name of this cache
+     */
+    String getName();
+
+    /**
+     * @return whether values will currently be stored in and retrieved from this cache
+     */
+    boolean isEnabled();
+
+    /**
+     * @return a value that changes each time entries in this cache are invalidated, to be provided when caching a
+     *         value loaded from the database
+     */
+    long stamp();
+
+    /**
+     * @param key
+     *            the key identifying the cached value to retrieve
+     * 
+     * @return the cached value, or {@code null} if the value is not cached or has expired
+     */
+    V get(final K key);
+
+    /**
+     * @param stamp
+     *            the value returned from {@link #stamp()} before the value was loaded from the database
+     * @param companyId
+     *            the unique id of the company that owns the value, possibly {@code null}
+     * @param key
+     *            the key identifying the value to cache
+     * @param value
+     *            the value to cache
+     */
+    void put(final long stamp, final Integer companyId, final K key, final V value);
+
+    /**
+     * @param key
+     *            the key identifying the cached value to remove
+     */
+    void invalidate(final K key);
+
+    /**
+     * @param keys
+     *            the keys identifying the cached values to remove
+     */
+    void invalidate(final Collection<? extends K> keys);
+
+    /**
+     * @param companyId
+     *            the unique id of the company whose cached values will be removed
+     */
+    void invalidateCompany(final Integer companyId);
+
+    /**
+     * Remove all of the values from this cache.
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,244 @@
+package com.arcblaze.arccore.db.cache;
+
+import static org.apache.commons.lang.Validate.notEmpty;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * An {@link EntityCache} holding a bounded number of entries in memory. Entries expire a fixed amount of time after
+ * they are loaded, and the least recently used entries are evicted when the cache grows beyond its maximum size.
+ * 
+ * @param <K>
+ *            the type of key used to identify the cached entries
+ * @param <V>
+ *            the type of the cached values
+ */
+public class LruEntityCache<K, V> implements EntityCache<K, V> {
+    /**
+     * Holds a cached value along with the company that owns it and the time at which it expires.
+     */
+    private static class Entry<V> {
+        private final Integer companyId;
+        private final V value;
+        private final long expires;
+
+        public Entry(final Integer companyId, final V value, final long expires) {
+            this.companyId = companyId;
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    /** The unique name of this cache. */
+    private final String name;
+
+    /** The maximum number of entries to hold, or 0 if caching is disabled. */
+    private final int maxSize;
+
+    /** The number of milliseconds after which a cached entry expires. */
+    private final long ttl;
+
+    /** The cached entries, in least-recently-used order. */
+    private final Map<K, Entry<V>> entries;
+
+    /** Incremented each time entries are invalidated. */
+    private long generation = 0;
+
+    /** The number of values retrieved from this cache. */
+    private final Counter hits = new Counter();
+
+    /** The number of values that were requested but not found in this cache. */
+    private final Counter misses = new Counter();
+
+    /** The number of entries removed from this cache because they expired or the cache was full. */
+    private final Counter evictions = new Counter();
+
+    /** Whether the metrics of this cache have been registered. */
+    private final AtomicBoolean registered = new AtomicBoolean(false);
+
+    /**
+     * @param name
+     *            the unique name of this cache
+     * @param maxSize
+     *            the maximum number of entries to hold in the cache, or 0 to disable caching
+     * @param ttl
+     *            the number of milliseconds after which a cached entry expires
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     */
+    public LruEntityCache(final String name, final int maxSize, final long ttl) {
+        notEmpty(name, "Invalid blank name");
+
+        this.name = name;
+        this.maxSize = Math.max(0, maxSize);
+        this.ttl = Math.max(0, ttl);
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+                if (size() <= LruEntityCache.this.maxSize)
+                    return false;
+                LruEntityCache.this.evictions.inc();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return this.maxSize > 0 && this.ttl > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long stamp() {
+        return this.generation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized V get(final K key) {
+        if (!isEnabled() || key == null)
+            return null;
+
+        final Entry<V> entry = this.entries.get(key);
+        if (entry != null && entry.expires < System.currentTimeMillis()) {
+            this.entries.remove(key);
+            this.evictions.inc();
+        } else if (entry != null) {
+            this.hits.inc();
+            return entry.value;
+        }
+        this.misses.inc();
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void put(final long stamp, final Integer companyId, final K key, final V value) {
+        if (!isEnabled() || key == null || value == null)
+            return;
+
+        // Something was invalidated while the value was being loaded, so it may already be out of date.
+        if (stamp != this.generation)
+            return;
+
+        this.entries.put(key, new Entry<>(companyId, value, System.currentTimeMillis() + this.ttl));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void invalidate(final K key) {
+        this.generation++;
+        this.entries.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void invalidate(final Collection<? extends K> keys) {
+        this.generation++;
+        if (keys != null)
+            for (final K key : keys)
+                this.entries.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void invalidateCompany(final Integer companyId) {
+        this.generation++;
+        final Iterator<Entry<V>> iter = this.entries.values().iterator();
+        while (iter.hasNext()) {
+            final Entry<V> entry = iter.next();
+            if (companyId == null ? entry.companyId == null : companyId.equals(entry.companyId))
+                iter.remove();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void invalidateAll() {
+        this.generation++;
+        this.entries.clear();
+    }
+
+    /**
+     * @return the number of entries currently held in this cache
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the number of values retrieved from this cache
+     */
+    public long getHits() {
+        return this.hits.getCount();
+    }
+
+    /**
+     * @return the number of values that were requested but not found in this cache
+     */
+    public long getMisses() {
+        return this.misses.getCount();
+    }
+
+    /**
+     * @return the number of entries removed from this cache because they expired or the cache was full
+     */
+    public long getEvictions() {
+        return this.evictions.getCount();
+    }
+
+    /**
+     * Register the hit, miss and eviction counters of this cache with the provided registry. The metrics are only
+     * registered the first time this method is invoked.
+     * 
+     * @param metricRegistry
+     *            the registry into which the cache metrics will be added
+     */
+    public void registerMetrics(final MetricRegistry metricRegistry) {
+        notNull(metricRegistry, "Invalid null metric registry");
+
+        if (!this.registered.compareAndSet(false, true))
+            return;
+
+        metricRegistry.register("db.cache." + this.name + ".hits", this.hits);
+        metricRegistry.register("db.cache." + this.name + ".misses", this.misses);
+        metricRegistry.register("db.cache." + this.name + ".evictions", this.evictions);
+    }
+}
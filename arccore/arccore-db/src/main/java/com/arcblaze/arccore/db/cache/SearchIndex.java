@@ -0,0 +1,411 @@
+package com.arcblaze.arccore.db.cache;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * An in-memory index over the searchable text of the entities in a single company, answering the same substring
+ * queries as the {@code LOWER(column) LIKE LOWER('%filter%')} clauses used by the DAOs without scanning the table.
+ * Each entity is indexed by the trigrams (three-character substrings) of its lower-cased column values. A filter of
+ * three or more characters only needs to check the entities containing all of the trigrams in the filter, while
+ * shorter filters are checked against every indexed entity, which is still fast for the size of a single company.
+ * <p>
+ * The index is kept current by the DAO write paths, and the results are returned in the same order as the SQL
+ * queries so that limits and offsets select the same rows. When more entities are added than the configured maximum
+ * size the index stops accepting changes and reports itself unavailable, so that callers fall back to SQL instead of
+ * holding very large companies in memory. The index is safe to share between threads.
+ * 
+ * @param <T>
+ *            the type of entity indexed
+ */
+public abstract class SearchIndex<T> {
+    /** The number of characters in each indexed substring. */
+    private final static int GRAM = 3;
+
+    /** Separates the column values in the indexed text, so that matches do not span columns. */
+    private final static char SEPARATOR = '\u0000';
+
+    /**
+     * Restricts the search results to the entities matching some criteria other than the filter text.
+     * 
+     * @param <T>
+     *            the type of entity being searched
+     */
+    public interface Condition<T> {
+        /**
+         * @param item
+         *            the indexed entity to check, which must not be modified
+         * 
+         * @return whether the entity should be included in the search results
+         */
+        boolean matches(final T item);
+    }
+
+    /**
+     * An indexed entity along with its lower-cased searchable text.
+     */
+    private static class Document<T> {
+        private final T item;
+        private final String text;
+
+        public Document(final T item, final String text) {
+            this.item = item;
+            this.text = text;
+        }
+    }
+
+    /** Orders the search results the same way as the SQL queries answered by this index. */
+    private final Comparator<T> order;
+
+    /** The maximum number of entities to hold in the index. */
+    private final int maxSize;
+
+    /** Guards all of the mutable state below. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** The indexed entities, keyed by unique id. */
+    private final Map<Integer, Document<T>> documents = new HashMap<>();
+
+    /** The unique ids of the indexed entities containing each trigram. */
+    private final Map<String, Set<Integer>> grams = new HashMap<>();
+
+    /** The indexed entities in result order, or {@code null} when they need to be sorted again. */
+    private volatile List<Document<T>> sorted;
+
+    /** Whether more entities were added than the index is allowed to hold. */
+    private boolean overflowed = false;
+
+    /**
+     * @param order
+     *            orders the search results the same way as the SQL queries answered by this index, and must be
+     *            consistent with the unique id of the entities
+     * @param maxSize
+     *            the maximum number of entities to hold in the index
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     */
+    protected SearchIndex(final Comparator<T> order, final int maxSize) {
+        notNull(order, "Invalid null order");
+
+        this.order = order;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param item
+     *            the entity for which the unique id will be returned
+     * 
+     * @return the unique id of the provided entity
+     */
+    protected abstract Integer getId(final T item);
+
+    /**
+     * @param item
+     *            the entity for which the searchable column values will be returned
+     * 
+     * @return the searchable column values of the provided entity, any of which may be {@code null}
+     */
+    protected abstract String[] getText(final T item);
+
+    /**
+     * @param item
+     *            the indexed entity to copy
+     * 
+     * @return a copy of the provided entity, so that the indexed entity is not modified by the caller
+     */
+    protected abstract T copy(final T item);
+
+    /**
+     * @param filter
+     *            the search filter to check
+     * 
+     * @return whether the provided filter can be answered by a search index, which is not the case when it contains
+     *         SQL {@code LIKE} wildcards
+     */
+    public static boolean supports(final String filter) {
+        return filter == null || (filter.indexOf('%') < 0 && filter.indexOf('_') < 0);
+    }
+
+    /**
+     * @return whether this index holds all of the entities in the company, which is no longer the case once more
+     *         entities are added than the maximum size allows
+     */
+    public boolean isAvailable() {
+        this.lock.readLock().lock();
+        try {
+            return !this.overflowed;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of entities in the index
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.documents.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id
+     *            the unique id of the entity to retrieve
+     * 
+     * @return a copy of the indexed entity with the provided id, or {@code null} if not indexed
+     */
+    public T get(final Integer id) {
+        this.lock.readLock().lock();
+        try {
+            final Document<T> document = this.documents.get(id);
+            return document == null ? null : copy(document.item);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param items
+     *            the entities to add to the index, replacing any indexed entities with the same unique ids
+     */
+    public void put(final Collection<T> items) {
+        if (items == null || items.isEmpty())
+            return;
+
+        this.lock.writeLock().lock();
+        try {
+            if (this.overflowed)
+                return;
+
+            for (final T item : items) {
+                if (item == null || getId(item) == null)
+                    continue;
+                removeDocument(getId(item));
+
+                final Document<T> document = new Document<>(copy(item), toText(getText(item)));
+                this.documents.put(getId(item), document);
+                for (final String gram : toGrams(document.text)) {
+                    Set<Integer> ids = this.grams.get(gram);
+                    if (ids == null) {
+                        ids = new HashSet<>();
+                        this.grams.put(gram, ids);
+                    }
+                    ids.add(getId(item));
+                }
+            }
+            this.sorted = null;
+
+            if (this.documents.size() > this.maxSize) {
+                // Release the memory, the index will not be used again.
+                this.overflowed = true;
+                this.documents.clear();
+                this.grams.clear();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param ids
+     *            the unique ids of the entities to remove from the index
+     */
+    public void remove(final Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty())
+            return;
+
+        this.lock.writeLock().lock();
+        try {
+            for (final Integer id : ids)
+                removeDocument(id);
+            this.sorted = null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void removeDocument(final Integer id) {
+        final Document<T> removed = this.documents.remove(id);
+        if (removed == null)
+            return;
+
+        for (final String gram : toGrams(removed.text)) {
+            final Set<Integer> ids = this.grams.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty())
+                    this.grams.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * @param filter
+     *            the search filter to match as a substring of any of the searchable columns, ignoring case, possibly
+     *            {@code null} or blank to match all entities
+     * @param condition
+     *            the additional criteria the matching entities must meet, possibly {@code null} for none
+     * @param after
+     *            only entities ordered after this one are returned, possibly {@code null} to start from the first
+     * @param limit
+     *            the maximum number of entities to return, possibly {@code null} for no limit
+     * @param offset
+     *            the number of matching entities to skip, possibly {@code null} to skip none
+     * 
+     * @return copies of the matching entities in result order, possibly empty but never {@code null}
+     */
+    public List<T> search(final String filter, final Condition<? super T> condition, final T after,
+            final Integer limit, final Integer offset) {
+        final List<T> results = new ArrayList<>();
+        int skip = offset == null ? 0 : offset;
+        this.lock.readLock().lock();
+        try {
+            for (final Document<T> document : find(filter)) {
+                if (limit != null && results.size() >= limit)
+                    break;
+                if (after != null && this.order.compare(document.item, after) <= 0)
+                    continue;
+                if (condition != null && !condition.matches(document.item))
+                    continue;
+                if (skip > 0)
+                    skip--;
+                else
+                    results.add(copy(document.item));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    /**
+     * @param filter
+     *            the search filter to match as a substring of any of the searchable columns, ignoring case, possibly
+     *            {@code null} or blank to match all entities
+     * @param condition
+     *            the additional criteria the matching entities must meet, possibly {@code null} for none
+     * 
+     * @return the number of matching entities
+     */
+    public int count(final String filter, final Condition<? super T> condition) {
+        int count = 0;
+        this.lock.readLock().lock();
+        try {
+            for (final Document<T> document : find(filter))
+                if (condition == null || condition.matches(document.item))
+                    count++;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return count;
+    }
+
+    /**
+     * Must be called while holding the read lock.
+     * 
+     * @param filter
+     *            the search filter to match
+     * 
+     * @return the documents matching the filter, in result order
+     */
+    private List<Document<T>> find(final String filter) {
+        final List<Document<T>> all = getSorted();
+        if (StringUtils.isBlank(filter))
+            return all;
+
+        final String text = filter.toLowerCase(Locale.ENGLISH);
+        Set<Integer> candidates = null;
+        if (text.length() >= GRAM) {
+            // The entities containing the rarest trigram in the filter are the only possible matches.
+            for (final String gram : toGrams(text)) {
+                final Set<Integer> ids = this.grams.get(gram);
+                if (ids == null)
+                    return Collections.emptyList();
+                if (candidates == null || ids.size() < candidates.size())
+                    candidates = ids;
+            }
+        }
+
+        final List<Document<T>> matches = new ArrayList<>();
+        if (candidates == null || candidates.size() > all.size() / 8) {
+            // Checking the entities in order is cheaper than sorting a large number of candidates.
+            for (final Document<T> document : all)
+                if (document.text.contains(text))
+                    matches.add(document);
+            return matches;
+        }
+
+        for (final Integer id : candidates) {
+            final Document<T> document = this.documents.get(id);
+            if (document.text.contains(text))
+                matches.add(document);
+        }
+        Collections.sort(matches, new Comparator<Document<T>>() {
+            @Override
+            public int compare(final Document<T> first, final Document<T> second) {
+                return SearchIndex.this.order.compare(first.item, second.item);
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * Must be called while holding the read lock.
+     * 
+     * @return all of the indexed documents in result order
+     */
+    private List<Document<T>> getSorted() {
+        List<Document<T>> current = this.sorted;
+        if (current == null) {
+            // Sorting does not modify the indexed documents, so concurrent readers may each sort their own copy.
+            current = new ArrayList<>(this.documents.values());
+            Collections.sort(current, new Comparator<Document<T>>() {
+                @Override
+                public int compare(final Document<T> first, final Document<T> second) {
+                    return SearchIndex.this.order.compare(first.item, second.item);
+                }
+            });
+            current = Collections.unmodifiableList(current);
+            this.sorted = current;
+        }
+        return current;
+    }
+
+    private static String toText(final String[] values) {
+        final StringBuilder text = new StringBuilder();
+        for (final String value : values) {
+            if (value != null)
+                text.append(value.toLowerCase(Locale.ENGLISH));
+            text.append(SEPARATOR);
+        }
+        return text.toString();
+    }
+
+    private static Set<String> toGrams(final String text) {
+        final Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            final String gram = text.substring(i, i + GRAM);
+            if (gram.indexOf(SEPARATOR) < 0)
+                grams.add(gram);
+        }
+        return grams;
+    }
+}
@@ -28,6 +28,9 @@ public interface CompanyActivityDao {
     SortedMap<Date, Integer> getActiveByMonth(final Date begin, final Date end) throws DatabaseException;
 
     /**
+     * Replace the active company count for the specified day, and update the monthly roll-up for the month containing
+     * the day.
+     * 
      * @param day
      *            the day for which the active company count applies
      * @param count
@@ -39,4 +42,19 @@ public interface CompanyActivityDao {
      *             if there is a problem communicating with the database
      */
     void setActiveCompanies(final Date day, final Integer count) throws DatabaseException;
+
+    /**
+     * Count the companies that are currently active and record the count for the specified day.
+     * 
+     * @param day
+     *            the day for which the active company count will be recorded
+     * 
+     * @return the number of active companies
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided day is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    int rollUp(final Date day) throws DatabaseException;
 }
@@ -79,6 +79,26 @@ public interface CompanyDao {
     Set<Company> search(final String filter, final boolean includeInactive, final Integer limit, final Integer offset)
             throws DatabaseException;
 
+    /**
+     * @param filter
+     *            the search filter to use to restrict results, possibly {@code null} to retrieve all companies
+     * @param includeInactive
+     *            whether inactive companies should be included in the response
+     * @param token
+     *            the token returned with the previous page, or {@code null} to retrieve the first page
+     * @param limit
+     *            the maximum number of items to be retrieved
+     * 
+     * @return the requested page of matching companies, ordered by name
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided token is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    Page<Company> getPage(final String filter, final boolean includeInactive, final String token, final Integer limit)
+            throws DatabaseException;
+
     /**
      * @param limit
      *            the maximum number of items to be retrieved
@@ -0,0 +1,44 @@
+package com.arcblaze.arccore.db.dao;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A single page of results retrieved using keyset pagination, along with the opaque token used to retrieve the page
+ * that follows it.
+ * 
+ * @param <T>
+ *            the type of items in the page
+ */
+public class Page<T> {
+    /** The items in this page, in the order they were retrieved. */
+    private final Set<T> items;
+
+    /** The token used to retrieve the next page, or {@code null} if this is the last page. */
+    private final String next;
+
+    /**
+     * @param items
+     *            the items in this page, in the order they were retrieved
+     * @param next
+     *            the token used to retrieve the next page, or {@code null} if this is the last page
+     */
+    public Page(final Set<T> items, final String next) {
+        this.items = Collections.unmodifiableSet(items);
+        this.next = next;
+    }
+
+    /**
+     * @return the unmodifiable items in this page, in the order they were retrieved
+     */
+    public Set<T> getItems() {
+        return this.items;
+    }
+
+    /**
+     * @return the token used to retrieve the next page, or {@code null} if this is the last page
+     */
+    public String getNext() {
+        return this.next;
+    }
+}
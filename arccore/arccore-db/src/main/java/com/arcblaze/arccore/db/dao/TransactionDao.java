@@ -32,6 +32,21 @@ public interface TransactionDao {
      */
     int count(final String filter) throws DatabaseException;
 
+    /**
+     * @param companyId
+     *            the unique id of the company for which transactions will be counted
+     * @param filter
+     *            the search filter to use when counting results, possibly {@code null} to count all transactions
+     * 
+     * @return the total number of matching transactions in the company, which may be cached briefly
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided id is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    int count(final Integer companyId, final String filter) throws DatabaseException;
+
     /**
      * @param companyId
      *            the unique id of the company for which the sum of amounts will be retrieved
@@ -73,7 +88,8 @@ public interface TransactionDao {
      *            the ending boundary of the time frame where transactions should be retrieved (exclusive)
      * 
      * @return a map containing the first day of each month along with the sum of transaction amounts during that month,
-     *         for every month between the begin and end dates, whether data is available for that month or not
+     *         for every month between the begin and end dates, whether data is available for that month or not, read
+     *         from the monthly revenue roll-up, which includes transactions added before the last {@link #rollUp()}
      * 
      * @throws IllegalArgumentException
      *             if the provided parameters are invalid
@@ -82,6 +98,18 @@ public interface TransactionDao {
      */
     SortedMap<Date, BigDecimal> getSumByMonth(final Date begin, final Date end) throws DatabaseException;
 
+    /**
+     * Incrementally update the daily and monthly revenue roll-ups with the transactions added since the last roll-up.
+     * Only the days queued when the new transactions were added are recalculated. Updating or deleting transactions
+     * recalculates the affected days immediately, so it does not need a roll-up.
+     * 
+     * @return the number of days whose revenue totals were recalculated
+     * 
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    int rollUp() throws DatabaseException;
+
     /**
      * @param id
      *            the unique id of the transaction to be retrieved
@@ -155,6 +183,27 @@ public interface TransactionDao {
     Set<Transaction> searchForCompany(final Integer companyId, final String filter, final Integer limit,
             final Integer offset) throws DatabaseException;
 
+    /**
+     * @param companyId
+     *            the unique id of the company for which the transactions will be retrieved
+     * @param filter
+     *            the search filter to use to restrict results, possibly {@code null} to retrieve all transactions
+     * @param token
+     *            the token returned with the previous page, or {@code null} to retrieve the first page
+     * @param limit
+     *            the maximum number of items to be retrieved
+     * 
+     * @return the requested page of matching transactions, most recent first, or an empty page if the limit is not
+     *         positive
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided id or token is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    Page<Transaction> getPage(final Integer companyId, final String filter, final String token, final Integer limit)
+            throws DatabaseException;
+
     /**
      * @param filter
      *            the search filter to use to restrict results
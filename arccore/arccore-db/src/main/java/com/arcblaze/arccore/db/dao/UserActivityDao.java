@@ -50,6 +50,9 @@ public interface UserActivityDao {
     SortedMap<Date, Integer> getActiveByMonth(final Date begin, final Date end) throws DatabaseException;
 
     /**
+     * Replace the active user counts for the specified companies on the specified day, and update the monthly roll-up
+     * for the month containing the day.
+     * 
      * @param day
      *            the day for which the active company count applies
      * @param counts
@@ -61,4 +64,19 @@ public interface UserActivityDao {
      *             if there is a problem communicating with the database
      */
     void setActiveUsers(final Date day, final Map<Integer, Integer> counts) throws DatabaseException;
+
+    /**
+     * Count the active users currently in each active company and record the counts for the specified day.
+     * 
+     * @param day
+     *            the day for which the active user counts will be recorded
+     * 
+     * @return the number of companies for which active user counts were recorded
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided day is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    int rollUp(final Date day) throws DatabaseException;
 }
@@ -36,6 +36,23 @@ public interface UserDao {
      */
     int count(final String filter, final boolean includeInactive) throws DatabaseException;
 
+    /**
+     * @param companyId
+     *            the unique id of the company in which users will be counted
+     * @param filter
+     *            the search filter to use when restricting the result count, possibly {@code null} to count all users
+     * @param includeInactive
+     *            whether inactive user accounts should be included in the count
+     * 
+     * @return the total number of matching user accounts in the company, which may be cached briefly
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided id is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    int count(final Integer companyId, final String filter, final boolean includeInactive) throws DatabaseException;
+
     /**
      * @param includeInactive
      *            whether inactive user accounts should be included
@@ -154,6 +171,29 @@ public interface UserDao {
     Set<User> search(final Integer companyId, final String filter, final boolean includeInactive, final Integer limit,
             final Integer offset) throws DatabaseException;
 
+    /**
+     * @param companyId
+     *            the unique id of the company for which users will be retrieved
+     * @param filter
+     *            the search filter to use when restricting results, possibly {@code null} to retrieve all users
+     * @param includeInactive
+     *            whether inactive users should be included in the response
+     * @param token
+     *            the token returned with the previous page, or {@code null} to retrieve the first page
+     * @param limit
+     *            the maximum number of items to be retrieved
+     * 
+     * @return the requested page of matching users, ordered by last name, first name and login, or an empty page if
+     *         the limit is not positive
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided id or token is invalid, or the token can no longer be continued
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    Page<User> getPage(final Integer companyId, final String filter, final boolean includeInactive,
+            final String token, final Integer limit) throws DatabaseException;
+
     /**
      * @param filter
      *            the search filter to use when restricting results
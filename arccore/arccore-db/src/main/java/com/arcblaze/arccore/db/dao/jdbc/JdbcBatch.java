@@ -0,0 +1,142 @@
+package com.arcblaze.arccore.db.dao.jdbc;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Used by the JDBC DAO implementations to send multiple parameter sets for a single prepared statement to the database
+ * using {@link PreparedStatement#addBatch()} and {@link PreparedStatement#executeBatch()}. Batches are automatically
+ * flushed to the database whenever the configured batch size is reached. When requested, the generated keys for
+ * inserted rows are collected in the same order in which the rows were added to the batch.
+ */
+public class JdbcBatch {
+    /** The prepared statement into which parameter sets are batched. */
+    private final PreparedStatement ps;
+
+    /** The maximum number of parameter sets to send to the database at one time. */
+    private final int batchSize;
+
+    /** Whether generated keys should be retrieved after each batch is executed. */
+    private final boolean generatedKeys;
+
+    /** The generated keys retrieved so far, in the order the rows were added. */
+    private final List<Integer> keys = new ArrayList<>();
+
+    /** The update counts reported for each of the executed parameter sets, in the order they were added. */
+    private final List<Integer> updateCounts = new ArrayList<>();
+
+    /** The number of parameter sets added to the batch but not yet executed. */
+    private int pending = 0;
+
+    /** The total number of rows modified by the executed batches. */
+    private int count = 0;
+
+    /**
+     * @param ps
+     *            the prepared statement into which parameter sets will be batched
+     * @param batchSize
+     *            the maximum number of parameter sets to send to the database at one time
+     *
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     */
+    public JdbcBatch(final PreparedStatement ps, final int batchSize) {
+        this(ps, batchSize, false);
+    }
+
+    /**
+     * @param ps
+     *            the prepared statement into which parameter sets will be batched, which must have been prepared with
+     *            {@link Statement#RETURN_GENERATED_KEYS} if generated keys are to be retrieved
+     * @param batchSize
+     *            the maximum number of parameter sets to send to the database at one time
+     * @param generatedKeys
+     *            whether the generated keys for inserted rows should be retrieved
+     *
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     */
+    public JdbcBatch(final PreparedStatement ps, final int batchSize, final boolean generatedKeys) {
+        notNull(ps, "Invalid null prepared statement");
+        isTrue(batchSize > 0, "Invalid batch size, must be positive");
+
+        this.ps = ps;
+        this.batchSize = batchSize;
+        this.generatedKeys = generatedKeys;
+    }
+
+    /**
+     * Add the parameters currently set on the prepared statement to the batch, executing the batch if the batch size
+     * has been reached.
+     *
+     * @throws SQLException
+     *             if there is a problem adding to or executing the batch
+     */
+    public void add() throws SQLException {
+        this.ps.addBatch();
+        this.pending++;
+
+        if (this.pending >= this.batchSize)
+            flush();
+    }
+
+    /**
+     * Execute any parameter sets remaining in the batch.
+     *
+     * @return the total number of rows modified by all of the parameter sets added to this batch
+     *
+     * @throws SQLException
+     *             if there is a problem executing the batch
+     */
+    public int execute() throws SQLException {
+        flush();
+        return this.count;
+    }
+
+    /**
+     * @return the update counts reported by the database for each of the parameter sets added to this batch, in the
+     *         order they were added, which may include {@link Statement#SUCCESS_NO_INFO} when the driver does not
+     *         report individual counts
+     */
+    public List<Integer> getUpdateCounts() {
+        return Collections.unmodifiableList(this.updateCounts);
+    }
+
+    /**
+     * @return the generated keys retrieved for the inserted rows, in the order the rows were added to the batch
+     */
+    public List<Integer> getGeneratedKeys() {
+        return Collections.unmodifiableList(this.keys);
+    }
+
+    protected void flush() throws SQLException {
+        if (this.pending == 0)
+            return;
+
+        final int[] results = this.ps.executeBatch();
+        this.pending = 0;
+
+        for (final int result : results) {
+            this.updateCounts.add(result);
+            if (result >= 0)
+                this.count += result;
+            else if (result == Statement.SUCCESS_NO_INFO)
+                this.count++;
+        }
+
+        if (this.generatedKeys) {
+            try (final ResultSet rs = this.ps.getGeneratedKeys()) {
+                while (rs.next())
+                    this.keys.add(rs.getInt(1));
+            }
+        }
+    }
+}
@@ -7,8 +7,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.SortedMap;
@@ -21,7 +19,8 @@ import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.db.dao.CompanyActivityDao;
 
 /**
- * Manages company activity counts within the back-end database.
+ * Manages company activity counts within the back-end database. The daily counts are rolled up into the
+ * {@code active_company_counts_by_month} table as they are recorded, and the monthly statistics are read from there.
  */
 public class JdbcCompanyActivityDao implements CompanyActivityDao {
     /** Used to retrieve database connection objects. */
@@ -43,26 +42,16 @@ public class JdbcCompanyActivityDao implements CompanyActivityDao {
         notNull(begin, "Invalid null begin");
         notNull(end, "Invalid null end");
 
-        final String sql = "SELECT YEAR(day) AS year, MONTH(day) AS month, "
-                + "MAX(active) AS active FROM active_company_counts "
-                + "WHERE day >= ? AND day < ? GROUP BY year, month";
+        final String sql = "SELECT month, active FROM active_company_counts_by_month WHERE month >= ? AND month < ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setDate(1, new java.sql.Date(begin.getTime()));
+            ps.setDate(1, new java.sql.Date(DateUtils.truncate(begin, Calendar.MONTH).getTime()));
             ps.setDate(2, new java.sql.Date(end.getTime()));
             final SortedMap<Date, Integer> map = new TreeMap<>();
             try (final ResultSet rs = ps.executeQuery()) {
-                final SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd");
-                while (rs.next()) {
-                    final int year = rs.getInt("year");
-                    final int month = rs.getInt("month");
-                    final Integer active = rs.getInt("active");
-
-                    final Date date = fmt.parse(String.format("%d-%d-01", year, month));
-                    final Integer num = map.get(date);
-                    map.put(date, num == null ? active : Math.max(num, active));
-                }
+                while (rs.next())
+                    map.put(new Date(rs.getDate("month").getTime()), rs.getInt("active"));
             }
 
             // Add any missing months.
@@ -76,8 +65,6 @@ public class JdbcCompanyActivityDao implements CompanyActivityDao {
             return map;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
-        } catch (final ParseException badDate) {
-            throw new DatabaseException("Unexpected date parse problem.", badDate);
         }
     }
 
@@ -89,16 +76,89 @@ public class JdbcCompanyActivityDao implements CompanyActivityDao {
         notNull(day, "Invalid null day");
         isTrue(count != null && count >= 0, "Invalid count: " + count);
 
-        final String sql = "INSERT INTO active_company_counts " + "(day, active) VALUES (?, ?)";
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            // When the connection is already part of a session transaction, the session owns the commit.
+            if (!conn.getAutoCommit()) {
+                setActiveCompanies(conn, DateUtils.truncate(day, Calendar.DATE), count);
+                return;
+            }
 
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            int index = 1;
-            ps.setDate(index++, new java.sql.Date(day.getTime()));
-            ps.setInt(index++, count);
+            conn.setAutoCommit(false);
+            try {
+                setActiveCompanies(conn, DateUtils.truncate(day, Calendar.DATE), count);
+                conn.commit();
+            } catch (final SQLException | RuntimeException failed) {
+                conn.rollback();
+                throw failed;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    protected void setActiveCompanies(final Connection conn, final Date day, final int count) throws SQLException {
+        // Replace the daily count.
+        final java.sql.Date sqlDay = new java.sql.Date(day.getTime());
+        try (final PreparedStatement ps = conn.prepareStatement("DELETE FROM active_company_counts WHERE day = ?")) {
+            ps.setDate(1, sqlDay);
+            ps.executeUpdate();
+        }
+        try (final PreparedStatement ps = conn
+                .prepareStatement("INSERT INTO active_company_counts (day, active) VALUES (?, ?)")) {
+            ps.setDate(1, sqlDay);
+            ps.setInt(2, count);
+            ps.executeUpdate();
+        }
+
+        // Roll the daily counts up into the month, which only needs the days already recorded for that month.
+        final Date month = DateUtils.truncate(day, Calendar.MONTH);
+        final java.sql.Date sqlMonth = new java.sql.Date(month.getTime());
+        final String max = "SELECT MAX(active) FROM active_company_counts WHERE day >= ? AND day < ?";
+        int active = count;
+        try (final PreparedStatement ps = conn.prepareStatement(max)) {
+            ps.setDate(1, sqlMonth);
+            ps.setDate(2, new java.sql.Date(DateUtils.addMonths(month, 1).getTime()));
+            try (final ResultSet rs = ps.executeQuery()) {
+                if (rs.next())
+                    active = rs.getInt(1);
+            }
+        }
+
+        try (final PreparedStatement ps = conn
+                .prepareStatement("DELETE FROM active_company_counts_by_month WHERE month = ?")) {
+            ps.setDate(1, sqlMonth);
+            ps.executeUpdate();
+        }
+        try (final PreparedStatement ps = conn
+                .prepareStatement("INSERT INTO active_company_counts_by_month (month, active) VALUES (?, ?)")) {
+            ps.setDate(1, sqlMonth);
+            ps.setInt(2, active);
             ps.executeUpdate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int rollUp(final Date day) throws DatabaseException {
+        notNull(day, "Invalid null day");
+
+        final String sql = "SELECT COUNT(*) FROM companies WHERE active = TRUE";
+
+        int count = 0;
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql);
+                final ResultSet rs = ps.executeQuery()) {
+            if (rs.next())
+                count = rs.getInt(1);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
+
+        setActiveCompanies(day, count);
+        return count;
     }
 }
@@ -9,15 +9,18 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.TreeSet;
 
-import org.apache.commons.lang.StringUtils;
-
 import com.arcblaze.arccore.common.model.Company;
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.cache.CountCache;
 import com.arcblaze.arccore.db.dao.CompanyDao;
+import com.arcblaze.arccore.db.dao.Page;
+import com.arcblaze.arccore.db.util.PageToken;
+import com.arcblaze.arccore.db.util.SqlParams;
 
 /**
  * Manages companies within the back-end database.
@@ -26,12 +29,16 @@ public class JdbcCompanyDao implements CompanyDao {
     /** Used to retrieve database connection objects. */
     private final ConnectionManager connectionManager;
 
+    /** Holds the cached company counts, which are not owned by any company. */
+    private final CountCache countCache;
+
     /**
      * @param connectionManager
      *            used to retrieve database connection objects
      */
     public JdbcCompanyDao(final ConnectionManager connectionManager) {
         this.connectionManager = connectionManager;
+        this.countCache = new CountCache(connectionManager);
     }
 
     protected Company fromResultSet(final ResultSet rs) throws SQLException {
@@ -65,27 +72,10 @@ public class JdbcCompanyDao implements CompanyDao {
      */
     @Override
     public int count(final String filter, final boolean includeInactive) throws DatabaseException {
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT COUNT(*) FROM companies");
-        if (StringUtils.isNotBlank(filter)) {
-            sql.append(" WHERE LOWER(name) LIKE LOWER(?)");
-            if (!includeInactive)
-                sql.append(" AND active = TRUE");
-        } else if (!includeInactive)
-            sql.append(" WHERE active = TRUE");
+        final String sql = "SELECT COUNT(*) FROM companies"
+                + SqlParams.where(SqlParams.like(filter, "name"), includeInactive ? null : "active = TRUE");
 
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            if (StringUtils.isNotBlank(filter))
-                ps.setString(1, "%" + filter + "%");
-            try (final ResultSet rs = ps.executeQuery()) {
-                if (rs.next())
-                    return rs.getInt(1);
-                return 0;
-            }
-        } catch (final SQLException sqlException) {
-            throw new DatabaseException(sqlException);
-        }
+        return this.countCache.count(null, sql, SqlParams.params(filter, 1));
     }
 
     /**
@@ -142,35 +132,59 @@ public class JdbcCompanyDao implements CompanyDao {
     @Override
     public Set<Company> search(final String filter, final boolean includeInactive, final Integer limit,
             final Integer offset) throws DatabaseException {
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM companies");
-        if (StringUtils.isNotBlank(filter)) {
-            sql.append(" WHERE LOWER(name) LIKE LOWER(?)");
-            if (!includeInactive)
-                sql.append(" AND active = TRUE");
-        } else if (!includeInactive)
-            sql.append(" WHERE active = TRUE");
-        sql.append(" ORDER BY name");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
-
-        final Set<Company> companies = new TreeSet<>();
+        final String sql = "SELECT * FROM companies"
+                + SqlParams.where(SqlParams.like(filter, "name"), includeInactive ? null : "active = TRUE")
+                + " ORDER BY name LIMIT ? OFFSET ?";
+
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            int index = 1;
-            if (StringUtils.isNotBlank(filter))
-                ps.setString(index++, "%" + filter + "%");
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = SqlParams.setLike(ps, 1, filter, 1);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
+                final Set<Company> companies = new TreeSet<>();
                 while (rs.next())
                     companies.add(fromResultSet(rs));
+                return companies;
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<Company> getPage(final String filter, final boolean includeInactive, final String token,
+            final Integer limit) throws DatabaseException {
+        // Company names are unique, so the name alone identifies the position of the last company in the page.
+        final PageToken after = token == null ? null : PageToken.decode(token, 1);
+        final String sql = "SELECT * FROM companies"
+                + SqlParams.where(SqlParams.like(filter, "name"), includeInactive ? null : "active = TRUE",
+                        after == null ? null : "name > ?") + " ORDER BY name LIMIT ?";
+
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = SqlParams.setLike(ps, 1, filter, 1);
+            if (after != null)
+                ps.setString(index++, after.getString(0));
+            ps.setInt(index++, SqlParams.fetch(limit));
+            try (final ResultSet rs = ps.executeQuery()) {
+                final Set<Company> companies = new LinkedHashSet<>();
+                Company last = null;
+                boolean more = false;
+                while (rs.next()) {
+                    if (limit != null && companies.size() >= limit) {
+                        more = true;
+                        break;
+                    }
+                    last = fromResultSet(rs);
+                    companies.add(last);
+                }
+                final String next = more && last != null ? PageToken.encode(last.getName()) : null;
+                return new Page<>(companies, next);
             }
-            return companies;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -181,26 +195,19 @@ public class JdbcCompanyDao implements CompanyDao {
      */
     @Override
     public Set<Company> getAll(final Integer limit, final Integer offset) throws DatabaseException {
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM companies ORDER BY name");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
-
-        final Set<Company> companies = new TreeSet<>();
+        final String sql = "SELECT * FROM companies ORDER BY name LIMIT ? OFFSET ?";
+
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
+                final Set<Company> companies = new TreeSet<>();
                 while (rs.next())
                     companies.add(fromResultSet(rs));
+                return companies;
             }
-            return companies;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -240,6 +247,8 @@ public class JdbcCompanyDao implements CompanyDao {
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            this.countCache.invalidate(null);
         }
         return count;
     }
@@ -274,6 +283,8 @@ public class JdbcCompanyDao implements CompanyDao {
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            this.countCache.invalidate(null);
         }
         return count;
     }
@@ -305,6 +316,8 @@ public class JdbcCompanyDao implements CompanyDao {
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            this.countCache.invalidate(null);
         }
         return count;
     }
@@ -336,6 +349,8 @@ public class JdbcCompanyDao implements CompanyDao {
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            this.countCache.invalidate(null);
         }
         return count;
     }
@@ -367,6 +382,11 @@ public class JdbcCompanyDao implements CompanyDao {
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            // The users and transactions in the deleted companies are removed as well.
+            this.countCache.invalidateAll();
+            this.connectionManager.getCache(JdbcUserDao.SEARCH_CACHE).invalidate(ids);
+            this.connectionManager.getCache(JdbcTransactionDao.SEARCH_CACHE).invalidate(ids);
         }
         return count;
     }
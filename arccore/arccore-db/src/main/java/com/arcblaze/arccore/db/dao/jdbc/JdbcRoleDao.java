@@ -9,6 +9,7 @@ import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -17,12 +18,17 @@ import com.arcblaze.arccore.common.model.Role;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.cache.EntityCache;
 import com.arcblaze.arccore.db.dao.RoleDao;
+import com.arcblaze.arccore.db.util.InClause;
 
 /**
  * Manages user roles within the back-end database.
  */
 public class JdbcRoleDao implements RoleDao {
+    /** The name of the entity cache holding the roles of each user, keyed by user id. */
+    public final static String CACHE = "roles";
+
     /** Used to retrieve database connection objects. */
     private final ConnectionManager connectionManager;
 
@@ -34,6 +40,34 @@ public class JdbcRoleDao implements RoleDao {
         this.connectionManager = connectionManager;
     }
 
+    protected EntityCache<Integer, Set<Role>> getCache() {
+        return this.connectionManager.getCache(CACHE);
+    }
+
+    /**
+     * Remove the roles of the provided user, and the authenticated accounts holding them, from the entity caches.
+     * 
+     * @param userId
+     *            the unique id of the user whose roles were modified
+     */
+    protected void invalidate(final Integer userId) {
+        getCache().invalidate(userId);
+        JdbcUserDao.invalidatePrincipals(this.connectionManager);
+    }
+
+    /**
+     * @param roles
+     *            the cached roles
+     * 
+     * @return a copy of the provided roles, so that the cached roles are not modified by the caller
+     */
+    protected static Set<Role> copy(final Set<Role> roles) {
+        final Set<Role> copy = new TreeSet<>();
+        for (final Role role : roles)
+            copy.add(new Role(role));
+        return copy;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -41,8 +75,13 @@ public class JdbcRoleDao implements RoleDao {
     public Set<Role> get(final Integer userId) throws DatabaseException {
         notNull(userId, "Invalid null user id");
 
+        final Set<Role> cached = getCache().get(userId);
+        if (cached != null)
+            return copy(cached);
+
         final String sql = "SELECT * FROM roles WHERE user_id = ?";
 
+        final long stamp = getCache().stamp();
         final Set<Role> roles = new TreeSet<>();
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -55,7 +94,8 @@ public class JdbcRoleDao implements RoleDao {
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
-        return roles;
+        getCache().put(stamp, null, userId, roles);
+        return copy(roles);
     }
 
     /**
@@ -75,23 +115,43 @@ public class JdbcRoleDao implements RoleDao {
             return;
 
         final Map<Integer, User> userMap = new HashMap<>();
-        for (final User user : users)
-            userMap.put(user.getId(), user);
-
-        final String sql = "SELECT * FROM roles WHERE user_id = ?";
+        for (final User user : users) {
+            final Set<Role> cached = getCache().get(user.getId());
+            if (cached != null)
+                user.addRoles(cached);
+            else
+                userMap.put(user.getId(), user);
+        }
+        if (userMap.isEmpty())
+            return;
 
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final User user : users) {
-                ps.setInt(1, user.getId());
-                try (final ResultSet rs = ps.executeQuery()) {
-                    while (rs.next())
-                        user.addRoles(new Role(rs.getString("name")));
+        final long stamp = getCache().stamp();
+        final Map<Integer, Set<Role>> roleMap = new HashMap<>();
+        for (final Integer userId : userMap.keySet())
+            roleMap.put(userId, new TreeSet<Role>());
+
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(userMap.keySet())) {
+                final String sql = "SELECT * FROM roles WHERE user_id IN (" + InClause.placeholders(chunk.size())
+                        + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    InClause.setInts(ps, 1, chunk);
+                    try (final ResultSet rs = ps.executeQuery()) {
+                        while (rs.next())
+                            roleMap.get(rs.getInt("user_id")).add(new Role(rs.getString("name")));
+                    }
                 }
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
+
+        for (final Map.Entry<Integer, Set<Role>> entry : roleMap.entrySet()) {
+            final User user = userMap.get(entry.getKey());
+            getCache().put(stamp, user.getCompanyId(), entry.getKey(), entry.getValue());
+            user.addRoles(entry.getValue());
+        }
     }
 
     /**
@@ -123,6 +183,8 @@ public class JdbcRoleDao implements RoleDao {
             }
         } catch (SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(userId);
         }
         return count;
     }
@@ -156,6 +218,8 @@ public class JdbcRoleDao implements RoleDao {
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(userId);
         }
         return count;
     }
@@ -176,6 +240,8 @@ public class JdbcRoleDao implements RoleDao {
             count += ps.executeUpdate();
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(userId);
         }
         return count;
     }
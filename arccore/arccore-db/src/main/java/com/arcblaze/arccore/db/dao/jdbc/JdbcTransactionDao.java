@@ -3,19 +3,25 @@ package com.arcblaze.arccore.db.dao.jdbc;
 import static org.apache.commons.lang.Validate.notNull;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
-import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
@@ -26,21 +32,173 @@ import com.arcblaze.arccore.common.model.Transaction;
 import com.arcblaze.arccore.common.model.TransactionType;
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.cache.CountCache;
+import com.arcblaze.arccore.db.cache.EntityCache;
+import com.arcblaze.arccore.db.cache.SearchIndex;
+import com.arcblaze.arccore.db.dao.Page;
 import com.arcblaze.arccore.db.dao.TransactionDao;
+import com.arcblaze.arccore.db.util.InClause;
+import com.arcblaze.arccore.db.util.PageToken;
+import com.arcblaze.arccore.db.util.SqlParams;
 
 /**
- * Manages transactions within the back-end database.
+ * Manages transactions within the back-end database. The revenue totals by month are read from daily and monthly
+ * roll-up tables. Adding transactions queues their days, which are recalculated by the next {@link #rollUp()}, while
+ * updating or deleting transactions recalculates the affected days in the same database transaction.
  */
 public class JdbcTransactionDao implements TransactionDao {
+    /** The name of the entity cache holding the search index of the transactions in each company. */
+    public final static String SEARCH_CACHE = "transactionSearch";
+
+    /** The columns matched by the search filters. */
+    private final static String[] FILTER_COLUMNS = { "type", "description", "notes" };
+
+    /** The name of the row in the roll-up locks table held while the revenue totals are recalculated. */
+    public final static String REVENUE_LOCK = "revenue";
+
+    /**
+     * The work performed by {@link JdbcTransactionDao#transact(Work)} within a single database transaction.
+     */
+    protected interface Work {
+        /**
+         * @param conn
+         *            the database connection on which the transaction is active
+         * 
+         * @return the number of rows affected by the work
+         * 
+         * @throws SQLException
+         *             if there is a problem communicating with the database
+         */
+        int perform(final Connection conn) throws SQLException;
+    }
+
+    /**
+     * Indexes the type, description and notes of the transactions in a company, most recent first.
+     */
+    protected static class TransactionSearchIndex extends SearchIndex<Transaction> {
+        /** Orders transactions the same way as the search queries, with ties broken by the highest id. */
+        private final static Comparator<Transaction> ORDER = new Comparator<Transaction>() {
+            @Override
+            public int compare(final Transaction first, final Transaction second) {
+                final int result = second.getTimestamp().compareTo(first.getTimestamp());
+                return result != 0 ? result : second.getId().compareTo(first.getId());
+            }
+        };
+
+        /**
+         * @param maxSize
+         *            the maximum number of transactions to hold in the index
+         */
+        public TransactionSearchIndex(final int maxSize) {
+            super(ORDER, maxSize);
+        }
+
+        @Override
+        protected Integer getId(final Transaction transaction) {
+            return transaction.getId();
+        }
+
+        @Override
+        protected String[] getText(final Transaction transaction) {
+            return new String[] { transaction.getTransactionType().name(), transaction.getDescription(),
+                    transaction.getNotes() };
+        }
+
+        @Override
+        protected Transaction copy(final Transaction transaction) {
+            return new Transaction(transaction);
+        }
+    }
+
     /** Used to retrieve database connection objects. */
     private final ConnectionManager connectionManager;
 
+    /** Holds the cached transaction counts for each company. */
+    private final CountCache countCache;
+
     /**
      * @param connectionManager
      *            used to retrieve database connection objects
      */
     public JdbcTransactionDao(final ConnectionManager connectionManager) {
         this.connectionManager = connectionManager;
+        this.countCache = new CountCache(connectionManager);
+    }
+
+    protected EntityCache<Integer, SearchIndex<Transaction>> getSearchCache() {
+        return this.connectionManager.getCache(SEARCH_CACHE);
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company whose transactions will be searched
+     * @param filter
+     *            the search filter that will be used
+     * 
+     * @return the search index of the transactions in the company, loaded when not yet cached, or {@code null} if the
+     *         search needs to be performed in the database
+     * 
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    protected SearchIndex<Transaction> getSearchIndex(final Integer companyId, final String filter)
+            throws DatabaseException {
+        final int maxSize = this.connectionManager.getSearchIndexMaxSize();
+        if (maxSize == 0 || !getSearchCache().isEnabled() || !SearchIndex.supports(filter))
+            return null;
+
+        SearchIndex<Transaction> index = getSearchCache().get(companyId);
+        if (index == null) {
+            // Fetching one more transaction than the index can hold marks the index unavailable for large companies.
+            final String sql = "SELECT * FROM transactions WHERE company_id = ? LIMIT ?";
+
+            final long stamp = getSearchCache().stamp();
+            try (final Connection conn = this.connectionManager.getConnection();
+                    final PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, companyId);
+                ps.setInt(2, SqlParams.fetch(maxSize));
+                final List<Transaction> transactions = new ArrayList<>();
+                try (final ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        transactions.add(fromResultSet(rs));
+                }
+                index = new TransactionSearchIndex(maxSize);
+                index.put(transactions);
+                getSearchCache().put(stamp, companyId, companyId, index);
+            } catch (final SQLException sqlException) {
+                throw new DatabaseException(sqlException);
+            }
+        }
+        return index.isAvailable() ? index : null;
+    }
+
+    /**
+     * Apply successfully added transactions to the cached search indexes, or drop the indexes when the transactions
+     * may not have been added.
+     * 
+     * @param transactions
+     *            the transactions that were added to the database
+     * @param succeeded
+     *            whether the transactions were added successfully
+     */
+    protected void updateSearchIndexes(final Collection<Transaction> transactions, final boolean succeeded) {
+        final Map<Integer, List<Transaction>> companyMap = new TreeMap<>();
+        for (final Transaction transaction : transactions) {
+            List<Transaction> list = companyMap.get(transaction.getCompanyId());
+            if (list == null) {
+                list = new ArrayList<>();
+                companyMap.put(transaction.getCompanyId(), list);
+            }
+            list.add(transaction);
+        }
+
+        for (final Map.Entry<Integer, List<Transaction>> entry : companyMap.entrySet()) {
+            final SearchIndex<Transaction> index = succeeded ? getSearchCache().get(entry.getKey()) : null;
+            if (index != null)
+                index.put(entry.getValue());
+            else
+                getSearchCache().invalidate(entry.getKey());
+        }
     }
 
     protected Transaction fromResultSet(final ResultSet rs) throws SQLException {
@@ -82,21 +240,12 @@ public class JdbcTransactionDao implements TransactionDao {
      */
     @Override
     public int count(final String filter) throws DatabaseException {
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT COUNT(*) FROM transactions");
-        if (StringUtils.isNotBlank(filter)) {
-            sql.append(" WHERE LOWER(type) LIKE LOWER(?)");
-            sql.append(" OR LOWER(description) LIKE LOWER(?)");
-            sql.append(" OR LOWER(notes) LIKE LOWER(?)");
-        }
+        final String sql = "SELECT COUNT(*) FROM transactions"
+                + SqlParams.where(SqlParams.like(filter, FILTER_COLUMNS));
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            if (StringUtils.isNotBlank(filter)) {
-                ps.setString(1, "%" + filter + "%");
-                ps.setString(2, "%" + filter + "%");
-                ps.setString(3, "%" + filter + "%");
-            }
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            SqlParams.setLike(ps, 1, filter, FILTER_COLUMNS.length);
             try (final ResultSet rs = ps.executeQuery()) {
                 if (rs.next())
                     return rs.getInt(1);
@@ -107,6 +256,23 @@ public class JdbcTransactionDao implements TransactionDao {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count(final Integer companyId, final String filter) throws DatabaseException {
+        notNull(companyId, "Invalid null company id");
+
+        final SearchIndex<Transaction> searchIndex = getSearchIndex(companyId, filter);
+        if (searchIndex != null)
+            return searchIndex.count(filter, null);
+
+        final String sql = "SELECT COUNT(*) FROM transactions"
+                + SqlParams.where("company_id = ?", SqlParams.like(filter, FILTER_COLUMNS));
+
+        return this.countCache.count(companyId, sql, SqlParams.params(filter, FILTER_COLUMNS.length, companyId));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -165,27 +331,16 @@ public class JdbcTransactionDao implements TransactionDao {
         notNull(begin, "Invalid null begin");
         notNull(end, "Invalid null end");
 
-        final String sql = "SELECT YEAR(timestamp) AS year, " + "MONTH(timestamp) AS month, SUM(amount) AS amount "
-                + "FROM transactions WHERE timestamp >= ? AND timestamp < ? " + "GROUP BY year, month";
+        final String sql = "SELECT month, amount FROM revenue_by_month WHERE month >= ? AND month < ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setTimestamp(1, new Timestamp(begin.getTime()));
-            ps.setTimestamp(2, new Timestamp(end.getTime()));
+            ps.setDate(1, new java.sql.Date(DateUtils.truncate(begin, Calendar.MONTH).getTime()));
+            ps.setDate(2, new java.sql.Date(end.getTime()));
             final SortedMap<Date, BigDecimal> map = new TreeMap<>();
             try (final ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    final int year = rs.getInt("year");
-                    final int month = rs.getInt("month");
-                    final BigDecimal count = new BigDecimal(rs.getFloat("amount")).setScale(2);
-
-                    final Date date = DateUtils.parseDate(String.format("%d-%d-01", year, month),
-                            new String[] { "yyyy-MM-dd" });
-                    final BigDecimal sum = map.get(date);
-                    map.put(date, sum == null ? count : sum.add(count));
-                }
-            } catch (final ParseException badDate) {
-                throw new DatabaseException("Unexpected date parse problem.", badDate);
+                while (rs.next())
+                    map.put(new Date(rs.getDate("month").getTime()), rs.getBigDecimal("amount").setScale(2));
             }
 
             // Add any missing months.
@@ -202,6 +357,233 @@ public class JdbcTransactionDao implements TransactionDao {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int rollUp() throws DatabaseException {
+        try {
+            return transact(new Work() {
+                @Override
+                public int perform(final Connection conn) throws SQLException {
+                    lock(conn);
+
+                    // Only the queued rows read here are removed, since more may be queued while rolling up.
+                    final List<Integer> ids = new ArrayList<>();
+                    final SortedSet<Date> days = new TreeSet<>();
+                    try (final PreparedStatement ps = conn.prepareStatement("SELECT id, day FROM revenue_rollups");
+                            final ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt("id"));
+                            days.add(new Date(rs.getDate("day").getTime()));
+                        }
+                    }
+                    if (ids.isEmpty())
+                        return 0;
+
+                    recalculate(conn, days);
+                    for (final List<Integer> chunk : InClause.chunk(ids)) {
+                        final String sql = "DELETE FROM revenue_rollups WHERE id IN ("
+                                + InClause.placeholders(chunk.size()) + ")";
+                        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                            InClause.setInts(ps, 1, chunk);
+                            ps.executeUpdate();
+                        }
+                    }
+                    return days.size();
+                }
+            });
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Perform work within a database transaction, unless the connection is already part of a session transaction, in
+     * which case the session owns the commit.
+     * 
+     * @param work
+     *            the work to perform within the transaction
+     * 
+     * @return the number of rows affected by the work
+     * 
+     * @throws SQLException
+     *             if there is a problem communicating with the database
+     */
+    protected int transact(final Work work) throws SQLException {
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            if (!conn.getAutoCommit())
+                return work.perform(conn);
+
+            conn.setAutoCommit(false);
+            try {
+                final int count = work.perform(conn);
+                conn.commit();
+                return count;
+            } catch (final SQLException | RuntimeException failed) {
+                conn.rollback();
+                throw failed;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Lock the revenue roll-up row until the current transaction completes, so that the roll-ups of concurrent
+     * transactions, in this or any other process, replace the revenue totals one at a time. On MySQL the row is
+     * upserted in a single statement since an update that leaves the row unchanged reports no affected rows when the
+     * connection uses {@code useAffectedRows}.
+     * 
+     * @param conn
+     *            the database connection on which the transaction is active
+     * 
+     * @throws SQLException
+     *             if there is a problem communicating with the database
+     */
+    protected void lock(final Connection conn) throws SQLException {
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        if (this.connectionManager.isMySql()) {
+            final String upsert = "INSERT INTO rollup_locks (name, locked) VALUES (?, ?) "
+                    + "ON DUPLICATE KEY UPDATE locked = VALUES(locked)";
+            try (final PreparedStatement ps = conn.prepareStatement(upsert)) {
+                ps.setString(1, REVENUE_LOCK);
+                ps.setTimestamp(2, now);
+                ps.executeUpdate();
+            }
+            return;
+        }
+        try (final PreparedStatement ps = conn.prepareStatement("UPDATE rollup_locks SET locked = ? WHERE name = ?")) {
+            ps.setTimestamp(1, now);
+            ps.setString(2, REVENUE_LOCK);
+            if (ps.executeUpdate() > 0)
+                return;
+        }
+        final String insert = "INSERT INTO rollup_locks (name, locked) VALUES (?, ?)";
+        try (final PreparedStatement ps = conn.prepareStatement(insert)) {
+            ps.setString(1, REVENUE_LOCK);
+            ps.setTimestamp(2, now);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * @param conn
+     *            the database connection to use
+     * @param days
+     *            the days to queue for the next roll-up
+     * 
+     * @throws SQLException
+     *             if there is a problem communicating with the database
+     */
+    protected void enqueue(final Connection conn, final Collection<Date> days) throws SQLException {
+        try (final PreparedStatement ps = conn.prepareStatement("INSERT INTO revenue_rollups (day) VALUES (?)")) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
+            for (final Date day : days) {
+                ps.setDate(1, new java.sql.Date(day.getTime()));
+                batch.add();
+            }
+            batch.execute();
+        }
+    }
+
+    /**
+     * @param conn
+     *            the database connection to use
+     * @param ids
+     *            the unique ids of the existing transactions
+     * 
+     * @return the days on which the existing transactions with the provided ids fall
+     * 
+     * @throws SQLException
+     *             if there is a problem communicating with the database
+     */
+    protected SortedSet<Date> getDays(final Connection conn, final Collection<Integer> ids) throws SQLException {
+        final SortedSet<Date> days = new TreeSet<>();
+        for (final List<Integer> chunk : InClause.chunk(new LinkedHashSet<>(ids))) {
+            final String sql = "SELECT timestamp FROM transactions WHERE id IN (" + InClause.placeholders(chunk.size())
+                    + ")";
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                InClause.setInts(ps, 1, chunk);
+                try (final ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        days.add(DateUtils.truncate(new Date(rs.getTimestamp(1).getTime()), Calendar.DATE));
+                }
+            }
+        }
+        return days;
+    }
+
+    /**
+     * @param transactions
+     *            the transactions whose days will be returned
+     * 
+     * @return the days on which the provided transactions fall
+     */
+    protected static SortedSet<Date> getDays(final Collection<Transaction> transactions) {
+        final SortedSet<Date> days = new TreeSet<>();
+        for (final Transaction transaction : transactions)
+            days.add(DateUtils.truncate(transaction.getTimestamp(), Calendar.DATE));
+        return days;
+    }
+
+    /**
+     * Recalculate the revenue totals of the provided days, and of the months containing them, in full, so that
+     * recalculating a day more than once is harmless. The caller holds the lock from {@link #lock(Connection)}.
+     * 
+     * @param conn
+     *            the database connection on which the transaction is active
+     * @param days
+     *            the days whose revenue totals will be recalculated
+     * 
+     * @throws SQLException
+     *             if there is a problem communicating with the database
+     */
+    protected void recalculate(final Connection conn, final SortedSet<Date> days) throws SQLException {
+        final SortedSet<Date> months = new TreeSet<>();
+        final String daySum = "SELECT SUM(amount) FROM transactions WHERE timestamp >= ? AND timestamp < ?";
+        for (final Date day : days) {
+            months.add(DateUtils.truncate(day, Calendar.MONTH));
+            final BigDecimal amount = sum(conn, daySum, new Timestamp(day.getTime()),
+                    new Timestamp(DateUtils.addDays(day, 1).getTime()));
+            replace(conn, "revenue_by_day", "day", day, amount);
+        }
+
+        final String monthSum = "SELECT SUM(amount) FROM revenue_by_day WHERE day >= ? AND day < ?";
+        for (final Date month : months) {
+            final BigDecimal amount = sum(conn, monthSum, new java.sql.Date(month.getTime()), new java.sql.Date(
+                    DateUtils.addMonths(month, 1).getTime()));
+            replace(conn, "revenue_by_month", "month", month, amount);
+        }
+    }
+
+    protected BigDecimal sum(final Connection conn, final String sql, final Date begin, final Date end)
+            throws SQLException {
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, begin);
+            ps.setObject(2, end);
+            try (final ResultSet rs = ps.executeQuery()) {
+                final double amount = rs.next() ? rs.getDouble(1) : 0;
+                return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP);
+            }
+        }
+    }
+
+    protected void replace(final Connection conn, final String table, final String column, final Date date,
+            final BigDecimal amount) throws SQLException {
+        final java.sql.Date sqlDate = new java.sql.Date(date.getTime());
+        try (final PreparedStatement ps = conn.prepareStatement("DELETE FROM " + table + " WHERE " + column + " = ?")) {
+            ps.setDate(1, sqlDate);
+            ps.executeUpdate();
+        }
+        final String sql = "INSERT INTO " + table + " (" + column + ", amount) VALUES (?, ?)";
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, sqlDate);
+            ps.setBigDecimal(2, amount);
+            ps.executeUpdate();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -232,21 +614,14 @@ public class JdbcTransactionDao implements TransactionDao {
             throws DatabaseException {
         notNull(companyId, "Invalid null company id");
 
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM transactions WHERE company_id = ?");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+        final String sql = "SELECT * FROM transactions WHERE company_id = ? LIMIT ? OFFSET ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
             ps.setInt(index++, companyId);
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<Transaction> transactions = new TreeSet<>();
                 while (rs.next())
@@ -268,24 +643,17 @@ public class JdbcTransactionDao implements TransactionDao {
         notNull(begin, "Invalid null begin");
         notNull(end, "Invalid null end");
 
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM transactions WHERE company_id = ? AND ");
-        sql.append("timestamp >= ? AND timestamp <= ? ORDER BY timestamp DESC");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+        final String sql = "SELECT * FROM transactions WHERE company_id = ? AND timestamp >= ? AND timestamp <= ? "
+                + "ORDER BY timestamp DESC LIMIT ? OFFSET ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
             ps.setInt(index++, companyId);
             ps.setTimestamp(index++, new Timestamp(begin.getTime()));
             ps.setTimestamp(index++, new Timestamp(end.getTime()));
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<Transaction> transactions = new TreeSet<>();
                 while (rs.next())
@@ -305,32 +673,21 @@ public class JdbcTransactionDao implements TransactionDao {
             final Integer offset) throws DatabaseException {
         notNull(companyId, "Invalid null company id");
 
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM transactions WHERE company_id = ?");
-        if (StringUtils.isNotBlank(filter)) {
-            sql.append(" AND (LOWER(type) LIKE LOWER(?) OR ");
-            sql.append("LOWER(description) LIKE LOWER(?) OR ");
-            sql.append("LOWER(notes) LIKE LOWER(?))");
-        }
-        sql.append(" ORDER BY timestamp DESC");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+        final SearchIndex<Transaction> searchIndex = getSearchIndex(companyId, filter);
+        if (searchIndex != null)
+            return new TreeSet<>(searchIndex.search(filter, null, null, limit, offset));
+
+        final String sql = "SELECT * FROM transactions"
+                + SqlParams.where("company_id = ?", SqlParams.like(filter, FILTER_COLUMNS))
+                + " ORDER BY timestamp DESC LIMIT ? OFFSET ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
             ps.setInt(index++, companyId);
-            if (StringUtils.isNotBlank(filter)) {
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
-            }
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            index = SqlParams.setLike(ps, index, filter, FILTER_COLUMNS.length);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<Transaction> transactions = new TreeSet<>();
                 while (rs.next())
@@ -346,33 +703,82 @@ public class JdbcTransactionDao implements TransactionDao {
      * {@inheritDoc}
      */
     @Override
-    public Set<Transaction> search(final String filter, final Integer limit, final Integer offset)
-            throws DatabaseException {
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM transactions ");
-        if (StringUtils.isNotBlank(filter)) {
-            sql.append("WHERE LOWER(type) LIKE LOWER(?) OR ");
-            sql.append("LOWER(description) LIKE LOWER(?) OR ");
-            sql.append("LOWER(notes) LIKE LOWER(?) ");
-        }
-        sql.append("ORDER BY timestamp DESC");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+    public Page<Transaction> getPage(final Integer companyId, final String filter, final String token,
+            final Integer limit) throws DatabaseException {
+        notNull(companyId, "Invalid null company id");
+
+        // Transactions are ordered by (timestamp, id) descending, so the page following a token begins with the rows
+        // that sort after the last row in the previous page, found using the company timestamp index.
+        final PageToken after = token == null ? null : PageToken.decode(token, 2);
+        if (limit != null && limit <= 0)
+            return new Page<>(new LinkedHashSet<Transaction>(), null);
+
+        final SearchIndex<Transaction> searchIndex = getSearchIndex(companyId, filter);
+        if (searchIndex != null) {
+            Transaction probe = null;
+            if (after != null) {
+                probe = new Transaction();
+                probe.setTimestamp(after.getTimestamp(0));
+                probe.setId(after.getInt(1));
+            }
+            final List<Transaction> transactions = searchIndex.search(filter, null, probe, SqlParams.fetch(limit), null);
+            if (limit == null || transactions.size() <= limit)
+                return new Page<>(new LinkedHashSet<>(transactions), null);
+            final Transaction last = transactions.get(limit - 1);
+            return new Page<>(new LinkedHashSet<>(transactions.subList(0, limit)), PageToken.encode(
+                    last.getTimestamp(), last.getId()));
+        }
+
+        final String sql = "SELECT * FROM transactions"
+                + SqlParams.where("company_id = ?", SqlParams.like(filter, FILTER_COLUMNS),
+                        after == null ? null : "(timestamp < ? OR (timestamp = ? AND id < ?))")
+                + " ORDER BY timestamp DESC, id DESC LIMIT ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
-            if (StringUtils.isNotBlank(filter)) {
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
+            ps.setInt(index++, companyId);
+            index = SqlParams.setLike(ps, index, filter, FILTER_COLUMNS.length);
+            if (after != null) {
+                ps.setTimestamp(index++, after.getTimestamp(0));
+                ps.setTimestamp(index++, after.getTimestamp(0));
+                ps.setInt(index++, after.getInt(1));
             }
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            ps.setInt(index++, SqlParams.fetch(limit));
+            try (final ResultSet rs = ps.executeQuery()) {
+                final Set<Transaction> transactions = new LinkedHashSet<>();
+                Transaction last = null;
+                boolean more = false;
+                while (rs.next()) {
+                    if (limit != null && transactions.size() >= limit) {
+                        more = true;
+                        break;
+                    }
+                    last = fromResultSet(rs);
+                    transactions.add(last);
+                }
+                final String next = more && last != null ? PageToken.encode(last.getTimestamp(), last.getId()) : null;
+                return new Page<>(transactions, next);
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Transaction> search(final String filter, final Integer limit, final Integer offset)
+            throws DatabaseException {
+        final String sql = "SELECT * FROM transactions" + SqlParams.where(SqlParams.like(filter, FILTER_COLUMNS))
+                + " ORDER BY timestamp DESC LIMIT ? OFFSET ?";
+
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = SqlParams.setLike(ps, 1, filter, FILTER_COLUMNS.length);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<Transaction> transactions = new TreeSet<>();
                 while (rs.next())
@@ -403,27 +809,44 @@ public class JdbcTransactionDao implements TransactionDao {
         final String sql = "INSERT INTO transactions (company_id, user_id, "
                 + "timestamp, type, description, amount, notes) VALUES " + "(?, ?, ?, ?, ?, ?, ?)";
 
-        int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            for (final Transaction transaction : transactions) {
-                int index = 1;
-                ps.setInt(index++, transaction.getCompanyId());
-                ps.setInt(index++, transaction.getUserId());
-                ps.setTimestamp(index++, new Timestamp(transaction.getTimestamp().getTime()));
-                ps.setString(index++, transaction.getTransactionType().name());
-                ps.setString(index++, transaction.getDescription());
-                ps.setString(index++, transaction.getAmount().toPlainString());
-                ps.setString(index++, transaction.getNotes());
-                count += ps.executeUpdate();
-
-                try (final ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next())
-                        transaction.setId(rs.getInt(1));
+        final int count;
+        boolean added = false;
+        try {
+            count = transact(new Work() {
+                @Override
+                public int perform(final Connection conn) throws SQLException {
+                    int inserted = 0;
+                    try (final PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                        for (final Transaction transaction : transactions) {
+                            int index = 1;
+                            ps.setInt(index++, transaction.getCompanyId());
+                            ps.setInt(index++, transaction.getUserId());
+                            ps.setTimestamp(index++, new Timestamp(transaction.getTimestamp().getTime()));
+                            ps.setString(index++, transaction.getTransactionType().name());
+                            ps.setString(index++, transaction.getDescription());
+                            ps.setString(index++, transaction.getAmount().toPlainString());
+                            ps.setString(index++, transaction.getNotes());
+                            inserted += ps.executeUpdate();
+
+                            try (final ResultSet rs = ps.getGeneratedKeys()) {
+                                if (rs.next())
+                                    transaction.setId(rs.getInt(1));
+                            }
+                        }
+                    }
+
+                    // Queued in the same transaction, so the new days are never missed by the next roll-up.
+                    enqueue(conn, getDays(transactions));
+                    return inserted;
                 }
-            }
+            });
+            added = true;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            for (final Transaction transaction : transactions)
+                this.countCache.invalidate(transaction.getCompanyId());
+            updateSearchIndexes(transactions, added);
         }
         return count;
     }
@@ -447,25 +870,46 @@ public class JdbcTransactionDao implements TransactionDao {
         final String sql = "UPDATE transactions SET company_id = ?, user_id = ?, "
                 + "timestamp = ?, type = ?, description = ?, amount = ?, " + "notes = ? WHERE id = ?";
 
-        int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (Transaction transaction : transactions) {
-                int index = 1;
-                ps.setInt(index++, transaction.getCompanyId());
-                ps.setInt(index++, transaction.getUserId());
-                ps.setTimestamp(index++, new Timestamp(transaction.getTimestamp().getTime()));
-                ps.setString(index++, transaction.getTransactionType().name());
-                ps.setString(index++, transaction.getDescription());
-                ps.setString(index++, transaction.getAmount().toPlainString());
-                ps.setString(index++, transaction.getNotes());
-                ps.setInt(index++, transaction.getId());
-                count += ps.executeUpdate();
-            }
+        try {
+            return transact(new Work() {
+                @Override
+                public int perform(final Connection conn) throws SQLException {
+                    lock(conn);
+
+                    // Both the previous and the new days of the transactions are recalculated.
+                    final List<Integer> ids = new ArrayList<>(transactions.size());
+                    for (final Transaction transaction : transactions)
+                        ids.add(transaction.getId());
+                    final SortedSet<Date> days = getDays(conn, ids);
+                    days.addAll(getDays(transactions));
+
+                    int count = 0;
+                    try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                        for (final Transaction transaction : transactions) {
+                            int index = 1;
+                            ps.setInt(index++, transaction.getCompanyId());
+                            ps.setInt(index++, transaction.getUserId());
+                            ps.setTimestamp(index++, new Timestamp(transaction.getTimestamp().getTime()));
+                            ps.setString(index++, transaction.getTransactionType().name());
+                            ps.setString(index++, transaction.getDescription());
+                            ps.setString(index++, transaction.getAmount().toPlainString());
+                            ps.setString(index++, transaction.getNotes());
+                            ps.setInt(index++, transaction.getId());
+                            count += ps.executeUpdate();
+                        }
+                    }
+
+                    recalculate(conn, days);
+                    return count;
+                }
+            });
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            // The company and searchable text may have changed, so the counts in every company may be wrong.
+            this.countCache.invalidateAll();
+            getSearchCache().invalidateAll();
         }
-        return count;
     }
 
     /**
@@ -486,16 +930,30 @@ public class JdbcTransactionDao implements TransactionDao {
 
         final String sql = "DELETE FROM transactions WHERE id = ?";
 
-        int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer id : ids) {
-                ps.setInt(1, id);
-                count += ps.executeUpdate();
-            }
+        try {
+            return transact(new Work() {
+                @Override
+                public int perform(final Connection conn) throws SQLException {
+                    lock(conn);
+                    final SortedSet<Date> days = getDays(conn, ids);
+
+                    int count = 0;
+                    try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                        for (final Integer id : ids) {
+                            ps.setInt(1, id);
+                            count += ps.executeUpdate();
+                        }
+                    }
+
+                    recalculate(conn, days);
+                    return count;
+                }
+            });
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            this.countCache.invalidateAll();
+            getSearchCache().invalidateAll();
         }
-        return count;
     }
 }
@@ -6,10 +6,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
@@ -20,9 +20,11 @@ import org.apache.commons.lang.time.DateUtils;
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.db.dao.UserActivityDao;
+import com.arcblaze.arccore.db.util.InClause;
 
 /**
- * Manages user activity counts within the back-end database.
+ * Manages user activity counts within the back-end database. The daily counts are rolled up into the
+ * {@code active_user_counts_by_month} table as they are recorded, and the monthly statistics are read from there.
  */
 public class JdbcUserActivityDao implements UserActivityDao {
     /** Used to retrieve database connection objects. */
@@ -46,42 +48,19 @@ public class JdbcUserActivityDao implements UserActivityDao {
         notNull(begin, "Invalid null begin");
         notNull(end, "Invalid null end");
 
-        final String sql = "SELECT YEAR(day) AS year, MONTH(day) AS month, "
-                + "MAX(active) AS active FROM active_user_counts " + "WHERE company_id = ? AND day >= ? AND day < ? "
-                + "GROUP BY year, month";
+        final String sql = "SELECT month, active FROM active_user_counts_by_month "
+                + "WHERE company_id = ? AND month >= ? AND month < ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, companyId);
-            ps.setDate(2, new java.sql.Date(begin.getTime()));
+            ps.setDate(2, new java.sql.Date(DateUtils.truncate(begin, Calendar.MONTH).getTime()));
             ps.setDate(3, new java.sql.Date(end.getTime()));
-            final SortedMap<Date, Integer> map = new TreeMap<>();
             try (final ResultSet rs = ps.executeQuery()) {
-                final SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd");
-                while (rs.next()) {
-                    final int year = rs.getInt("year");
-                    final int month = rs.getInt("month");
-                    final Integer active = rs.getInt("active");
-
-                    final Date date = fmt.parse(String.format("%d-%d-01", year, month));
-                    final Integer num = map.get(date);
-                    map.put(date, num == null ? active : Math.max(num, active));
-                }
-            }
-
-            // Add any missing months.
-            Date date = DateUtils.truncate(begin, Calendar.MONTH);
-            while (!date.after(end)) {
-                if (!map.containsKey(date))
-                    map.put(date, 0);
-                date = DateUtils.addMonths(date, 1);
+                return getMonths(rs, begin, end);
             }
-
-            return map;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
-        } catch (final ParseException badDate) {
-            throw new DatabaseException("Unexpected date parse problem.", badDate);
         }
     }
 
@@ -93,43 +72,38 @@ public class JdbcUserActivityDao implements UserActivityDao {
         notNull(begin, "Invalid null begin");
         notNull(end, "Invalid null end");
 
-        final String sql = "SELECT company_id, YEAR(day) AS year, " + "MONTH(day) AS month, MAX(active) AS active "
-                + "FROM active_user_counts WHERE day >= ? AND day < ? " + "GROUP BY company_id, year, month";
+        final String sql = "SELECT month, SUM(active) AS active FROM active_user_counts_by_month "
+                + "WHERE month >= ? AND month < ? GROUP BY month";
 
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setDate(1, new java.sql.Date(begin.getTime()));
+            ps.setDate(1, new java.sql.Date(DateUtils.truncate(begin, Calendar.MONTH).getTime()));
             ps.setDate(2, new java.sql.Date(end.getTime()));
-            final SortedMap<Date, Integer> map = new TreeMap<>();
             try (final ResultSet rs = ps.executeQuery()) {
-                final SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd");
-                while (rs.next()) {
-                    final int year = rs.getInt("year");
-                    int month = rs.getInt("month");
-                    final Integer active = rs.getInt("active");
-
-                    final Date date = fmt.parse(String.format("%d-%d-01", year, month));
-                    final Integer num = map.get(date);
-                    map.put(date, num == null ? active : num + active);
-                }
-            }
-
-            // Add any missing months.
-            Date date = DateUtils.truncate(begin, Calendar.MONTH);
-            while (!date.after(end)) {
-                if (!map.containsKey(date))
-                    map.put(date, 0);
-                date = DateUtils.addMonths(date, 1);
+                return getMonths(rs, begin, end);
             }
-
-            return map;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
-        } catch (final ParseException badDate) {
-            throw new DatabaseException("Unexpected date parse problem.", badDate);
         }
     }
 
+    protected SortedMap<Date, Integer> getMonths(final ResultSet rs, final Date begin, final Date end)
+            throws SQLException {
+        final SortedMap<Date, Integer> map = new TreeMap<>();
+        while (rs.next())
+            map.put(new Date(rs.getDate("month").getTime()), rs.getInt("active"));
+
+        // Add any missing months.
+        Date date = DateUtils.truncate(begin, Calendar.MONTH);
+        while (!date.after(end)) {
+            if (!map.containsKey(date))
+                map.put(date, 0);
+            date = DateUtils.addMonths(date, 1);
+        }
+
+        return map;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -139,20 +113,128 @@ public class JdbcUserActivityDao implements UserActivityDao {
             return;
         notNull(day, "Invalid null day");
 
-        final String sql = "INSERT INTO active_user_counts " + "(company_id, day, active) VALUES (?, ?, ?)";
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            // When the connection is already part of a session transaction, the session owns the commit.
+            if (!conn.getAutoCommit()) {
+                setActiveUsers(conn, DateUtils.truncate(day, Calendar.DATE), counts);
+                return;
+            }
 
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            final java.sql.Date sqlDay = new java.sql.Date(day.getTime());
+            conn.setAutoCommit(false);
+            try {
+                setActiveUsers(conn, DateUtils.truncate(day, Calendar.DATE), counts);
+                conn.commit();
+            } catch (final SQLException | RuntimeException failed) {
+                conn.rollback();
+                throw failed;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    protected void setActiveUsers(final Connection conn, final Date day, final Map<Integer, Integer> counts)
+            throws SQLException {
+        final int batchSize = this.connectionManager.getBatchSize();
+        final java.sql.Date sqlDay = new java.sql.Date(day.getTime());
+
+        // Replace the daily counts.
+        final String deleteDay = "DELETE FROM active_user_counts WHERE company_id = ? AND day = ?";
+        try (final PreparedStatement ps = conn.prepareStatement(deleteDay)) {
+            final JdbcBatch batch = new JdbcBatch(ps, batchSize);
+            for (final Integer companyId : counts.keySet()) {
+                notNull(companyId, "Invalid null company id");
+                ps.setInt(1, companyId);
+                ps.setDate(2, sqlDay);
+                batch.add();
+            }
+            batch.execute();
+        }
+
+        final String insertDay = "INSERT INTO active_user_counts (company_id, day, active) VALUES (?, ?, ?)";
+        try (final PreparedStatement ps = conn.prepareStatement(insertDay)) {
+            final JdbcBatch batch = new JdbcBatch(ps, batchSize);
             for (final Entry<Integer, Integer> entry : counts.entrySet()) {
+                notNull(entry.getValue(), "Invalid null count");
                 int index = 1;
                 ps.setInt(index++, entry.getKey());
                 ps.setDate(index++, sqlDay);
                 ps.setInt(index++, entry.getValue());
-                ps.executeUpdate();
+                batch.add();
             }
+            batch.execute();
+        }
+
+        // Roll the daily counts up into the month, which only needs the days already recorded for that month.
+        final Date month = DateUtils.truncate(day, Calendar.MONTH);
+        final java.sql.Date sqlMonth = new java.sql.Date(month.getTime());
+        final java.sql.Date sqlNextMonth = new java.sql.Date(DateUtils.addMonths(month, 1).getTime());
+        final Map<Integer, Integer> monthly = new LinkedHashMap<>();
+        for (final List<Integer> chunk : InClause.chunk(counts.keySet())) {
+            final String max = "SELECT company_id, MAX(active) AS active FROM active_user_counts "
+                    + "WHERE day >= ? AND day < ? AND company_id IN (" + InClause.placeholders(chunk.size())
+                    + ") GROUP BY company_id";
+            try (final PreparedStatement ps = conn.prepareStatement(max)) {
+                ps.setDate(1, sqlMonth);
+                ps.setDate(2, sqlNextMonth);
+                InClause.setInts(ps, 3, chunk);
+                try (final ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        monthly.put(rs.getInt("company_id"), rs.getInt("active"));
+                }
+            }
+        }
+
+        final String deleteMonth = "DELETE FROM active_user_counts_by_month WHERE company_id = ? AND month = ?";
+        try (final PreparedStatement ps = conn.prepareStatement(deleteMonth)) {
+            final JdbcBatch batch = new JdbcBatch(ps, batchSize);
+            for (final Integer companyId : monthly.keySet()) {
+                ps.setInt(1, companyId);
+                ps.setDate(2, sqlMonth);
+                batch.add();
+            }
+            batch.execute();
+        }
+
+        final String insertMonth = "INSERT INTO active_user_counts_by_month (company_id, month, active) "
+                + "VALUES (?, ?, ?)";
+        try (final PreparedStatement ps = conn.prepareStatement(insertMonth)) {
+            final JdbcBatch batch = new JdbcBatch(ps, batchSize);
+            for (final Entry<Integer, Integer> entry : monthly.entrySet()) {
+                int index = 1;
+                ps.setInt(index++, entry.getKey());
+                ps.setDate(index++, sqlMonth);
+                ps.setInt(index++, entry.getValue());
+                batch.add();
+            }
+            batch.execute();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int rollUp(final Date day) throws DatabaseException {
+        notNull(day, "Invalid null day");
+
+        final String sql = "SELECT c.id AS company_id, COUNT(u.id) AS active FROM companies c "
+                + "LEFT JOIN users u ON (u.company_id = c.id AND u.active = TRUE) WHERE c.active = TRUE "
+                + "GROUP BY c.id";
+
+        final Map<Integer, Integer> counts = new LinkedHashMap<>();
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql);
+                final ResultSet rs = ps.executeQuery()) {
+            while (rs.next())
+                counts.put(rs.getInt("company_id"), rs.getInt("active"));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
+
+        setActiveUsers(day, counts);
+        return counts.size();
     }
 }
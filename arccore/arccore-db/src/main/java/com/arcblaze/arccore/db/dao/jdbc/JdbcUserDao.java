@@ -9,36 +9,293 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import org.apache.commons.lang.StringUtils;
-
+import com.arcblaze.arccore.common.model.Role;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.db.DatabaseUniqueConstraintException;
+import com.arcblaze.arccore.db.cache.CountCache;
+import com.arcblaze.arccore.db.cache.EntityCache;
+import com.arcblaze.arccore.db.cache.SearchIndex;
+import com.arcblaze.arccore.db.dao.Page;
 import com.arcblaze.arccore.db.dao.UserDao;
+import com.arcblaze.arccore.db.util.InClause;
+import com.arcblaze.arccore.db.util.PageToken;
+import com.arcblaze.arccore.db.util.SqlParams;
 
 /**
  * Manages users within the back-end database.
  */
 public class JdbcUserDao implements UserDao {
+    /** The name of the entity cache holding users, including their passwords, keyed by user id. */
+    public final static String CACHE = "users";
+
+    /** The name of the entity cache mapping the login values used to authenticate to user ids. */
+    public final static String LOGIN_CACHE = "logins";
+
+    /**
+     * The name of the entity cache holding the authenticated accounts, including logins that do not match any active
+     * user, keyed by the login value used to authenticate.
+     */
+    public final static String PRINCIPAL_CACHE = "principals";
+
+    /** The name of the entity cache holding the search index of the users in each company, keyed by company id. */
+    public final static String SEARCH_CACHE = "userSearch";
+
+    /** The columns matched by the search filters. */
+    private final static String[] FILTER_COLUMNS = { "login", "first_name", "last_name", "email" };
+
+    /** Identifies the page tokens created from the search index, which sorts names differently than the database. */
+    private final static String INDEX_TOKEN = "index";
+
+    /** Identifies the page tokens created from database queries, which sort names using the database collation. */
+    private final static String QUERY_TOKEN = "query";
+
+    /**
+     * Indexes the login, names and email of the users in a company, ordered by last name, first name and login.
+     */
+    protected static class UserSearchIndex extends SearchIndex<User> {
+        /** Orders users the same way as the search queries. */
+        private final static Comparator<User> ORDER = new Comparator<User>() {
+            @Override
+            public int compare(final User first, final User second) {
+                int result = first.getLastName().compareTo(second.getLastName());
+                if (result == 0)
+                    result = first.getFirstName().compareTo(second.getFirstName());
+                if (result == 0)
+                    result = first.getLogin().compareTo(second.getLogin());
+                return result;
+            }
+        };
+
+        /**
+         * @param maxSize
+         *            the maximum number of users to hold in the index
+         */
+        public UserSearchIndex(final int maxSize) {
+            super(ORDER, maxSize);
+        }
+
+        @Override
+        protected Integer getId(final User user) {
+            return user.getId();
+        }
+
+        @Override
+        protected String[] getText(final User user) {
+            return new String[] { user.getLogin(), user.getFirstName(), user.getLastName(), user.getEmail() };
+        }
+
+        @Override
+        protected User copy(final User user) {
+            return JdbcUserDao.copy(user, false);
+        }
+    }
+
     /** Used to retrieve database connection objects. */
     private final ConnectionManager connectionManager;
 
+    /** Holds the cached user counts for each company. */
+    private final CountCache countCache;
+
     /**
      * @param connectionManager
      *            used to retrieve database connection objects
      */
     public JdbcUserDao(final ConnectionManager connectionManager) {
         this.connectionManager = connectionManager;
+        this.countCache = new CountCache(connectionManager);
+    }
+
+    protected EntityCache<Integer, User> getCache() {
+        return this.connectionManager.getCache(CACHE);
+    }
+
+    protected EntityCache<String, Integer> getLoginCache() {
+        return this.connectionManager.getCache(LOGIN_CACHE);
+    }
+
+    protected EntityCache<Integer, SearchIndex<User>> getSearchCache() {
+        return this.connectionManager.getCache(SEARCH_CACHE);
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company whose users will be searched
+     * @param filter
+     *            the search filter that will be used
+     * 
+     * @return the search index of the users in the company, loaded when not yet cached, or {@code null} if the search
+     *         needs to be performed in the database
+     * 
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    protected SearchIndex<User> getSearchIndex(final Integer companyId, final String filter)
+            throws DatabaseException {
+        final int maxSize = this.connectionManager.getSearchIndexMaxSize();
+        if (maxSize == 0 || !getSearchCache().isEnabled() || !SearchIndex.supports(filter))
+            return null;
+
+        SearchIndex<User> index = getSearchCache().get(companyId);
+        if (index == null) {
+            // Fetching one more user than the index can hold marks the index unavailable for large companies.
+            final String sql = "SELECT * FROM users WHERE company_id = ? LIMIT ?";
+
+            final long stamp = getSearchCache().stamp();
+            try (final Connection conn = this.connectionManager.getConnection();
+                    final PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, companyId);
+                ps.setInt(2, SqlParams.fetch(maxSize));
+                final List<User> users = new ArrayList<>();
+                try (final ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        users.add(fromResultSet(rs, false));
+                }
+                index = new UserSearchIndex(maxSize);
+                index.put(users);
+                getSearchCache().put(stamp, companyId, companyId, index);
+            } catch (final SQLException sqlException) {
+                throw new DatabaseException(sqlException);
+            }
+        }
+        return index.isAvailable() ? index : null;
+    }
+
+    /**
+     * Apply successful changes to the cached search indexes, or drop the indexes when the changes may not have been
+     * applied.
+     * 
+     * @param users
+     *            the users that were added or modified in the database
+     * @param succeeded
+     *            whether the changes were applied successfully
+     */
+    protected void updateSearchIndexes(final Collection<User> users, final boolean succeeded) {
+        final Map<Integer, List<User>> companyMap = new TreeMap<>();
+        for (final User user : users) {
+            List<User> list = companyMap.get(user.getCompanyId());
+            if (list == null) {
+                list = new ArrayList<>();
+                companyMap.put(user.getCompanyId(), list);
+            }
+            list.add(user);
+        }
+
+        for (final Map.Entry<Integer, List<User>> entry : companyMap.entrySet()) {
+            final SearchIndex<User> index = succeeded ? getSearchCache().get(entry.getKey()) : null;
+            if (index != null)
+                index.put(entry.getValue());
+            else
+                getSearchCache().invalidate(entry.getKey());
+        }
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company in which users were activated or deactivated
+     * @param ids
+     *            the unique ids of the users that were modified
+     * @param active
+     *            the new active state of the users
+     * @param succeeded
+     *            whether the changes were applied successfully
+     */
+    protected void updateSearchIndex(final Integer companyId, final Collection<Integer> ids, final boolean active,
+            final boolean succeeded) {
+        final SearchIndex<User> index = succeeded ? getSearchCache().get(companyId) : null;
+        if (index == null) {
+            getSearchCache().invalidate(companyId);
+            return;
+        }
+
+        // The index hands out copies, so the modified copies replace the indexed users rather than changing them in
+        // place while concurrent searches may be reading them.
+        final List<User> copies = new ArrayList<>(ids.size());
+        for (final Integer id : ids) {
+            final User copy = index.get(id);
+            if (copy != null) {
+                copy.setActive(active);
+                copies.add(copy);
+            }
+        }
+        index.put(copies);
+    }
+
+    /**
+     * @param includeInactive
+     *            whether inactive users should be matched
+     * 
+     * @return the condition used to restrict the users found in a search index
+     */
+    protected static SearchIndex.Condition<User> activeCondition(final boolean includeInactive) {
+        return new SearchIndex.Condition<User>() {
+            @Override
+            public boolean matches(final User user) {
+                return includeInactive || user.isActive();
+            }
+        };
+    }
+
+    /**
+     * @param user
+     *            the cached user
+     * @param includePass
+     *            whether the password and salt values should be included in the returned user
+     * 
+     * @return a copy of the provided user, so that the cached user is not modified by the caller
+     */
+    protected static User copy(final User user, final boolean includePass) {
+        if (includePass)
+            return new User(user);
+
+        final User copy = new User();
+        copy.setId(user.getId());
+        copy.setCompanyId(user.getCompanyId());
+        copy.setLogin(user.getLogin());
+        copy.setEmail(user.getEmail());
+        copy.setFirstName(user.getFirstName());
+        copy.setLastName(user.getLastName());
+        copy.setActive(user.isActive());
+        return copy;
+    }
+
+    /**
+     * Remove the provided users, and their roles, from the entity caches.
+     * 
+     * @param ids
+     *            the unique ids of the users that were modified
+     */
+    protected void invalidate(final Collection<Integer> ids) {
+        getCache().invalidate(ids);
+        this.connectionManager.<Integer, Set<Role>> getCache(JdbcRoleDao.CACHE).invalidate(ids);
+        invalidatePrincipals(this.connectionManager);
+    }
+
+    /**
+     * Remove all of the authenticated accounts from the principal cache. The accounts are keyed by the login values
+     * used to authenticate, which may be email addresses or logins that did not match any user, so the accounts
+     * affected by a change cannot be identified individually.
+     * 
+     * @param connectionManager
+     *            the connection manager holding the principal cache
+     */
+    protected static void invalidatePrincipals(final ConnectionManager connectionManager) {
+        connectionManager.getCache(PRINCIPAL_CACHE).invalidateAll();
     }
 
     protected User fromResultSet(final ResultSet rs, final boolean includePass) throws SQLException {
@@ -80,26 +337,12 @@ public class JdbcUserDao implements UserDao {
      */
     @Override
     public int count(final String filter, final boolean includeInactive) throws DatabaseException {
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT COUNT(*) FROM users");
-        if (StringUtils.isNotBlank(filter)) {
-            sql.append(" WHERE (LOWER(login) LIKE LOWER(?)");
-            sql.append(" OR LOWER(first_name) LIKE LOWER(?)");
-            sql.append(" OR LOWER(last_name) LIKE LOWER(?)");
-            sql.append(" OR LOWER(email) LIKE LOWER(?))");
-            if (!includeInactive)
-                sql.append(" AND active = TRUE");
-        } else if (!includeInactive)
-            sql.append(" WHERE active = TRUE");
+        final String sql = "SELECT COUNT(*) FROM users"
+                + SqlParams.where(SqlParams.like(filter, FILTER_COLUMNS), includeInactive ? null : "active = TRUE");
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            if (StringUtils.isNotBlank(filter)) {
-                ps.setString(1, "%" + filter + "%");
-                ps.setString(2, "%" + filter + "%");
-                ps.setString(3, "%" + filter + "%");
-                ps.setString(4, "%" + filter + "%");
-            }
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            SqlParams.setLike(ps, 1, filter, FILTER_COLUMNS.length);
             try (final ResultSet rs = ps.executeQuery()) {
                 if (rs.next())
                     return rs.getInt(1);
@@ -110,6 +353,24 @@ public class JdbcUserDao implements UserDao {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count(final Integer companyId, final String filter, final boolean includeInactive)
+            throws DatabaseException {
+        notNull(companyId, "Invalid null company id");
+
+        final SearchIndex<User> searchIndex = getSearchIndex(companyId, filter);
+        if (searchIndex != null)
+            return searchIndex.count(filter, activeCondition(includeInactive));
+
+        final String sql = "SELECT COUNT(*) FROM users" + SqlParams.where("company_id = ?",
+                SqlParams.like(filter, FILTER_COLUMNS), includeInactive ? null : "active = TRUE");
+
+        return this.countCache.count(companyId, sql, SqlParams.params(filter, FILTER_COLUMNS.length, companyId));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -137,15 +398,31 @@ public class JdbcUserDao implements UserDao {
     public User getLogin(final String login) throws DatabaseException {
         notEmpty(login, "Invalid blank login");
 
-        final String sql = "SELECT * FROM users WHERE active = true AND " + "(login = ? OR LOWER(email) = LOWER(?))";
-
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, login);
-            ps.setString(2, login);
-            try (final ResultSet rs = ps.executeQuery();) {
-                if (rs.next())
-                    return fromResultSet(rs, true);
+        // The login index may be out of date, so make sure the cached user still matches.
+        final Integer cachedId = getLoginCache().get(login);
+        final User cached = cachedId == null ? null : getCache().get(cachedId);
+        if (cached != null && cached.isActive()
+                && (login.equals(cached.getLogin()) || login.equalsIgnoreCase(cached.getEmail())))
+            return copy(cached, true);
+
+        // Comparing the lower-case email cannot use an index, so the indexed login is checked on its own first.
+        final String byLogin = "SELECT * FROM users WHERE active = true AND login = ?";
+        final String byEmail = "SELECT * FROM users WHERE active = true AND LOWER(email) = LOWER(?)";
+
+        final long stamp = getCache().stamp();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final String sql : new String[] { byLogin, byEmail }) {
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, login);
+                    try (final ResultSet rs = ps.executeQuery();) {
+                        if (rs.next()) {
+                            final User user = fromResultSet(rs, true);
+                            getCache().put(stamp, user.getCompanyId(), user.getId(), user);
+                            getLoginCache().put(getLoginCache().stamp(), user.getCompanyId(), login, user.getId());
+                            return copy(user, true);
+                        }
+                    }
+                }
             }
             return null;
         } catch (final SQLException sqlException) {
@@ -160,14 +437,22 @@ public class JdbcUserDao implements UserDao {
     public User get(final Integer userId) throws DatabaseException {
         notNull(userId, "Invalid null user id");
 
+        final User cached = getCache().get(userId);
+        if (cached != null)
+            return copy(cached, false);
+
         final String sql = "SELECT * FROM users WHERE id = ?";
 
+        final long stamp = getCache().stamp();
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, userId);
             try (final ResultSet rs = ps.executeQuery();) {
-                if (rs.next())
-                    return fromResultSet(rs, false);
+                if (rs.next()) {
+                    final User user = fromResultSet(rs, true);
+                    getCache().put(stamp, user.getCompanyId(), user.getId(), user);
+                    return copy(user, false);
+                }
             }
             return null;
         } catch (final SQLException sqlException) {
@@ -183,15 +468,23 @@ public class JdbcUserDao implements UserDao {
         notNull(companyId, "Invalid null company id");
         notNull(userId, "Invalid null user id");
 
+        final User cached = getCache().get(userId);
+        if (cached != null)
+            return companyId.equals(cached.getCompanyId()) ? copy(cached, false) : null;
+
         final String sql = "SELECT * FROM users " + "WHERE company_id = ? AND id = ?";
 
+        final long stamp = getCache().stamp();
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, companyId);
             ps.setInt(2, userId);
             try (final ResultSet rs = ps.executeQuery()) {
-                if (rs.next())
-                    return fromResultSet(rs, false);
+                if (rs.next()) {
+                    final User user = fromResultSet(rs, true);
+                    getCache().put(stamp, user.getCompanyId(), user.getId(), user);
+                    return copy(user, false);
+                }
             }
             return null;
         } catch (final SQLException sqlException) {
@@ -207,16 +500,32 @@ public class JdbcUserDao implements UserDao {
         if (ids == null || ids.isEmpty())
             return Collections.emptyMap();
 
-        final String sql = "SELECT * FROM users WHERE id = ?";
+        final Map<Integer, User> userMap = new TreeMap<>();
+        final Set<Integer> missing = new TreeSet<>();
+        for (final Integer id : ids) {
+            final User cached = getCache().get(id);
+            if (cached != null)
+                userMap.put(id, copy(cached, false));
+            else
+                missing.add(id);
+        }
+        if (missing.isEmpty())
+            return userMap;
 
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            final Map<Integer, User> userMap = new TreeMap<>();
-            for (final Integer id : ids) {
-                ps.setInt(1, id);
-                try (final ResultSet rs = ps.executeQuery()) {
-                    while (rs.next())
-                        userMap.put(id, fromResultSet(rs, false));
+        final long stamp = getCache().stamp();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(missing)) {
+                final String sql = "SELECT * FROM users WHERE id IN (" + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    InClause.setInts(ps, 1, chunk);
+                    try (final ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            final User user = fromResultSet(rs, true);
+                            getCache().put(stamp, user.getCompanyId(), user.getId(), user);
+                            userMap.put(user.getId(), copy(user, false));
+                        }
+                    }
                 }
             }
             return userMap;
@@ -233,24 +542,15 @@ public class JdbcUserDao implements UserDao {
             final Integer offset) throws DatabaseException {
         notNull(companyId, "Invalid null company id");
 
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM users WHERE company_id = ? ");
-        if (!includeInactive)
-            sql.append("AND active = true ");
-        sql.append("ORDER BY last_name, first_name, login");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+        final String sql = "SELECT * FROM users WHERE company_id = ?" + (includeInactive ? "" : " AND active = TRUE")
+                + " ORDER BY last_name, first_name, login LIMIT ? OFFSET ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
             ps.setInt(index++, companyId);
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<User> users = new TreeSet<>();
                 while (rs.next())
@@ -268,23 +568,14 @@ public class JdbcUserDao implements UserDao {
     @Override
     public Set<User> getAll(final boolean includeInactive, final Integer limit, final Integer offset)
             throws DatabaseException {
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM users ");
-        if (!includeInactive)
-            sql.append("WHERE active = true ");
-        sql.append("ORDER BY last_name, first_name, login");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+        final String sql = "SELECT * FROM users" + (includeInactive ? "" : " WHERE active = TRUE")
+                + " ORDER BY last_name, first_name, login LIMIT ? OFFSET ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<User> users = new TreeSet<>();
                 while (rs.next())
@@ -304,36 +595,22 @@ public class JdbcUserDao implements UserDao {
             final Integer limit, final Integer offset) throws DatabaseException {
         notNull(companyId, "Invalid null company id");
 
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM users WHERE company_id = ? ");
-        if (StringUtils.isNotBlank(filter)) {
-            sql.append("AND (LOWER(login) LIKE LOWER(?)");
-            sql.append(" OR LOWER(first_name) LIKE LOWER(?)");
-            sql.append(" OR LOWER(last_name) LIKE LOWER(?)");
-            sql.append(" OR LOWER(email) LIKE LOWER(?)) ");
-        }
-        if (!includeInactive)
-            sql.append("AND active = true ");
-        sql.append("ORDER BY last_name, first_name, login");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+        final SearchIndex<User> searchIndex = getSearchIndex(companyId, filter);
+        if (searchIndex != null)
+            return new TreeSet<>(searchIndex.search(filter, activeCondition(includeInactive), null, limit, offset));
+
+        final String sql = "SELECT * FROM users"
+                + SqlParams.where("company_id = ?", SqlParams.like(filter, FILTER_COLUMNS),
+                        includeInactive ? null : "active = TRUE")
+                + " ORDER BY last_name, first_name, login LIMIT ? OFFSET ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
             ps.setInt(index++, companyId);
-            if (StringUtils.isNotBlank(filter)) {
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
-            }
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            index = SqlParams.setLike(ps, index, filter, FILTER_COLUMNS.length);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<User> users = new TreeSet<>();
                 while (rs.next())
@@ -349,38 +626,98 @@ public class JdbcUserDao implements UserDao {
      * {@inheritDoc}
      */
     @Override
-    public Set<User> search(final String filter, final boolean includeInactive, final Integer limit,
-            final Integer offset) throws DatabaseException {
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM users");
-        if (StringUtils.isNotBlank(filter)) {
-            sql.append(" WHERE (LOWER(login) LIKE LOWER(?)");
-            sql.append(" OR LOWER(first_name) LIKE LOWER(?)");
-            sql.append(" OR LOWER(last_name) LIKE LOWER(?)");
-            sql.append(" OR LOWER(email) LIKE LOWER(?))");
-            if (!includeInactive)
-                sql.append(" AND active = true");
-        } else if (!includeInactive)
-            sql.append(" WHERE active = true");
-        sql.append(" ORDER BY last_name, first_name, login");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+    public Page<User> getPage(final Integer companyId, final String filter, final boolean includeInactive,
+            final String token, final Integer limit) throws DatabaseException {
+        notNull(companyId, "Invalid null company id");
+
+        // The page following a token begins with the users that sort after the last user in the previous page, found
+        // using the company name index. The login is unique, so it breaks ties between users with the same name.
+        final PageToken after = token == null ? null : PageToken.decode(token, 4);
+        final String source = after == null ? null : after.getString(0);
+        if (source != null && !INDEX_TOKEN.equals(source) && !QUERY_TOKEN.equals(source))
+            throw new IllegalArgumentException("Invalid page token");
+
+        if (limit != null && limit <= 0)
+            return new Page<>(new LinkedHashSet<User>(), null);
+
+        // The search index compares names by character while the database uses its collation, so the later pages are
+        // always retrieved the same way as the first page to avoid skipping or repeating users.
+        final SearchIndex<User> searchIndex = QUERY_TOKEN.equals(source) ? null : getSearchIndex(companyId, filter);
+        if (searchIndex == null && INDEX_TOKEN.equals(source))
+            throw new IllegalArgumentException("Expired page token");
+        if (searchIndex != null) {
+            User probe = null;
+            if (after != null) {
+                probe = new User();
+                probe.setLastName(after.getString(1));
+                probe.setFirstName(after.getString(2));
+                probe.setLogin(after.getString(3));
+            }
+            final List<User> users = searchIndex.search(filter, activeCondition(includeInactive), probe,
+                    SqlParams.fetch(limit), null);
+            if (limit == null || users.size() <= limit)
+                return new Page<>(new LinkedHashSet<>(users), null);
+            final User last = users.get(limit - 1);
+            return new Page<>(new LinkedHashSet<>(users.subList(0, limit)), PageToken.encode(INDEX_TOKEN,
+                    last.getLastName(), last.getFirstName(), last.getLogin()));
+        }
+
+        final String sql = "SELECT * FROM users"
+                + SqlParams.where("company_id = ?", SqlParams.like(filter, FILTER_COLUMNS),
+                        includeInactive ? null : "active = TRUE", after == null ? null
+                                : "(last_name > ? OR (last_name = ? AND (first_name > ? "
+                                        + "OR (first_name = ? AND login > ?))))")
+                + " ORDER BY last_name, first_name, login LIMIT ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
-            if (StringUtils.isNotBlank(filter)) {
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
-                ps.setString(index++, "%" + filter + "%");
+            ps.setInt(index++, companyId);
+            index = SqlParams.setLike(ps, index, filter, FILTER_COLUMNS.length);
+            if (after != null) {
+                ps.setString(index++, after.getString(1));
+                ps.setString(index++, after.getString(1));
+                ps.setString(index++, after.getString(2));
+                ps.setString(index++, after.getString(2));
+                ps.setString(index++, after.getString(3));
             }
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            ps.setInt(index++, SqlParams.fetch(limit));
+            try (final ResultSet rs = ps.executeQuery()) {
+                final Set<User> users = new LinkedHashSet<>();
+                User last = null;
+                boolean more = false;
+                while (rs.next()) {
+                    if (limit != null && users.size() >= limit) {
+                        more = true;
+                        break;
+                    }
+                    last = fromResultSet(rs, false);
+                    users.add(last);
+                }
+                final String next = more && last != null ? PageToken.encode(QUERY_TOKEN, last.getLastName(),
+                        last.getFirstName(), last.getLogin()) : null;
+                return new Page<>(users, next);
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<User> search(final String filter, final boolean includeInactive, final Integer limit,
+            final Integer offset) throws DatabaseException {
+        final String sql = "SELECT * FROM users"
+                + SqlParams.where(SqlParams.like(filter, FILTER_COLUMNS), includeInactive ? null : "active = TRUE")
+                + " ORDER BY last_name, first_name, login LIMIT ? OFFSET ?";
+
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = SqlParams.setLike(ps, 1, filter, FILTER_COLUMNS.length);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<User> users = new TreeSet<>();
                 while (rs.next())
@@ -412,6 +749,7 @@ public class JdbcUserDao implements UserDao {
                 + "salt, email, first_name, last_name, active) VALUES " + "(?, ?, ?, ?, ?, ?, ?, ?)";
 
         int count = 0;
+        boolean added = false;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             for (final User user : users) {
@@ -431,10 +769,17 @@ public class JdbcUserDao implements UserDao {
                         user.setId(rs.getInt(1));
                 }
             }
+            added = true;
         } catch (final SQLIntegrityConstraintViolationException notUnique) {
             throw new DatabaseUniqueConstraintException(notUnique);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            for (final User user : users)
+                this.countCache.invalidate(user.getCompanyId());
+            updateSearchIndexes(users, added);
+            // The new users may have logins that were previously cached as not matching any user.
+            invalidatePrincipals(this.connectionManager);
         }
         return count;
     }
@@ -459,6 +804,7 @@ public class JdbcUserDao implements UserDao {
         final String sql = "UPDATE users SET active = true " + "WHERE company_id = ? AND id = ?";
 
         int count = 0;
+        boolean updated = false;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
             for (final Integer id : ids) {
@@ -466,8 +812,13 @@ public class JdbcUserDao implements UserDao {
                 ps.setInt(2, id);
                 count += ps.executeUpdate();
             }
+            updated = true;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(ids);
+            this.countCache.invalidate(companyId);
+            updateSearchIndex(companyId, ids, true, updated);
         }
         return count;
     }
@@ -492,6 +843,7 @@ public class JdbcUserDao implements UserDao {
         final String sql = "UPDATE users SET active = false " + "WHERE company_id = ? AND id = ?";
 
         int count = 0;
+        boolean updated = false;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
             for (final Integer id : ids) {
@@ -499,8 +851,13 @@ public class JdbcUserDao implements UserDao {
                 ps.setInt(2, id);
                 count += ps.executeUpdate();
             }
+            updated = true;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(ids);
+            this.countCache.invalidate(companyId);
+            updateSearchIndex(companyId, ids, false, updated);
         }
         return count;
     }
@@ -527,6 +884,8 @@ public class JdbcUserDao implements UserDao {
                 + "WHERE company_id = ? AND id = ?";
 
         int count = 0;
+        final List<User> updated = new ArrayList<>();
+        boolean succeeded = false;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
             for (final User user : users) {
@@ -538,12 +897,24 @@ public class JdbcUserDao implements UserDao {
                 ps.setBoolean(index++, user.isActive());
                 ps.setInt(index++, user.getCompanyId());
                 ps.setInt(index++, user.getId());
-                count += ps.executeUpdate();
+                final int rows = ps.executeUpdate();
+                if (rows > 0)
+                    updated.add(user);
+                count += rows;
             }
+            succeeded = true;
         } catch (final SQLIntegrityConstraintViolationException notUnique) {
             throw new DatabaseUniqueConstraintException(notUnique);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            final Set<Integer> ids = new HashSet<>();
+            for (final User user : users)
+                ids.add(user.getId());
+            invalidate(ids);
+            // Names and activity may have changed, and only the new company of each user is known.
+            this.countCache.invalidateAll();
+            updateSearchIndexes(succeeded ? updated : users, succeeded);
         }
         return count;
     }
@@ -567,6 +938,9 @@ public class JdbcUserDao implements UserDao {
             return ps.executeUpdate();
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            getCache().invalidate(userId);
+            invalidatePrincipals(this.connectionManager);
         }
     }
 
@@ -597,6 +971,11 @@ public class JdbcUserDao implements UserDao {
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(ids);
+            this.countCache.invalidateAll();
+            // The companies of the deleted users are not known.
+            getSearchCache().invalidateAll();
         }
         return count;
     }
@@ -612,6 +991,7 @@ public class JdbcUserDao implements UserDao {
         final String sql = "DELETE FROM users WHERE company_id = ? AND id = ?";
 
         int count = 0;
+        boolean deleted = false;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
             for (final Integer id : ids) {
@@ -619,8 +999,17 @@ public class JdbcUserDao implements UserDao {
                 ps.setInt(2, id);
                 count += ps.executeUpdate();
             }
+            deleted = true;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(ids);
+            this.countCache.invalidate(companyId);
+            final SearchIndex<User> index = deleted ? getSearchCache().get(companyId) : null;
+            if (index != null)
+                index.remove(ids);
+            else
+                getSearchCache().invalidate(companyId);
         }
         return count;
     }
@@ -0,0 +1,36 @@
+package com.arcblaze.arccore.db.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Describes the operations supported by the connection pool implementations used by the connection manager.
+ */
+public interface ConnectionPool {
+    /**
+     * @return a {@link Connection} to the database, which is returned to the pool when closed
+     * 
+     * @throws SQLException
+     *             if there is a database connection problem, or no connection became available before the
+     *             configured timeout
+     */
+    Connection getConnection() throws SQLException;
+
+    /**
+     * @return the number of pooled connections currently in use
+     */
+    int getActive();
+
+    /**
+     * @return the number of pooled connections currently sitting idle
+     */
+    int getIdle();
+
+    /**
+     * Close all of the connections in the pool.
+     * 
+     * @throws SQLException
+     *             if there is a problem closing the pool
+     */
+    void close() throws SQLException;
+}
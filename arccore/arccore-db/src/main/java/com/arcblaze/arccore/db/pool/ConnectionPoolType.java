@@ -0,0 +1,37 @@
+package com.arcblaze.arccore.db.pool;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Describes the supported connection pool implementations.
+ */
+public enum ConnectionPoolType {
+    /**
+     * The HikariCP connection pool.
+     */
+    HIKARI,
+
+    /**
+     * The Apache Commons DBCP connection pool.
+     */
+    DBCP,
+
+    ;
+
+    /**
+     * Attempt to convert the provided value back into a connection pool type with more flexibility than what the
+     * {@link #valueOf(String)} method provides.
+     * 
+     * @param value
+     *            the value to attempt conversion into a {@link ConnectionPoolType}
+     * 
+     * @return the identified {@link ConnectionPoolType}, or {@code null} if the conversion fails
+     */
+    public static ConnectionPoolType parse(final String value) {
+        for (final ConnectionPoolType poolType : values())
+            if (StringUtils.equalsIgnoreCase(poolType.name(), StringUtils.trim(value)))
+                return poolType;
+
+        return null;
+    }
+}
@@ -0,0 +1,91 @@
+package com.arcblaze.arccore.db.pool;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.lang.StringUtils;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.db.DatabaseProperty;
+
+/**
+ * A connection pool based on the Apache Commons DBCP {@link BasicDataSource}.
+ */
+public class DbcpConnectionPool implements ConnectionPool {
+    /** Used to pool connections to the database. */
+    private final BasicDataSource dataSource;
+
+    /**
+     * @param config
+     *            contains the system configuration properties used to configure the pool
+     */
+    public DbcpConnectionPool(final Config config) {
+        notNull(config, "Invalid null config");
+
+        final String url = config.getString(DatabaseProperty.DB_URL);
+        final int maxSize = Math.max(1, config.getInt(DatabaseProperty.DB_POOL_MAX_SIZE));
+        final int statementCacheSize = config.getInt(DatabaseProperty.DB_POOL_STATEMENT_CACHE_SIZE);
+        final String validationQuery = config.getString(DatabaseProperty.DB_POOL_VALIDATION_QUERY);
+
+        this.dataSource = new BasicDataSource();
+        this.dataSource.setDriverClassName(config.getString(DatabaseProperty.DB_DRIVER));
+        this.dataSource.setUrl(url);
+        this.dataSource.setUsername(config.getString(DatabaseProperty.DB_USERNAME));
+        this.dataSource.setPassword(config.getString(DatabaseProperty.DB_PASSWORD));
+        this.dataSource.setDefaultAutoCommit(true);
+        this.dataSource.setMaxActive(maxSize);
+        this.dataSource.setMaxIdle(maxSize);
+        this.dataSource.setMinIdle(Math.min(maxSize, config.getInt(DatabaseProperty.DB_POOL_MIN_IDLE)));
+        this.dataSource.setMaxWait(config.getLong(DatabaseProperty.DB_POOL_ACQUIRE_TIMEOUT));
+        this.dataSource.setMinEvictableIdleTimeMillis(config.getLong(DatabaseProperty.DB_POOL_IDLE_TIMEOUT));
+        this.dataSource.setTimeBetweenEvictionRunsMillis(30000);
+        if (StringUtils.isNotBlank(validationQuery)) {
+            this.dataSource.setValidationQuery(validationQuery);
+            this.dataSource.setValidationQueryTimeout(
+                    (int) Math.max(1, config.getLong(DatabaseProperty.DB_POOL_VALIDATION_TIMEOUT) / 1000));
+            this.dataSource.setTestOnBorrow(true);
+        }
+        if (StringUtils.startsWith(url, "jdbc:mysql:"))
+            // MySQL only honors the statement fetch size when reading through a server-side cursor.
+            this.dataSource.addConnectionProperty("useCursorFetch", "true");
+        if (statementCacheSize > 0) {
+            this.dataSource.setPoolPreparedStatements(true);
+            this.dataSource.setMaxOpenPreparedStatements(statementCacheSize);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return this.dataSource.getConnection();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getActive() {
+        return this.dataSource.getNumActive();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIdle() {
+        return this.dataSource.getNumIdle();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws SQLException {
+        this.dataSource.close();
+    }
+}
@@ -0,0 +1,104 @@
+package com.arcblaze.arccore.db.pool;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.db.DatabaseProperty;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * A connection pool based on the HikariCP {@link HikariDataSource}.
+ */
+public class HikariConnectionPool implements ConnectionPool {
+    /** Used to pool connections to the database. */
+    private final HikariDataSource dataSource;
+
+    /**
+     * @param config
+     *            contains the system configuration properties used to configure the pool
+     */
+    public HikariConnectionPool(final Config config) {
+        notNull(config, "Invalid null config");
+
+        final String url = config.getString(DatabaseProperty.DB_URL);
+        final int maxSize = Math.max(1, config.getInt(DatabaseProperty.DB_POOL_MAX_SIZE));
+        final int statementCacheSize = config.getInt(DatabaseProperty.DB_POOL_STATEMENT_CACHE_SIZE);
+        final String validationQuery = config.getString(DatabaseProperty.DB_POOL_VALIDATION_QUERY);
+        final long leakThreshold = config.getLong(DatabaseProperty.DB_POOL_LEAK_THRESHOLD);
+
+        final HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName("database");
+        hikariConfig.setDriverClassName(config.getString(DatabaseProperty.DB_DRIVER));
+        hikariConfig.setJdbcUrl(url);
+        hikariConfig.setUsername(config.getString(DatabaseProperty.DB_USERNAME));
+        hikariConfig.setPassword(config.getString(DatabaseProperty.DB_PASSWORD));
+        hikariConfig.setAutoCommit(true);
+        hikariConfig.setMaximumPoolSize(maxSize);
+        hikariConfig.setMinimumIdle(Math.min(maxSize, config.getInt(DatabaseProperty.DB_POOL_MIN_IDLE)));
+        hikariConfig.setConnectionTimeout(config.getLong(DatabaseProperty.DB_POOL_ACQUIRE_TIMEOUT));
+        hikariConfig.setIdleTimeout(config.getLong(DatabaseProperty.DB_POOL_IDLE_TIMEOUT));
+        hikariConfig.setMaxLifetime(config.getLong(DatabaseProperty.DB_POOL_MAX_LIFETIME));
+        hikariConfig.setValidationTimeout(config.getLong(DatabaseProperty.DB_POOL_VALIDATION_TIMEOUT));
+        if (StringUtils.isNotBlank(validationQuery))
+            hikariConfig.setConnectionTestQuery(validationQuery);
+        if (leakThreshold > 0)
+            hikariConfig.setLeakDetectionThreshold(leakThreshold);
+        if (statementCacheSize > 0 && StringUtils.startsWith(url, "jdbc:mysql:")) {
+            // The driver caches the prepared statements of each physical connection behind the pool's proxies.
+            hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+            hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+            hikariConfig.addDataSourceProperty("prepStmtCacheSize", String.valueOf(statementCacheSize));
+            hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        }
+
+        if (StringUtils.startsWith(url, "jdbc:mysql:"))
+            // Without a server-side cursor, MySQL ignores the fetch size and reads the entire result into memory.
+            hikariConfig.addDataSourceProperty("useCursorFetch", "true");
+
+        // Like the DBCP pool, do not fail on creation when the database is not yet available.
+        hikariConfig.setInitializationFailTimeout(-1);
+
+        this.dataSource = new HikariDataSource(hikariConfig);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return this.dataSource.getConnection();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getActive() {
+        final HikariPoolMXBean pool = this.dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIdle() {
+        final HikariPoolMXBean pool = this.dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getIdleConnections();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        this.dataSource.close();
+    }
+}
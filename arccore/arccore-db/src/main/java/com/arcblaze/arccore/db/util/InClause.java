@@ -0,0 +1,130 @@
+package com.arcblaze.arccore.db.util;
+
+import static org.apache.commons.lang.Validate.isTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Provides support for set-based SQL queries that make use of {@code IN (...)} clauses. Large collections of values
+ * are split into chunks so that the number of bind parameters in a single statement stays within the limits of the
+ * supported databases (HSQLDB and MySQL) while still executing a small, constant number of queries. The number of
+ * placeholders in each clause is rounded up to a power of two, with the last value repeated to fill the extra
+ * placeholders, so that each query only ever has a handful of distinct shapes that can be cached as prepared
+ * statements.
+ */
+public final class InClause {
+    /** The maximum number of values to include in a single {@code IN (...)} clause, which must be a power of two. */
+    public static final int MAX_SIZE = 512;
+
+    private InClause() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * @param values
+     *            the values to split into chunks of at most {@link #MAX_SIZE} values each
+     *
+     * @return the chunked values, in the iteration order of the provided collection
+     */
+    public static <T> List<List<T>> chunk(final Collection<T> values) {
+        return chunk(values, MAX_SIZE);
+    }
+
+    /**
+     * @param values
+     *            the values to split into chunks
+     * @param size
+     *            the maximum number of values to include in each chunk
+     *
+     * @return the chunked values, in the iteration order of the provided collection
+     *
+     * @throws IllegalArgumentException
+     *             if the provided chunk size is not positive
+     */
+    public static <T> List<List<T>> chunk(final Collection<T> values, final int size) {
+        isTrue(size > 0, "Invalid chunk size, must be positive");
+
+        if (values == null || values.isEmpty())
+            return Collections.emptyList();
+
+        final List<List<T>> chunks = new ArrayList<>((values.size() + size - 1) / size);
+        List<T> current = null;
+        for (final T value : values) {
+            if (current == null || current.size() >= size) {
+                current = new ArrayList<>(Math.min(size, values.size()));
+                chunks.add(current);
+            }
+            current.add(value);
+        }
+        return chunks;
+    }
+
+    /**
+     * @param count
+     *            the number of values to be included in an {@code IN (...)} clause
+     *
+     * @return the number of placeholders used for the provided number of values, which is the next power of two
+     *
+     * @throws IllegalArgumentException
+     *             if the provided count is not positive
+     */
+    public static int shape(final int count) {
+        isTrue(count > 0, "Invalid placeholder count, must be positive");
+
+        return count == 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+    }
+
+    /**
+     * @param count
+     *            the number of values to be included in an {@code IN (...)} clause
+     *
+     * @return a comma-separated list of {@code ?} placeholders suitable for use inside an {@code IN (...)} clause,
+     *         containing {@link #shape(int)} placeholders
+     *
+     * @throws IllegalArgumentException
+     *             if the provided count is not positive
+     */
+    public static String placeholders(final int count) {
+        final int shape = shape(count);
+        final StringBuilder placeholders = new StringBuilder(shape * 3);
+        for (int i = 0; i < shape; i++) {
+            if (i > 0)
+                placeholders.append(", ");
+            placeholders.append("?");
+        }
+        return placeholders.toString();
+    }
+
+    /**
+     * @param ps
+     *            the prepared statement on which the integer parameters will be set
+     * @param index
+     *            the index of the first parameter to set
+     * @param values
+     *            the integer values to set as parameters, with the last value repeated to fill all of the
+     *            placeholders generated by {@link #placeholders(int)}
+     *
+     * @return the index of the next parameter to set after all of the provided values have been set
+     *
+     * @throws SQLException
+     *             if there is a problem setting the parameter values
+     */
+    public static int setInts(final PreparedStatement ps, final int index, final Collection<Integer> values)
+            throws SQLException {
+        int next = index;
+        Integer last = null;
+        for (final Integer value : values) {
+            ps.setInt(next++, value);
+            last = value;
+        }
+        if (last != null)
+            for (int i = values.size(); i < shape(values.size()); i++)
+                ps.setInt(next++, last);
+        return next;
+    }
+}
@@ -0,0 +1,124 @@
+package com.arcblaze.arccore.db.util;
+
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.arcblaze.arccore.common.util.UrlSafeBase64;
+
+/**
+ * Encodes the sort key of the last row in a page of results as an opaque continuation token, and decodes the token
+ * when the next page is requested. The next page is then retrieved with a keyset condition on the sort key instead of
+ * an {@code OFFSET}, so the database does not need to read and discard all of the rows in the earlier pages.
+ * <p>
+ * Tokens are not signed; the values they contain are only ever used as query parameters in queries that are already
+ * restricted to the data the caller is allowed to see.
+ */
+public final class PageToken {
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The values of the sort key, as strings. */
+    private final List<String> values;
+
+    private PageToken(final List<String> values) {
+        this.values = values;
+    }
+
+    /**
+     * @param values
+     *            the values of the sort key of the last row in the page, which may be strings, numbers or dates
+     * 
+     * @return an opaque, URL-safe token representing the provided values
+     */
+    public static String encode(final Object... values) {
+        final StringBuilder builder = new StringBuilder();
+        for (final Object value : values) {
+            final String str = value instanceof Date ? String.valueOf(((Date) value).getTime()) : String
+                    .valueOf(value);
+            // Length-prefixed so that the values may contain any characters.
+            builder.append(str.length()).append(':').append(str);
+        }
+        return UrlSafeBase64.encode(builder.toString().getBytes(UTF8));
+    }
+
+    /**
+     * @param token
+     *            the token to decode, as created by {@link #encode(Object...)}
+     * @param size
+     *            the number of values expected in the token
+     * 
+     * @return the decoded token
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided token is invalid
+     */
+    public static PageToken decode(final String token, final int size) {
+        if (StringUtils.isBlank(token))
+            throw new IllegalArgumentException("Invalid page token");
+
+        final String decoded = new String(UrlSafeBase64.decode(token), UTF8);
+        final List<String> values = new ArrayList<>(size);
+        int position = 0;
+        try {
+            while (position < decoded.length()) {
+                final int colon = decoded.indexOf(':', position);
+                final int length = Integer.parseInt(decoded.substring(position, colon));
+                values.add(decoded.substring(colon + 1, colon + 1 + length));
+                position = colon + 1 + length;
+            }
+        } catch (final NumberFormatException | IndexOutOfBoundsException badToken) {
+            throw new IllegalArgumentException("Invalid page token", badToken);
+        }
+        if (values.size() != size)
+            throw new IllegalArgumentException("Invalid page token");
+        return new PageToken(values);
+    }
+
+    /**
+     * @param index
+     *            the position of the value in the sort key
+     * 
+     * @return the string value at the specified position
+     */
+    public String getString(final int index) {
+        return this.values.get(index);
+    }
+
+    /**
+     * @param index
+     *            the position of the value in the sort key
+     * 
+     * @return the integer value at the specified position
+     * 
+     * @throws IllegalArgumentException
+     *             if the value is not an integer
+     */
+    public int getInt(final int index) {
+        try {
+            return Integer.parseInt(this.values.get(index));
+        } catch (final NumberFormatException badToken) {
+            throw new IllegalArgumentException("Invalid page token", badToken);
+        }
+    }
+
+    /**
+     * @param index
+     *            the position of the value in the sort key
+     * 
+     * @return the timestamp value at the specified position
+     * 
+     * @throws IllegalArgumentException
+     *             if the value is not a timestamp
+     */
+    public Timestamp getTimestamp(final int index) {
+        try {
+            return new Timestamp(Long.parseLong(this.values.get(index)));
+        } catch (final NumberFormatException badToken) {
+            throw new IllegalArgumentException("Invalid page token", badToken);
+        }
+    }
+}
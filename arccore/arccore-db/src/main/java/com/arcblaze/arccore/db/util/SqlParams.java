@@ -0,0 +1,143 @@
+package com.arcblaze.arccore.db.util;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.arcblaze.arccore.db.cache.CountCache;
+
+/**
+ * Provides support for building queries with optional criteria. Optional filters are only added to the SQL when they
+ * are provided, so the database can use its indexes for the criteria that remain, while limits and offsets are always
+ * bound as parameters so that they do not change the SQL text.
+ */
+public final class SqlParams {
+    private SqlParams() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * @param predicates
+     *            the predicates to include in the clause, any of which may be {@code null} to leave it out
+     * 
+     * @return a {@code WHERE} clause, including a leading space, combining the provided predicates, or an empty string
+     *         if no predicates were provided
+     */
+    public static String where(final String... predicates) {
+        final StringBuilder where = new StringBuilder();
+        for (final String predicate : predicates) {
+            if (predicate != null)
+                where.append(where.length() == 0 ? " WHERE " : " AND ").append(predicate);
+        }
+        return where.toString();
+    }
+
+    /**
+     * @param filter
+     *            the optional filter text to match, may be {@code null} or blank to match everything
+     * @param columns
+     *            the columns of which at least one must contain the filter text, ignoring case
+     * 
+     * @return the predicate matching the filter against the provided columns, or {@code null} if no filter was
+     *         provided
+     */
+    public static String like(final String filter, final String... columns) {
+        if (StringUtils.isBlank(filter))
+            return null;
+
+        final StringBuilder like = new StringBuilder("(");
+        for (final String column : columns) {
+            if (like.length() > 1)
+                like.append(" OR ");
+            like.append("LOWER(").append(column).append(") LIKE LOWER(?)");
+        }
+        return like.append(")").toString();
+    }
+
+    /**
+     * @param filter
+     *            the filter text to match
+     * 
+     * @return the pattern to bind to each of the parameters of the predicate built by {@link #like(String, String...)}
+     */
+    public static String pattern(final String filter) {
+        return "%" + filter + "%";
+    }
+
+    /**
+     * @param ps
+     *            the statement to which the filter pattern will be bound
+     * @param index
+     *            the index of the first parameter of the predicate built by {@link #like(String, String...)}
+     * @param filter
+     *            the optional filter text to match, may be {@code null} or blank if no predicate was built
+     * @param columns
+     *            the number of columns matched by the predicate
+     * 
+     * @return the index of the next parameter to bind
+     * 
+     * @throws SQLException
+     *             if there is a problem binding the parameters
+     */
+    public static int setLike(final PreparedStatement ps, final int index, final String filter, final int columns)
+            throws SQLException {
+        if (StringUtils.isBlank(filter))
+            return index;
+
+        for (int column = 0; column < columns; column++)
+            ps.setString(index + column, pattern(filter));
+        return index + columns;
+    }
+
+    /**
+     * @param filter
+     *            the optional filter text to match, may be {@code null} or blank if no predicate was built
+     * @param columns
+     *            the number of columns matched by the predicate built by {@link #like(String, String...)}
+     * @param leading
+     *            the values of the parameters that precede the filter predicate in the query
+     * 
+     * @return the values of all of the parameters of the query, such as for a {@link CountCache}
+     */
+    public static Object[] params(final String filter, final int columns, final Object... leading) {
+        if (StringUtils.isBlank(filter))
+            return leading;
+
+        final Object[] params = Arrays.copyOf(leading, leading.length + columns);
+        Arrays.fill(params, leading.length, params.length, pattern(filter));
+        return params;
+    }
+
+    /**
+     * @param limit
+     *            the optional maximum number of rows to return, may be {@code null} for no limit
+     * 
+     * @return the value to bind to a {@code LIMIT ?} parameter
+     */
+    public static int limit(final Integer limit) {
+        return limit == null ? Integer.MAX_VALUE : limit;
+    }
+
+    /**
+     * @param offset
+     *            the optional number of rows to skip, may be {@code null} to skip no rows
+     * 
+     * @return the value to bind to an {@code OFFSET ?} parameter
+     */
+    public static int offset(final Integer offset) {
+        return offset == null ? 0 : offset;
+    }
+
+    /**
+     * @param limit
+     *            the optional maximum number of rows to return in a page, may be {@code null} for no limit
+     * 
+     * @return the value to bind to a {@code LIMIT ?} parameter when one extra row is fetched to determine whether
+     *         another page follows
+     */
+    public static int fetch(final Integer limit) {
+        return limit == null || limit >= Integer.MAX_VALUE - 1 ? Integer.MAX_VALUE : Math.max(0, limit) + 1;
+    }
+}
@@ -1,4 +1,10 @@
 
+DROP TABLE rollup_locks IF EXISTS;
+DROP TABLE revenue_rollups IF EXISTS;
+DROP TABLE revenue_by_month IF EXISTS;
+DROP TABLE revenue_by_day IF EXISTS;
+DROP TABLE active_user_counts_by_month IF EXISTS;
+DROP TABLE active_company_counts_by_month IF EXISTS;
 DROP TABLE active_user_counts IF EXISTS;
 DROP TABLE active_company_counts IF EXISTS;
 DROP TABLE transactions IF EXISTS;
@@ -75,3 +81,40 @@ CREATE TABLE active_user_counts (
         REFERENCES companies(id) ON DELETE CASCADE
 );
 
+CREATE TABLE active_company_counts_by_month (
+    month          DATE         NOT NULL PRIMARY KEY,
+    active         INTEGER      NOT NULL
+);
+
+CREATE TABLE active_user_counts_by_month (
+    month          DATE         NOT NULL,
+    company_id     INTEGER      NOT NULL,
+    active         INTEGER      NOT NULL,
+
+    CONSTRAINT pk_active_user_counts_by_month PRIMARY KEY (company_id, month),
+
+    CONSTRAINT fk_active_user_counts_by_month_company_id FOREIGN KEY (company_id)
+        REFERENCES companies(id) ON DELETE CASCADE
+);
+
+CREATE TABLE revenue_by_day (
+    day            DATE         NOT NULL PRIMARY KEY,
+    amount         DECIMAL(12,2) NOT NULL
+);
+
+CREATE TABLE revenue_by_month (
+    month          DATE         NOT NULL PRIMARY KEY,
+    amount         DECIMAL(12,2) NOT NULL
+);
+
+CREATE TABLE revenue_rollups (
+    id             INTEGER      GENERATED BY DEFAULT AS IDENTITY
+                                (START WITH 1, INCREMENT BY 1) NOT NULL PRIMARY KEY,
+    day            DATE         NOT NULL
+);
+
+CREATE TABLE rollup_locks (
+    name           VARCHAR(50)  NOT NULL PRIMARY KEY,
+    locked         TIMESTAMP    NOT NULL
+);
+
@@ -1,4 +1,10 @@
 
+DROP TABLE IF EXISTS rollup_locks;
+DROP TABLE IF EXISTS revenue_rollups;
+DROP TABLE IF EXISTS revenue_by_month;
+DROP TABLE IF EXISTS revenue_by_day;
+DROP TABLE IF EXISTS active_user_counts_by_month;
+DROP TABLE IF EXISTS active_company_counts_by_month;
 DROP TABLE IF EXISTS active_user_counts;
 DROP TABLE IF EXISTS active_company_counts;
 DROP TABLE IF EXISTS transactions;
@@ -30,7 +36,10 @@ CREATE TABLE IF NOT EXISTS users (
         REFERENCES companies(`id`) ON DELETE CASCADE,
 
     CONSTRAINT unique_user_login UNIQUE (`login`),
-    CONSTRAINT unique_user_email UNIQUE (`email`)
+    CONSTRAINT unique_user_email UNIQUE (`email`),
+
+    -- Supports keyset pagination through the users in a company.
+    INDEX idx_users_company_name (`company_id`, `last_name`, `first_name`, `login`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 CREATE TABLE IF NOT EXISTS roles (
@@ -61,7 +70,9 @@ CREATE TABLE IF NOT EXISTS transactions (
     CONSTRAINT fk_transactions_user_id FOREIGN KEY (`user_id`)
         REFERENCES users(`id`) ON DELETE CASCADE,
 
-    INDEX idx_transactions_type USING HASH (`type`)
+    INDEX idx_transactions_type USING HASH (`type`),
+    -- Supports keyset pagination through the transactions in a company.
+    INDEX idx_transactions_company_timestamp (`company_id`, `timestamp`, `id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 CREATE TABLE IF NOT EXISTS active_company_counts (
@@ -82,3 +93,45 @@ CREATE TABLE IF NOT EXISTS active_user_counts (
     INDEX idx_active_company_counts_day USING HASH (`day`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
+CREATE TABLE IF NOT EXISTS active_company_counts_by_month (
+    `month`          DATE         NOT NULL PRIMARY KEY,
+    `active`         INTEGER      NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+CREATE TABLE IF NOT EXISTS active_user_counts_by_month (
+    `month`          DATE         NOT NULL,
+    `company_id`     INTEGER      NOT NULL,
+    `active`         INTEGER      NOT NULL,
+
+    PRIMARY KEY (`company_id`, `month`),
+
+    CONSTRAINT fk_active_user_counts_by_month_company_id FOREIGN KEY (`company_id`)
+        REFERENCES companies(`id`) ON DELETE CASCADE,
+
+    INDEX idx_active_user_counts_by_month_month (`month`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+CREATE TABLE IF NOT EXISTS revenue_by_day (
+    `day`            DATE          NOT NULL PRIMARY KEY,
+    `amount`         DECIMAL(12,2) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+CREATE TABLE IF NOT EXISTS revenue_by_month (
+    `month`          DATE          NOT NULL PRIMARY KEY,
+    `amount`         DECIMAL(12,2) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+-- The days whose revenue totals need to be recalculated by the next roll-up, queued as transactions are added.
+CREATE TABLE IF NOT EXISTS revenue_rollups (
+    `id`             INTEGER      NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    `day`            DATE         NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+-- The rows locked while each roll-up is recalculated, so that concurrent roll-ups do not collide.
+CREATE TABLE IF NOT EXISTS rollup_locks (
+    `name`           VARCHAR(50)  NOT NULL PRIMARY KEY,
+    `locked`         TIMESTAMP    NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+INSERT IGNORE INTO rollup_locks (`name`, `locked`) VALUES ('revenue', NOW());
+
@@ -0,0 +1,156 @@
+package com.arcblaze.arccore.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.hsqldb.jdbc.JDBCDriver;
+import org.junit.Test;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.db.pool.ConnectionPoolType;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Perform testing on the {@link ConnectionManager} class.
+ */
+public class ConnectionManagerTest {
+    /**
+     * @throws SQLException
+     *             if there is a problem with the database
+     * @throws InterruptedException
+     *             if interrupted while waiting for a connection to leak
+     */
+    @Test
+    public void testHikariMetrics() throws SQLException, InterruptedException {
+        testMetrics(ConnectionPoolType.HIKARI);
+    }
+
+    /**
+     * @throws SQLException
+     *             if there is a problem with the database
+     * @throws InterruptedException
+     *             if interrupted while waiting for a connection to leak
+     */
+    @Test
+    public void testDbcpMetrics() throws SQLException, InterruptedException {
+        testMetrics(ConnectionPoolType.DBCP);
+    }
+
+    /**
+     * @throws SQLException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void testProfile() throws SQLException {
+        final Config config = getConfig(ConnectionPoolType.HIKARI);
+        config.set(DatabaseProperty.DB_PROFILE_ENABLED, "true");
+        final ConnectionManager connectionManager = new ConnectionManager(config);
+        try {
+            // Without a profile bound to the thread nothing is recorded.
+            try (final Connection conn = connectionManager.getConnection();
+                    final Statement statement = conn.createStatement();
+                    final ResultSet rs = statement.executeQuery("VALUES (0)")) {
+                assertTrue(rs.next());
+            }
+
+            final SqlProfile profile = SqlProfile.start();
+            try (final Connection conn = connectionManager.getConnection()) {
+                for (int i = 0; i < 3; i++) {
+                    try (final PreparedStatement ps = conn.prepareStatement("VALUES (?), (?)")) {
+                        ps.setInt(1, i);
+                        ps.setInt(2, i + 1);
+                        try (final ResultSet rs = ps.executeQuery()) {
+                            while (rs.next())
+                                assertTrue(rs.getInt(1) >= i);
+                        }
+                    }
+                }
+                try (final Statement statement = conn.createStatement();
+                        final ResultSet rs = statement.executeQuery("VALUES (7)")) {
+                    assertTrue(rs.next());
+                }
+            } finally {
+                assertSame(profile, SqlProfile.stop());
+            }
+            assertNull(SqlProfile.current());
+
+            assertEquals(4, profile.getStatements());
+            assertEquals(7, profile.getRows());
+            assertTrue(profile.getTime(TimeUnit.NANOSECONDS) > 0);
+            assertEquals(Collections.singletonMap("VALUES (?), (?)", 3), profile.getRepeated(2));
+            assertTrue(profile.getRepeated(3).isEmpty());
+        } finally {
+            connectionManager.close();
+        }
+    }
+
+    /**
+     * Test how SQL is reduced to its shape when finding repeated statements.
+     */
+    @Test
+    public void testProfileShape() {
+        assertEquals("SELECT * FROM users WHERE id IN (?) AND login = ? AND company_id = ?",
+                SqlProfile.getShape(" SELECT *  FROM users\n WHERE id IN (?, ?,?) AND login = 'o''brien'"
+                        + " AND company_id = 12"));
+    }
+
+    /**
+     * Test that an invalid pool type is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPoolType() {
+        final Config config = getConfig(ConnectionPoolType.HIKARI);
+        config.set(DatabaseProperty.DB_POOL_TYPE, "invalid");
+        new ConnectionManager(config);
+    }
+
+    protected Config getConfig(final ConnectionPoolType poolType) {
+        final Config config = new Config();
+        config.set(DatabaseProperty.DB_DRIVER, JDBCDriver.class.getName());
+        config.set(DatabaseProperty.DB_URL, "jdbc:hsqldb:mem:pooldb");
+        config.set(DatabaseProperty.DB_USERNAME, "SA");
+        config.set(DatabaseProperty.DB_PASSWORD, "");
+        config.set(DatabaseProperty.DB_POOL_TYPE, poolType.name().toLowerCase());
+        config.set(DatabaseProperty.DB_POOL_LEAK_THRESHOLD, "1");
+        return config;
+    }
+
+    protected int getGauge(final MetricRegistry metricRegistry, final String name) {
+        return (Integer) metricRegistry.getGauges().get(name).getValue();
+    }
+
+    protected void testMetrics(final ConnectionPoolType poolType) throws SQLException, InterruptedException {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final ConnectionManager connectionManager = new ConnectionManager(getConfig(poolType));
+        try {
+            connectionManager.registerMetrics(metricRegistry);
+            for (final String name : new String[] { "active", "idle", "waiting", "leaked" })
+                assertTrue(metricRegistry.getGauges().get("db.pool." + name) instanceof Gauge);
+
+            try (final Connection conn = connectionManager.getConnection()) {
+                assertEquals(1, getGauge(metricRegistry, "db.pool.active"));
+                assertEquals(0, getGauge(metricRegistry, "db.pool.waiting"));
+
+                Thread.sleep(10);
+                assertEquals(1, getGauge(metricRegistry, "db.pool.leaked"));
+            }
+
+            assertEquals(0, getGauge(metricRegistry, "db.pool.active"));
+            assertEquals(0, getGauge(metricRegistry, "db.pool.leaked"));
+            assertEquals(1, metricRegistry.getTimers().get("db.pool.acquire").getCount());
+        } finally {
+            connectionManager.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.arcblaze.arccore.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.common.model.Role;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.dao.CompanyDao;
+import com.arcblaze.arccore.db.dao.RoleDao;
+import com.arcblaze.arccore.db.dao.UserDao;
+import com.arcblaze.arccore.db.util.TestDatabase;
+
+/**
+ * Perform database integration testing.
+ */
+public class DaoSessionTest {
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws SQLException
+     *             if there is a problem retrieving connections
+     */
+    @Test
+    public void dbIntegrationTests() throws DatabaseException, SQLException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = database.getDaoFactory();
+            final Company rolledBack = new Company().setName("rolled back").setActive(true);
+            final Company committed = new Company().setName("committed").setActive(true);
+
+            final DaoFactory sessionFactory = daoFactory.openSession();
+            final DaoSession session = sessionFactory.getSession();
+            assertNotNull(session);
+            assertFalse(session.isTransactionActive());
+
+            // The connection is only retrieved from the pool when it is first needed, and is then shared.
+            final BoundConnectionManager bound = (BoundConnectionManager) sessionFactory.getConnectionManager();
+            assertFalse(bound.isBound());
+            try (final Connection first = bound.getConnection(); final Connection second = bound.getConnection()) {
+                assertSame(first, second);
+            }
+            assertTrue(bound.isBound());
+
+            final CompanyDao companyDao = sessionFactory.getCompanyDao();
+            session.begin();
+            assertTrue(session.isTransactionActive());
+            companyDao.add(rolledBack);
+            assertNotNull(companyDao.get(rolledBack.getId()));
+            session.rollback();
+            assertFalse(session.isTransactionActive());
+            assertNull(companyDao.get(rolledBack.getId()));
+
+            session.begin();
+            companyDao.add(committed);
+            session.commit();
+
+            try {
+                sessionFactory.openSession();
+                fail("Expected nested sessions to be rejected");
+            } catch (final IllegalStateException alreadyOpen) {
+                // Expected.
+            }
+
+            sessionFactory.close();
+            assertFalse(bound.isBound());
+
+            final Company found = daoFactory.getCompanyDao().get(committed.getId());
+            assertNotNull(found);
+            assertEquals("committed", found.getName());
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void entityCacheTests() throws DatabaseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = database.getDaoFactory();
+            final Company company = new Company().setName("company").setActive(true);
+            daoFactory.getCompanyDao().add(company);
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("user@example.com").setFirstName("first").setLastName("last");
+            final UserDao userDao = daoFactory.getUserDao();
+            final RoleDao roleDao = daoFactory.getRoleDao();
+            userDao.add(user);
+
+            // Populate the caches.
+            assertEquals("first", userDao.get(user.getId()).getFirstName());
+            assertEquals("hashed", userDao.getLogin("user@example.com").getHashedPass());
+            assertNull(userDao.get(user.getId()).getHashedPass());
+            assertTrue(roleDao.get(user.getId()).isEmpty());
+
+            // Modifying the returned objects does not modify the cached values.
+            userDao.get(user.getId()).setFirstName("modified");
+            assertEquals("first", userDao.get(user.getId()).getFirstName());
+
+            final DaoFactory sessionFactory = daoFactory.openSession();
+            try {
+                final DaoSession session = sessionFactory.getSession();
+                session.begin();
+                sessionFactory.getUserDao().update(new User(user).setFirstName("changed"));
+                sessionFactory.getRoleDao().add(user.getId(), new Role("ADMIN"));
+                assertEquals("changed", sessionFactory.getUserDao().get(user.getId()).getFirstName());
+                session.commit();
+            } finally {
+                sessionFactory.close();
+            }
+
+            assertEquals("changed", userDao.get(user.getId()).getFirstName());
+            assertEquals(1, roleDao.get(user.getId()).size());
+
+            userDao.deactivate(company.getId(), user.getId());
+            assertNull(userDao.getLogin("user"));
+
+            userDao.delete(user.getId());
+            assertNull(userDao.get(user.getId()));
+            assertTrue(roleDao.get(user.getId()).isEmpty());
+        }
+    }
+}
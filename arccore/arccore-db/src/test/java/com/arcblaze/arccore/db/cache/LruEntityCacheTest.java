@@ -0,0 +1,94 @@
+package com.arcblaze.arccore.db.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Perform testing of the {@link LruEntityCache} class.
+ */
+public class LruEntityCacheTest {
+    /**
+     * Test the hit, miss and eviction behavior of the cache.
+     */
+    @Test
+    public void testReadThrough() {
+        final LruEntityCache<Integer, String> cache = new LruEntityCache<>("test", 2, 60000);
+        assertTrue(cache.isEnabled());
+        assertEquals("test", cache.getName());
+
+        assertNull(cache.get(1));
+        cache.put(cache.stamp(), 10, 1, "one");
+        cache.put(cache.stamp(), 10, 2, "two");
+        assertEquals("one", cache.get(1));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Entry 2 is the least recently used, so it is evicted.
+        cache.put(cache.stamp(), 20, 3, "three");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(2));
+        assertEquals("three", cache.get(3));
+    }
+
+    /**
+     * Test the invalidation of cached values.
+     */
+    @Test
+    public void testInvalidation() {
+        final LruEntityCache<Integer, String> cache = new LruEntityCache<>("test", 10, 60000);
+        cache.put(cache.stamp(), 10, 1, "one");
+        cache.put(cache.stamp(), 10, 2, "two");
+        cache.put(cache.stamp(), 20, 3, "three");
+        cache.put(cache.stamp(), 20, 4, "four");
+
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+        assertEquals("two", cache.get(2));
+
+        cache.invalidateCompany(20);
+        assertNull(cache.get(3));
+        assertNull(cache.get(4));
+        assertEquals("two", cache.get(2));
+
+        cache.invalidate(Arrays.asList(2, 3));
+        assertEquals(0, cache.size());
+
+        // A value loaded before an invalidation is not cached.
+        final long stamp = cache.stamp();
+        cache.invalidate(5);
+        cache.put(stamp, 10, 5, "stale");
+        assertNull(cache.get(5));
+
+        cache.put(cache.stamp(), 10, 5, "five");
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Test the expiration of cached values, and disabled caches.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting for the cached value to expire
+     */
+    @Test
+    public void testExpiration() throws InterruptedException {
+        final LruEntityCache<Integer, String> cache = new LruEntityCache<>("test", 10, 1);
+        cache.put(cache.stamp(), 10, 1, "one");
+        Thread.sleep(10);
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getEvictions());
+
+        final LruEntityCache<Integer, String> disabled = new LruEntityCache<>("disabled", 0, 60000);
+        assertFalse(disabled.isEnabled());
+        disabled.put(disabled.stamp(), 10, 1, "one");
+        assertNull(disabled.get(1));
+        assertEquals(0, disabled.size());
+    }
+}
@@ -0,0 +1,130 @@
+package com.arcblaze.arccore.db.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Perform testing of the {@link SearchIndex} class.
+ */
+public class SearchIndexTest {
+    /**
+     * A simple indexed value, ordered by name.
+     */
+    private static class Item {
+        private final Integer id;
+        private final String name;
+        private final String code;
+
+        public Item(final Integer id, final String name, final String code) {
+            this.id = id;
+            this.name = name;
+            this.code = code;
+        }
+    }
+
+    private static class ItemIndex extends SearchIndex<Item> {
+        public ItemIndex(final int maxSize) {
+            super(new Comparator<Item>() {
+                @Override
+                public int compare(final Item first, final Item second) {
+                    final int compare = first.name.compareTo(second.name);
+                    return compare != 0 ? compare : first.id.compareTo(second.id);
+                }
+            }, maxSize);
+        }
+
+        @Override
+        protected Integer getId(final Item item) {
+            return item.id;
+        }
+
+        @Override
+        protected String[] getText(final Item item) {
+            return new String[] { item.name, item.code };
+        }
+
+        @Override
+        protected Item copy(final Item item) {
+            return new Item(item.id, item.name, item.code);
+        }
+    }
+
+    private static List<Integer> ids(final List<Item> items) {
+        final List<Integer> ids = new ArrayList<>();
+        for (final Item item : items)
+            ids.add(item.id);
+        return ids;
+    }
+
+    /**
+     * Test the substring matching and ordering of search results.
+     */
+    @Test
+    public void testSearch() {
+        final ItemIndex index = new ItemIndex(10);
+        index.put(Arrays.asList(new Item(1, "Dickens", "D-100"), new Item(2, "Adams", "A-200"), new Item(3,
+                "Austen", "A-300"), new Item(4, "Dick", null)));
+        assertTrue(index.isAvailable());
+        assertEquals(4, index.size());
+
+        assertEquals(Arrays.asList(2, 3, 4, 1), ids(index.search(null, null, null, null, null)));
+        assertEquals(Arrays.asList(4, 1), ids(index.search("DICK", null, null, null, null)));
+        assertEquals(Arrays.asList(2, 3), ids(index.search("a-", null, null, null, null)));
+        assertEquals(Arrays.asList(3), ids(index.search("-300", null, null, null, null)));
+        assertEquals(Arrays.asList(), ids(index.search("zzz", null, null, null, null)));
+
+        // Matches do not span columns.
+        assertEquals(Arrays.asList(), ids(index.search("sa-", null, null, null, null)));
+
+        assertEquals(Arrays.asList(3, 4), ids(index.search("", null, null, 2, 1)));
+        assertEquals(Arrays.asList(1), ids(index.search("i", null, new Item(4, "Dick", null), null, null)));
+        assertEquals(3, index.count("d", null));
+
+        final SearchIndex.Condition<Item> coded = new SearchIndex.Condition<Item>() {
+            @Override
+            public boolean matches(final Item item) {
+                return item.code != null;
+            }
+        };
+        assertEquals(Arrays.asList(1), ids(index.search("dick", coded, null, null, null)));
+        assertEquals(3, index.count(null, coded));
+
+        assertTrue(SearchIndex.supports("dick"));
+        assertFalse(SearchIndex.supports("d%k"));
+        assertFalse(SearchIndex.supports("d_k"));
+    }
+
+    /**
+     * Test the incremental updates to the index.
+     */
+    @Test
+    public void testUpdates() {
+        final ItemIndex index = new ItemIndex(3);
+        index.put(Arrays.asList(new Item(1, "Dickens", "D-100"), new Item(2, "Adams", "A-200")));
+
+        index.put(Arrays.asList(new Item(1, "Bronte", "B-100")));
+        assertEquals(Arrays.asList(), ids(index.search("dick", null, null, null, null)));
+        assertEquals(Arrays.asList(2, 1), ids(index.search(null, null, null, null, null)));
+        assertEquals("Bronte", index.get(1).name);
+
+        index.remove(Arrays.asList(2));
+        assertNull(index.get(2));
+        assertEquals(Arrays.asList(), ids(index.search("adams", null, null, null, null)));
+
+        // Growing past the maximum size makes the index unavailable.
+        index.put(Arrays.asList(new Item(3, "Austen", null), new Item(4, "Eliot", null)));
+        assertTrue(index.isAvailable());
+        index.put(Arrays.asList(new Item(5, "Hardy", null)));
+        assertFalse(index.isAvailable());
+        assertEquals(0, index.size());
+    }
+}
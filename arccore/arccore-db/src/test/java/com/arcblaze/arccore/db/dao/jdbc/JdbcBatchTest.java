@@ -0,0 +1,64 @@
+package com.arcblaze.arccore.db.dao.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.util.TestDatabase;
+
+/**
+ * Perform database integration testing.
+ */
+public class JdbcBatchTest {
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws SQLException
+     *             if there is a problem executing the batch
+     */
+    @Test
+    public void dbIntegrationTests() throws DatabaseException, SQLException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final String sql = "INSERT INTO companies (name, active) VALUES (?, ?)";
+
+            try (final Connection conn = database.getConnectionManager().getConnection();
+                    final PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                // A batch size smaller than the number of rows forces multiple flushes.
+                final JdbcBatch batch = new JdbcBatch(ps, 2, true);
+                for (int i = 0; i < 5; i++) {
+                    ps.setString(1, "company" + i);
+                    ps.setBoolean(2, true);
+                    batch.add();
+                }
+                assertEquals(5, batch.execute());
+
+                final List<Integer> keys = batch.getGeneratedKeys();
+                assertEquals(5, keys.size());
+
+                try (final PreparedStatement query = conn.prepareStatement("SELECT name FROM companies WHERE id = ?")) {
+                    for (int i = 0; i < keys.size(); i++) {
+                        query.setInt(1, keys.get(i));
+                        try (final ResultSet rs = query.executeQuery()) {
+                            rs.next();
+                            assertEquals("company" + i, rs.getString("name"));
+                        }
+                    }
+                }
+
+                // Executing again with nothing pending does not change anything.
+                assertEquals(5, batch.execute());
+                assertEquals(5, batch.getGeneratedKeys().size());
+            }
+        }
+    }
+}
@@ -73,6 +73,15 @@ public class JdbcCompanyActivityDaoTest {
             entry = iter.next();
             assertEquals(DateUtils.addMonths(begin, 3), entry.getKey());
             assertEquals(new Integer(0), entry.getValue());
+
+            // Replacing the count for a day also recalculates the month.
+            activityDao.setActiveCompanies(DateUtils.addDays(begin, 33), 3);
+            map = activityDao.getActiveByMonth(begin, end);
+            assertEquals(new Integer(8), map.get(DateUtils.addMonths(begin, 1)));
+
+            assertEquals(1, activityDao.rollUp(DateUtils.addMonths(begin, 3)));
+            map = activityDao.getActiveByMonth(begin, end);
+            assertEquals(new Integer(1), map.get(DateUtils.addMonths(begin, 3)));
         }
     }
 }
@@ -4,11 +4,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
@@ -22,6 +27,7 @@ import com.arcblaze.arccore.common.model.TransactionType;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.db.dao.CompanyDao;
+import com.arcblaze.arccore.db.dao.Page;
 import com.arcblaze.arccore.db.dao.TransactionDao;
 import com.arcblaze.arccore.db.dao.UserDao;
 import com.arcblaze.arccore.db.util.TestDatabase;
@@ -143,6 +149,7 @@ public class JdbcTransactionDaoTest {
             assertEquals("20.00", amount.toPlainString());
             amount = transactionDao.amountBetween(company.getId(), threeMonthsAgo, tomorrow);
             assertEquals("20.00", amount.toPlainString());
+            transactionDao.rollUp();
             final SortedMap<Date, BigDecimal> map = transactionDao.getSumByMonth(threeMonthsAgo, tomorrow);
             assertEquals(3, map.size());
             final Iterator<Entry<Date, BigDecimal>> iter = map.entrySet().iterator();
@@ -169,4 +176,181 @@ public class JdbcTransactionDaoTest {
             assertEquals(0, transactions.size());
         }
     }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void testPages() throws DatabaseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final TransactionDao transactionDao = new JdbcTransactionDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("company");
+            final Company other = new Company().setName("other");
+            companyDao.add(company, other);
+
+            final User user = new User();
+            user.setCompanyId(company.getId());
+            user.setLogin("user");
+            user.setHashedPass("hashed");
+            user.setSalt("salt");
+            user.setEmail("email");
+            user.setFirstName("first");
+            user.setLastName("last");
+            userDao.add(user);
+
+            // Two transactions share each timestamp, so the id is needed to resume between them.
+            final Date now = DateUtils.truncate(new Date(), Calendar.SECOND);
+            final List<Transaction> added = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                final Transaction transaction = new Transaction();
+                transaction.setCompanyId(company.getId());
+                transaction.setUserId(user.getId());
+                transaction.setTimestamp(DateUtils.addDays(now, -(i / 2)));
+                transaction.setTransactionType(TransactionType.PAYMENT);
+                transaction.setDescription("Payment " + i);
+                transaction.setAmount("10.00");
+                added.add(transaction);
+            }
+            transactionDao.add(added);
+
+            assertEquals(5, transactionDao.count(company.getId(), null));
+            assertEquals(1, transactionDao.count(company.getId(), "payment 3"));
+            assertEquals(0, transactionDao.count(other.getId(), null));
+
+            final List<Integer> ids = new ArrayList<>();
+            Page<Transaction> page = transactionDao.getPage(company.getId(), null, null, 2);
+            assertEquals(2, page.getItems().size());
+            assertNotNull(page.getNext());
+            for (final Transaction transaction : page.getItems())
+                ids.add(transaction.getId());
+
+            page = transactionDao.getPage(company.getId(), null, page.getNext(), 2);
+            assertEquals(2, page.getItems().size());
+            assertNotNull(page.getNext());
+            for (final Transaction transaction : page.getItems())
+                ids.add(transaction.getId());
+
+            page = transactionDao.getPage(company.getId(), null, page.getNext(), 2);
+            assertEquals(1, page.getItems().size());
+            assertNull(page.getNext());
+            for (final Transaction transaction : page.getItems())
+                ids.add(transaction.getId());
+
+            // Most recent first, with ties broken by the highest id.
+            final Transaction t0 = added.get(0), t1 = added.get(1), t2 = added.get(2), t3 = added.get(3);
+            assertEquals(Math.max(t0.getId(), t1.getId()), (int) ids.get(0));
+            assertEquals(Math.min(t0.getId(), t1.getId()), (int) ids.get(1));
+            assertEquals(Math.max(t2.getId(), t3.getId()), (int) ids.get(2));
+            assertEquals(Math.min(t2.getId(), t3.getId()), (int) ids.get(3));
+            assertEquals(added.get(4).getId(), ids.get(4));
+
+            page = transactionDao.getPage(company.getId(), "payment 4", null, 2);
+            assertEquals(1, page.getItems().size());
+            assertNull(page.getNext());
+
+            page = transactionDao.getPage(company.getId(), null, null, null);
+            assertEquals(5, page.getItems().size());
+            assertNull(page.getNext());
+
+            page = transactionDao.getPage(other.getId(), null, null, 2);
+            assertEquals(0, page.getItems().size());
+            assertNull(page.getNext());
+
+            try {
+                transactionDao.getPage(company.getId(), null, "not a token", 2);
+                fail("Expected an invalid token to be rejected");
+            } catch (final IllegalArgumentException invalidToken) {
+                // Expected.
+            }
+
+            // The cached count is dropped when transactions are added or removed.
+            final Transaction extra = new Transaction(added.get(0));
+            transactionDao.add(extra);
+            assertEquals(6, transactionDao.count(company.getId(), null));
+            transactionDao.delete(extra.getId());
+            assertEquals(5, transactionDao.count(company.getId(), null));
+        }
+    }
+
+    private static Transaction transaction(final User user, final String timestamp, final String amount)
+            throws ParseException {
+        final Transaction transaction = new Transaction();
+        transaction.setCompanyId(user.getCompanyId());
+        transaction.setUserId(user.getId());
+        transaction.setTimestamp(DateUtils.parseDate(timestamp, new String[] { "yyyyMMddHHmm" }));
+        transaction.setTransactionType(TransactionType.PAYMENT);
+        transaction.setDescription("Received payment");
+        transaction.setAmount(amount);
+        return transaction;
+    }
+
+    private static List<String> amounts(final SortedMap<Date, BigDecimal> map) {
+        final List<String> amounts = new ArrayList<>();
+        for (final BigDecimal amount : map.values())
+            amounts.add(amount.toPlainString());
+        return amounts;
+    }
+
+    /**
+     * Test the incremental revenue roll-ups.
+     * 
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     */
+    @Test
+    public void testRollUp() throws DatabaseException, ParseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final TransactionDao transactionDao = new JdbcTransactionDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("company");
+            companyDao.add(company);
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("email").setFirstName("first").setLastName("last");
+            userDao.add(user);
+
+            final Date begin = DateUtils.parseDate("20140101", new String[] { "yyyyMMdd" });
+            final Date end = DateUtils.parseDate("20140301", new String[] { "yyyyMMdd" });
+            assertEquals(Arrays.asList("0.00", "0.00", "0.00"), amounts(transactionDao.getSumByMonth(begin, end)));
+
+            final Transaction t1 = transaction(user, "201401101000", "30.00");
+            transactionDao.add(t1, transaction(user, "201401101500", "-10.00"));
+
+            // New transactions are not included until they are rolled up.
+            assertEquals(Arrays.asList("0.00", "0.00", "0.00"), amounts(transactionDao.getSumByMonth(begin, end)));
+            assertEquals(1, transactionDao.rollUp());
+            assertEquals(0, transactionDao.rollUp());
+            assertEquals(Arrays.asList("20.00", "0.00", "0.00"), amounts(transactionDao.getSumByMonth(begin, end)));
+
+            // Only the day containing the new transaction is recalculated.
+            final Transaction t3 = transaction(user, "201402030900", "5.25");
+            transactionDao.add(t3);
+            assertEquals(1, transactionDao.rollUp());
+            assertEquals(Arrays.asList("20.00", "5.25", "0.00"), amounts(transactionDao.getSumByMonth(begin, end)));
+
+            // Updates and deletes recalculate the affected days immediately, including the day a transaction left.
+            t1.setAmount("40.00");
+            transactionDao.update(t1);
+            assertEquals(Arrays.asList("30.00", "5.25", "0.00"), amounts(transactionDao.getSumByMonth(begin, end)));
+
+            t3.setTimestamp(DateUtils.parseDate("201401200900", new String[] { "yyyyMMddHHmm" }));
+            transactionDao.update(t3);
+            assertEquals(Arrays.asList("35.25", "0.00", "0.00"), amounts(transactionDao.getSumByMonth(begin, end)));
+
+            transactionDao.delete(t3.getId());
+            assertEquals(Arrays.asList("30.00", "0.00", "0.00"), amounts(transactionDao.getSumByMonth(begin, end)));
+            assertEquals(0, transactionDao.rollUp());
+        }
+    }
 }
@@ -15,6 +15,7 @@ import org.apache.commons.lang.time.DateUtils;
 import org.junit.Test;
 
 import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.db.dao.CompanyDao;
 import com.arcblaze.arccore.db.dao.UserActivityDao;
@@ -82,6 +83,19 @@ public class JdbcUserActivityDaoTest {
             entry = iter.next();
             assertEquals(DateUtils.addMonths(begin, 3), entry.getKey());
             assertEquals(new Integer(0), entry.getValue());
+
+            // Replacing the count for a day also recalculates the month.
+            values.put(company.getId(), 3);
+            activityDao.setActiveUsers(DateUtils.addDays(begin, 33), values);
+            map = activityDao.getActiveByMonth(company.getId(), begin, end);
+            assertEquals(new Integer(8), map.get(DateUtils.addMonths(begin, 1)));
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("email").setFirstName("first").setLastName("last");
+            new JdbcUserDao(database.getConnectionManager()).add(user);
+            assertEquals(1, activityDao.rollUp(DateUtils.addMonths(begin, 3)));
+            map = activityDao.getActiveByMonth(begin, end);
+            assertEquals(new Integer(1), map.get(DateUtils.addMonths(begin, 3)));
         }
     }
 }
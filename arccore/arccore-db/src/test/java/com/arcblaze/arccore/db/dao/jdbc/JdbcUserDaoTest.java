@@ -6,16 +6,22 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Test;
 
 import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.common.model.Role;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.db.DatabaseUniqueConstraintException;
+import com.arcblaze.arccore.db.cache.EntityCache;
 import com.arcblaze.arccore.db.dao.CompanyDao;
+import com.arcblaze.arccore.db.dao.Page;
 import com.arcblaze.arccore.db.dao.UserDao;
+import com.arcblaze.arccore.db.util.PageToken;
 import com.arcblaze.arccore.db.util.TestDatabase;
 
 /**
@@ -220,4 +226,136 @@ public class JdbcUserDaoTest {
             assertEquals(0, userDao.count(true));
         }
     }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void testPages() throws DatabaseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("company");
+            final Company other = new Company().setName("other");
+            companyDao.add(company, other);
+
+            // Users sharing a name are ordered by login.
+            final String[][] names = { { "b", "a", "user1" }, { "a", "b", "user2" }, { "a", "b", "user3" },
+                    { "a", "a", "user4" }, { "c", "a", "user5" } };
+            for (final String[] name : names) {
+                final User user = new User();
+                user.setCompanyId(company.getId());
+                user.setLastName(name[0]);
+                user.setFirstName(name[1]);
+                user.setLogin(name[2]);
+                user.setHashedPass("hashed");
+                user.setSalt("salt");
+                user.setEmail(name[2] + "@example.com");
+                user.setActive(!"user3".equals(name[2]));
+                userDao.add(user);
+            }
+
+            assertEquals(5, userDao.count(company.getId(), null, true));
+            assertEquals(4, userDao.count(company.getId(), null, false));
+            assertEquals(0, userDao.count(other.getId(), null, true));
+
+            final List<String> logins = new ArrayList<>();
+            String token = null;
+            do {
+                final Page<User> page = userDao.getPage(company.getId(), null, true, token, 2);
+                assertTrue(page.getItems().size() <= 2);
+                for (final User user : page.getItems())
+                    logins.add(user.getLogin());
+                token = page.getNext();
+            } while (token != null);
+            assertEquals("[user4, user2, user3, user1, user5]", logins.toString());
+
+            Page<User> page = userDao.getPage(company.getId(), "user", false, null, 4);
+            assertEquals(4, page.getItems().size());
+            assertNull(page.getNext());
+
+            page = userDao.getPage(company.getId(), "user5", true, null, 2);
+            assertEquals(1, page.getItems().size());
+            assertNull(page.getNext());
+
+            try {
+                userDao.getPage(company.getId(), null, true, "bm90IGEgdG9rZW4", 2);
+                fail("Expected an invalid token to be rejected");
+            } catch (final IllegalArgumentException invalidToken) {
+                // Expected.
+            }
+
+            final Page<User> empty = userDao.getPage(company.getId(), null, true, null, 0);
+            assertTrue(empty.getItems().isEmpty());
+            assertNull(empty.getNext());
+
+            // Tokens created by the database queries are continued by the database, even when the index is available.
+            final Page<User> continued = userDao.getPage(company.getId(), null, true,
+                    PageToken.encode("query", "a", "b", "user3"), 2);
+            assertEquals(2, continued.getItems().size());
+            assertEquals("user1", continued.getItems().iterator().next().getLogin());
+
+            try {
+                userDao.getPage(company.getId(), null, true, PageToken.encode("other", "a", "b", "user3"), 2);
+                fail("Expected a token from an unknown source to be rejected");
+            } catch (final IllegalArgumentException invalidToken) {
+                // Expected.
+            }
+
+            // The cached count is dropped when users in the company change.
+            final User user = page.getItems().iterator().next();
+            userDao.deactivate(company.getId(), user.getId());
+            assertEquals(3, userDao.count(company.getId(), null, false));
+            userDao.delete(user.getId());
+            assertEquals(4, userDao.count(company.getId(), null, true));
+        }
+    }
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void testPrincipalInvalidation() throws DatabaseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final JdbcRoleDao roleDao = new JdbcRoleDao(database.getConnectionManager());
+            final EntityCache<String, String> principals = database.getConnectionManager().getCache(
+                    JdbcUserDao.PRINCIPAL_CACHE);
+
+            final Company company = new Company().setName("company");
+            companyDao.add(company);
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("user@example.com").setFirstName("first").setLastName("last");
+
+            // Logins that did not match any user are looked up again once the user is added.
+            principals.put(principals.stamp(), null, "user", "missing");
+            userDao.add(user);
+            assertNull(principals.get("user"));
+
+            assertEquals(user.getId(), userDao.getLogin("user").getId());
+            assertEquals(user.getId(), userDao.getLogin("USER@example.com").getId());
+
+            principals.put(principals.stamp(), company.getId(), "user", "account");
+            assertEquals("account", principals.get("user"));
+            userDao.setPassword(user.getId(), "changed", "salt");
+            assertNull(principals.get("user"));
+
+            principals.put(principals.stamp(), company.getId(), "user", "account");
+            roleDao.add(user.getId(), new Role("ADMIN"));
+            assertNull(principals.get("user"));
+
+            principals.put(principals.stamp(), company.getId(), "user", "account");
+            userDao.deactivate(company.getId(), user.getId());
+            assertNull(principals.get("user"));
+            assertNull(userDao.getLogin("user"));
+        }
+    }
 }
@@ -1,13 +1,31 @@
 package com.arcblaze.arccore.rest;
 
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
 import javax.mail.MessagingException;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.NotFoundException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.Variant;
 
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,9 +42,125 @@ import com.codahale.metrics.health.HealthCheck;
 public class BaseResource extends HealthCheck {
     private final static Logger log = LoggerFactory.getLogger(BaseResource.class);
 
+    /** The representations produced by the resources, in order of preference, used to negotiate entity tags. */
+    private final static List<Variant> variants = Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE,
+            MediaType.APPLICATION_XML_TYPE).build();
+
+    /** Used to serialize response contents when calculating entity tags, configured like the JSON responses. */
+    private final static ObjectMapper mapper = new JacksonJaxbJsonProvider().locateMapper(Object.class,
+            MediaType.APPLICATION_JSON_TYPE);
+
     /** A system error resulting in failed health checks. */
     private Throwable failure = null;
 
+    /** Used to evaluate the conditional request headers, not available when the resource is invoked directly. */
+    private Request request = null;
+
+    /** Used to tag successful responses, not available when the resource is invoked directly. */
+    private HttpServletResponse response = null;
+
+    /**
+     * @param request
+     *            the current request, used to evaluate the conditional request headers
+     */
+    @Context
+    public void setRequest(final Request request) {
+        this.request = request;
+    }
+
+    /**
+     * @param response
+     *            the current response, used to include entity tags in successful responses
+     */
+    @Context
+    public void setResponse(final HttpServletResponse response) {
+        this.response = response;
+    }
+
+    /**
+     * @param parts
+     *            the values that uniquely identify a version of an entity, such as its type, id and version number
+     * 
+     * @return a strong entity tag made up of the provided values and the media type negotiated for the response, so
+     *         that the JSON and XML representations of the same version of an entity have different tags
+     */
+    protected EntityTag representationTag(final Object... parts) {
+        final Variant variant = this.request == null ? null : this.request.selectVariant(variants);
+        final MediaType mediaType = variant == null ? variants.get(0).getMediaType() : variant.getMediaType();
+        return new EntityTag(StringUtils.join(parts, '-') + '-' + mediaType.getSubtype());
+    }
+
+    /**
+     * @param contents
+     *            the entities or collections of entities included in a response
+     * 
+     * @return an entity tag containing the SHA-256 digest of the provided contents, in order, serialized using the
+     *         same JSON mapping as the responses, which is weak since the same tag is used for every media type
+     * 
+     * @throws IllegalStateException
+     *             if the provided contents cannot be serialized
+     */
+    protected static EntityTag contentTag(final Object... contents) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (final Object content : contents) {
+                digest.update(mapper.writeValueAsBytes(content));
+                digest.update((byte) 0);
+            }
+            return new EntityTag(toHexString(digest.digest()), true);
+        } catch (final IOException | NoSuchAlgorithmException digestFailed) {
+            throw new IllegalStateException("Failed to digest the response contents", digestFailed);
+        }
+    }
+
+    private static String toHexString(final byte[] bytes) {
+        final char[] hex = "0123456789abcdef".toCharArray();
+        final StringBuilder sb = new StringBuilder(bytes.length << 1);
+
+        for (final byte b : bytes)
+            sb.append(hex[(b & 0xf0) >> 4]).append(hex[(b & 0x0f)]);
+
+        return sb.toString();
+    }
+
+    /**
+     * Evaluate the conditional request headers against the current entity tag, before the response is assembled.
+     * 
+     * @param tag
+     *            the entity tag of the current version of the requested entity
+     * 
+     * @throws WebApplicationException
+     *             with a {@code 304 Not Modified} status when the client already has the current version of the
+     *             entity, or a {@code 412 Precondition Failed} status when the client expected a different version
+     */
+    protected void evaluatePreconditions(final EntityTag tag) {
+        if (this.request == null)
+            return;
+
+        final ResponseBuilder builder = this.request.evaluatePreconditions(tag);
+        if (builder != null) {
+            log.debug("Preconditions not met for entity tag {}", tag);
+            throw new WebApplicationException(builder.tag(tag).build());
+        }
+    }
+
+    /**
+     * Evaluate the conditional request headers against the current entity tag and include the tag in the successful
+     * response, so that unchanged entities are not sent to the client again.
+     * 
+     * @param tag
+     *            the entity tag of the current version of the requested entity
+     * 
+     * @throws WebApplicationException
+     *             with a {@code 304 Not Modified} status when the client already has the current version of the
+     *             entity
+     */
+    protected void checkModified(final EntityTag tag) {
+        evaluatePreconditions(tag);
+        if (this.response != null)
+            this.response.setHeader(HttpHeaders.ETAG, tag.toString());
+    }
+
     /**
      * @param message
      *            the message to include in the exception
@@ -49,6 +183,17 @@ public class BaseResource extends HealthCheck {
         return new BadRequestException(Response.status(Status.BAD_REQUEST).entity(message).build());
     }
 
+    /**
+     * @param message
+     *            the message to include in the exception
+     * 
+     * @return a {@link ClientErrorException} with a {@code 409 Conflict} status code and error message
+     */
+    protected ClientErrorException conflict(final String message) {
+        log.error(message);
+        return new ClientErrorException(Response.status(Status.CONFLICT).entity(message).build());
+    }
+
     /**
      * @param config
      *            the system configuration information
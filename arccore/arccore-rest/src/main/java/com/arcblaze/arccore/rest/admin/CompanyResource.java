@@ -24,6 +24,8 @@ import com.arcblaze.arccore.common.model.IdSet;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.DaoFactory;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.dao.CompanyDao;
+import com.arcblaze.arccore.db.dao.Page;
 import com.arcblaze.arccore.rest.BaseResource;
 import com.codahale.metrics.Timer;
 
@@ -51,6 +53,9 @@ public class CompanyResource extends BaseResource {
 
         @XmlElement
         public Integer total;
+
+        @XmlElement
+        public String next;
     }
 
     @XmlRootElement
@@ -163,6 +168,37 @@ public class CompanyResource extends BaseResource {
      * @throws DatabaseException
      *             if there is an error communicating with the back-end
      */
+    public AllResponse search(final SecurityContext security, final Config config, final DaoFactory daoFactory,
+            final Timer timer, final String filter, final Boolean includeInactive, final Integer limit,
+            final Integer offset) throws DatabaseException {
+        return this.search(security, config, daoFactory, timer, filter, includeInactive, limit, offset, null);
+    }
+
+    /**
+     * @param security
+     *            the security information associated with the request
+     * @param config
+     *            the system configuration properties
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     * @param timer
+     *            tracks performance metrics on this REST end-point
+     * @param filter
+     *            the search filter to use to restrict results
+     * @param includeInactive
+     *            whether inactive companies should be included in the response
+     * @param limit
+     *            the maximum number of items to be retrieved
+     * @param offset
+     *            the offset into the items to be retrieved, only used when no page token is provided
+     * @param next
+     *            the page token returned with the previous page of companies, or {@code null} for the first page
+     * 
+     * @return all of the matching companies
+     * 
+     * @throws DatabaseException
+     *             if there is an error communicating with the back-end
+     */
     @GET
     @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public AllResponse search(@Context final SecurityContext security, @Context final Config config,
@@ -170,12 +206,23 @@ public class CompanyResource extends BaseResource {
             @QueryParam("filter") final String filter,
             @QueryParam("includeInactive") @DefaultValue("true") final Boolean includeInactive,
             @QueryParam("limit") @DefaultValue("100") final Integer limit,
-            @QueryParam("start") @DefaultValue("0") final Integer offset) throws DatabaseException {
+            @QueryParam("start") @DefaultValue("0") final Integer offset, @QueryParam("next") final String next)
+            throws DatabaseException {
         final User currentUser = (User) security.getUserPrincipal();
         try (Timer.Context timerContext = timer.time()) {
+            final CompanyDao companyDao = daoFactory.getCompanyDao();
+            final boolean inactive = includeInactive == null || includeInactive;
+
             final AllResponse response = new AllResponse();
-            response.companies = daoFactory.getCompanyDao().search(filter, includeInactive, limit, offset);
-            response.total = daoFactory.getCompanyDao().count(filter, includeInactive);
+            if (next == null && offset != null && offset > 0)
+                // Offset paging is still supported for clients that do not use page tokens.
+                response.companies = companyDao.search(filter, inactive, limit, offset);
+            else {
+                final Page<Company> page = getPage(companyDao, filter, inactive, next, limit);
+                response.companies = page.getItems();
+                response.next = page.getNext();
+            }
+            response.total = companyDao.count(filter, inactive);
             response.limit = limit;
             response.offset = offset;
             return response;
@@ -184,6 +231,15 @@ public class CompanyResource extends BaseResource {
         }
     }
 
+    private Page<Company> getPage(final CompanyDao companyDao, final String filter, final boolean includeInactive,
+            final String next, final Integer limit) throws DatabaseException {
+        try {
+            return companyDao.getPage(filter, includeInactive, next, limit);
+        } catch (final IllegalArgumentException invalidToken) {
+            throw badRequest("The provided page token is invalid.");
+        }
+    }
+
     /**
      * @param security
      *            the security information associated with the request
@@ -3,11 +3,20 @@ package com.arcblaze.arccore.rest.admin.stats;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -19,21 +28,58 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.commons.lang.time.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.arcblaze.arccore.common.config.Config;
 import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.BoundConnectionManager;
+import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DaoFactory;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.dao.CompanyDao;
 import com.arcblaze.arccore.db.dao.TransactionDao;
 import com.arcblaze.arccore.db.dao.UserDao;
 import com.arcblaze.arccore.rest.BaseResource;
 import com.codahale.metrics.Timer;
 
 /**
- * The REST end-point for retrieving system statistics.
+ * The REST end-point for retrieving system statistics. The statistics are calculated in parallel and kept as a
+ * snapshot for each database. Once a snapshot is older than {@link #SNAPSHOT_REFRESH} milliseconds it is still
+ * returned, while a single refresh runs in the background.
  */
 @Path("/admin/stats/system")
 public class SystemStatsResource extends BaseResource {
+    private final static Logger log = LoggerFactory.getLogger(SystemStatsResource.class);
+
+    /** The number of milliseconds after which a statistics snapshot is refreshed in the background. */
+    public final static long SNAPSHOT_REFRESH = TimeUnit.MINUTES.toMillis(1);
+
+    /** The maximum number of statistics calculated at the same time. */
+    private final static int CALCULATOR_THREADS = 4;
+
+    /** Creates the daemon threads used to calculate statistics, so they never hold up shutdown. */
+    private final static ThreadFactory threadFactory = new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "system-stats-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    /** Calculates the individual statistics in parallel. */
+    private final static ExecutorService calculator = Executors.newFixedThreadPool(CALCULATOR_THREADS, threadFactory);
+
+    /** Runs the snapshot refreshes, each of which waits on the calculator. */
+    private final static ExecutorService refresher = Executors.newSingleThreadExecutor(threadFactory);
+
+    /** The statistics snapshots, keyed by the connection manager of the database they were calculated from. */
+    private final static Map<ConnectionManager, SnapshotHolder> snapshots = Collections
+            .synchronizedMap(new WeakHashMap<ConnectionManager, SnapshotHolder>());
+
     @XmlRootElement
     static class SystemStat {
         @XmlElement
@@ -47,6 +93,67 @@ public class SystemStatsResource extends BaseResource {
     static class Stats {
         @XmlElement(name = "stats")
         public List<SystemStat> statList;
+
+        /** The number of milliseconds since the statistics were calculated. */
+        @XmlElement
+        public long age;
+    }
+
+    /**
+     * A calculated set of statistics.
+     */
+    static class Snapshot {
+        /** The calculated statistics. */
+        public final List<SystemStat> statList;
+
+        /** The time at which the calculation started. */
+        public final long timestamp;
+
+        public Snapshot(final List<SystemStat> statList, final long timestamp) {
+            this.statList = Collections.unmodifiableList(statList);
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Holds the most recent snapshot for a database, along with the refresh in progress if there is one, so that
+     * concurrent requests share a single calculation.
+     */
+    static class SnapshotHolder {
+        private Snapshot snapshot = null;
+
+        private FutureTask<Snapshot> refresh = null;
+
+        public synchronized Snapshot getSnapshot() {
+            return this.snapshot;
+        }
+
+        public synchronized Future<Snapshot> refresh(final Callable<Snapshot> calculation) {
+            if (this.refresh == null) {
+                this.refresh = new FutureTask<>(new Callable<Snapshot>() {
+                    @Override
+                    public Snapshot call() throws Exception {
+                        try {
+                            final Snapshot calculated = calculation.call();
+                            synchronized (SnapshotHolder.this) {
+                                SnapshotHolder.this.snapshot = calculated;
+                            }
+                            return calculated;
+                        } catch (final Exception failed) {
+                            // Background refreshes have nobody waiting on them, and the stale snapshot remains.
+                            log.error("Failed to calculate the system statistics", failed);
+                            throw failed;
+                        } finally {
+                            synchronized (SnapshotHolder.this) {
+                                SnapshotHolder.this.refresh = null;
+                            }
+                        }
+                    }
+                });
+                refresher.execute(this.refresh);
+            }
+            return this.refresh;
+        }
     }
 
     /**
@@ -69,26 +176,62 @@ public class SystemStatsResource extends BaseResource {
     public Stats getStats(@Context final SecurityContext security, @Context final Config config,
             @Context final DaoFactory daoFactory, @Context final Timer timer) throws DatabaseException {
         try (final Timer.Context timerContext = timer.time()) {
-            final List<FutureTask<SystemStat>> tasks = Arrays.asList(getRevenueYTD(daoFactory),
-                    getRevenueYear(daoFactory), getActiveUsers(daoFactory), getActiveCompanies(daoFactory));
+            // The request session is closed when the request completes, so refreshes use the connection pool.
+            ConnectionManager connectionManager = daoFactory.getConnectionManager();
+            if (connectionManager instanceof BoundConnectionManager)
+                connectionManager = ((BoundConnectionManager) connectionManager).getParent();
+            final SnapshotHolder holder = getHolder(connectionManager);
 
-            for (final FutureTask<SystemStat> task : tasks)
-                task.run();
-
-            final List<SystemStat> statList = new ArrayList<>(tasks.size());
-            for (final FutureTask<SystemStat> task : tasks)
-                statList.add(task.get());
+            final Callable<Snapshot> calculation = getCalculation(connectionManager);
+            Snapshot snapshot = holder.getSnapshot();
+            if (snapshot == null)
+                snapshot = holder.refresh(calculation).get();
+            else if (System.currentTimeMillis() - snapshot.timestamp > SNAPSHOT_REFRESH)
+                holder.refresh(calculation);
 
             final Stats stats = new Stats();
-            stats.statList = statList;
+            stats.statList = snapshot.statList;
+            stats.age = Math.max(0, System.currentTimeMillis() - snapshot.timestamp);
             return stats;
         } catch (final InterruptedException | ExecutionException error) {
             throw serverError(config, (User) security.getUserPrincipal(), error);
         }
     }
 
-    protected FutureTask<SystemStat> getRevenueYTD(final DaoFactory daoFactory) {
-        return new FutureTask<>(new Callable<SystemStat>() {
+    protected SnapshotHolder getHolder(final ConnectionManager connectionManager) {
+        synchronized (snapshots) {
+            SnapshotHolder holder = snapshots.get(connectionManager);
+            if (holder == null) {
+                holder = new SnapshotHolder();
+                snapshots.put(connectionManager, holder);
+            }
+            return holder;
+        }
+    }
+
+    protected Callable<Snapshot> getCalculation(final ConnectionManager connectionManager) {
+        return new Callable<Snapshot>() {
+            @Override
+            public Snapshot call() throws InterruptedException, ExecutionException {
+                final long timestamp = System.currentTimeMillis();
+                final List<Future<SystemStat>> futures = calculator.invokeAll(Arrays.asList(
+                        getRevenueYTD(new DaoFactory(connectionManager)),
+                        getRevenueYear(new DaoFactory(connectionManager)),
+                        getActiveUsers(new DaoFactory(connectionManager)),
+                        getActiveCompanies(new DaoFactory(connectionManager))));
+
+                final List<SystemStat> statList = new ArrayList<>(futures.size());
+                for (final Future<SystemStat> future : futures)
+                    statList.add(future.get());
+
+                log.debug("Calculated system statistics in {}ms", System.currentTimeMillis() - timestamp);
+                return new Snapshot(statList, timestamp);
+            }
+        };
+    }
+
+    protected Callable<SystemStat> getRevenueYTD(final DaoFactory daoFactory) {
+        return new Callable<SystemStat>() {
             @Override
             public SystemStat call() throws DatabaseException {
                 final TransactionDao transactionDao = daoFactory.getTransactionDao();
@@ -100,11 +243,11 @@ public class SystemStatsResource extends BaseResource {
                 revenueYTD.value = String.format("$%.2f", transactionDao.amountBetween(jan1, tomorrow));
                 return revenueYTD;
             }
-        });
+        };
     }
 
-    protected FutureTask<SystemStat> getRevenueYear(final DaoFactory daoFactory) {
-        return new FutureTask<>(new Callable<SystemStat>() {
+    protected Callable<SystemStat> getRevenueYear(final DaoFactory daoFactory) {
+        return new Callable<SystemStat>() {
             @Override
             public SystemStat call() throws DatabaseException {
                 final TransactionDao transactionDao = daoFactory.getTransactionDao();
@@ -116,11 +259,11 @@ public class SystemStatsResource extends BaseResource {
                 revenueYear.value = String.format("$%.2f", transactionDao.amountBetween(yearAgo, tomorrow));
                 return revenueYear;
             }
-        });
+        };
     }
 
-    protected FutureTask<SystemStat> getActiveUsers(final DaoFactory daoFactory) {
-        return new FutureTask<>(new Callable<SystemStat>() {
+    protected Callable<SystemStat> getActiveUsers(final DaoFactory daoFactory) {
+        return new Callable<SystemStat>() {
             @Override
             public SystemStat call() throws DatabaseException {
                 final UserDao userDao = daoFactory.getUserDao();
@@ -129,19 +272,19 @@ public class SystemStatsResource extends BaseResource {
                 activeUsers.value = String.valueOf(userDao.count(false));
                 return activeUsers;
             }
-        });
+        };
     }
 
-    protected FutureTask<SystemStat> getActiveCompanies(final DaoFactory daoFactory) {
-        return new FutureTask<>(new Callable<SystemStat>() {
+    protected Callable<SystemStat> getActiveCompanies(final DaoFactory daoFactory) {
+        return new Callable<SystemStat>() {
             @Override
             public SystemStat call() throws DatabaseException {
-                final UserDao companyDao = daoFactory.getUserDao();
+                final CompanyDao companyDao = daoFactory.getCompanyDao();
                 final SystemStat activeCompanies = new SystemStat();
                 activeCompanies.name = "Active Companies";
                 activeCompanies.value = String.valueOf(companyDao.count(false));
                 return activeCompanies;
             }
-        });
+        };
     }
 }
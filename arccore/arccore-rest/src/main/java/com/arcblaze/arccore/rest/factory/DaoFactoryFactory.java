@@ -4,13 +4,20 @@ import javax.servlet.ServletContext;
 import javax.ws.rs.core.Context;
 
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.process.internal.RequestScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.arcblaze.arccore.db.DaoFactory;
+import com.arcblaze.arccore.db.DaoSession;
+import com.arcblaze.arccore.db.DatabaseException;
 
 /**
  * Provides access to {@link DaoFactory} objects within the REST resource classes.
  */
 public class DaoFactoryFactory extends BaseServletContextFactory<DaoFactory> {
+    private final static Logger log = LoggerFactory.getLogger(DaoFactoryFactory.class);
+
     /** The property to use when retrieving the dao factory. */
     public final static String DAO_FACTORY_CONFIG = DaoFactoryFactory.class.getCanonicalName() + ".config";
 
@@ -22,6 +29,33 @@ public class DaoFactoryFactory extends BaseServletContextFactory<DaoFactory> {
         super(servletContext, DAO_FACTORY_CONFIG);
     }
 
+    /**
+     * Each web request is given its own session so that all of the DAOs used while processing the request share a
+     * single database connection, which is only retrieved from the pool if the request actually uses the database.
+     * 
+     * @return a factory bound to a new {@link DaoSession}, or {@code null} if no factory has been configured
+     */
+    @Override
+    public DaoFactory provide() {
+        final DaoFactory daoFactory = super.provide();
+        return daoFactory == null ? null : daoFactory.openSession();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispose(final DaoFactory daoFactory) {
+        if (daoFactory == null)
+            return;
+
+        try {
+            daoFactory.close();
+        } catch (final DatabaseException closeFailed) {
+            log.error("Failed to close the request database session", closeFailed);
+        }
+    }
+
     /**
      * @return a binder that can register this factory
      */
@@ -29,7 +63,7 @@ public class DaoFactoryFactory extends BaseServletContextFactory<DaoFactory> {
         return new AbstractBinder() {
             @Override
             protected void configure() {
-                bindFactory(DaoFactoryFactory.class).to(DaoFactory.class);
+                bindFactory(DaoFactoryFactory.class).to(DaoFactory.class).in(RequestScoped.class);
             }
         };
     }
@@ -2,38 +2,61 @@ package com.arcblaze.arccore.rest.factory;
 
 import static org.apache.commons.lang.Validate.notNull;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Context;
 
 import org.apache.commons.lang.StringUtils;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.uri.UriTemplate;
 
+import com.arcblaze.arccore.common.log.AccessLog;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 
 /**
  * Provides access to {@link Timer} objects within the REST resource classes, pre-configured with the REST end-point
- * associated with the request.
+ * associated with the request. Timers are named after the resource template matched by the request rather than the
+ * requested URI, so all of the requests for different entities share the timer of their end-point, and the number of
+ * timers created is capped in case the templates themselves are unbounded.
  */
 public class TimerFactory extends BaseFactory<Timer> {
-    private final static Logger log = LoggerFactory.getLogger(TimerFactory.class);
+    /** The maximum number of distinct request timers added to each metric registry. */
+    public final static int MAX_TIMERS = 500;
+
+    /** The name of the timer shared by the requests beyond the maximum number of distinct request timers. */
+    public final static String OVERFLOW_TIMER = "(other)";
+
+    /** The names of the request timers added to each metric registry. */
+    private final static Map<MetricRegistry, Set<String>> timerNames = Collections
+            .synchronizedMap(new WeakHashMap<MetricRegistry, Set<String>>());
 
     private final HttpServletRequest request;
+    private final ExtendedUriInfo uriInfo;
     private final MetricRegistry metricRegistry;
 
     /**
      * @param request
      *            the web request from the client
+     * @param uriInfo
+     *            the URI information of the request, including the matched resource templates
      * @param metricRegistry
      *            the metric registry from which timer objects will be retrieved
      */
-    public TimerFactory(final @Context HttpServletRequest request, final @Context MetricRegistry metricRegistry) {
+    public TimerFactory(final @Context HttpServletRequest request, final @Context ExtendedUriInfo uriInfo,
+            final @Context MetricRegistry metricRegistry) {
         notNull(request, "Invalid null servlet request");
         notNull(metricRegistry, "Invalid null metric registry");
 
         this.request = request;
+        this.uriInfo = uriInfo;
         this.metricRegistry = metricRegistry;
     }
 
@@ -42,35 +65,63 @@ public class TimerFactory extends BaseFactory<Timer> {
      */
     @Override
     public Timer provide() {
-        log.info(getRequestLog(this.request));
-        return this.metricRegistry.timer(getTimerName(this.request));
+        final String route = getRoute(this.request, this.uriInfo);
+        if (route == null)
+            return this.metricRegistry.timer(OVERFLOW_TIMER + " " + this.request.getMethod());
+
+        // The request is written to the access log with its route once it completes.
+        this.request.setAttribute(AccessLog.ROUTE_ATTRIBUTE, route);
+        return this.metricRegistry.timer(limit(this.metricRegistry, route + " " + this.request.getMethod()));
     }
 
     /**
      * @param request
      *            the servlet request associated with the client web request
+     * @param uriInfo
+     *            the URI information of the request, including the matched resource templates
      * 
-     * @return a log message describing this web request
+     * @return the resource template matched by the request, or {@code null} if no template was matched
      */
-    protected String getRequestLog(final HttpServletRequest request) {
-        final String userLogin = StringUtils.defaultIfEmpty(request.getRemoteUser(), "-");
-        final StringBuilder msg = new StringBuilder();
-        msg.append(StringUtils.rightPad(userLogin, 12));
-        msg.append(" ");
-        msg.append(StringUtils.rightPad(request.getMethod(), 6));
-        msg.append(" ");
-        msg.append(request.getRequestURI());
-        return msg.toString();
+    public static String getRoute(final HttpServletRequest request, final ExtendedUriInfo uriInfo) {
+        final List<UriTemplate> templates = uriInfo == null ? null : uriInfo.getMatchedTemplates();
+        if (templates == null || templates.isEmpty())
+            return null;
+
+        // The templates are ordered from the resource method back to the resource class.
+        final StringBuilder route = new StringBuilder(StringUtils.defaultString(request.getServletPath()));
+        for (int t = templates.size() - 1; t >= 0; t--) {
+            final String template = StringUtils.strip(templates.get(t).getTemplate(), "/");
+            if (!template.isEmpty())
+                route.append('/').append(template);
+        }
+        return route.toString();
     }
 
     /**
-     * @param request
-     *            the servlet request associated with the client web request
+     * @param metricRegistry
+     *            the metric registry to which the request timer will be added
+     * @param timerName
+     *            the name of the timer for the request
      * 
-     * @return a representative name to use in the timer
+     * @return the provided timer name, or the name of the overflow timer if the maximum number of distinct request
+     *         timers has already been reached
      */
-    protected String getTimerName(final HttpServletRequest request) {
-        return request.getRequestURI() + " " + request.getMethod();
+    public static String limit(final MetricRegistry metricRegistry, final String timerName) {
+        final Set<String> names;
+        synchronized (timerNames) {
+            Set<String> existing = timerNames.get(metricRegistry);
+            if (existing == null) {
+                existing = new HashSet<>();
+                timerNames.put(metricRegistry, existing);
+            }
+            names = existing;
+        }
+
+        synchronized (names) {
+            if (names.contains(timerName) || names.size() < MAX_TIMERS && names.add(timerName))
+                return timerName;
+        }
+        return OVERFLOW_TIMER + " " + StringUtils.substringAfterLast(timerName, " ");
     }
 
     /**
@@ -0,0 +1,115 @@
+package com.arcblaze.arccore.rest.filter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.db.DatabaseProperty;
+import com.arcblaze.arccore.db.SqlProfile;
+import com.arcblaze.arccore.rest.factory.ConfigFactory;
+import com.arcblaze.arccore.rest.factory.TimerFactory;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.servlets.MetricsServlet;
+
+/**
+ * Profiles the statements run against the database by each REST request. The number of statements, rows and the
+ * database time of each request are added to histograms named after the request timer, a warning is logged when a
+ * request runs the same shape of SQL more than the configured number of times, which usually means the statement is
+ * being run for each of a list of entities, and the totals are optionally returned in the {@link #STATS_HEADER}
+ * response header.
+ */
+@Provider
+public class SqlProfileFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private final static Logger log = LoggerFactory.getLogger(SqlProfileFilter.class);
+
+    /** The response header describing the statements run by the request. */
+    public final static String STATS_HEADER = "X-DB-Stats";
+
+    /** The servlet context attribute which, when {@link Boolean#TRUE}, adds the statistics header to responses. */
+    public final static String STATS_HEADER_ATTRIBUTE = SqlProfileFilter.class.getCanonicalName() + ".header";
+
+    @Context
+    private HttpServletRequest request;
+
+    @Context
+    private ServletContext servletContext;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filter(final ContainerRequestContext requestContext) throws IOException {
+        if (isProfiling())
+            SqlProfile.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filter(final ContainerRequestContext requestContext, final ContainerResponseContext responseContext)
+            throws IOException {
+        final SqlProfile profile = SqlProfile.stop();
+        if (profile == null)
+            return;
+
+        final String method = requestContext.getMethod();
+        final String route = TimerFactory.getRoute(this.request, (ExtendedUriInfo) requestContext.getUriInfo());
+
+        final MetricRegistry metricRegistry = (MetricRegistry) this.servletContext
+                .getAttribute(MetricsServlet.METRICS_REGISTRY);
+        if (metricRegistry != null && route != null) {
+            // Shares the limit on the number of distinct request timers.
+            final String name = TimerFactory.limit(metricRegistry, route + " " + method);
+            metricRegistry.histogram(name + " db.statements").update(profile.getStatements());
+            metricRegistry.histogram(name + " db.rows").update(profile.getRows());
+            metricRegistry.timer(name + " db.time").update(profile.getTime(TimeUnit.NANOSECONDS),
+                    TimeUnit.NANOSECONDS);
+        }
+
+        final int threshold = getRepeatThreshold();
+        if (threshold > 0) {
+            final String requested = route != null ? route : requestContext.getUriInfo().getPath();
+            for (final Map.Entry<String, Integer> repeated : profile.getRepeated(threshold).entrySet())
+                log.warn("{} {} ran the same statement {} times: {}", method, requested, repeated.getValue(),
+                        repeated.getKey());
+        }
+
+        if (Boolean.TRUE.equals(this.servletContext.getAttribute(STATS_HEADER_ATTRIBUTE)))
+            responseContext.getHeaders().putSingle(STATS_HEADER, profile.toString());
+    }
+
+    /**
+     * @return whether the statements run by each request are being profiled
+     */
+    protected boolean isProfiling() {
+        final Config config = (Config) this.servletContext.getAttribute(ConfigFactory.CONFIG_FACTORY_CONFIG);
+        if (config == null)
+            return Boolean.parseBoolean(DatabaseProperty.DB_PROFILE_ENABLED.getDefaultValue());
+        return config.getBoolean(DatabaseProperty.DB_PROFILE_ENABLED);
+    }
+
+    /**
+     * @return the number of times a request may run the same shape of SQL before a warning is logged, or 0 if disabled
+     */
+    protected int getRepeatThreshold() {
+        final Config config = (Config) this.servletContext.getAttribute(ConfigFactory.CONFIG_FACTORY_CONFIG);
+        if (config == null)
+            return Integer.parseInt(DatabaseProperty.DB_PROFILE_REPEAT_THRESHOLD.getDefaultValue());
+        return config.getInt(DatabaseProperty.DB_PROFILE_REPEAT_THRESHOLD);
+    }
+}
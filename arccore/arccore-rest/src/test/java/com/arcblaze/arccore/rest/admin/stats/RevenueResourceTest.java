@@ -213,6 +213,7 @@ public class RevenueResourceTest {
             tx2.setNotes("refund notes");
 
             daoFactory.getTransactionDao().add(tx1, tx2);
+            daoFactory.getTransactionDao().rollUp();
 
             final StringBuilder correct = new StringBuilder();
             correct.append("index\tamount\n");
@@ -287,6 +288,7 @@ public class RevenueResourceTest {
             tx2.setNotes("refund notes");
 
             daoFactory.getTransactionDao().add(tx1, tx2);
+            daoFactory.getTransactionDao().rollUp();
 
             final StringBuilder correct = new StringBuilder();
             correct.append("index\tamount\n");
@@ -2,6 +2,7 @@ package com.arcblaze.arccore.rest.admin.stats;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Date;
 import java.util.Iterator;
@@ -150,4 +151,46 @@ public class SystemStatsResourceTest {
             assertEquals("1", stat.value);
         }
     }
+
+    /**
+     * Test that the statistics are served from a snapshot between refreshes.
+     * 
+     * @throws DatabaseException
+     *             if there is a database issue
+     */
+    @Test
+    public void testSnapshot() throws DatabaseException {
+        final Config config = new Config();
+        try (final TestDatabase testDatabase = new TestDatabase()) {
+            testDatabase.load("hsqldb/db.sql");
+            final DaoFactory daoFactory = testDatabase.getDaoFactory();
+            final MetricRegistry metricRegistry = new MetricRegistry();
+            final Timer timer = metricRegistry.timer("test");
+
+            final User user = new User().setId(1).setCompanyId(1).setLogin("user");
+            final SecurityContext securityContext = Mockito.mock(SecurityContext.class);
+            Mockito.when(securityContext.getUserPrincipal()).thenReturn(user);
+
+            final SystemStatsResource resource = new SystemStatsResource();
+            Stats stats = resource.getStats(securityContext, config, daoFactory, timer);
+            assertEquals("0", stats.statList.get(3).value);
+
+            daoFactory.getCompanyDao().add(new Company().setName("company").setActive(true));
+
+            // The snapshot is still fresh, so the new company is not counted yet.
+            stats = resource.getStats(securityContext, config, daoFactory, timer);
+            assertEquals("Active Companies", stats.statList.get(3).name);
+            assertEquals("0", stats.statList.get(3).value);
+            assertTrue(stats.age >= 0 && stats.age < SystemStatsResource.SNAPSHOT_REFRESH);
+
+            // Requests bound to a session share the snapshot of the connection pool.
+            final DaoFactory session = daoFactory.openSession();
+            try {
+                stats = resource.getStats(securityContext, config, session, timer);
+                assertEquals("0", stats.statList.get(3).value);
+            } finally {
+                session.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,108 @@
+package com.arcblaze.arccore.rest.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.uri.UriTemplate;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.arcblaze.arccore.common.log.AccessLog;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Perform testing of the factory providing the request timers.
+ */
+public class TimerFactoryTest {
+    protected static HttpServletRequest getRequest(final String method) {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getServletPath()).thenReturn("/rest");
+        Mockito.when(request.getMethod()).thenReturn(method);
+        return request;
+    }
+
+    protected static ExtendedUriInfo getUriInfo(final String... templates) {
+        final UriTemplate[] uriTemplates = new UriTemplate[templates.length];
+        for (int t = 0; t < templates.length; t++)
+            uriTemplates[t] = new UriTemplate(templates[t]);
+
+        final ExtendedUriInfo uriInfo = Mockito.mock(ExtendedUriInfo.class);
+        Mockito.when(uriInfo.getMatchedTemplates()).thenReturn(Arrays.asList(uriTemplates));
+        return uriInfo;
+    }
+
+    /**
+     * Test that the timer is named after the matched resource template, which is saved for the access log.
+     */
+    @Test
+    public void testMatchedTemplate() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+
+        // The templates are ordered from the resource method back to the resource class.
+        final HttpServletRequest request = getRequest("GET");
+        final ExtendedUriInfo uriInfo = getUriInfo("/{id}", "/user/");
+        final Timer timer = new TimerFactory(request, uriInfo, metricRegistry).provide();
+
+        assertSame(timer, metricRegistry.getTimers().get("/rest/user/{id} GET"));
+        assertEquals(1, metricRegistry.getTimers().size());
+        Mockito.verify(request).setAttribute(AccessLog.ROUTE_ATTRIBUTE, "/rest/user/{id}");
+
+        // Requests for other entities share the timer of the end-point.
+        assertSame(timer, new TimerFactory(getRequest("GET"), getUriInfo("/{id}", "/user"), metricRegistry).provide());
+
+        // Requests using other methods have their own timer.
+        new TimerFactory(getRequest("DELETE"), uriInfo, metricRegistry).provide();
+        assertTrue(metricRegistry.getTimers().containsKey("/rest/user/{id} DELETE"));
+        assertEquals(2, metricRegistry.getTimers().size());
+    }
+
+    /**
+     * Test that requests not matching any resource template share the overflow timer and have no route.
+     */
+    @Test
+    public void testUnmatched() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final HttpServletRequest request = getRequest("GET");
+        final ExtendedUriInfo uriInfo = Mockito.mock(ExtendedUriInfo.class);
+        Mockito.when(uriInfo.getMatchedTemplates()).thenReturn(Collections.<UriTemplate> emptyList());
+
+        final Timer timer = new TimerFactory(request, uriInfo, metricRegistry).provide();
+        assertSame(timer, metricRegistry.getTimers().get(TimerFactory.OVERFLOW_TIMER + " GET"));
+        assertNull(TimerFactory.getRoute(request, null));
+        Mockito.verify(request, Mockito.never()).setAttribute(Mockito.anyString(), Mockito.any());
+    }
+
+    /**
+     * Test that requests beyond the maximum number of distinct timers share the overflow timer of their method.
+     */
+    @Test
+    public void testOverflow() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        for (int t = 0; t < TimerFactory.MAX_TIMERS; t++)
+            new TimerFactory(getRequest("GET"), getUriInfo("/path" + t), metricRegistry).provide();
+        assertEquals(TimerFactory.MAX_TIMERS, metricRegistry.getTimers().size());
+
+        // The route is still saved for the access log, which is not limited.
+        final HttpServletRequest request = getRequest("POST");
+        final Timer overflow = new TimerFactory(request, getUriInfo("/extra"), metricRegistry).provide();
+        assertSame(overflow, metricRegistry.getTimers().get(TimerFactory.OVERFLOW_TIMER + " POST"));
+        Mockito.verify(request).setAttribute(AccessLog.ROUTE_ATTRIBUTE, "/rest/extra");
+
+        // The existing timers continue to be used.
+        final Timer existing = new TimerFactory(getRequest("GET"), getUriInfo("/path0"), metricRegistry).provide();
+        assertSame(existing, metricRegistry.getTimers().get("/rest/path0 GET"));
+        assertEquals(TimerFactory.MAX_TIMERS + 1, metricRegistry.getTimers().size());
+
+        // Each metric registry has its own limit.
+        assertEquals("/rest/extra POST", TimerFactory.limit(new MetricRegistry(), "/rest/extra POST"));
+    }
+}
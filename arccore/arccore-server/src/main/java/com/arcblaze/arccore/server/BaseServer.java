@@ -1,5 +1,10 @@
 package com.arcblaze.arccore.server;
 
+import static com.arcblaze.arccore.server.ServerProperty.SERVER_ACCESS_LOG_FILE;
+import static com.arcblaze.arccore.server.ServerProperty.SERVER_AUTH_TOKEN_ENABLED;
+import static com.arcblaze.arccore.server.ServerProperty.SERVER_AUTH_TOKEN_KEYS;
+import static com.arcblaze.arccore.server.ServerProperty.SERVER_AUTH_TOKEN_MAX_AGE;
+import static com.arcblaze.arccore.server.ServerProperty.SERVER_AUTH_TOKEN_TTL;
 import static com.arcblaze.arccore.server.ServerProperty.SERVER_CERTIFICATE_KEY_ALIAS;
 import static com.arcblaze.arccore.server.ServerProperty.SERVER_CONFIG_FILE;
 import static com.arcblaze.arccore.server.ServerProperty.SERVER_DEVELOPMENT_MODE;
@@ -12,6 +17,10 @@ import static com.arcblaze.arccore.server.ServerProperty.SERVER_WEBAPP_DIR;
 import static org.glassfish.jersey.servlet.ServletProperties.JAXRS_APPLICATION_CLASS;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -26,6 +35,7 @@ import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.Service;
 import org.apache.catalina.Wrapper;
+import org.apache.catalina.authenticator.AuthenticatorBase;
 import org.apache.catalina.authenticator.FormAuthenticator;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.deploy.FilterDef;
@@ -45,15 +55,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.common.log.AccessLog;
 import com.arcblaze.arccore.common.model.Role;
 import com.arcblaze.arccore.db.DaoFactory;
+import com.arcblaze.arccore.db.DatabaseProperty;
 import com.arcblaze.arccore.rest.BaseApplication;
 import com.arcblaze.arccore.rest.factory.ConfigFactory;
 import com.arcblaze.arccore.rest.factory.DaoFactoryFactory;
+import com.arcblaze.arccore.rest.filter.SqlProfileFilter;
 import com.arcblaze.arccore.server.security.SecurityRealm;
+import com.arcblaze.arccore.server.security.TokenAuthenticator;
+import com.arcblaze.arccore.server.security.TokenSigner;
+import com.arcblaze.arccore.server.tasks.ActivityRollupTask;
 import com.arcblaze.arccore.server.tasks.BackgroundTask;
 import com.arcblaze.arccore.server.tasks.MemoryUsageLoggingTask;
 import com.arcblaze.arccore.server.tasks.SystemHealthCheckTask;
+import com.arcblaze.arccore.server.util.AsyncAccessLogValve;
 import com.arcblaze.arccore.server.util.ResponseCodeStatusFilter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheckRegistry;
@@ -88,7 +105,13 @@ public abstract class BaseServer {
     public BaseServer() throws ConfigurationException {
         this.config = new Config(SERVER_CONFIG_FILE.getDefaultValue());
 
+        // Requests are always profiled in development mode, where the totals are returned in a response header.
+        if (this.config.getBoolean(SERVER_DEVELOPMENT_MODE))
+            this.config.set(DatabaseProperty.DB_PROFILE_ENABLED, "true");
+
         final DaoFactory daoFactory = getDaoFactory(this.config);
+        if (daoFactory.getConnectionManager() != null)
+            daoFactory.getConnectionManager().registerMetrics(this.metricRegistry);
 
         String baseDir = ".";
         if (this.config.getBoolean(SERVER_DEVELOPMENT_MODE))
@@ -107,7 +130,7 @@ public abstract class BaseServer {
             insecureConnector.setRedirectPort(this.config.getInt(SERVER_PORT_INSECURE));
         }
 
-        final SecurityRealm realm = new SecurityRealm("security", daoFactory);
+        final SecurityRealm realm = new SecurityRealm("security", daoFactory, this.metricRegistry);
         this.tomcat.getEngine().setRealm(realm);
 
         final String webappDir = this.config.getString(SERVER_WEBAPP_DIR);
@@ -116,6 +139,7 @@ public abstract class BaseServer {
 
         addServletWrappers(this.config, context);
         addMetricFilter(this.config, context);
+        addAccessLog(this.config, context);
 
         final Set<Role> roles = getSystemRoles(this.config);
         if (roles != null) {
@@ -131,10 +155,12 @@ public abstract class BaseServer {
         loginConfig.setLoginPage("/WEB-INF/login.jsp");
         loginConfig.setErrorPage("/WEB-INF/error.jsp");
         context.setLoginConfig(loginConfig);
-        context.getPipeline().addValve(new FormAuthenticator());
+        context.getPipeline().addValve(getAuthenticator(this.config, realm));
 
         context.getServletContext().setAttribute(ConfigFactory.CONFIG_FACTORY_CONFIG, this.config);
         context.getServletContext().setAttribute(DaoFactoryFactory.DAO_FACTORY_CONFIG, daoFactory);
+        context.getServletContext().setAttribute(SqlProfileFilter.STATS_HEADER_ATTRIBUTE,
+                this.config.getBoolean(SERVER_DEVELOPMENT_MODE));
         context.getServletContext().setAttribute(InstrumentedFilter.REGISTRY_ATTRIBUTE, this.metricRegistry);
         context.getServletContext().setAttribute(MetricsServlet.METRICS_REGISTRY, this.metricRegistry);
         context.getServletContext().setAttribute(HealthCheckServlet.HEALTH_CHECK_REGISTRY, this.healthCheckRegistry);
@@ -142,7 +168,7 @@ public abstract class BaseServer {
         context.addMimeMapping("css", "text/css");
         context.addMimeMapping("js", "application/javascript");
 
-        launchBackgroundTasks(this.config, this.metricRegistry, this.healthCheckRegistry);
+        launchBackgroundTasks(this.config, this.metricRegistry, this.healthCheckRegistry, daoFactory);
     }
 
     /**
@@ -416,6 +442,53 @@ public abstract class BaseServer {
         context.addFilterMap(metricsFilterMap);
     }
 
+    /**
+     * @param config
+     *            the system configuration properties
+     * @param realm
+     *            the security realm used to authenticate users
+     * 
+     * @return the valve used to authenticate users, which keeps the authenticated user in a signed token cookie when
+     *         token authentication is enabled, or in a container session otherwise
+     */
+    protected AuthenticatorBase getAuthenticator(final Config config, final SecurityRealm realm) {
+        if (!config.getBoolean(SERVER_AUTH_TOKEN_ENABLED))
+            return new FormAuthenticator();
+
+        final TokenSigner signer = new TokenSigner(config.getString(SERVER_AUTH_TOKEN_KEYS),
+                config.getLong(SERVER_AUTH_TOKEN_TTL), config.getLong(SERVER_AUTH_TOKEN_MAX_AGE));
+        final boolean secure = !config.getBoolean(SERVER_INSECURE_MODE) && !config.getBoolean(SERVER_DEVELOPMENT_MODE);
+        return new TokenAuthenticator(signer, realm, secure);
+    }
+
+    /**
+     * Add the valve writing the access log, which must be added before the authenticator so that the time taken to
+     * authenticate each request is included.
+     * 
+     * @param config
+     *            the system configuration properties
+     * @param context
+     *            the context to which the access log valve will be added
+     */
+    protected void addAccessLog(final Config config, final Context context) {
+        final String accessLogFile = config.getString(SERVER_ACCESS_LOG_FILE);
+        if (StringUtils.isBlank(accessLogFile))
+            return;
+
+        File file = new File(accessLogFile);
+        if (!file.isAbsolute() && config.getBoolean(SERVER_DEVELOPMENT_MODE))
+            file = new File("target", accessLogFile);
+        try {
+            if (file.getParentFile() != null)
+                file.getParentFile().mkdirs();
+            final AccessLog accessLog = new AccessLog(new OutputStreamWriter(new FileOutputStream(file, true),
+                    StandardCharsets.UTF_8));
+            context.getPipeline().addValve(new AsyncAccessLogValve(accessLog));
+        } catch (final IOException openFailed) {
+            log.error("Failed to open the access log: " + file.getAbsolutePath(), openFailed);
+        }
+    }
+
     /**
      * @param config
      *            the system configuration properties
@@ -473,11 +546,14 @@ public abstract class BaseServer {
      *            the registry of metrics used to track system performance information
      * @param healthCheckRegistry
      *            the registry of system health and status information
+     * @param daoFactory
+     *            used to communicate with the back-end database
      * 
      * @return a {@link Collection} of the background tasks to be scheduled within this system
      */
     public abstract Collection<BackgroundTask> getBackgroundTasks(final Config config,
-            final MetricRegistry metricRegistry, final HealthCheckRegistry healthCheckRegistry);
+            final MetricRegistry metricRegistry, final HealthCheckRegistry healthCheckRegistry,
+            final DaoFactory daoFactory);
 
     /**
      * Launches background tasks that do work for this system.
@@ -488,23 +564,29 @@ public abstract class BaseServer {
      *            the registry of metrics used to track system performance information
      * @param healthCheckRegistry
      *            the registry of system health and status information
+     * @param daoFactory
+     *            used to communicate with the back-end database
      */
     protected void launchBackgroundTasks(final Config config, final MetricRegistry metricRegistry,
-            final HealthCheckRegistry healthCheckRegistry) {
-        final ScheduledExecutorService backgroundTaskRunner = Executors.newScheduledThreadPool(3);
+            final HealthCheckRegistry healthCheckRegistry, final DaoFactory daoFactory) {
+        final ScheduledExecutorService backgroundTaskRunner = Executors.newScheduledThreadPool(4);
 
         final BackgroundTask systemHealth = new SystemHealthCheckTask(this.config, this.metricRegistry,
                 this.healthCheckRegistry);
         final BackgroundTask memoryUsage = new MemoryUsageLoggingTask(this.config, this.metricRegistry,
                 this.healthCheckRegistry);
+        final BackgroundTask activityRollup = new ActivityRollupTask(this.config, this.metricRegistry,
+                this.healthCheckRegistry, daoFactory);
 
-        final Collection<BackgroundTask> childTasks = getBackgroundTasks(config, metricRegistry, healthCheckRegistry);
+        final Collection<BackgroundTask> childTasks = getBackgroundTasks(config, metricRegistry, healthCheckRegistry,
+                daoFactory);
 
         final List<BackgroundTask> tasks = new LinkedList<>();
         if (childTasks != null)
             tasks.addAll(childTasks);
         tasks.add(systemHealth);
         tasks.add(memoryUsage);
+        tasks.add(activityRollup);
 
         for (final BackgroundTask task : tasks)
             task.schedule(backgroundTaskRunner);
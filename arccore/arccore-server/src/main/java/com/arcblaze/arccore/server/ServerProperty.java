@@ -26,6 +26,16 @@ public enum ServerProperty implements Property {
     SERVER_KEYSTORE_FILE("conf/server.jks"),
     /** The password to use when accessing the key store (no default). */
     SERVER_KEYSTORE_PASS(""),
+    /** Whether users are authenticated with a signed token cookie instead of a container session. */
+    SERVER_AUTH_TOKEN_ENABLED("false"),
+    /** The comma-separated keys used to sign authentication tokens, the first of which signs new tokens. */
+    SERVER_AUTH_TOKEN_KEYS(""),
+    /** The number of milliseconds for which an authentication token remains valid. */
+    SERVER_AUTH_TOKEN_TTL("3600000"),
+    /** The number of milliseconds after a user logs in at which their authentication tokens all expire. */
+    SERVER_AUTH_TOKEN_MAX_AGE("43200000"),
+    /** The file to which the access log is written, or blank to disable the access log. */
+    SERVER_ACCESS_LOG_FILE("logs/access.log"),
 
     ;
 
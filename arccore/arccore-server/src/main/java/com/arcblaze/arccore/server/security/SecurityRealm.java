@@ -1,9 +1,13 @@
 package com.arcblaze.arccore.server.security;
 
+import static org.apache.commons.lang.Validate.notNull;
+
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.catalina.realm.GenericPrincipal;
 import org.apache.catalina.realm.RealmBase;
@@ -13,18 +17,67 @@ import org.slf4j.LoggerFactory;
 import com.arcblaze.arccore.common.model.Password;
 import com.arcblaze.arccore.common.model.Role;
 import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DaoFactory;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.cache.EntityCache;
 import com.arcblaze.arccore.db.dao.RoleDao;
 import com.arcblaze.arccore.db.dao.UserDao;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcUserDao;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 /**
- * Provides an implementation of the security realm used to authenticate users in the system.
+ * Provides an implementation of the security realm used to authenticate users in the system. The realm is shared by
+ * all of the request threads, so no state is kept between the steps of an authentication. The accounts that are
+ * looked up, including logins that do not match any active user, are held in the principal entity cache, which is
+ * invalidated by the user and role DAOs whenever the underlying data changes.
  */
 public class SecurityRealm extends RealmBase {
     /** This will be used to log messages. */
     private final static Logger log = LoggerFactory.getLogger(SecurityRealm.class);
 
+    /** The number of milliseconds after which a login that did not match any active user is looked up again. */
+    public final static long NEGATIVE_TTL = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * An account that has been retrieved from the database, or the absence of one when {@code user} is {@code null}.
+     */
+    protected static class Account {
+        /** The user, including the password and roles, or {@code null} if no active user has the login. */
+        private final User user;
+
+        /** The names of the roles granted to the user. */
+        private final List<String> roleNames;
+
+        /** The time at which this account is no longer used, in addition to the expiration of the entity cache. */
+        private final long expires;
+
+        /**
+         * @param user
+         *            the user, including the password and roles, or {@code null} if no active user has the login
+         * @param roleNames
+         *            the names of the roles granted to the user
+         * @param expires
+         *            the time at which this account is no longer used
+         */
+        public Account(final User user, final List<String> roleNames, final long expires) {
+            this.user = user;
+            this.roleNames = Collections.unmodifiableList(roleNames);
+            this.expires = expires;
+        }
+
+        /**
+         * @return a new principal for the user, which does not share the user object with any other principal
+         */
+        public GenericPrincipal getPrincipal() {
+            final User copy = new User(this.user);
+            // Note that we use the user's login in the principal in case they logged in with their email.
+            return new GenericPrincipal(copy.getLogin(), copy.getHashedPass(), this.roleNames, copy);
+        }
+    }
+
     /** The configured name of this realm. */
     private final String realmName;
 
@@ -34,19 +87,28 @@ public class SecurityRealm extends RealmBase {
     /** Used to perform password hashing. */
     private final Password password = new Password();
 
-    /** The user object that has been retrieved from the database. */
-    private User user;
+    /** Tracks the number and duration of the login attempts. */
+    private final Timer logins;
+
+    /** Tracks the number of login attempts that were rejected. */
+    private final Meter failures;
 
     /**
      * @param realmName
      *            the name of the realm
      * @param daoFactory
      *            used to retrieve user and role information from the database
+     * @param metricRegistry
+     *            the registry into which the login metrics will be added
      */
-    public SecurityRealm(final String realmName, final DaoFactory daoFactory) {
+    public SecurityRealm(final String realmName, final DaoFactory daoFactory, final MetricRegistry metricRegistry) {
+        notNull(daoFactory, "Invalid null DAO factory");
+        notNull(metricRegistry, "Invalid null metric registry");
+
         this.realmName = realmName;
         this.daoFactory = daoFactory;
-        setDigest(Password.HASH_ALGORITHM);
+        this.logins = metricRegistry.timer("security.logins");
+        this.failures = metricRegistry.meter("security.logins.failed");
     }
 
     /**
@@ -61,50 +123,111 @@ public class SecurityRealm extends RealmBase {
      * {@inheritDoc}
      */
     @Override
-    protected String getPassword(final String username) {
-        final UserDao dao = this.daoFactory.getUserDao();
-        try {
-            this.user = dao.getLogin(username);
-            if (this.user == null)
-                return null;
-
-            return this.user.getHashedPass();
-        } catch (final DatabaseException databaseException) {
-            log.error("Failed to retrieve user password.", databaseException);
+    public Principal authenticate(final String username, final String credentials) {
+        try (final Timer.Context timerContext = this.logins.time()) {
+            final Account account = username == null ? null : getAccount(username);
+            if (account != null && credentials != null && !credentials.isEmpty()) {
+                final String hashed = this.password.hash(credentials, account.user.getSalt());
+                if (hashed.equalsIgnoreCase(account.user.getHashedPass()))
+                    return account.getPrincipal();
+            }
+            this.failures.mark();
+            return null;
         }
-        return null;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected Principal getPrincipal(final String username) {
-        if (this.user != null) {
-            final RoleDao dao = this.daoFactory.getRoleDao();
-            try {
-                final Set<Role> roles = dao.get(this.user.getId());
-                List<String> roleNames = new ArrayList<>(roles.size() + 1);
-                roleNames.add("USER"); // Everyone gets the USER role.
-                for (final Role role : roles)
-                    roleNames.add(role.getName());
-                this.user.setRoles(roles);
-
-                // Note that we use the user's login in the principal in case
-                // they logged in with their email.
-                return new GenericPrincipal(this.user.getLogin(), this.user.getHashedPass(), roleNames, this.user);
-            } catch (final DatabaseException databaseException) {
-                log.error("Failed to retrieve user roles.", databaseException);
-            }
-        }
-        return null;
+    protected String getPassword(final String username) {
+        final Account account = getAccount(username);
+        return account == null ? null : account.user.getHashedPass();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected String digest(String credentials) {
-        return this.password.hash(credentials, this.user.getSalt());
+    protected Principal getPrincipal(final String username) {
+        final Account account = getAccount(username);
+        return account == null ? null : account.getPrincipal();
+    }
+
+    /**
+     * @param user
+     *            the user held by a principal that was authenticated earlier, such as one carried by a signed token
+     * 
+     * @return a new principal holding the current roles of the same user, or {@code null} if the user no longer exists,
+     *         is no longer active, or the account could not be retrieved
+     */
+    public GenericPrincipal reload(final User user) {
+        notNull(user, "Invalid null user");
+
+        final Account account = user.getLogin() == null ? null : getAccount(user.getLogin());
+        if (account == null || !account.user.getId().equals(user.getId()))
+            return null;
+        return account.getPrincipal();
+    }
+
+    /**
+     * @return the entity cache holding the accounts keyed by login, or {@code null} if accounts are not cached
+     */
+    protected EntityCache<String, Account> getCache() {
+        final ConnectionManager connectionManager = this.daoFactory.getConnectionManager();
+        if (connectionManager == null)
+            return null;
+        final EntityCache<String, Account> cache = connectionManager.getCache(JdbcUserDao.PRINCIPAL_CACHE);
+        return cache.isEnabled() ? cache : null;
+    }
+
+    /**
+     * @return the current time in milliseconds, used to expire the cached logins that did not match any active user
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @param username
+     *            the login or email address provided by the user
+     * 
+     * @return the account of the active user with the provided login, or {@code null} if there is no such user or the
+     *         account could not be retrieved
+     */
+    protected Account getAccount(final String username) {
+        final EntityCache<String, Account> cache = getCache();
+        final Account cached = cache == null ? null : cache.get(username);
+        if (cached != null && cached.expires > currentTimeMillis())
+            return cached.user == null ? null : cached;
+
+        final long stamp = cache == null ? 0 : cache.stamp();
+        try {
+            final UserDao userDao = this.daoFactory.getUserDao();
+            final User user = userDao.getLogin(username);
+            if (user == null) {
+                if (cache != null) {
+                    final long expires = currentTimeMillis() + NEGATIVE_TTL;
+                    cache.put(stamp, null, username, new Account(null, Collections.<String> emptyList(), expires));
+                }
+                return null;
+            }
+
+            final RoleDao roleDao = this.daoFactory.getRoleDao();
+            final Set<Role> roles = roleDao.get(user.getId());
+            final List<String> roleNames = new ArrayList<>(roles.size() + 1);
+            roleNames.add("USER"); // Everyone gets the USER role.
+            for (final Role role : roles)
+                roleNames.add(role.getName());
+            user.setRoles(roles);
+
+            final Account account = new Account(user, roleNames, Long.MAX_VALUE);
+            if (cache != null)
+                cache.put(stamp, user.getCompanyId(), username, account);
+            return account;
+        } catch (final DatabaseException databaseException) {
+            log.error("Failed to retrieve user account.", databaseException);
+        }
+        return null;
     }
 }
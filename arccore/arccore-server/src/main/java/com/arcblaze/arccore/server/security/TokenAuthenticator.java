@@ -0,0 +1,164 @@
+package com.arcblaze.arccore.server.security;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.IOException;
+import java.security.Principal;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.authenticator.FormAuthenticator;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.deploy.LoginConfig;
+import org.apache.catalina.realm.GenericPrincipal;
+
+import com.arcblaze.arccore.common.model.User;
+
+/**
+ * An authenticator that keeps the authenticated user in a signed token cookie instead of a container session, so
+ * that any server behind a load balancer can authenticate a request without sharing session state. Users still log in
+ * through the login resource and are sent to the configured login page when they are not authenticated, and the roles
+ * carried in the token are checked against the existing security constraints.
+ * <p>
+ * Before a token is renewed the user is reloaded through the security realm, so a user that was removed or made
+ * inactive is logged out, and role changes are picked up, within half of the token time to live. Logging out removes
+ * the cookie from the browser, but a copied token remains valid until it expires.
+ */
+public class TokenAuthenticator extends FormAuthenticator {
+    /** The name of the cookie holding the signed token. */
+    public final static String COOKIE_NAME = "arcblaze-auth";
+
+    /** Used to create and verify the signed tokens. */
+    private final TokenSigner signer;
+
+    /** Used to reload the users whose tokens are renewed. */
+    private final SecurityRealm realm;
+
+    /** Whether the cookie is only sent over secure connections. */
+    private final boolean secure;
+
+    /**
+     * @param signer
+     *            used to create and verify the signed tokens
+     * @param realm
+     *            used to reload the users whose tokens are renewed
+     * @param secure
+     *            whether the cookie is only sent over secure connections
+     */
+    public TokenAuthenticator(final TokenSigner signer, final SecurityRealm realm, final boolean secure) {
+        notNull(signer, "Invalid null token signer");
+        notNull(realm, "Invalid null security realm");
+
+        this.signer = signer;
+        this.realm = realm;
+        this.secure = secure;
+
+        // The principal is carried by the token, so it is never stored in a session.
+        setCache(false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean authenticate(final Request request, final HttpServletResponse response, final LoginConfig config)
+            throws IOException {
+        final long now = currentTimeMillis();
+        final TokenSigner.SignedToken token = this.signer.verify(getToken(request), now);
+        if (token == null) {
+            forwardToLoginPage(request, response, config);
+            return false;
+        }
+
+        GenericPrincipal principal = token.getPrincipal();
+        if (isRenewable(token, now)) {
+            principal = this.realm.reload((User) principal.getUserPrincipal());
+            if (principal == null) {
+                // The user was removed or made inactive since the token was signed.
+                addCookie(response, "", 0);
+                forwardToLoginPage(request, response, config);
+                return false;
+            }
+            addCookie(response, this.signer.sign(principal, token.getIssued(), now), this.signer.getTtl());
+        }
+
+        request.setAuthType(getAuthMethod());
+        request.setUserPrincipal(principal);
+        return true;
+    }
+
+    /**
+     * @param token
+     *            the verified token provided with the request
+     * @param now
+     *            the current time
+     * 
+     * @return whether the token is replaced, which happens when it was signed with an old key, or is past half of its
+     *         lifetime and has not yet reached the maximum age, so that active users stay logged in
+     */
+    protected boolean isRenewable(final TokenSigner.SignedToken token, final long now) {
+        if (!token.isCurrentKey())
+            return true;
+        return token.getExpires() - now < this.signer.getTtl() / 2
+                && token.getExpires() < token.getIssued() + this.signer.getMaxAge();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register(final Request request, final HttpServletResponse response, final Principal principal,
+            final String authType, final String username, final String password) {
+        super.register(request, response, principal, authType, username, password);
+
+        // Invoked with a null principal when the user logs out.
+        if (principal instanceof GenericPrincipal)
+            addCookie(response, this.signer.sign((GenericPrincipal) principal, currentTimeMillis()),
+                    this.signer.getTtl());
+        else
+            addCookie(response, "", 0);
+    }
+
+    /**
+     * @return the current time in milliseconds, used to sign and verify the tokens
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @param request
+     *            the request from the client
+     * 
+     * @return the value of the token cookie in the request, or {@code null} if there is no token
+     */
+    protected String getToken(final Request request) {
+        final Cookie[] cookies = request.getCookies();
+        if (cookies != null)
+            for (final Cookie cookie : cookies)
+                if (COOKIE_NAME.equals(cookie.getName()))
+                    return cookie.getValue();
+        return null;
+    }
+
+    /**
+     * @param response
+     *            the response to the client
+     * @param token
+     *            the signed token to store in the cookie, or an empty string to remove the cookie
+     * @param ttl
+     *            the number of milliseconds for which the cookie is kept, or 0 to remove the cookie
+     */
+    protected void addCookie(final HttpServletResponse response, final String token, final long ttl) {
+        if (response == null)
+            return;
+
+        final Cookie cookie = new Cookie(COOKIE_NAME, token);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(this.secure);
+        cookie.setMaxAge((int) (ttl / 1000));
+        response.addCookie(cookie);
+    }
+}
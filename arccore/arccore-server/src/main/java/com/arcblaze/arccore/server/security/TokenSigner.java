@@ -0,0 +1,309 @@
+package com.arcblaze.arccore.server.security;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notEmpty;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.catalina.realm.GenericPrincipal;
+import org.apache.commons.lang.StringUtils;
+
+import com.arcblaze.arccore.common.model.Role;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.common.util.UrlSafeBase64;
+
+/**
+ * Creates and verifies the signed tokens used to authenticate users without a container session. A token carries the
+ * id, company, login and roles of the authenticated user along with the times at which the user logged in and at which
+ * the token expires, and is signed with an HMAC so that it can be verified on each request without accessing the
+ * database. Renewed tokens keep the time at which the user logged in, so no token outlives the configured maximum age
+ * no matter how often it is renewed.
+ * <p>
+ * New tokens are signed with the first of the configured keys, while tokens signed with any of the keys are accepted.
+ * Keys are rotated by adding a new key to the front of the list, and removing the oldest key once the tokens it signed
+ * have expired.
+ */
+public class TokenSigner {
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The algorithm used to sign the tokens. */
+    public final static String ALGORITHM = "HmacSHA256";
+
+    /** The role granted to every authenticated user, which is not included in the tokens. */
+    private final static String USER_ROLE = "USER";
+
+    /** The number of values in the payload of a token. */
+    private final static int PAYLOAD_SIZE = 6;
+
+    /**
+     * A token that has been verified.
+     */
+    public static class SignedToken {
+        private final GenericPrincipal principal;
+        private final long issued;
+        private final long expires;
+        private final boolean currentKey;
+
+        /**
+         * @param principal
+         *            the principal carried by the token
+         * @param issued
+         *            the time at which the user logged in
+         * @param expires
+         *            the time at which the token expires
+         * @param currentKey
+         *            whether the token was signed with the key used to sign new tokens
+         */
+        public SignedToken(final GenericPrincipal principal, final long issued, final long expires,
+                final boolean currentKey) {
+            this.principal = principal;
+            this.issued = issued;
+            this.expires = expires;
+            this.currentKey = currentKey;
+        }
+
+        /**
+         * @return the principal carried by the token
+         */
+        public GenericPrincipal getPrincipal() {
+            return this.principal;
+        }
+
+        /**
+         * @return the time at which the user logged in
+         */
+        public long getIssued() {
+            return this.issued;
+        }
+
+        /**
+         * @return the time at which the token expires
+         */
+        public long getExpires() {
+            return this.expires;
+        }
+
+        /**
+         * @return whether the token was signed with the key used to sign new tokens
+         */
+        public boolean isCurrentKey() {
+            return this.currentKey;
+        }
+    }
+
+    /** The keys used to verify tokens, the first of which is used to sign new tokens. */
+    private final List<SecretKeySpec> keys;
+
+    /** The number of milliseconds for which a new token remains valid. */
+    private final long ttl;
+
+    /** The number of milliseconds after the user logged in at which all of the tokens issued to them expire. */
+    private final long maxAge;
+
+    /**
+     * @param keys
+     *            the keys used to verify tokens, the first of which is used to sign new tokens
+     * @param ttl
+     *            the number of milliseconds for which a new token remains valid
+     * @param maxAge
+     *            the number of milliseconds after the user logged in at which all of the tokens issued to them expire
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     */
+    public TokenSigner(final Collection<String> keys, final long ttl, final long maxAge) {
+        notEmpty(keys, "Invalid empty signing keys");
+        isTrue(ttl > 0, "Invalid token time to live: " + ttl);
+        isTrue(maxAge >= ttl, "Invalid token maximum age: " + maxAge);
+
+        this.keys = new ArrayList<>(keys.size());
+        for (final String key : keys) {
+            notEmpty(key, "Invalid blank signing key");
+            this.keys.add(new SecretKeySpec(key.getBytes(UTF8), ALGORITHM));
+        }
+        this.ttl = ttl;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * @param keys
+     *            the comma-separated keys used to verify tokens, the first of which is used to sign new tokens
+     * @param ttl
+     *            the number of milliseconds for which a new token remains valid
+     * @param maxAge
+     *            the number of milliseconds after the user logged in at which all of the tokens issued to them expire
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     */
+    public TokenSigner(final String keys, final long ttl, final long maxAge) {
+        this(Arrays.asList(StringUtils.stripAll(StringUtils.split(StringUtils.defaultString(keys), ","))), ttl,
+                maxAge);
+    }
+
+    /**
+     * @return the number of milliseconds for which a new token remains valid
+     */
+    public long getTtl() {
+        return this.ttl;
+    }
+
+    /**
+     * @return the number of milliseconds after the user logged in at which all of the tokens issued to them expire
+     */
+    public long getMaxAge() {
+        return this.maxAge;
+    }
+
+    /**
+     * @param principal
+     *            the principal of the user that just logged in, holding the authenticated {@link User}
+     * @param now
+     *            the current time, at which the user logged in
+     * 
+     * @return a new token carrying the principal, signed with the current key
+     * 
+     * @throws IllegalArgumentException
+     *             if the principal does not hold a user
+     */
+    public String sign(final GenericPrincipal principal, final long now) {
+        return sign(principal, now, now);
+    }
+
+    /**
+     * @param principal
+     *            the authenticated principal, holding the authenticated {@link User}
+     * @param issued
+     *            the time at which the user logged in, which is kept when a token is renewed
+     * @param now
+     *            the current time
+     * 
+     * @return a new token carrying the principal, signed with the current key, which expires after the time to live
+     *         or once the maximum age is reached, whichever comes first
+     * 
+     * @throws IllegalArgumentException
+     *             if the principal does not hold a user
+     */
+    public String sign(final GenericPrincipal principal, final long issued, final long now) {
+        notNull(principal, "Invalid null principal");
+        isTrue(principal.getUserPrincipal() instanceof User, "Invalid principal without a user");
+
+        final User user = (User) principal.getUserPrincipal();
+        final List<String> roles = new ArrayList<>(Arrays.asList(principal.getRoles()));
+        roles.remove(USER_ROLE);
+
+        final long expires = Math.min(now + this.ttl, issued + this.maxAge);
+        final String payload = encodePayload(String.valueOf(user.getId()), String.valueOf(user.getCompanyId()),
+                user.getLogin(), StringUtils.join(roles, ","), String.valueOf(issued), String.valueOf(expires));
+        return payload + "." + UrlSafeBase64.encode(hmac(this.keys.get(0), payload));
+    }
+
+    /**
+     * @param token
+     *            the token to verify, possibly {@code null}
+     * @param now
+     *            the current time
+     * 
+     * @return the verified token, or {@code null} if the token is missing, invalid or expired
+     */
+    public SignedToken verify(final String token, final long now) {
+        if (StringUtils.isBlank(token) || token.indexOf('.') < 0)
+            return null;
+
+        final String payload = StringUtils.substringBeforeLast(token, ".");
+        final byte[] signature = StringUtils.substringAfterLast(token, ".").getBytes(UTF8);
+        for (int k = 0; k < this.keys.size(); k++) {
+            // Compared in constant time so that the signature cannot be guessed from the response times.
+            final String expected = UrlSafeBase64.encode(hmac(this.keys.get(k), payload));
+            if (!MessageDigest.isEqual(signature, expected.getBytes(UTF8)))
+                continue;
+
+            try {
+                final String[] values = decodePayload(payload);
+                final long issued = Long.parseLong(values[4]);
+                final long expires = Long.parseLong(values[5]);
+                if (expires <= now || issued + this.maxAge <= now)
+                    return null;
+
+                final User user = new User().setId(Integer.parseInt(values[0]))
+                        .setCompanyId(Integer.parseInt(values[1])).setLogin(values[2]).setActive(true);
+                final List<String> roleNames = new ArrayList<>();
+                roleNames.add(USER_ROLE); // Everyone gets the USER role.
+                for (final String role : StringUtils.split(values[3], ",")) {
+                    roleNames.add(role);
+                    user.addRoles(new Role(role));
+                }
+                final GenericPrincipal principal = new GenericPrincipal(user.getLogin(), null, roleNames, user);
+                return new SignedToken(principal, issued, expires, k == 0);
+            } catch (final IllegalArgumentException invalid) {
+                // NumberFormatException is an IllegalArgumentException.
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] hmac(final SecretKeySpec key, final String payload) {
+        try {
+            // Mac instances are not thread-safe, and are cheap to create.
+            final Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(UTF8));
+        } catch (final GeneralSecurityException badAlgorithm) {
+            // Not expecting this to happen, every Java platform supports HmacSHA256.
+            throw new IllegalStateException("Failed to sign token", badAlgorithm);
+        }
+    }
+
+    /**
+     * @param values
+     *            the values to include in the payload of a token
+     * 
+     * @return the URL-safe encoding of the provided values, each prefixed with its length so that the values may
+     *         contain any characters
+     */
+    protected static String encodePayload(final String... values) {
+        final StringBuilder builder = new StringBuilder();
+        for (final String value : values)
+            builder.append(value.length()).append(':').append(value);
+        return UrlSafeBase64.encode(builder.toString().getBytes(UTF8));
+    }
+
+    /**
+     * @param payload
+     *            the payload of a token, as created by {@link #encodePayload(String...)}
+     * 
+     * @return the values in the payload
+     * 
+     * @throws IllegalArgumentException
+     *             if the payload is invalid
+     */
+    protected static String[] decodePayload(final String payload) {
+        final String decoded = new String(UrlSafeBase64.decode(payload), UTF8);
+        final List<String> values = new ArrayList<>(PAYLOAD_SIZE);
+        int position = 0;
+        try {
+            while (position < decoded.length()) {
+                final int colon = decoded.indexOf(':', position);
+                final int length = Integer.parseInt(decoded.substring(position, colon));
+                values.add(decoded.substring(colon + 1, colon + 1 + length));
+                position = colon + 1 + length;
+            }
+        } catch (final NumberFormatException | IndexOutOfBoundsException badPayload) {
+            throw new IllegalArgumentException("Invalid token payload", badPayload);
+        }
+        if (values.size() != PAYLOAD_SIZE)
+            throw new IllegalArgumentException("Invalid token payload");
+        return values.toArray(new String[PAYLOAD_SIZE]);
+    }
+}
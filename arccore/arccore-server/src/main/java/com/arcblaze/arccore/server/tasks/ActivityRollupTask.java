@@ -0,0 +1,70 @@
+package com.arcblaze.arccore.server.tasks;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.db.DaoFactory;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+
+/**
+ * Responsible for periodically maintaining the daily and monthly roll-ups of the active user counts, active company
+ * counts and revenue totals that are displayed on the system statistics pages.
+ */
+public class ActivityRollupTask extends BackgroundTask {
+    private final static Logger log = LoggerFactory.getLogger(ActivityRollupTask.class);
+
+    /** Used to communicate with the back-end database. */
+    private final DaoFactory daoFactory;
+
+    /**
+     * @param config
+     *            the system configuration information
+     * @param metricRegistry
+     *            the registry of metrics used to track system performance information
+     * @param healthCheckRegistry
+     *            the registry of system health and status information
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     */
+    public ActivityRollupTask(final Config config, final MetricRegistry metricRegistry,
+            final HealthCheckRegistry healthCheckRegistry, final DaoFactory daoFactory) {
+        super(config, metricRegistry, healthCheckRegistry);
+
+        notNull(daoFactory, "Invalid null DAO factory");
+        this.daoFactory = daoFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void schedule(final ScheduledExecutorService executor) {
+        executor.scheduleAtFixedRate(this, 2, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process() throws BackgroundTaskException {
+        final Date today = new Date();
+        try {
+            final int companies = this.daoFactory.getCompanyActivityDao().rollUp(today);
+            this.daoFactory.getUserActivityDao().rollUp(today);
+            final int days = this.daoFactory.getTransactionDao().rollUp();
+
+            log.info("Rolled up activity for {} active companies and revenue for {} days", companies, days);
+        } catch (final DatabaseException dbException) {
+            throw new BackgroundTaskException("Failed to roll up system activity", dbException);
+        }
+    }
+}
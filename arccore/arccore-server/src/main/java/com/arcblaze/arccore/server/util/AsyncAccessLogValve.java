@@ -0,0 +1,65 @@
+package com.arcblaze.arccore.server.util;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import com.arcblaze.arccore.common.log.AccessLog;
+
+/**
+ * Adds an entry to the {@link AccessLog} for each completed web request, including the matched route, response status,
+ * latency, authenticated user and number of bytes written. The entries are written asynchronously, so the request
+ * thread only records the details of the request.
+ */
+public class AsyncAccessLogValve extends ValveBase {
+    /** The access log to which the entries are added. */
+    private final AccessLog accessLog;
+
+    /**
+     * @param accessLog
+     *            the access log to which the entries are added, which is closed when this valve is stopped
+     */
+    public AsyncAccessLogValve(final AccessLog accessLog) {
+        super(true);
+        notNull(accessLog, "Invalid null access log");
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invoke(final Request request, final Response response) throws IOException, ServletException {
+        final long timestamp = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        try {
+            getNext().invoke(request, response);
+        } finally {
+            final long latency = (System.nanoTime() - start) / 1000000;
+            final Object route = request.getAttribute(AccessLog.ROUTE_ATTRIBUTE);
+            this.accessLog.log(new AccessLog.Entry(timestamp, request.getMethod(), route != null ? route.toString()
+                    : request.getRequestURI(), response.getStatus(), latency, request.getRemoteUser(), response
+                    .getBytesWritten(false)));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        super.stopInternal();
+        try {
+            this.accessLog.close();
+        } catch (final IOException closeFailed) {
+            throw new LifecycleException("Failed to close the access log", closeFailed);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.arcblaze.arccore.server.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.arcblaze.arccore.common.log.AsyncLogWriter;
+
+/**
+ * A replacement for the JUL {@code ConsoleHandler} used by the embedded tomcat, which writes the log records to the
+ * standard error stream through an {@link AsyncLogWriter} so that request threads never wait on the console. The
+ * records are formatted on the writer thread with a {@link TomcatLogFormatter}, unless another formatter is
+ * configured, and warnings and errors are always kept when the log is under pressure.
+ */
+public class AsyncConsoleHandler extends Handler {
+    /** The maximum number of records waiting to be written. */
+    public final static int CAPACITY = 8192;
+
+    /** Writes the records to the standard error stream. */
+    private final AsyncLogWriter<LogRecord> writer;
+
+    /**
+     * Default constructor, configured from the {@code level} and {@code formatter} properties of this handler in the
+     * logging configuration.
+     */
+    public AsyncConsoleHandler() {
+        final LogManager manager = LogManager.getLogManager();
+        final String prefix = getClass().getName();
+        setLevel(Level.parse(StringUtils.defaultIfEmpty(manager.getProperty(prefix + ".level"), "INFO")));
+        setFormatter(createFormatter(manager.getProperty(prefix + ".formatter")));
+
+        // The standard error stream stays open when the handler is closed.
+        final FilterOutputStream stderr = new FilterOutputStream(System.err) {
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+                this.out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        this.writer = new AsyncLogWriter<LogRecord>("console-log", CAPACITY, new OutputStreamWriter(stderr,
+                Charset.defaultCharset())) {
+            @Override
+            protected void format(final LogRecord record, final StringBuilder out) {
+                out.append(getFormatter().format(record));
+            }
+        };
+    }
+
+    private Formatter createFormatter(final String className) {
+        if (StringUtils.isNotBlank(className)) {
+            try {
+                return (Formatter) ClassLoader.getSystemClassLoader().loadClass(className.trim()).newInstance();
+            } catch (final ReflectiveOperationException | ClassCastException badFormatter) {
+                reportError("Invalid log formatter " + className, badFormatter, ErrorManager.FORMAT_FAILURE);
+            }
+        }
+        return new TomcatLogFormatter();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(final LogRecord record) {
+        if (!isLoggable(record))
+            return;
+
+        // The source class is found from the stack of the logging thread, so it must be found before the hand-off.
+        record.getSourceClassName();
+        this.writer.log(record, record.getLevel().intValue() >= Level.WARNING.intValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        // Records are flushed by the writer thread after each batch.
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        try {
+            this.writer.close();
+        } catch (final IOException closeFailed) {
+            reportError("Failed to close the console log", closeFailed, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+}
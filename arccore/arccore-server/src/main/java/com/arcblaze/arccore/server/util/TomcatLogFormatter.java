@@ -9,7 +9,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 
 /**
- * Performs formatting of log messages from the embedded tomcat.
+ * Performs formatting of log messages from the embedded tomcat. Instances are not thread-safe, which is fine for the
+ * {@link AsyncConsoleHandler} since it only formats records on its single writer thread.
  */
 public class TomcatLogFormatter extends Formatter {
     private final Date date = new Date();
@@ -0,0 +1,159 @@
+package com.arcblaze.arccore.server.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.catalina.realm.GenericPrincipal;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.common.model.Password;
+import com.arcblaze.arccore.common.model.Role;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.DaoFactory;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.util.TestDatabase;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Perform testing on the caching of accounts within the security realm.
+ */
+public class SecurityRealmTest {
+    /**
+     * A security realm whose clock is controlled by the test.
+     */
+    protected static class TestRealm extends SecurityRealm {
+        /** The current time of the realm. */
+        private long now = System.currentTimeMillis();
+
+        /**
+         * @param daoFactory
+         *            used to retrieve user and role information from the database
+         */
+        public TestRealm(final DaoFactory daoFactory) {
+            super("test", daoFactory, new MetricRegistry());
+        }
+
+        /**
+         * @param millis
+         *            the number of milliseconds by which the clock of the realm will be advanced
+         */
+        public void advance(final long millis) {
+            this.now += millis;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected long currentTimeMillis() {
+            return this.now;
+        }
+    }
+
+    protected static User addUser(final DaoFactory daoFactory, final String password) throws DatabaseException {
+        final Company company = new Company().setName("company").setActive(true);
+        daoFactory.getCompanyDao().add(company);
+
+        final User user = new User().setCompanyId(company.getId()).setLogin("user").setSalt("salt")
+                .setHashedPass(new Password().hash(password, "salt")).setEmail("user@example.com")
+                .setFirstName("first").setLastName("last").setActive(true);
+        daoFactory.getUserDao().add(user);
+        return user;
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void testCachedSuccess() throws DatabaseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = Mockito.spy(database.getDaoFactory());
+            addUser(daoFactory, "password");
+            Mockito.reset(daoFactory);
+            final TestRealm realm = new TestRealm(daoFactory);
+
+            final GenericPrincipal first = (GenericPrincipal) realm.authenticate("user", "password");
+            assertNotNull(first);
+            assertEquals("user", first.getName());
+            assertTrue(first.hasRole("USER"));
+
+            // The account is read from the cache, but each principal has its own copy of the user.
+            final GenericPrincipal second = (GenericPrincipal) realm.authenticate("user", "password");
+            assertNotNull(second);
+            assertFalse(first.getUserPrincipal() == second.getUserPrincipal());
+            Mockito.verify(daoFactory, Mockito.times(1)).getUserDao();
+
+            // Wrong passwords are checked against the cached account.
+            assertNull(realm.authenticate("user", "wrong"));
+            Mockito.verify(daoFactory, Mockito.times(1)).getUserDao();
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void testCachedFailureExpires() throws DatabaseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = Mockito.spy(database.getDaoFactory());
+            final TestRealm realm = new TestRealm(daoFactory);
+
+            assertNull(realm.authenticate("missing", "password"));
+            assertNull(realm.authenticate("missing", "password"));
+            Mockito.verify(daoFactory, Mockito.times(1)).getUserDao();
+
+            // Logins that did not match any user are looked up again once they expire.
+            realm.advance(SecurityRealm.NEGATIVE_TTL - 1);
+            assertNull(realm.authenticate("missing", "password"));
+            Mockito.verify(daoFactory, Mockito.times(1)).getUserDao();
+
+            realm.advance(1);
+            assertNull(realm.authenticate("missing", "password"));
+            Mockito.verify(daoFactory, Mockito.times(2)).getUserDao();
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void testInvalidation() throws DatabaseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = database.getDaoFactory();
+            final User user = addUser(daoFactory, "password");
+            final TestRealm realm = new TestRealm(daoFactory);
+
+            assertNotNull(realm.authenticate("user", "password"));
+
+            // A password change replaces the cached account.
+            daoFactory.getUserDao().setPassword(user.getId(), new Password().hash("changed", "salt"), "salt");
+            assertNull(realm.authenticate("user", "password"));
+            assertNotNull(realm.authenticate("user", "changed"));
+
+            // Role changes are included in the next principal.
+            final GenericPrincipal before = (GenericPrincipal) realm.authenticate("user", "changed");
+            assertFalse(before.hasRole("ADMIN"));
+            daoFactory.getRoleDao().add(user.getId(), new Role("ADMIN"));
+            final GenericPrincipal added = (GenericPrincipal) realm.authenticate("user", "changed");
+            assertTrue(added.hasRole("ADMIN"));
+
+            daoFactory.getRoleDao().delete(user.getId(), new Role("ADMIN"));
+            final GenericPrincipal removed = (GenericPrincipal) realm.authenticate("user", "changed");
+            assertFalse(removed.hasRole("ADMIN"));
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.arcblaze.arccore.server.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.deploy.LoginConfig;
+import org.apache.catalina.realm.GenericPrincipal;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.arcblaze.arccore.common.model.Role;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.DaoFactory;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.util.TestDatabase;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Perform testing on the authentication of requests using signed token cookies.
+ */
+public class TokenAuthenticatorTest {
+    /**
+     * A token authenticator whose clock is controlled by the test, and which records the forwards to the login page.
+     */
+    protected static class TestAuthenticator extends TokenAuthenticator {
+        /** The current time of the authenticator. */
+        private long now = 100;
+
+        /** The number of times the request was forwarded to the login page. */
+        private int forwards = 0;
+
+        /**
+         * @param signer
+         *            used to create and verify the signed tokens
+         * @param realm
+         *            used to reload the users whose tokens are renewed
+         */
+        public TestAuthenticator(final TokenSigner signer, final SecurityRealm realm) {
+            super(signer, realm, true);
+        }
+
+        /**
+         * @param millis
+         *            the number of milliseconds by which the clock of the authenticator will be advanced
+         */
+        public void advance(final long millis) {
+            this.now += millis;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected long currentTimeMillis() {
+            return this.now;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void forwardToLoginPage(final Request request, final HttpServletResponse response,
+                final LoginConfig config) {
+            this.forwards++;
+        }
+    }
+
+    protected static Request getRequest(final String token) {
+        final Request request = Mockito.mock(Request.class);
+        if (token != null)
+            Mockito.when(request.getCookies()).thenReturn(
+                    new Cookie[] { new Cookie(TokenAuthenticator.COOKIE_NAME, token) });
+        return request;
+    }
+
+    protected static Cookie getCookie(final HttpServletResponse response) {
+        final ArgumentCaptor<Cookie> captor = ArgumentCaptor.forClass(Cookie.class);
+        Mockito.verify(response).addCookie(captor.capture());
+        final Cookie cookie = captor.getValue();
+        assertEquals(TokenAuthenticator.COOKIE_NAME, cookie.getName());
+        assertEquals("/", cookie.getPath());
+        assertTrue(cookie.isHttpOnly());
+        assertTrue(cookie.getSecure());
+        return cookie;
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws IOException
+     *             if there is a problem authenticating the request
+     */
+    @Test
+    public void testAuthenticate() throws DatabaseException, IOException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = database.getDaoFactory();
+            final User user = SecurityRealmTest.addUser(daoFactory, "password");
+            final SecurityRealm realm = new SecurityRealm("test", daoFactory, new MetricRegistry());
+            final TokenSigner signer = new TokenSigner("key", 1000, 5000);
+            final TestAuthenticator authenticator = new TestAuthenticator(signer, realm);
+
+            // Requests without a token are sent to the login page.
+            final HttpServletResponse missing = Mockito.mock(HttpServletResponse.class);
+            assertFalse(authenticator.authenticate(getRequest(null), missing, new LoginConfig()));
+            assertEquals(1, authenticator.forwards);
+
+            // Logging in adds the token cookie.
+            final HttpServletResponse login = Mockito.mock(HttpServletResponse.class);
+            final GenericPrincipal principal = (GenericPrincipal) realm.authenticate("user", "password");
+            authenticator.register(getRequest(null), login, principal, "FORM", "user", "password");
+            final Cookie cookie = getCookie(login);
+            assertEquals(1, cookie.getMaxAge());
+
+            // Requests with the token are authenticated without replacing the cookie.
+            final Request request = getRequest(cookie.getValue());
+            final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+            assertTrue(authenticator.authenticate(request, response, new LoginConfig()));
+            final ArgumentCaptor<GenericPrincipal> captor = ArgumentCaptor.forClass(GenericPrincipal.class);
+            Mockito.verify(request).setUserPrincipal(captor.capture());
+            assertEquals("user", captor.getValue().getName());
+            assertEquals(user.getId(), ((User) captor.getValue().getUserPrincipal()).getId());
+            Mockito.verify(response, Mockito.never()).addCookie(Mockito.any(Cookie.class));
+
+            // Tampered tokens are rejected.
+            final HttpServletResponse tampered = Mockito.mock(HttpServletResponse.class);
+            assertFalse(authenticator.authenticate(getRequest(cookie.getValue() + "x"), tampered, new LoginConfig()));
+            assertEquals(2, authenticator.forwards);
+
+            // Expired tokens are rejected.
+            authenticator.advance(1000);
+            final HttpServletResponse expired = Mockito.mock(HttpServletResponse.class);
+            assertFalse(authenticator.authenticate(getRequest(cookie.getValue()), expired, new LoginConfig()));
+            assertEquals(3, authenticator.forwards);
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws IOException
+     *             if there is a problem authenticating the request
+     */
+    @Test
+    public void testRenewal() throws DatabaseException, IOException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = database.getDaoFactory();
+            final User user = SecurityRealmTest.addUser(daoFactory, "password");
+            final SecurityRealm realm = new SecurityRealm("test", daoFactory, new MetricRegistry());
+            final TokenSigner signer = new TokenSigner("key", 1000, 1800);
+            final TestAuthenticator authenticator = new TestAuthenticator(signer, realm);
+            final String token = signer.sign((GenericPrincipal) realm.authenticate("user", "password"), 100);
+
+            // Past half of its lifetime the token is replaced, and the roles are reloaded.
+            daoFactory.getRoleDao().add(user.getId(), new Role("ADMIN"));
+            authenticator.advance(600);
+            final Request request = getRequest(token);
+            final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+            assertTrue(authenticator.authenticate(request, response, new LoginConfig()));
+            final ArgumentCaptor<GenericPrincipal> captor = ArgumentCaptor.forClass(GenericPrincipal.class);
+            Mockito.verify(request).setUserPrincipal(captor.capture());
+            assertTrue(captor.getValue().hasRole("ADMIN"));
+
+            final TokenSigner.SignedToken renewed = signer.verify(getCookie(response).getValue(), 700);
+            assertNotNull(renewed);
+            assertEquals(100, renewed.getIssued());
+            assertEquals(1700, renewed.getExpires());
+            assertTrue(renewed.getPrincipal().hasRole("ADMIN"));
+
+            // Once capped by the maximum age the token is no longer replaced.
+            final String capped = signer.sign(renewed.getPrincipal(), 100, 1400);
+            authenticator.advance(1000);
+            final HttpServletResponse last = Mockito.mock(HttpServletResponse.class);
+            assertTrue(authenticator.authenticate(getRequest(capped), last, new LoginConfig()));
+            Mockito.verify(last, Mockito.never()).addCookie(Mockito.any(Cookie.class));
+            authenticator.advance(300);
+            assertFalse(authenticator.authenticate(getRequest(capped), last, new LoginConfig()));
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws IOException
+     *             if there is a problem authenticating the request
+     */
+    @Test
+    public void testRenewalInactive() throws DatabaseException, IOException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = database.getDaoFactory();
+            final User user = SecurityRealmTest.addUser(daoFactory, "password");
+            final SecurityRealm realm = new SecurityRealm("test", daoFactory, new MetricRegistry());
+            final TokenSigner signer = new TokenSigner("key", 1000, 5000);
+            final TestAuthenticator authenticator = new TestAuthenticator(signer, realm);
+            final String token = signer.sign((GenericPrincipal) realm.authenticate("user", "password"), 100);
+
+            // Until the token is renewed the user is not reloaded.
+            daoFactory.getUserDao().deactivate(user.getCompanyId(), user.getId());
+            authenticator.advance(400);
+            assertTrue(authenticator.authenticate(getRequest(token), Mockito.mock(HttpServletResponse.class),
+                    new LoginConfig()));
+
+            // The renewal rejects the token of the inactive user and removes the cookie.
+            authenticator.advance(200);
+            final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+            assertFalse(authenticator.authenticate(getRequest(token), response, new LoginConfig()));
+            assertEquals(1, authenticator.forwards);
+            final Cookie cookie = getCookie(response);
+            assertEquals("", cookie.getValue());
+            assertEquals(0, cookie.getMaxAge());
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws IOException
+     *             if there is a problem authenticating the request
+     */
+    @Test
+    public void testKeyRotation() throws DatabaseException, IOException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final DaoFactory daoFactory = database.getDaoFactory();
+            SecurityRealmTest.addUser(daoFactory, "password");
+            final SecurityRealm realm = new SecurityRealm("test", daoFactory, new MetricRegistry());
+            final String token = new TokenSigner("old", 1000, 5000).sign(
+                    (GenericPrincipal) realm.authenticate("user", "password"), 100);
+
+            // Tokens signed with an old key are replaced by tokens signed with the current key.
+            final TokenSigner signer = new TokenSigner("new,old", 1000, 5000);
+            final TestAuthenticator authenticator = new TestAuthenticator(signer, realm);
+            final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+            assertTrue(authenticator.authenticate(getRequest(token), response, new LoginConfig()));
+            final String renewed = getCookie(response).getValue();
+            assertTrue(new TokenSigner("new", 1000, 5000).verify(renewed, 100).isCurrentKey());
+            assertNull(new TokenSigner("old", 1000, 5000).verify(renewed, 100));
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     */
+    @Test
+    public void testLogout() throws DatabaseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/db.sql");
+
+            final SecurityRealm realm = new SecurityRealm("test", database.getDaoFactory(), new MetricRegistry());
+            final TestAuthenticator authenticator = new TestAuthenticator(new TokenSigner("key", 1000, 5000), realm);
+
+            final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+            authenticator.register(getRequest(null), response, null, null, null, null);
+            final Cookie cookie = getCookie(response);
+            assertEquals("", cookie.getValue());
+            assertEquals(0, cookie.getMaxAge());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.arcblaze.arccore.server.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.catalina.realm.GenericPrincipal;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import com.arcblaze.arccore.common.model.User;
+
+/**
+ * Perform testing on the signing and verification of authentication tokens.
+ */
+public class TokenSignerTest {
+    protected static GenericPrincipal getPrincipal() {
+        final User user = new User().setId(1).setCompanyId(2).setLogin("user:name").setActive(true);
+        return new GenericPrincipal(user.getLogin(), null, Arrays.asList("USER", "ADMIN", "PAYROLL"), user);
+    }
+
+    /**
+     * Test that the constructor rejects invalid parameters.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorEmptyKeys() {
+        new TokenSigner(" , ", 1000, 2000);
+    }
+
+    /**
+     * Test that the constructor rejects a maximum age shorter than the time to live.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorShortMaxAge() {
+        new TokenSigner("key", 1000, 999);
+    }
+
+    /**
+     * Test that signed tokens carry the principal.
+     */
+    @Test
+    public void testRoundTrip() {
+        final TokenSigner signer = new TokenSigner("key", 1000, 5000);
+        final String token = signer.sign(getPrincipal(), 100);
+        assertTrue(token.matches("[A-Za-z0-9_.-]+"));
+
+        final TokenSigner.SignedToken verified = signer.verify(token, 500);
+        assertNotNull(verified);
+        assertEquals(100, verified.getIssued());
+        assertEquals(1100, verified.getExpires());
+        assertTrue(verified.isCurrentKey());
+
+        final GenericPrincipal principal = verified.getPrincipal();
+        assertEquals("user:name", principal.getName());
+        assertTrue(principal.hasRole("USER"));
+        assertTrue(principal.hasRole("ADMIN"));
+        assertTrue(principal.hasRole("PAYROLL"));
+
+        final User user = (User) principal.getUserPrincipal();
+        assertEquals(Integer.valueOf(1), user.getId());
+        assertEquals(Integer.valueOf(2), user.getCompanyId());
+        assertEquals("user:name", user.getLogin());
+        assertEquals(2, user.getRoles().size());
+    }
+
+    /**
+     * Test that tokens are rejected once they expire.
+     */
+    @Test
+    public void testExpired() {
+        final TokenSigner signer = new TokenSigner("key", 1000, 5000);
+        final String token = signer.sign(getPrincipal(), 100);
+        assertNotNull(signer.verify(token, 1099));
+        assertNull(signer.verify(token, 1100));
+    }
+
+    /**
+     * Test that renewed tokens keep the login time and never outlive the maximum age.
+     */
+    @Test
+    public void testMaxAge() {
+        final TokenSigner signer = new TokenSigner("key", 1000, 2500);
+        final String renewed = signer.sign(getPrincipal(), 100, 2000);
+
+        final TokenSigner.SignedToken verified = signer.verify(renewed, 2000);
+        assertNotNull(verified);
+        assertEquals(100, verified.getIssued());
+        assertEquals(2600, verified.getExpires());
+        assertNull(signer.verify(renewed, 2600));
+    }
+
+    /**
+     * Test that tokens are rejected when the payload or the signature is modified.
+     */
+    @Test
+    public void testTampered() {
+        final TokenSigner signer = new TokenSigner("key", 1000, 5000);
+        final String token = signer.sign(getPrincipal(), 100);
+        final String payload = StringUtils.substringBefore(token, ".");
+        final String signature = StringUtils.substringAfter(token, ".");
+
+        // A payload granting more time, signed with the original signature.
+        final String forged = TokenSigner.encodePayload("1", "2", "user:name", "ADMIN,PAYROLL", "100", "999999");
+        assertNull(signer.verify(forged + "." + signature, 500));
+
+        // A modified signature.
+        final char last = signature.charAt(signature.length() - 1);
+        assertNull(signer.verify(payload + "." + signature.substring(0, signature.length() - 1)
+                + (last == 'A' ? 'B' : 'A'), 500));
+
+        assertNull(signer.verify(payload, 500));
+        assertNull(signer.verify(payload + ".", 500));
+        assertNull(signer.verify("", 500));
+        assertNull(signer.verify(null, 500));
+
+        // Tokens signed with a different key.
+        assertNull(new TokenSigner("other", 1000, 5000).verify(token, 500));
+    }
+
+    /**
+     * Test that tokens signed with an old key are accepted until the key is removed.
+     */
+    @Test
+    public void testKeyRotation() {
+        final String oldToken = new TokenSigner("old", 1000, 5000).sign(getPrincipal(), 100);
+
+        final TokenSigner rotated = new TokenSigner("new, old", 1000, 5000);
+        final TokenSigner.SignedToken verified = rotated.verify(oldToken, 500);
+        assertNotNull(verified);
+        assertFalse(verified.isCurrentKey());
+
+        final String newToken = rotated.sign(verified.getPrincipal(), verified.getIssued(), 500);
+        assertTrue(rotated.verify(newToken, 500).isCurrentKey());
+
+        final TokenSigner removed = new TokenSigner("new", 1000, 5000);
+        assertNull(removed.verify(oldToken, 500));
+        assertNotNull(removed.verify(newToken, 500));
+    }
+
+    /**
+     * Test the encoding of the token payload.
+     */
+    @Test
+    public void testPayload() {
+        final String[] values = { "1", "", "a:b,c", "é", "5", "6" };
+        assertArrayEquals(values, TokenSigner.decodePayload(TokenSigner.encodePayload(values)));
+    }
+
+    /**
+     * Test that payloads with the wrong number of values are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPayloadWrongSize() {
+        TokenSigner.decodePayload(TokenSigner.encodePayload("1", "2", "3", "4", "5"));
+    }
+
+    /**
+     * Test that payloads that are not URL-safe base64 are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPayloadInvalidEncoding() {
+        TokenSigner.decodePayload("not+valid");
+    }
+}
@@ -18,6 +18,7 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.apache.commons.lang.time.DateFormatUtils;
 
+import com.arcblaze.arctime.common.model.util.CompiledHoliday;
 import com.arcblaze.arctime.common.model.util.HolidayCalculator;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
 
@@ -47,6 +48,11 @@ public class Holiday implements Comparable<Holiday> {
      */
     private String config;
 
+    /**
+     * The parsed configuration of this holiday, used to calculate the day on which it occurs.
+     */
+    private CompiledHoliday compiled;
+
     /**
      * The day on which this holiday applies during the current year.
      */
@@ -74,14 +80,11 @@ public class Holiday implements Comparable<Holiday> {
             setCompanyId(other.getCompanyId());
         if (other.getDescription() != null)
             setDescription(other.getDescription());
-        if (other.getConfig() != null) {
-            try {
-                setConfig(other.getConfig());
-            } catch (final HolidayConfigurationException badConfig) {
-                // Ignored. Since the config was in the other holiday, it
-                // should be valid.
-            }
-        }
+        // The configuration was already parsed and validated in the other holiday, so there is no need to parse it
+        // again.
+        this.config = other.config;
+        this.compiled = other.compiled;
+        this.day = other.day == null ? null : new Date(other.day.getTime());
     }
 
     /**
@@ -94,7 +97,26 @@ public class Holiday implements Comparable<Holiday> {
      *             if there is a problem parsing the configuration of this holiday
      */
     public Date getDateForYear(final int year) throws HolidayConfigurationException {
-        return HolidayCalculator.getDay(getConfig(), year);
+        return getCompiled().getDay(year);
+    }
+
+    /**
+     * @param year
+     *            the year for which the holiday epoch day will be calculated, e.g., 2013
+     * 
+     * @return the calculated epoch day (days since January 1st, 1970) on which this holiday will land
+     * 
+     * @throws HolidayConfigurationException
+     *             if there is a problem with the configuration of this holiday
+     */
+    public int getEpochDayForYear(final int year) throws HolidayConfigurationException {
+        return getCompiled().getEpochDay(year);
+    }
+
+    protected CompiledHoliday getCompiled() throws HolidayConfigurationException {
+        if (this.compiled == null)
+            throw new HolidayConfigurationException("Invalid blank config");
+        return this.compiled;
     }
 
     /**
@@ -193,8 +215,10 @@ public class Holiday implements Comparable<Holiday> {
     public Holiday setConfig(final String config) throws HolidayConfigurationException {
         notEmpty(config, "Invalid empty config value");
 
-        this.day = HolidayCalculator.getDay(config, Integer.parseInt(DateFormatUtils.format(new Date(), "yyyy")));
+        final CompiledHoliday compiledConfig = HolidayCalculator.compile(config);
+        this.day = compiledConfig.getDay(Integer.parseInt(DateFormatUtils.format(new Date(), "yyyy")));
         this.config = config;
+        this.compiled = compiledConfig;
 
         return this;
     }
@@ -16,10 +16,11 @@ import org.apache.commons.lang.builder.CompareToBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
-import org.apache.commons.lang.time.DateFormatUtils;
 import org.apache.commons.lang.time.DateUtils;
 
+import com.arcblaze.arctime.common.model.util.EpochDays;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
+import com.arcblaze.arctime.common.model.util.PayPeriodCalculator;
 
 /**
  * Represents a pay period.
@@ -113,11 +114,18 @@ public class PayPeriod implements Comparable<PayPeriod> {
         if (b == null || e == null)
             return false;
 
-        final int yb = Integer.parseInt(DateFormatUtils.format(b, "yyyy"));
-        final int ye = Integer.parseInt(DateFormatUtils.format(e, "yyyy"));
+        final int begin = EpochDays.of(b);
+        final int end = EpochDays.of(e);
+        final int yb = EpochDays.year(begin);
+        final int ye = EpochDays.year(end);
 
-        return yb == ye ? contains(holiday.getDateForYear(yb)) : contains(holiday.getDateForYear(yb))
-                || contains(holiday.getDateForYear(ye));
+        final int first = holiday.getEpochDayForYear(yb);
+        if (first >= begin && first <= end)
+            return true;
+        if (yb == ye)
+            return false;
+        final int second = holiday.getEpochDayForYear(ye);
+        return second >= begin && second <= end;
     }
 
     /**
@@ -163,46 +171,11 @@ public class PayPeriod implements Comparable<PayPeriod> {
      */
     @XmlTransient
     public PayPeriod getPrevious() {
-        final PayPeriod payPeriod = new PayPeriod();
-        payPeriod.setCompanyId(getCompanyId());
-        payPeriod.setType(getType());
-
-        Date b = getBegin();
-        Date e = getEnd();
-
-        switch (payPeriod.getType()) {
-        case WEEKLY:
-            // Subtract 7 days from the start and end.
-            b = DateUtils.addDays(b, -7);
-            e = DateUtils.addDays(e, -7);
-            break;
-        case BI_WEEKLY:
-            // Subtract 14 days from the start and end.
-            b = DateUtils.addDays(b, -14);
-            e = DateUtils.addDays(e, -14);
-            break;
-        case MONTHLY:
-            // The end of the previous pay period is the day before the
-            // beginning of this pay period.
-            e = DateUtils.addDays(b, -1);
-            b = DateUtils.addMonths(b, -1);
-            break;
-        case SEMI_MONTHLY:
-            // The end of the previous pay period is the day before the
-            // beginning of this pay period.
-            e = DateUtils.addDays(b, -1);
-
-            // Use the original end date to calculate the previous begin date.
-            b = DateUtils.addMonths(DateUtils.addDays(getEnd(), 1), -1);
-            break;
-        case CUSTOM:
+        if (getType() == PayPeriodType.CUSTOM)
             // No way to determine the previous pay period.
             return null;
-        }
 
-        payPeriod.setBegin(b);
-        payPeriod.setEnd(e);
-        return payPeriod;
+        return new PayPeriodCalculator(this).getContaining(EpochDays.of(getBegin()) - 1);
     }
 
     /**
@@ -210,64 +183,11 @@ public class PayPeriod implements Comparable<PayPeriod> {
      */
     @XmlTransient
     public PayPeriod getNext() {
-        final PayPeriod payPeriod = new PayPeriod();
-        payPeriod.setCompanyId(getCompanyId());
-        payPeriod.setType(getType());
-
-        Date b = getBegin();
-        Date e = getEnd();
-
-        switch (payPeriod.getType()) {
-        case WEEKLY:
-            // Add 7 days to the start and end.
-            b = DateUtils.addDays(b, 7);
-            e = DateUtils.addDays(e, 7);
-            break;
-        case BI_WEEKLY:
-            // Add 14 days to the start and end.
-            b = DateUtils.addDays(b, 14);
-            e = DateUtils.addDays(e, 14);
-            break;
-        case MONTHLY:
-            // The beginning of the next pay period is the day after the
-            // end of this pay period.
-            b = DateUtils.addDays(e, 1);
-
-            // Is the begin date the first day of the month?
-            if ("1".equals(DateFormatUtils.format(b, "d"))) {
-                // Use the last day of the month.
-                Date d = DateUtils.addDays(b, 27);
-                while (!"1".equals(DateFormatUtils.format(d, "d")))
-                    d = DateUtils.addDays(d, 1);
-                e = DateUtils.addDays(d, -1);
-            } else
-                e = DateUtils.addMonths(getEnd(), 1);
-            break;
-        case SEMI_MONTHLY:
-            // The beginning of the next pay period is the day after the
-            // end of this pay period.
-            b = DateUtils.addDays(e, 1);
-
-            // Use the original begin date to calculate the end end date.
-            final Date prevEnd = DateUtils.addDays(getBegin(), -1);
-            // Was the previous end date the last day of the month?
-            if ("1".equals(DateFormatUtils.format(DateUtils.addDays(prevEnd, 1), "d"))) {
-                // Use the last day of the month.
-                Date d = DateUtils.addDays(b, 12);
-                while (!"1".equals(DateFormatUtils.format(d, "d")))
-                    d = DateUtils.addDays(d, 1);
-                e = DateUtils.addDays(d, -1);
-            } else
-                e = DateUtils.addMonths(prevEnd, 1);
-            break;
-        case CUSTOM:
+        if (getType() == PayPeriodType.CUSTOM)
             // No way to determine the next pay period.
             return null;
-        }
 
-        payPeriod.setBegin(b);
-        payPeriod.setEnd(e);
-        return payPeriod;
+        return new PayPeriodCalculator(this).getContaining(EpochDays.of(getEnd()) + 1);
     }
 
     /**
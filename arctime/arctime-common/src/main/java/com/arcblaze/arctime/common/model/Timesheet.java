@@ -156,13 +156,13 @@ public class Timesheet implements Comparable<Timesheet> {
         if (other.getPayPeriod() != null)
             setPayPeriod(other.getPayPeriod());
         if (other.isCompleted() != null)
-            other.setCompleted(other.isCompleted());
+            setCompleted(other.isCompleted());
         if (other.isApproved() != null)
-            other.setApproved(other.isApproved());
+            setApproved(other.isApproved());
         if (other.isVerified() != null)
-            other.setVerified(other.isVerified());
+            setVerified(other.isVerified());
         if (other.isExported() != null)
-            other.setExported(other.isExported());
+            setExported(other.isExported());
         if (other.getApproverId() != null)
             setApproverId(other.getApproverId());
         if (other.getApprover() != null)
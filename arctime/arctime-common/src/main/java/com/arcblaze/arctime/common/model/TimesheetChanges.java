@@ -0,0 +1,298 @@
+package com.arcblaze.arctime.common.model;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * Represents the full set of modifications to be applied to a single timesheet as one unit of work: the bills to add,
+ * update and delete, the audit logs describing those changes, and an optional change to the completion status.
+ */
+public class TimesheetChanges {
+    /**
+     * The unique id of the company that owns the timesheet.
+     */
+    private final Integer companyId;
+
+    /**
+     * The unique id of the timesheet being modified.
+     */
+    private final Integer timesheetId;
+
+    /**
+     * The new bills to be added to the timesheet.
+     */
+    private final List<Bill> addedBills = new ArrayList<>();
+
+    /**
+     * The existing bills to be updated in the timesheet.
+     */
+    private final List<Bill> updatedBills = new ArrayList<>();
+
+    /**
+     * The unique ids of the existing bills to be removed from the timesheet.
+     */
+    private final Set<Integer> deletedBillIds = new TreeSet<>();
+
+    /**
+     * The audit logs describing the changes being made.
+     */
+    private final List<AuditLog> auditLogs = new ArrayList<>();
+
+    /**
+     * The new completion status of the timesheet, or {@code null} to leave the completion status unchanged.
+     */
+    private Boolean completed;
+
+    /**
+     * The version of the timesheet from which the changes were calculated, or {@code null} to apply the changes
+     * regardless of the current version.
+     */
+    private Integer version;
+
+    /**
+     * @param timesheet
+     *            the timesheet to which the changes will be applied
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided timesheet is invalid
+     */
+    public TimesheetChanges(final Timesheet timesheet) {
+        notNull(timesheet, "Invalid null timesheet");
+        notNull(timesheet.getCompanyId(), "Invalid null company id");
+        notNull(timesheet.getId(), "Invalid null timesheet id");
+
+        this.companyId = timesheet.getCompanyId();
+        this.timesheetId = timesheet.getId();
+    }
+
+    /**
+     * @return the unique id of the company that owns the timesheet
+     */
+    public Integer getCompanyId() {
+        return this.companyId;
+    }
+
+    /**
+     * @return the unique id of the timesheet being modified
+     */
+    public Integer getTimesheetId() {
+        return this.timesheetId;
+    }
+
+    /**
+     * @return the new bills to be added to the timesheet
+     */
+    public List<Bill> getAddedBills() {
+        return Collections.unmodifiableList(this.addedBills);
+    }
+
+    /**
+     * @param bills
+     *            the new bills to be added to the timesheet
+     * 
+     * @return {@code this}
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided bills are invalid
+     */
+    public TimesheetChanges addBills(final Bill... bills) {
+        notNull(bills, "Invalid null bills");
+
+        return this.addBills(Arrays.asList(bills));
+    }
+
+    /**
+     * @param bills
+     *            the new bills to be added to the timesheet
+     * 
+     * @return {@code this}
+     */
+    public TimesheetChanges addBills(final Collection<Bill> bills) {
+        if (bills != null)
+            for (final Bill bill : bills)
+                if (bill != null)
+                    this.addedBills.add(bill);
+        return this;
+    }
+
+    /**
+     * @return the existing bills to be updated in the timesheet
+     */
+    public List<Bill> getUpdatedBills() {
+        return Collections.unmodifiableList(this.updatedBills);
+    }
+
+    /**
+     * @param bills
+     *            the existing bills to be updated in the timesheet
+     * 
+     * @return {@code this}
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided bills are invalid
+     */
+    public TimesheetChanges updateBills(final Bill... bills) {
+        notNull(bills, "Invalid null bills");
+
+        return this.updateBills(Arrays.asList(bills));
+    }
+
+    /**
+     * @param bills
+     *            the existing bills to be updated in the timesheet
+     * 
+     * @return {@code this}
+     */
+    public TimesheetChanges updateBills(final Collection<Bill> bills) {
+        if (bills != null)
+            for (final Bill bill : bills)
+                if (bill != null)
+                    this.updatedBills.add(bill);
+        return this;
+    }
+
+    /**
+     * @return the unique ids of the existing bills to be removed from the timesheet
+     */
+    public Set<Integer> getDeletedBillIds() {
+        return Collections.unmodifiableSet(this.deletedBillIds);
+    }
+
+    /**
+     * @param billIds
+     *            the unique ids of the existing bills to be removed from the timesheet
+     * 
+     * @return {@code this}
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided bill ids are invalid
+     */
+    public TimesheetChanges deleteBills(final Integer... billIds) {
+        notNull(billIds, "Invalid null bill ids");
+
+        return this.deleteBills(Arrays.asList(billIds));
+    }
+
+    /**
+     * @param billIds
+     *            the unique ids of the existing bills to be removed from the timesheet
+     * 
+     * @return {@code this}
+     */
+    public TimesheetChanges deleteBills(final Collection<Integer> billIds) {
+        if (billIds != null)
+            for (final Integer billId : billIds)
+                if (billId != null)
+                    this.deletedBillIds.add(billId);
+        return this;
+    }
+
+    /**
+     * @return the audit logs describing the changes being made
+     */
+    public List<AuditLog> getAuditLogs() {
+        return Collections.unmodifiableList(this.auditLogs);
+    }
+
+    /**
+     * @param logs
+     *            the audit logs describing the changes being made
+     * 
+     * @return {@code this}
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided audit logs are invalid
+     */
+    public TimesheetChanges addAuditLogs(final AuditLog... logs) {
+        notNull(logs, "Invalid null audit logs");
+
+        return this.addAuditLogs(Arrays.asList(logs));
+    }
+
+    /**
+     * @param logs
+     *            the audit logs describing the changes being made
+     * 
+     * @return {@code this}
+     */
+    public TimesheetChanges addAuditLogs(final Collection<AuditLog> logs) {
+        if (logs != null)
+            for (final AuditLog auditLog : logs)
+                if (auditLog != null)
+                    this.auditLogs.add(auditLog);
+        return this;
+    }
+
+    /**
+     * @return the new completion status of the timesheet, or {@code null} if the completion status is not changing
+     */
+    public Boolean isCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * @param completed
+     *            the new completion status of the timesheet, or {@code null} to leave the completion status unchanged
+     * 
+     * @return {@code this}
+     */
+    public TimesheetChanges setCompleted(final Boolean completed) {
+        this.completed = completed;
+        return this;
+    }
+
+    /**
+     * @return the version of the timesheet from which the changes were calculated, or {@code null} if the changes
+     *         are applied regardless of the current version
+     */
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @param version
+     *            the version of the timesheet from which the changes were calculated, so the changes are rejected if
+     *            the timesheet has been modified since, or {@code null} to apply the changes regardless
+     * 
+     * @return {@code this}
+     */
+    public TimesheetChanges setVersion(final Integer version) {
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * @return whether this object contains no changes to be applied
+     */
+    public boolean isEmpty() {
+        return this.addedBills.isEmpty() && this.updatedBills.isEmpty() && this.deletedBillIds.isEmpty()
+                && this.auditLogs.isEmpty() && this.completed == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+        builder.append("companyId", getCompanyId());
+        builder.append("timesheetId", getTimesheetId());
+        builder.append("added", this.addedBills.size());
+        builder.append("updated", this.updatedBills.size());
+        builder.append("deleted", this.deletedBillIds.size());
+        builder.append("auditLogs", this.auditLogs.size());
+        builder.append("completed", isCompleted());
+        builder.append("version", getVersion());
+        return builder.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package com.arcblaze.arctime.common.model.util;
+
+import java.util.Date;
+
+/**
+ * A parsed holiday configuration, from which the day on which the holiday occurs can be calculated for any year
+ * without parsing the configuration again. Instances are created by {@link HolidayCalculator#compile(String)}.
+ */
+public class CompiledHoliday {
+    /** The earliest year for which holidays can be calculated. */
+    public final static int MIN_YEAR = 1970;
+
+    /** The latest year for which holidays can be calculated. */
+    public final static int MAX_YEAR = 2200;
+
+    /** The holiday configuration text that was compiled. */
+    private final String config;
+
+    /** The month in which the holiday occurs, where 1 is January. */
+    private final int month;
+
+    /** The occurrence of the day of the week within the month, -1 for the last, or 0 for a fixed date. */
+    private final int week;
+
+    /** The day of the week on which the holiday occurs, where 0 is Sunday, when the holiday is not a fixed date. */
+    private final int dayOfWeek;
+
+    /** The day of the month on which the holiday occurs, when the holiday is a fixed date. */
+    private final int dayOfMonth;
+
+    /** The number of days to add after the day of the week has been located. */
+    private final int offset;
+
+    /** Whether a fixed-date holiday falling on a weekend is observed on the closest weekday. */
+    private final boolean observance;
+
+    protected CompiledHoliday(final String config, final int month, final int week, final int dayOfWeek,
+            final int offset) {
+        this.config = config;
+        this.month = month;
+        this.week = week;
+        this.dayOfWeek = dayOfWeek;
+        this.dayOfMonth = 0;
+        this.offset = offset;
+        this.observance = false;
+    }
+
+    protected CompiledHoliday(final String config, final int month, final int dayOfMonth, final boolean observance) {
+        this.config = config;
+        this.month = month;
+        this.week = 0;
+        this.dayOfWeek = -1;
+        this.dayOfMonth = dayOfMonth;
+        this.offset = 0;
+        this.observance = observance;
+    }
+
+    /**
+     * @return the holiday configuration text that was compiled
+     */
+    public String getConfig() {
+        return this.config;
+    }
+
+    /**
+     * @param year
+     *            the year for which the holiday will be calculated
+     * 
+     * @return the epoch day on which the holiday occurs during the provided year
+     * 
+     * @throws HolidayConfigurationException
+     *             if the provided year is not supported
+     */
+    public int getEpochDay(final int year) throws HolidayConfigurationException {
+        if (year < MIN_YEAR || year > MAX_YEAR)
+            throw new HolidayConfigurationException("Invalid year: " + year);
+
+        if (this.week == 0) {
+            final int day = EpochDays.of(year, this.month, this.dayOfMonth);
+            if (!this.observance)
+                return day;
+
+            final int dow = EpochDays.dayOfWeek(day);
+            if (dow == 6)
+                return day - 1; // Saturday, use Friday
+            if (dow == 0)
+                return day + 1; // Sunday, use Monday
+            return day;
+        }
+
+        final int day;
+        if (this.week < 0) {
+            // The last day of the month, then back to the requested day of the week.
+            final int last = EpochDays.of(year, this.month + 1, 1) - 1;
+            day = last - EpochDays.floorMod(EpochDays.dayOfWeek(last) - this.dayOfWeek, 7);
+        } else {
+            final int first = EpochDays.of(year, this.month, 1);
+            day = first + EpochDays.floorMod(this.dayOfWeek - EpochDays.dayOfWeek(first), 7) + (this.week - 1) * 7;
+        }
+        return day + this.offset;
+    }
+
+    /**
+     * @param year
+     *            the year for which the holiday will be calculated
+     * 
+     * @return the {@link Date} on which the holiday occurs during the provided year
+     * 
+     * @throws HolidayConfigurationException
+     *             if the provided year is not supported
+     */
+    public Date getDay(final int year) throws HolidayConfigurationException {
+        return EpochDays.toDate(getEpochDay(year));
+    }
+}
@@ -0,0 +1,122 @@
+package com.arcblaze.arctime.common.model.util;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * Performs calendar calculations on epoch days, the number of days since January 1st, 1970. Working with plain day
+ * numbers avoids the cost of date parsing, formatting and {@link Calendar} arithmetic when the same calculation is
+ * performed many times. Conversions to and from {@link Date} objects use the default time zone, so a {@link Date}
+ * represents midnight at the start of the day.
+ */
+public final class EpochDays {
+    /** The day of the week on which the epoch fell, where 0 is Sunday. */
+    private final static int EPOCH_DAY_OF_WEEK = 4;
+
+    private EpochDays() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * @param year
+     *            the year, e.g. 2014
+     * @param month
+     *            the month, where 1 is January; values beyond 12 roll over into the following years
+     * @param day
+     *            the day of the month, where 1 is the first day; values beyond the end of the month roll over into
+     *            the following months
+     * 
+     * @return the epoch day for the provided date
+     */
+    public static int of(final int year, final int month, final int day) {
+        int y = year + floorDiv(month - 1, 12);
+        final int m = floorMod(month - 1, 12) + 1;
+
+        // Count years from March so that the leap day falls at the end of the year.
+        y -= m <= 2 ? 1 : 0;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @param date
+     *            the date to convert, in the default time zone
+     * 
+     * @return the epoch day on which the provided date falls
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided date is invalid
+     */
+    public static int of(final Date date) {
+        notNull(date, "Invalid null date");
+
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * @param epochDay
+     *            the epoch day to convert
+     * 
+     * @return a {@link Date} representing midnight at the start of the epoch day, in the default time zone
+     */
+    public static Date toDate(final int epochDay) {
+        final int[] civil = toCivil(epochDay);
+        return new GregorianCalendar(civil[0], civil[1] - 1, civil[2]).getTime();
+    }
+
+    /**
+     * @param epochDay
+     *            the epoch day for which the year will be determined
+     * 
+     * @return the year in which the epoch day falls
+     */
+    public static int year(final int epochDay) {
+        return toCivil(epochDay)[0];
+    }
+
+    /**
+     * @param epochDay
+     *            the epoch day for which the day of the week will be determined
+     * 
+     * @return the day of the week, where 0 is Sunday and 6 is Saturday
+     */
+    public static int dayOfWeek(final int epochDay) {
+        return floorMod(epochDay + EPOCH_DAY_OF_WEEK, 7);
+    }
+
+    /**
+     * @param epochDay
+     *            the epoch day to convert
+     * 
+     * @return an array containing the year, month (where 1 is January) and day of the month
+     */
+    protected static int[] toCivil(final int epochDay) {
+        final int z = epochDay + 719468;
+        final int era = (z >= 0 ? z : z - 146096) / 146097;
+        final int dayOfEra = z - era * 146097;
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int mp = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        final int month = mp + (mp < 10 ? 3 : -9);
+        final int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return new int[] { year, month, day };
+    }
+
+    protected static int floorDiv(final int x, final int y) {
+        final int q = x / y;
+        return (x % y != 0 && ((x < 0) != (y < 0))) ? q - 1 : q;
+    }
+
+    protected static int floorMod(final int x, final int y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
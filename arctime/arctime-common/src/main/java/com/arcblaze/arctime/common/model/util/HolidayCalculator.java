@@ -1,16 +1,14 @@
 package com.arcblaze.arctime.common.model.util;
 
-import java.text.ParseException;
 import java.util.Date;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.time.DateFormatUtils;
-import org.apache.commons.lang.time.DateUtils;
 
 /**
- * Used to perform calculations to determine when a holiday will occur.
+ * Used to perform calculations to determine when a holiday will occur. Configurations are parsed into
+ * {@link CompiledHoliday} objects, which calculate holiday dates using plain day arithmetic.
  */
 public class HolidayCalculator {
     private final static String OCCURRENCES = "(1st|1|2nd|2|3rd|3|4th|4|"
@@ -52,68 +50,55 @@ public class HolidayCalculator {
      *             if there is a problem parsing the provided holiday configuration
      */
     public static Date getDay(final String config, final int year) throws HolidayConfigurationException {
+        return compile(config).getDay(year);
+    }
+
+    /**
+     * Parse a holiday configuration once so that the day on which the holiday occurs can be calculated repeatedly
+     * without parsing the configuration each time.
+     * 
+     * @param config
+     *            the holiday configuration text
+     * 
+     * @return the compiled holiday configuration
+     * 
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing the provided holiday configuration
+     */
+    public static CompiledHoliday compile(final String config) throws HolidayConfigurationException {
         if (StringUtils.isBlank(config))
             throw new HolidayConfigurationException("Invalid blank config");
-        if (year < 1970 || year > 2200)
-            throw new HolidayConfigurationException("Invalid year: " + year);
-
-        Date holiday = null;
-        try {
-            final Matcher weekOccMatcher = WEEK_OCCURRENCE_PATTERN.matcher(config);
-            final Matcher dateMatcher = DATE_PATTERN.matcher(config);
-            if (weekOccMatcher.matches()) {
-                // convert "1st" into 1.
-                final int week = convertToInt(weekOccMatcher.group(1));
-                // the full day, e.g., Thursday
-                final String day = normalizeDay(weekOccMatcher.group(2));
-                // the month number, e.g., 1 == January
-                final int month = convertMonth(weekOccMatcher.group(3));
-
-                if (week < 0) {
-                    // Looking for "last"
-                    holiday = DateUtils.parseDate(String.format("%d-%02d-01", year, month + 1),
-                            new String[] { "yyyy-MM-dd" });
-                    while (!StringUtils.equalsIgnoreCase(day, DateFormatUtils.format(holiday, "EEEE")))
-                        holiday = DateUtils.addDays(holiday, -1);
-                } else {
-                    holiday = DateUtils.parseDate(String.format("%d-%02d-01", year, month),
-                            new String[] { "yyyy-MM-dd" });
-                    while (!StringUtils.equalsIgnoreCase(day, DateFormatUtils.format(holiday, "EEEE")))
-                        holiday = DateUtils.addDays(holiday, 1);
-                    if (week > 1)
-                        holiday = DateUtils.addWeeks(holiday, week - 1);
-                }
-
-                final String modifier = weekOccMatcher.group(4);
-                if (StringUtils.isNotBlank(modifier)) {
-                    int count = Integer.parseInt(weekOccMatcher.group(6));
-                    if (StringUtils.equals("-", weekOccMatcher.group(5)))
-                        count *= -1;
-                    holiday = DateUtils.addDays(holiday, count);
-                }
-            } else if (dateMatcher.matches()) {
-                // the month number, e.g., 1 == January
-                final int month = convertMonth(dateMatcher.group(1));
-                // the day number, 1 == "1st"
-                final int day = convertToInt(dateMatcher.group(2));
-
-                holiday = DateUtils.parseDate(String.format("%d-%02d-%02d", year, month, day),
-                        new String[] { "yyyy-MM-dd" });
-
-                final String observance = dateMatcher.group(3);
-                if (StringUtils.isNotBlank(observance)) {
-                    if ("Saturday".equals(DateFormatUtils.format(holiday, "EEEE")))
-                        holiday = DateUtils.addDays(holiday, -1); // use Friday
-                    if ("Sunday".equals(DateFormatUtils.format(holiday, "EEEE")))
-                        holiday = DateUtils.addDays(holiday, 1); // use Monday
-                }
-            } else
-                throw new HolidayConfigurationException("Unrecognized holiday configuration pattern: " + config);
-        } catch (final ParseException badDate) {
-            throw new HolidayConfigurationException("Failed to parse date.", badDate);
+
+        final Matcher weekOccMatcher = WEEK_OCCURRENCE_PATTERN.matcher(config);
+        if (weekOccMatcher.matches()) {
+            // convert "1st" into 1.
+            final int week = convertToInt(weekOccMatcher.group(1));
+            // the day of the week, e.g., 4 == Thursday
+            final int day = convertDay(weekOccMatcher.group(2));
+            // the month number, e.g., 1 == January
+            final int month = convertMonth(weekOccMatcher.group(3));
+
+            int offset = 0;
+            final String modifier = weekOccMatcher.group(4);
+            if (StringUtils.isNotBlank(modifier)) {
+                offset = Integer.parseInt(weekOccMatcher.group(6));
+                if (StringUtils.equals("-", weekOccMatcher.group(5)))
+                    offset *= -1;
+            }
+            return new CompiledHoliday(config, month, week, day, offset);
+        }
+
+        final Matcher dateMatcher = DATE_PATTERN.matcher(config);
+        if (dateMatcher.matches()) {
+            // the month number, e.g., 1 == January
+            final int month = convertMonth(dateMatcher.group(1));
+            // the day number, 1 == "1st"
+            final int day = convertToInt(dateMatcher.group(2));
+            final boolean observance = StringUtils.isNotBlank(dateMatcher.group(3));
+            return new CompiledHoliday(config, month, day, observance);
         }
 
-        return holiday;
+        throw new HolidayConfigurationException("Unrecognized holiday configuration pattern: " + config);
     }
 
     /**
@@ -184,25 +169,25 @@ public class HolidayCalculator {
 
     /**
      * @param day
-     *            the day value (e.g., "MON" or "monday") to be converted into its normalized value (e.g., "Monday")
+     *            the day value (e.g., "MON" or "monday") to be converted into its numeric value
      * 
-     * @return the corresponding normalized day value for the provided day
+     * @return the corresponding day of the week, where 0 is Sunday and 6 is Saturday
      */
-    protected static String normalizeDay(final String day) {
+    protected static int convertDay(final String day) {
         if (StringUtils.startsWithIgnoreCase(day, "sun"))
-            return "Sunday";
+            return 0;
         if (StringUtils.startsWithIgnoreCase(day, "mon"))
-            return "Monday";
+            return 1;
         if (StringUtils.startsWithIgnoreCase(day, "tue"))
-            return "Tuesday";
+            return 2;
         if (StringUtils.startsWithIgnoreCase(day, "wed"))
-            return "Wednesday";
+            return 3;
         if (StringUtils.startsWithIgnoreCase(day, "thu"))
-            return "Thursday";
+            return 4;
         if (StringUtils.startsWithIgnoreCase(day, "fri"))
-            return "Friday";
+            return 5;
         if (StringUtils.startsWithIgnoreCase(day, "sat"))
-            return "Saturday";
-        return null;
+            return 6;
+        return -1;
     }
 }
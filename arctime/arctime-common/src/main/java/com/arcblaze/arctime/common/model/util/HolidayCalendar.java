@@ -0,0 +1,155 @@
+package com.arcblaze.arctime.common.model.util;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.arcblaze.arctime.common.model.Holiday;
+import com.arcblaze.arctime.common.model.PayPeriod;
+
+/**
+ * An index of the days on which a set of holidays occur. For each year that is requested, the epoch days on which the
+ * holidays fall are calculated once and kept in a sorted array, so finding the holidays within a range of days is a
+ * binary search rather than a calculation for every holiday. Instances are safe to share between threads.
+ */
+public class HolidayCalendar {
+    /**
+     * The holidays occurring during a single year, sorted by the epoch day on which they occur.
+     */
+    private static class Year {
+        private final int[] days;
+        private final Holiday[] holidays;
+
+        public Year(final int[] days, final Holiday[] holidays) {
+            this.days = days;
+            this.holidays = holidays;
+        }
+    }
+
+    /** The holidays included in this calendar. */
+    private final Set<Holiday> holidays;
+
+    /** The indexed years, created as they are requested. */
+    private final ConcurrentMap<Integer, Year> years = new ConcurrentHashMap<>();
+
+    /**
+     * @param holidays
+     *            the holidays to include in the calendar
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided holidays are invalid
+     */
+    public HolidayCalendar(final Collection<Holiday> holidays) {
+        notNull(holidays, "Invalid null holidays");
+
+        this.holidays = Collections.unmodifiableSet(new TreeSet<>(holidays));
+    }
+
+    /**
+     * @return the unmodifiable set of holidays included in this calendar
+     */
+    public Set<Holiday> getHolidays() {
+        return this.holidays;
+    }
+
+    /**
+     * @param payPeriod
+     *            the pay period for which holidays will be found
+     * 
+     * @return the holidays from this calendar that fall within the provided pay period
+     * 
+     * @throws HolidayConfigurationException
+     *             if there is a problem with a holiday configuration
+     */
+    public Set<Holiday> getForPayPeriod(final PayPeriod payPeriod) throws HolidayConfigurationException {
+        notNull(payPeriod, "Invalid null pay period");
+
+        if (payPeriod.getBegin() == null || payPeriod.getEnd() == null)
+            return new TreeSet<>();
+        return getBetween(EpochDays.of(payPeriod.getBegin()), EpochDays.of(payPeriod.getEnd()));
+    }
+
+    /**
+     * @param begin
+     *            the first epoch day in the range, inclusive
+     * @param end
+     *            the last epoch day in the range, inclusive
+     * 
+     * @return the holidays from this calendar that fall within the provided range of days
+     * 
+     * @throws HolidayConfigurationException
+     *             if there is a problem with a holiday configuration
+     */
+    public Set<Holiday> getBetween(final int begin, final int end) throws HolidayConfigurationException {
+        final Set<Holiday> found = new TreeSet<>();
+        if (this.holidays.isEmpty() || end < begin)
+            return found;
+
+        for (int y = EpochDays.year(begin); y <= EpochDays.year(end); y++) {
+            final Year year = getYear(y);
+            for (int i = lowerBound(year.days, begin); i < year.days.length && year.days[i] <= end; i++)
+                found.add(year.holidays[i]);
+        }
+        return found;
+    }
+
+    protected Year getYear(final int year) throws HolidayConfigurationException {
+        Year index = this.years.get(year);
+        if (index == null) {
+            final List<Holiday> sorted = new ArrayList<>(this.holidays);
+            final List<Integer> days = new ArrayList<>(sorted.size());
+            for (final Holiday holiday : sorted)
+                days.add(holiday.getEpochDayForYear(year));
+
+            final List<Integer> order = new ArrayList<>(sorted.size());
+            for (int i = 0; i < sorted.size(); i++)
+                order.add(i);
+            Collections.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer a, final Integer b) {
+                    return days.get(a).compareTo(days.get(b));
+                }
+            });
+
+            final int[] dayArray = new int[order.size()];
+            final Holiday[] holidayArray = new Holiday[order.size()];
+            for (int i = 0; i < order.size(); i++) {
+                dayArray[i] = days.get(order.get(i));
+                holidayArray[i] = sorted.get(order.get(i));
+            }
+
+            index = new Year(dayArray, holidayArray);
+            this.years.putIfAbsent(year, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param days
+     *            the sorted array of epoch days to search
+     * @param day
+     *            the epoch day to find
+     * 
+     * @return the index of the first entry in the array that is greater than or equal to the provided day
+     */
+    protected static int lowerBound(final int[] days, final int day) {
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (days[mid] < day)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
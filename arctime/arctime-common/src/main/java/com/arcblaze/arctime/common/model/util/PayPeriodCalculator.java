@@ -0,0 +1,204 @@
+package com.arcblaze.arctime.common.model.util;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
+
+/**
+ * Calculates the pay periods of a company directly from a reference pay period, without stepping through each of the
+ * pay periods in between. The calculations are performed on epoch days (see {@link EpochDays}), so finding the pay
+ * period containing a day many years away from the reference takes the same time as finding the next one.
+ * <p>
+ * Weekly and bi-weekly pay periods repeat every 7 or 14 days from the beginning of the reference pay period. Monthly
+ * pay periods begin on the same day of every month as the reference pay period, and semi-monthly pay periods begin on
+ * the same two days of every month as the reference pay period and the one following it. When a month is too short
+ * to contain the configured day, the pay period begins on the last day of that month.
+ */
+public class PayPeriodCalculator {
+    /** The unique id of the company for which pay periods are calculated. */
+    private final Integer companyId;
+
+    /** The type of pay periods calculated. */
+    private final PayPeriodType type;
+
+    /** The epoch day on which the reference pay period begins. */
+    private final int anchor;
+
+    /** The days of the month on which monthly or semi-monthly pay periods begin, in ascending order. */
+    private final int[] days;
+
+    /**
+     * @param reference
+     *            the pay period from which all other pay periods will be calculated
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided pay period is invalid, or is a custom pay period
+     */
+    public PayPeriodCalculator(final PayPeriod reference) {
+        notNull(reference, "Invalid null pay period");
+        notNull(reference.getType(), "Invalid null pay period type");
+        notNull(reference.getBegin(), "Invalid null pay period begin");
+        notNull(reference.getEnd(), "Invalid null pay period end");
+        isTrue(reference.getType() != PayPeriodType.CUSTOM, "Unable to calculate custom pay periods");
+
+        this.companyId = reference.getCompanyId();
+        this.type = reference.getType();
+        this.anchor = EpochDays.of(reference.getBegin());
+
+        final int beginDay = EpochDays.toCivil(this.anchor)[2];
+        if (this.type == PayPeriodType.SEMI_MONTHLY) {
+            // The second pay period in the month begins on the day after the reference pay period ends.
+            final int nextDay = EpochDays.toCivil(EpochDays.of(reference.getEnd()) + 1)[2];
+            this.days = new int[] { Math.min(beginDay, nextDay), Math.max(beginDay, nextDay) };
+        } else
+            this.days = new int[] { beginDay };
+    }
+
+    /**
+     * @return the type of pay periods calculated
+     */
+    public PayPeriodType getType() {
+        return this.type;
+    }
+
+    /**
+     * @param epochDay
+     *            the epoch day for which the containing pay period will be found
+     * 
+     * @return the epoch day on which the pay period containing the provided day begins
+     */
+    public int getBegin(final int epochDay) {
+        switch (this.type) {
+        case WEEKLY:
+            return this.anchor + EpochDays.floorDiv(epochDay - this.anchor, 7) * 7;
+        case BI_WEEKLY:
+            return this.anchor + EpochDays.floorDiv(epochDay - this.anchor, 14) * 14;
+        default:
+            // The latest pay period beginning on or before the day, which is at most one month earlier.
+            final int month = getMonth(epochDay);
+            for (int m = month; m >= month - 1; m--)
+                for (int d = this.days.length - 1; d >= 0; d--) {
+                    final int begin = getDayInMonth(m, this.days[d]);
+                    if (begin <= epochDay)
+                        return begin;
+                }
+            throw new IllegalStateException("Unable to find the pay period containing epoch day " + epochDay);
+        }
+    }
+
+    /**
+     * @param epochDay
+     *            the epoch day for which the containing pay period will be found
+     * 
+     * @return the epoch day on which the pay period containing the provided day ends
+     */
+    public int getEnd(final int epochDay) {
+        final int begin = getBegin(epochDay);
+        switch (this.type) {
+        case WEEKLY:
+            return begin + 6;
+        case BI_WEEKLY:
+            return begin + 13;
+        default:
+            // The day before the next pay period begins, which is at most one month later.
+            final int month = getMonth(begin);
+            for (int m = month; m <= month + 1; m++)
+                for (int d = 0; d < this.days.length; d++) {
+                    final int next = getDayInMonth(m, this.days[d]);
+                    if (next > begin)
+                        return next - 1;
+                }
+            throw new IllegalStateException("Unable to find the pay period containing epoch day " + epochDay);
+        }
+    }
+
+    /**
+     * @param day
+     *            the day for which the containing pay period will be found
+     * 
+     * @return the pay period containing the provided day
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided day is invalid
+     */
+    public PayPeriod getContaining(final Date day) {
+        notNull(day, "Invalid null day");
+
+        return getContaining(EpochDays.of(day));
+    }
+
+    /**
+     * @param epochDay
+     *            the epoch day for which the containing pay period will be found
+     * 
+     * @return the pay period containing the provided epoch day
+     */
+    public PayPeriod getContaining(final int epochDay) {
+        return toPayPeriod(getBegin(epochDay), getEnd(epochDay));
+    }
+
+    /**
+     * @param first
+     *            the first epoch day in the range, inclusive
+     * @param last
+     *            the last epoch day in the range, inclusive
+     * 
+     * @return all of the pay periods that overlap the provided range of days, in order, possibly empty but never
+     *         {@code null}
+     */
+    public List<PayPeriod> getBetween(final int first, final int last) {
+        final List<PayPeriod> payPeriods = new ArrayList<>();
+        int day = first;
+        while (day <= last) {
+            final int begin = getBegin(day);
+            final int end = getEnd(day);
+            payPeriods.add(toPayPeriod(begin, end));
+            day = end + 1;
+        }
+        return payPeriods;
+    }
+
+    protected PayPeriod toPayPeriod(final int begin, final int end) {
+        final PayPeriod payPeriod = new PayPeriod();
+        if (this.companyId != null)
+            payPeriod.setCompanyId(this.companyId);
+        payPeriod.setType(this.type);
+        payPeriod.setBegin(EpochDays.toDate(begin));
+        payPeriod.setEnd(EpochDays.toDate(end));
+        return payPeriod;
+    }
+
+    /**
+     * @param epochDay
+     *            the epoch day for which the month will be determined
+     * 
+     * @return the number of months since the start of year 0 in which the epoch day falls
+     */
+    protected static int getMonth(final int epochDay) {
+        final int[] civil = EpochDays.toCivil(epochDay);
+        return civil[0] * 12 + civil[1] - 1;
+    }
+
+    /**
+     * @param month
+     *            the number of months since the start of year 0
+     * @param day
+     *            the day of the month
+     * 
+     * @return the epoch day for the provided day of the month, or of the last day of the month when the month is too
+     *         short to contain the day
+     */
+    protected static int getDayInMonth(final int month, final int day) {
+        final int year = EpochDays.floorDiv(month, 12);
+        final int monthOfYear = EpochDays.floorMod(month, 12) + 1;
+        final int first = EpochDays.of(year, monthOfYear, 1);
+        final int last = EpochDays.of(year, monthOfYear + 1, 1) - 1;
+        return Math.min(first + day - 1, last);
+    }
+}
@@ -0,0 +1,180 @@
+package com.arcblaze.arctime.common.model.util;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.arcblaze.arctime.common.model.PayPeriod;
+
+/**
+ * An in-memory index of the pay periods in a single company, sorted by the day on which each pay period begins so
+ * that the pay period containing a day is found with a binary search. The index is safe to share between threads:
+ * lookups read an immutable snapshot of the pay periods, and additions replace the snapshot with a new one. All of the
+ * pay periods returned from the index are copies.
+ */
+public class PayPeriodIndex {
+    /**
+     * An immutable view of the indexed pay periods, held in parallel arrays sorted by begin day.
+     */
+    private static class Snapshot {
+        private final int[] begins;
+        private final int[] ends;
+        private final PayPeriod[] payPeriods;
+
+        public Snapshot(final Map<Integer, PayPeriod> sorted) {
+            this.begins = new int[sorted.size()];
+            this.ends = new int[sorted.size()];
+            this.payPeriods = new PayPeriod[sorted.size()];
+
+            int index = 0;
+            for (final Map.Entry<Integer, PayPeriod> entry : sorted.entrySet()) {
+                this.begins[index] = entry.getKey();
+                this.ends[index] = EpochDays.of(entry.getValue().getEnd());
+                this.payPeriods[index] = entry.getValue();
+                index++;
+            }
+        }
+    }
+
+    /** The current snapshot of the indexed pay periods. */
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param payPeriods
+     *            the pay periods to index
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided pay periods are invalid
+     */
+    public PayPeriodIndex(final Collection<PayPeriod> payPeriods) {
+        notNull(payPeriods, "Invalid null pay periods");
+
+        this.snapshot = new Snapshot(merge(new TreeMap<Integer, PayPeriod>(), payPeriods));
+    }
+
+    private static Map<Integer, PayPeriod> merge(final Map<Integer, PayPeriod> sorted,
+            final Collection<PayPeriod> payPeriods) {
+        for (final PayPeriod payPeriod : payPeriods)
+            if (payPeriod != null && payPeriod.getBegin() != null && payPeriod.getEnd() != null)
+                sorted.put(EpochDays.of(payPeriod.getBegin()), new PayPeriod(payPeriod));
+        return sorted;
+    }
+
+    /**
+     * @param payPeriods
+     *            the new pay periods to add to the index, replacing any indexed pay periods with the same begin day
+     */
+    public synchronized void add(final Collection<PayPeriod> payPeriods) {
+        if (payPeriods == null || payPeriods.isEmpty())
+            return;
+
+        final Snapshot current = this.snapshot;
+        final Map<Integer, PayPeriod> sorted = new TreeMap<>();
+        for (int i = 0; i < current.begins.length; i++)
+            sorted.put(current.begins[i], current.payPeriods[i]);
+        this.snapshot = new Snapshot(merge(sorted, payPeriods));
+    }
+
+    /**
+     * @return the number of pay periods in the index
+     */
+    public int size() {
+        return this.snapshot.begins.length;
+    }
+
+    /**
+     * @param begin
+     *            the day on which the requested pay period begins
+     * 
+     * @return a copy of the pay period beginning on the provided day, or {@code null} if not indexed
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided begin day is invalid
+     */
+    public PayPeriod get(final Date begin) {
+        notNull(begin, "Invalid null begin date");
+
+        final Snapshot current = this.snapshot;
+        final int day = EpochDays.of(begin);
+        final int index = floor(current.begins, day);
+        return index >= 0 && current.begins[index] == day ? new PayPeriod(current.payPeriods[index]) : null;
+    }
+
+    /**
+     * @param begin
+     *            the day on which the pay period begins
+     * 
+     * @return whether a pay period beginning on the provided day is indexed
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided begin day is invalid
+     */
+    public boolean exists(final Date begin) {
+        notNull(begin, "Invalid null begin date");
+
+        final Snapshot current = this.snapshot;
+        final int day = EpochDays.of(begin);
+        final int index = floor(current.begins, day);
+        return index >= 0 && current.begins[index] == day;
+    }
+
+    /**
+     * @param day
+     *            the day for which the containing pay period will be found
+     * 
+     * @return a copy of the indexed pay period containing the provided day, or {@code null} if not indexed
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided day is invalid
+     */
+    public PayPeriod getContaining(final Date day) {
+        notNull(day, "Invalid null day");
+
+        final Snapshot current = this.snapshot;
+        final int epochDay = EpochDays.of(day);
+        final int index = floor(current.begins, epochDay);
+        return index >= 0 && current.ends[index] >= epochDay ? new PayPeriod(current.payPeriods[index]) : null;
+    }
+
+    /**
+     * @return a copy of the indexed pay period that begins first, or {@code null} if the index is empty
+     */
+    public PayPeriod getEarliest() {
+        final Snapshot current = this.snapshot;
+        return current.payPeriods.length == 0 ? null : new PayPeriod(current.payPeriods[0]);
+    }
+
+    /**
+     * @return a copy of the indexed pay period that begins last, or {@code null} if the index is empty
+     */
+    public PayPeriod getLatest() {
+        final Snapshot current = this.snapshot;
+        final int length = current.payPeriods.length;
+        return length == 0 ? null : new PayPeriod(current.payPeriods[length - 1]);
+    }
+
+    /**
+     * @param begins
+     *            the sorted array of begin days to search
+     * @param day
+     *            the epoch day to find
+     * 
+     * @return the index of the last entry in the array that is less than or equal to the provided day, or -1 if all
+     *         of the entries are greater than the provided day
+     */
+    protected static int floor(final int[] begins, final int day) {
+        int low = 0;
+        int high = begins.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (begins[mid] <= day)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return high;
+    }
+}
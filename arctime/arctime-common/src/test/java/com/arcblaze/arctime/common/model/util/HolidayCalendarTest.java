@@ -0,0 +1,133 @@
+package com.arcblaze.arctime.common.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Test;
+
+import com.arcblaze.arctime.common.model.Holiday;
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
+
+/**
+ * Perform testing of the {@link HolidayCalendar}.
+ */
+public class HolidayCalendarTest {
+    private final static String[] FMT = { "yyyyMMdd" };
+
+    private final static String[] CONFIGS = { "January 1st Observance", "3rd Monday in January",
+            "3rd Monday in February", "Last Monday in May", "July 4th Observance", "1st Monday in September",
+            "2nd Monday in October", "November 11th Observance", "4th Thursday in November",
+            "4th Thursday in November + 1", "Last Friday in November", "December 25th Observance", "December 31st" };
+
+    private static Set<Holiday> getHolidays() throws HolidayConfigurationException {
+        final Set<Holiday> holidays = new TreeSet<>();
+        for (int i = 0; i < CONFIGS.length; i++)
+            holidays.add(new Holiday().setId(i + 1).setCompanyId(1).setDescription(CONFIGS[i]).setConfig(CONFIGS[i]));
+        return holidays;
+    }
+
+    /**
+     * Test the epoch day calculations against the calendar-based dates.
+     * 
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     */
+    @Test
+    public void testEpochDays() throws HolidayConfigurationException {
+        for (final Holiday holiday : getHolidays()) {
+            for (int year = 1990; year <= 2060; year++) {
+                final int epochDay = holiday.getEpochDayForYear(year);
+                assertEquals(epochDay, EpochDays.of(holiday.getDateForYear(year)));
+                assertEquals(DateFormatUtils.format(holiday.getDateForYear(year), "yyyy-MM-dd"),
+                        DateFormatUtils.format(EpochDays.toDate(epochDay), "yyyy-MM-dd"));
+            }
+        }
+    }
+
+    /**
+     * Test the "last" day of a month does not spill into the following month.
+     * 
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     */
+    @Test
+    public void testLastDayOfMonth() throws HolidayConfigurationException {
+        // May 31st, 2010 was a Monday.
+        assertEquals("2010-05-31 Mon",
+                DateFormatUtils.format(HolidayCalculator.getDay("Last Monday in May", 2010), "yyyy-MM-dd EEE"));
+        // November 30th, 2012 was a Friday.
+        assertEquals("2012-11-30 Fri",
+                DateFormatUtils.format(HolidayCalculator.getDay("Last Friday in November", 2012), "yyyy-MM-dd EEE"));
+        assertEquals("2014-05-26 Mon",
+                DateFormatUtils.format(HolidayCalculator.getDay("Last Monday in May", 2014), "yyyy-MM-dd EEE"));
+    }
+
+    /**
+     * Test the pay period lookups against the {@link PayPeriod#contains(Holiday)} method.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     */
+    @Test
+    public void testGetForPayPeriod() throws ParseException, HolidayConfigurationException {
+        final Set<Holiday> holidays = getHolidays();
+        final HolidayCalendar calendar = new HolidayCalendar(holidays);
+
+        final PayPeriod[] payPeriods = {
+                new PayPeriod().setCompanyId(1).setType(PayPeriodType.WEEKLY)
+                        .setBegin(DateUtils.parseDate("20121229", FMT)).setEnd(DateUtils.parseDate("20130104", FMT)),
+                new PayPeriod().setCompanyId(1).setType(PayPeriodType.BI_WEEKLY)
+                        .setBegin(DateUtils.parseDate("20121229", FMT)).setEnd(DateUtils.parseDate("20130111", FMT)),
+                new PayPeriod().setCompanyId(1).setType(PayPeriodType.SEMI_MONTHLY)
+                        .setBegin(DateUtils.parseDate("20121216", FMT)).setEnd(DateUtils.parseDate("20121231", FMT)),
+                new PayPeriod().setCompanyId(1).setType(PayPeriodType.MONTHLY)
+                        .setBegin(DateUtils.parseDate("20121201", FMT)).setEnd(DateUtils.parseDate("20121231", FMT)) };
+
+        for (PayPeriod payPeriod : payPeriods) {
+            for (int i = 0; i < 200; i++) {
+                final Set<Holiday> expected = new TreeSet<>();
+                for (final Holiday holiday : holidays)
+                    if (payPeriod.contains(holiday))
+                        expected.add(holiday);
+                assertEquals(payPeriod.toString(), expected, calendar.getForPayPeriod(payPeriod));
+                payPeriod = payPeriod.getNext();
+            }
+        }
+    }
+
+    /**
+     * Test the lookups on a range crossing the end of a year.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     */
+    @Test
+    public void testGetBetween() throws ParseException, HolidayConfigurationException {
+        final HolidayCalendar calendar = new HolidayCalendar(getHolidays());
+
+        final int begin = EpochDays.of(DateUtils.parseDate("20131220", FMT));
+        final int end = EpochDays.of(DateUtils.parseDate("20140110", FMT));
+
+        final Set<String> found = new TreeSet<>();
+        for (final Holiday holiday : calendar.getBetween(begin, end))
+            found.add(holiday.getConfig());
+        assertEquals(new TreeSet<>(Arrays.asList("December 25th Observance", "December 31st",
+                "January 1st Observance")), found);
+
+        assertTrue(calendar.getBetween(end, begin).isEmpty());
+        assertTrue(new HolidayCalendar(Collections.<Holiday> emptySet()).getBetween(begin, end).isEmpty());
+    }
+}
@@ -0,0 +1,161 @@
+package com.arcblaze.arctime.common.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.ParseException;
+import java.util.List;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Test;
+
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
+
+/**
+ * Perform testing of the {@link PayPeriodCalculator}.
+ */
+public class PayPeriodCalculatorTest {
+    private final static String[] FMT = { "yyyyMMdd" };
+
+    private static PayPeriod payPeriod(final PayPeriodType type, final String begin, final String end)
+            throws ParseException {
+        return new PayPeriod().setCompanyId(1).setType(type).setBegin(DateUtils.parseDate(begin, FMT))
+                .setEnd(DateUtils.parseDate(end, FMT));
+    }
+
+    private static String containing(final PayPeriodCalculator calculator, final String day) throws ParseException {
+        final PayPeriod payPeriod = calculator.getContaining(DateUtils.parseDate(day, FMT));
+        return DateFormatUtils.format(payPeriod.getBegin(), "yyyyMMdd") + "-"
+                + DateFormatUtils.format(payPeriod.getEnd(), "yyyyMMdd");
+    }
+
+    /**
+     * @throws ParseException
+     *             if there is a date processing issue
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCustom() throws ParseException {
+        new PayPeriodCalculator(payPeriod(PayPeriodType.CUSTOM, "20140101", "20140110"));
+    }
+
+    /**
+     * Test the calculation of weekly pay periods.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     */
+    @Test
+    public void testWeekly() throws ParseException {
+        final PayPeriodCalculator calculator = new PayPeriodCalculator(payPeriod(PayPeriodType.WEEKLY, "20140101",
+                "20140107"));
+
+        assertEquals("20140101-20140107", containing(calculator, "20140101"));
+        assertEquals("20140101-20140107", containing(calculator, "20140107"));
+        assertEquals("20131225-20131231", containing(calculator, "20131231"));
+        assertEquals("20040107-20040113", containing(calculator, "20040110"));
+        assertEquals("20240103-20240109", containing(calculator, "20240105"));
+    }
+
+    /**
+     * Test the calculation of bi-weekly pay periods.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     */
+    @Test
+    public void testBiWeekly() throws ParseException {
+        final PayPeriodCalculator calculator = new PayPeriodCalculator(payPeriod(PayPeriodType.BI_WEEKLY,
+                "20140101", "20140114"));
+
+        assertEquals("20140101-20140114", containing(calculator, "20140114"));
+        assertEquals("20131218-20131231", containing(calculator, "20131218"));
+        assertEquals("20140115-20140128", containing(calculator, "20140120"));
+    }
+
+    /**
+     * Test the calculation of monthly pay periods.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     */
+    @Test
+    public void testMonthly() throws ParseException {
+        final PayPeriodCalculator calculator = new PayPeriodCalculator(payPeriod(PayPeriodType.MONTHLY, "20140101",
+                "20140131"));
+
+        assertEquals("20140201-20140228", containing(calculator, "20140215"));
+        assertEquals("20120201-20120229", containing(calculator, "20120229"));
+        assertEquals("19991201-19991231", containing(calculator, "19991231"));
+
+        final PayPeriodCalculator midMonth = new PayPeriodCalculator(payPeriod(PayPeriodType.MONTHLY, "20140115",
+                "20140214"));
+
+        assertEquals("20140115-20140214", containing(midMonth, "20140214"));
+        assertEquals("20140215-20140314", containing(midMonth, "20140215"));
+        assertEquals("20081215-20090114", containing(midMonth, "20090101"));
+
+        final PayPeriodCalculator endOfMonth = new PayPeriodCalculator(payPeriod(PayPeriodType.MONTHLY, "20140131",
+                "20140227"));
+
+        assertEquals("20140228-20140330", containing(endOfMonth, "20140301"));
+        assertEquals("20140331-20140429", containing(endOfMonth, "20140331"));
+        assertEquals("20160229-20160330", containing(endOfMonth, "20160229"));
+    }
+
+    /**
+     * Test the calculation of semi-monthly pay periods.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     */
+    @Test
+    public void testSemiMonthly() throws ParseException {
+        final PayPeriodCalculator calculator = new PayPeriodCalculator(payPeriod(PayPeriodType.SEMI_MONTHLY,
+                "20140101", "20140115"));
+
+        assertEquals("20140116-20140131", containing(calculator, "20140120"));
+        assertEquals("20140201-20140215", containing(calculator, "20140201"));
+        assertEquals("20140216-20140228", containing(calculator, "20140228"));
+        assertEquals("20001216-20001231", containing(calculator, "20001231"));
+
+        final PayPeriodCalculator midMonth = new PayPeriodCalculator(payPeriod(PayPeriodType.SEMI_MONTHLY,
+                "20140110", "20140125"));
+
+        assertEquals("20140110-20140125", containing(midMonth, "20140110"));
+        assertEquals("20140126-20140209", containing(midMonth, "20140201"));
+        assertEquals("20131226-20140109", containing(midMonth, "20140101"));
+    }
+
+    /**
+     * Test the pay periods over a range of days are contiguous.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     */
+    @Test
+    public void testGetBetween() throws ParseException {
+        final PayPeriod[] references = { payPeriod(PayPeriodType.WEEKLY, "20140101", "20140107"),
+                payPeriod(PayPeriodType.BI_WEEKLY, "20140101", "20140114"),
+                payPeriod(PayPeriodType.SEMI_MONTHLY, "20140110", "20140125"),
+                payPeriod(PayPeriodType.MONTHLY, "20140115", "20140214") };
+
+        final int first = EpochDays.of(DateUtils.parseDate("20100105", FMT));
+        final int last = EpochDays.of(DateUtils.parseDate("20180720", FMT));
+        for (final PayPeriod reference : references) {
+            final List<PayPeriod> payPeriods = new PayPeriodCalculator(reference).getBetween(first, last);
+
+            assertTrue(payPeriods.get(0).contains(EpochDays.toDate(first)));
+            assertTrue(payPeriods.get(payPeriods.size() - 1).contains(EpochDays.toDate(last)));
+            for (int i = 1; i < payPeriods.size(); i++) {
+                final PayPeriod previous = payPeriods.get(i - 1);
+                final PayPeriod current = payPeriods.get(i);
+                assertEquals(EpochDays.of(previous.getEnd()) + 1, EpochDays.of(current.getBegin()));
+                assertTrue(current.getEnd().after(current.getBegin()));
+                assertEquals(current, previous.getNext());
+                assertEquals(previous, current.getPrevious());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.arcblaze.arctime.common.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Test;
+
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
+
+/**
+ * Perform testing of the {@link PayPeriodIndex}.
+ */
+public class PayPeriodIndexTest {
+    private final static String[] FMT = { "yyyyMMdd" };
+
+    private static PayPeriod payPeriod(final String begin, final String end) throws ParseException {
+        return new PayPeriod().setCompanyId(1).setType(PayPeriodType.WEEKLY).setBegin(DateUtils.parseDate(begin, FMT))
+                .setEnd(DateUtils.parseDate(end, FMT));
+    }
+
+    /**
+     * Test an empty index.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     */
+    @Test
+    public void testEmpty() throws ParseException {
+        final PayPeriodIndex index = new PayPeriodIndex(Collections.<PayPeriod> emptyList());
+
+        assertEquals(0, index.size());
+        assertNull(index.getEarliest());
+        assertNull(index.getLatest());
+        assertNull(index.getContaining(DateUtils.parseDate("20140101", FMT)));
+        assertFalse(index.exists(DateUtils.parseDate("20140101", FMT)));
+    }
+
+    /**
+     * Test the lookups on an index, including after adding pay periods.
+     * 
+     * @throws ParseException
+     *             if there is a date processing issue
+     */
+    @Test
+    public void testLookups() throws ParseException {
+        final PayPeriod p1 = payPeriod("20140101", "20140107");
+        final PayPeriod p2 = payPeriod("20140108", "20140114");
+        final PayPeriod p3 = payPeriod("20140115", "20140121");
+        final PayPeriodIndex index = new PayPeriodIndex(Arrays.asList(p2, p1));
+
+        assertEquals(2, index.size());
+        assertEquals(p1, index.getEarliest());
+        assertEquals(p2, index.getLatest());
+        assertNotSame(p1, index.getEarliest());
+        assertEquals(p1, index.get(DateUtils.parseDate("20140101", FMT)));
+        assertNull(index.get(DateUtils.parseDate("20140102", FMT)));
+        assertTrue(index.exists(DateUtils.parseDate("20140108", FMT)));
+        assertFalse(index.exists(DateUtils.parseDate("20140109", FMT)));
+
+        assertNull(index.getContaining(DateUtils.parseDate("20131231", FMT)));
+        assertEquals(p1, index.getContaining(DateUtils.parseDate("20140101", FMT)));
+        assertEquals(p1, index.getContaining(DateUtils.parseDate("20140107", FMT)));
+        assertEquals(p2, index.getContaining(DateUtils.parseDate("20140110", FMT)));
+        assertNull(index.getContaining(DateUtils.parseDate("20140115", FMT)));
+
+        index.add(Arrays.asList(p3));
+        assertEquals(3, index.size());
+        assertEquals(p3, index.getLatest());
+        assertEquals(p3, index.getContaining(DateUtils.parseDate("20140115", FMT)));
+        assertEquals(p3, index.getContaining(DateUtils.parseDate("20140121", FMT)));
+        assertNull(index.getContaining(DateUtils.parseDate("20140122", FMT)));
+    }
+}
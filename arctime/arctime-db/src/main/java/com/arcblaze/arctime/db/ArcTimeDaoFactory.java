@@ -3,8 +3,10 @@ package com.arcblaze.arctime.db;
 import com.arcblaze.arccore.common.config.Config;
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DaoFactory;
+import com.arcblaze.arccore.db.DaoSession;
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.db.DatabaseType;
+import com.arcblaze.arccore.db.dao.UserDao;
 import com.arcblaze.arctime.db.dao.AssignmentDao;
 import com.arcblaze.arctime.db.dao.AuditLogDao;
 import com.arcblaze.arctime.db.dao.BillDao;
@@ -13,6 +15,7 @@ import com.arcblaze.arctime.db.dao.PayPeriodDao;
 import com.arcblaze.arctime.db.dao.SupervisorDao;
 import com.arcblaze.arctime.db.dao.TaskDao;
 import com.arcblaze.arctime.db.dao.TimesheetDao;
+import com.arcblaze.arctime.db.dao.jdbc.JdbcArcTimeUserDao;
 import com.arcblaze.arctime.db.dao.jdbc.JdbcAssignmentDao;
 import com.arcblaze.arctime.db.dao.jdbc.JdbcAuditLogDao;
 import com.arcblaze.arctime.db.dao.jdbc.JdbcBillDao;
@@ -34,6 +37,7 @@ public class ArcTimeDaoFactory extends DaoFactory {
     private TaskDao cachedTaskDao = null;
     private TimesheetDao cachedTimesheetDao = null;
     private SupervisorDao cachedSupervisorDao = null;
+    private UserDao cachedUserDao = null;
 
     /**
      * @param config
@@ -51,6 +55,22 @@ public class ArcTimeDaoFactory extends DaoFactory {
         super(connectionManager);
     }
 
+    /**
+     * @param session
+     *            the unit of work to which all of the DAOs created by this factory will be bound
+     */
+    public ArcTimeDaoFactory(final DaoSession session) {
+        super(session);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArcTimeDaoFactory openSession() {
+        return new ArcTimeDaoFactory(createSession());
+    }
+
     /**
      * @return an {@link AssignmentDao} based on the currently configured database
      */
@@ -163,6 +183,22 @@ public class ArcTimeDaoFactory extends DaoFactory {
         return this.cachedSupervisorDao;
     }
 
+    /**
+     * @return a {@link UserDao} based on the currently configured database, which also increments the versions of the
+     *         timesheets that include the changed users
+     */
+    @Override
+    public UserDao getUserDao() {
+        if (this.cachedUserDao == null) {
+            if (DatabaseType.JDBC.equals(getDatabaseType()))
+                this.cachedUserDao = new JdbcArcTimeUserDao(getConnectionManager());
+            else
+                throw new RuntimeException("Invalid database type: " + getDatabaseType());
+        }
+
+        return this.cachedUserDao;
+    }
+
     /**
      * Close any resources associated with the internal DAOs.
      * 
@@ -176,8 +212,10 @@ public class ArcTimeDaoFactory extends DaoFactory {
         this.cachedAuditLogDao = null;
         this.cachedBillDao = null;
         this.cachedHolidayDao = null;
+        this.cachedPayPeriodDao = null;
         this.cachedTaskDao = null;
         this.cachedTimesheetDao = null;
         this.cachedSupervisorDao = null;
+        this.cachedUserDao = null;
     }
 }
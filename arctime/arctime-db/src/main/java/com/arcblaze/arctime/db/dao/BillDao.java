@@ -1,6 +1,7 @@
 package com.arcblaze.arctime.db.dao;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import com.arcblaze.arccore.db.DatabaseException;
@@ -88,6 +89,40 @@ public interface BillDao {
      */
     int update(final Collection<Bill> bills) throws DatabaseException;
 
+    /**
+     * Insert or update the provided bills based on their assignment, task, user and day, without reading the existing
+     * bills. Existing bills are only modified when their hours are different.
+     * 
+     * @param bills
+     *            the bills to be inserted or updated
+     * 
+     * @return the provided bills that were inserted or whose hours changed, possibly empty but never {@code null};
+     *         the unique ids of the bills are not assigned
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided bills are invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    List<Bill> upsert(final Bill... bills) throws DatabaseException;
+
+    /**
+     * Insert or update the provided bills based on their assignment, task, user and day, without reading the existing
+     * bills. Existing bills are only modified when their hours are different.
+     * 
+     * @param bills
+     *            the bills to be inserted or updated
+     * 
+     * @return the provided bills that were inserted or whose hours changed, possibly empty but never {@code null};
+     *         the unique ids of the bills are not assigned
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided bills are invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    List<Bill> upsert(final Collection<Bill> bills) throws DatabaseException;
+
     /**
      * @param billIds
      *            the unique ids of the bills to be deleted
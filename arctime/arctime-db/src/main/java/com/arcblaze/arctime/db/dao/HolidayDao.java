@@ -6,6 +6,7 @@ import java.util.Set;
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arctime.common.model.Holiday;
 import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.util.HolidayCalendar;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
 
 /**
@@ -44,6 +45,22 @@ public interface HolidayDao {
      */
     Set<Holiday> getAll(final Integer companyId) throws DatabaseException, HolidayConfigurationException;
 
+    /**
+     * @param companyId
+     *            the unique id of the company for which the holiday calendar should be retrieved
+     * 
+     * @return the calendar indexing the days on which the holidays in the company occur, which is shared and must not
+     *         be modified
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided id is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing the holiday configuration information
+     */
+    HolidayCalendar getCalendar(final Integer companyId) throws DatabaseException, HolidayConfigurationException;
+
     /**
      * @return the common set of holidays, possibly empty but never {@code null}
      * 
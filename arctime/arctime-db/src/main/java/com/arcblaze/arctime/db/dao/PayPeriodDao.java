@@ -2,6 +2,7 @@ package com.arcblaze.arctime.db.dao;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arctime.common.model.PayPeriod;
@@ -99,6 +100,23 @@ public interface PayPeriodDao {
      */
     PayPeriod getLatest(final Integer companyId) throws DatabaseException;
 
+    /**
+     * Make sure the pay period containing the specified day exists in every active company that has pay periods. The
+     * missing pay periods for all of the companies are derived from their latest pay periods and inserted together.
+     * 
+     * @param day
+     *            the date for which the containing pay periods should be created
+     * 
+     * @return the pay periods containing the specified day, one for each company in which the pay period could be
+     *         derived
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided day is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    List<PayPeriod> provision(final Date day) throws DatabaseException;
+
     /**
      * @param payPeriods
      *            the new pay periods to be inserted
@@ -81,6 +81,31 @@ public interface TaskDao {
     Set<Task> getAll(final Integer companyId, final boolean includeAdmin, final boolean includeInactive,
             final Integer limit, final Integer offset) throws DatabaseException;
 
+    /**
+     * @param companyId
+     *            the unique id of the company for which tasks will be retrieved
+     * @param filter
+     *            the search filter to match against the task description and job code, possibly {@code null} to
+     *            retrieve all tasks
+     * @param includeAdmin
+     *            whether administrative tasks should be included
+     * @param includeInactive
+     *            whether inactive tasks should be included
+     * @param limit
+     *            the maximum number of items to be retrieved
+     * @param offset
+     *            the offset into the items to be retrieved
+     * 
+     * @return all matching tasks, possibly empty but never {@code null}
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided id is invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    Set<Task> search(final Integer companyId, final String filter, final boolean includeAdmin,
+            final boolean includeInactive, final Integer limit, final Integer offset) throws DatabaseException;
+
     /**
      * @param tasks
      *            the new tasks to be added
@@ -1,12 +1,16 @@
 package com.arcblaze.arctime.db.dao;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Set;
 
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.DatabaseVersionException;
 import com.arcblaze.arctime.common.model.Enrichment;
 import com.arcblaze.arctime.common.model.PayPeriod;
 import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.common.model.TimesheetChanges;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
 
 /**
@@ -152,6 +156,10 @@ public interface TimesheetDao {
             HolidayConfigurationException;
 
     /**
+     * Retrieve the current timesheet of a user, which is the latest incomplete timesheet containing bills, or the
+     * latest timesheet when none contain bills. The current timesheet is maintained as bills and timesheets are
+     * written and as timesheets are provisioned, so this is a single primary-key lookup that never writes.
+     * 
      * @param userId
      *            the unique id of the user that owns the timesheet to be retrieved
      * @param enrichments
@@ -169,6 +177,47 @@ public interface TimesheetDao {
     Timesheet getLatestForUser(final Integer userId, final Set<Enrichment> enrichments) throws DatabaseException,
             HolidayConfigurationException;
 
+    /**
+     * Retrieve the fully assembled view of a timesheet, including its pay period, audit logs, holidays, user, tasks
+     * and bills. Each timesheet has a version that is incremented whenever any of that data changes, and assembled
+     * timesheets are stored in the database until their version changes, so repeated reads of an unchanged timesheet
+     * from any server do not need to be assembled again. Each caller receives its own copy of the assembled timesheet,
+     * which may be modified.
+     * 
+     * @param companyId
+     *            the unique id of the company that owns the timesheet
+     * @param timesheetId
+     *            the unique id of the timesheet to be retrieved
+     * 
+     * @return the assembled timesheet along with the version it was assembled from, possibly {@code null} if not
+     *         found
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations during enrichment
+     */
+    TimesheetDocument getDocument(final Integer companyId, final Integer timesheetId) throws DatabaseException,
+            HolidayConfigurationException;
+
+    /**
+     * @param companyId
+     *            the unique id of the company that owns the timesheet
+     * @param timesheetId
+     *            the unique id of the timesheet whose version will be retrieved
+     * 
+     * @return the current version of the timesheet, which changes whenever any of the data included in the assembled
+     *         timesheet changes, or {@code null} if the timesheet was not found
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    Integer getVersion(final Integer companyId, final Integer timesheetId) throws DatabaseException;
+
     /**
      * @param timesheets
      *            the new timesheets to be added
@@ -195,6 +244,23 @@ public interface TimesheetDao {
      */
     int add(final Collection<Timesheet> timesheets) throws DatabaseException;
 
+    /**
+     * Create an empty timesheet in each of the provided pay periods for every active user in the pay period's company
+     * that does not already have one, so that timesheets exist before users need them. The current timesheets of the
+     * affected users are brought up to date once a provided pay period has begun.
+     * 
+     * @param payPeriods
+     *            the pay periods in which timesheets should be created
+     * 
+     * @return the number of timesheets created
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided pay periods are invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    int provision(final Collection<PayPeriod> payPeriods) throws DatabaseException;
+
     /**
      * @param companyId
      *            the unique id of the company for which timesheet information will be updated
@@ -351,6 +417,32 @@ public interface TimesheetDao {
     int export(final Integer companyId, final Integer exporterId, final boolean exported,
             final Collection<Integer> timesheetIds) throws DatabaseException;
 
+    /**
+     * Stream the approved timesheets that have not yet been exported, along with their bills, to the provided handler
+     * one row at a time, marking the timesheets as exported in batches once their rows have been flushed.
+     * 
+     * @param companyId
+     *            the unique id of the company for which timesheets will be exported
+     * @param exporterId
+     *            the unique id of the payroll user exporting the timesheets
+     * @param begin
+     *            the beginning of the pay period for which timesheets will be exported, possibly {@code null} to
+     *            export the timesheets from all pay periods
+     * @param handler
+     *            receives the exported rows
+     * 
+     * @return the number of timesheets exported
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     * @throws IOException
+     *             if the handler is unable to write the exported rows
+     */
+    int exportApproved(final Integer companyId, final Integer exporterId, final Date begin,
+            final TimesheetExportHandler handler) throws DatabaseException, IOException;
+
     /**
      * @param companyId
      *            the unique id of the company for which timesheet information will be updated
@@ -380,4 +472,22 @@ public interface TimesheetDao {
      *             if there is a problem communicating with the database
      */
     int delete(final Integer companyId, final Collection<Integer> timesheetIds) throws DatabaseException;
+
+    /**
+     * Apply all of the provided bill additions, updates, deletions, audit logs and completion status changes to a
+     * timesheet within a single database transaction. Either all of the changes are applied, or none of them are.
+     * 
+     * @param changes
+     *            the modifications to apply to the timesheet
+     * 
+     * @return the number of records modified
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided parameters are invalid
+     * @throws DatabaseVersionException
+     *             if the changes were calculated from a version of the timesheet that is no longer current
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    int save(final TimesheetChanges changes) throws DatabaseVersionException, DatabaseException;
 }
@@ -0,0 +1,47 @@
+package com.arcblaze.arctime.db.dao;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.arcblaze.arctime.common.model.Timesheet;
+
+/**
+ * An assembled timesheet along with the version of the timesheet it was assembled from, so that the version can be
+ * used to tag the timesheet sent to clients.
+ */
+public class TimesheetDocument {
+    /** The version of the timesheet at the time it was assembled. */
+    private final int version;
+
+    /** The assembled timesheet. */
+    private final Timesheet timesheet;
+
+    /**
+     * @param version
+     *            the version of the timesheet at the time it was assembled
+     * @param timesheet
+     *            the assembled timesheet
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided timesheet is invalid
+     */
+    public TimesheetDocument(final int version, final Timesheet timesheet) {
+        notNull(timesheet, "Invalid null timesheet");
+
+        this.version = version;
+        this.timesheet = timesheet;
+    }
+
+    /**
+     * @return the version of the timesheet at the time it was assembled
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return the assembled timesheet
+     */
+    public Timesheet getTimesheet() {
+        return this.timesheet;
+    }
+}
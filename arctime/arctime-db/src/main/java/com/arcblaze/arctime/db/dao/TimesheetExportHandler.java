@@ -0,0 +1,36 @@
+package com.arcblaze.arctime.db.dao;
+
+import java.io.IOException;
+
+import com.arcblaze.arctime.common.model.Bill;
+import com.arcblaze.arctime.common.model.Task;
+import com.arcblaze.arctime.common.model.Timesheet;
+
+/**
+ * Receives the rows of a timesheet export as they are read from the database, so that the exported timesheets never
+ * need to be held in memory all at once.
+ */
+public interface TimesheetExportHandler {
+    /**
+     * Handle a single exported row. All of the rows for a timesheet are provided consecutively, ordered by day.
+     * 
+     * @param timesheet
+     *            the exported timesheet, including its user and pay period but not its tasks or bills
+     * @param task
+     *            the task that was billed, or {@code null} if the timesheet contains no bills
+     * @param bill
+     *            the exported bill, or {@code null} if the timesheet contains no bills
+     * 
+     * @throws IOException
+     *             if there is a problem writing the exported row
+     */
+    void handle(final Timesheet timesheet, final Task task, final Bill bill) throws IOException;
+
+    /**
+     * Called before a batch of handled timesheets is marked as exported, so that the rows are delivered first.
+     * 
+     * @throws IOException
+     *             if there is a problem writing the exported rows
+     */
+    void flush() throws IOException;
+}
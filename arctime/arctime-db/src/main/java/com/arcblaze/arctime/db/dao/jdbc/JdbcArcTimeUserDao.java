@@ -0,0 +1,117 @@
+package com.arcblaze.arctime.db.dao.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.ConnectionManager;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.DatabaseUniqueConstraintException;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcUserDao;
+
+/**
+ * Manages users within the back-end database, and increments the versions of the timesheets affected by user changes
+ * since the owners, approvers, verifiers and exporters of the timesheets are included in the assembled timesheet
+ * documents.
+ */
+public class JdbcArcTimeUserDao extends JdbcUserDao {
+    /** Used to retrieve database connection objects. */
+    private final ConnectionManager connectionManager;
+
+    /**
+     * @param connectionManager
+     *            used to retrieve database connection objects
+     */
+    public JdbcArcTimeUserDao(final ConnectionManager connectionManager) {
+        super(connectionManager);
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * Used to increment the versions of the timesheets affected by user changes.
+     */
+    protected JdbcTimesheetDao getTimesheetDao() {
+        return new JdbcTimesheetDao(this.connectionManager);
+    }
+
+    /**
+     * Increment the versions of all the timesheets in the specified companies, since a user may be included in the
+     * assembled timesheets of other users within the same company.
+     */
+    protected void touchCompanies(final Collection<Integer> companyIds) throws DatabaseException {
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            getTimesheetDao().touchCompanies(conn, companyIds);
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int activate(final Integer companyId, final Collection<Integer> ids) throws DatabaseException {
+        final int count = super.activate(companyId, ids);
+        if (count > 0)
+            touchCompanies(Collections.singleton(companyId));
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deactivate(final Integer companyId, final Collection<Integer> ids) throws DatabaseException {
+        final int count = super.deactivate(companyId, ids);
+        if (count > 0)
+            touchCompanies(Collections.singleton(companyId));
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int update(final Collection<User> users) throws DatabaseUniqueConstraintException, DatabaseException {
+        final int count = super.update(users);
+        if (count > 0) {
+            final Set<Integer> companyIds = new HashSet<>();
+            for (final User user : users)
+                companyIds.add(user.getCompanyId());
+            touchCompanies(companyIds);
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int delete(final Collection<Integer> ids) throws DatabaseException {
+        final int count = super.delete(ids);
+        if (count > 0) {
+            // The companies of the deleted users are not known.
+            try (final Connection conn = this.connectionManager.getConnection()) {
+                getTimesheetDao().touchAll(conn);
+            } catch (final SQLException sqlException) {
+                throw new DatabaseException(sqlException);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int delete(final Integer companyId, final Collection<Integer> ids) throws DatabaseException {
+        final int count = super.delete(companyId, ids);
+        if (count > 0)
+            touchCompanies(Collections.singleton(companyId));
+        return count;
+    }
+}
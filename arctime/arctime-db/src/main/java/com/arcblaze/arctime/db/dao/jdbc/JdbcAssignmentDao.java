@@ -12,6 +12,7 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
@@ -226,6 +227,22 @@ public class JdbcAssignmentDao implements AssignmentDao {
         }
     }
 
+    /**
+     * Used to increment the versions of the timesheets affected by assignment changes, since the assigned tasks are
+     * included in the assembled timesheet documents.
+     */
+    protected JdbcTimesheetDao getTimesheetDao() {
+        return new JdbcTimesheetDao(this.connectionManager);
+    }
+
+    protected Set<Integer> getCompanyIds(final Collection<Assignment> assignments) {
+        final Set<Integer> companyIds = new HashSet<>();
+        for (final Assignment assignment : assignments)
+            if (assignment.getCompanyId() != null)
+                companyIds.add(assignment.getCompanyId());
+        return companyIds;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -274,6 +291,7 @@ public class JdbcAssignmentDao implements AssignmentDao {
                         assignment.setId(rs.getInt(1));
                 }
             }
+            getTimesheetDao().touchCompanies(conn, getCompanyIds(assignments));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -319,6 +337,7 @@ public class JdbcAssignmentDao implements AssignmentDao {
                 ps.setInt(index++, assignment.getId());
                 count += ps.executeUpdate();
             }
+            getTimesheetDao().touchCompanies(conn, getCompanyIds(assignments));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -351,6 +370,7 @@ public class JdbcAssignmentDao implements AssignmentDao {
                 ps.setInt(2, id);
                 count += ps.executeUpdate();
             }
+            getTimesheetDao().touchCompanies(conn, Collections.singleton(companyId));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -10,6 +10,7 @@ import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -17,6 +18,8 @@ import java.util.TreeSet;
 
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcBatch;
+import com.arcblaze.arccore.db.util.InClause;
 import com.arcblaze.arctime.common.model.AuditLog;
 import com.arcblaze.arctime.db.dao.AuditLogDao;
 
@@ -70,18 +73,21 @@ public class JdbcAuditLogDao implements AuditLogDao {
     /**
      * Used for performing enrichment on timesheets.
      */
-    protected Map<Integer, Set<AuditLog>> getForTimesheets(final Connection conn, final Set<Integer> timesheetIds)
-            throws DatabaseException {
+    protected Map<Integer, Set<AuditLog>> getForTimesheets(final Connection conn, final Integer companyId,
+            final Set<Integer> timesheetIds) throws DatabaseException {
         if (timesheetIds == null || timesheetIds.isEmpty())
             return Collections.emptyMap();
         notNull(conn, "Invalid null connection");
+        notNull(companyId, "Invalid null company id");
 
-        final String sql = "SELECT * FROM audit_logs WHERE timesheet_id = ?";
+        final Map<Integer, Set<AuditLog>> auditLogMap = new TreeMap<>();
+        for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+            final String sql = "SELECT * FROM audit_logs WHERE company_id = ? AND timesheet_id IN ("
+                    + InClause.placeholders(chunk.size()) + ")";
 
-        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
-            final Map<Integer, Set<AuditLog>> auditLogMap = new TreeMap<>();
-            for (final Integer timesheetId : timesheetIds) {
-                ps.setInt(1, timesheetId);
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, companyId);
+                InClause.setInts(ps, 2, chunk);
                 try (final ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
                         final AuditLog auditLog = fromResultSet(rs);
@@ -89,17 +95,16 @@ public class JdbcAuditLogDao implements AuditLogDao {
                         Set<AuditLog> auditLogs = auditLogMap.get(auditLog.getTimesheetId());
                         if (auditLogs == null) {
                             auditLogs = new TreeSet<>();
-                            auditLogMap.put(timesheetId, auditLogs);
+                            auditLogMap.put(auditLog.getTimesheetId(), auditLogs);
                         }
                         auditLogs.add(auditLog);
                     }
                 }
+            } catch (final SQLException sqlException) {
+                throw new DatabaseException(sqlException);
             }
-
-            return auditLogMap;
-        } catch (final SQLException sqlException) {
-            throw new DatabaseException(sqlException);
         }
+        return auditLogMap;
     }
 
     /**
@@ -118,23 +123,43 @@ public class JdbcAuditLogDao implements AuditLogDao {
         if (auditLogs == null || auditLogs.isEmpty())
             return 0;
 
-        String sql = "INSERT INTO audit_logs (company_id, timesheet_id, log, " + "timestamp) VALUES (?, ?, ?, ?)";
+        final Set<Integer> timesheetIds = new TreeSet<>();
+        for (final AuditLog auditLog : auditLogs)
+            timesheetIds.add(auditLog.getTimesheetId());
 
-        int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            final int count = add(conn, auditLogs);
+            new JdbcTimesheetDao(this.connectionManager).touch(conn, timesheetIds);
+            return count;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to add audit logs using an existing database connection, possibly as part of a larger transaction.
+     */
+    protected int add(final Connection conn, final Collection<AuditLog> auditLogs) throws DatabaseException {
+        if (auditLogs == null || auditLogs.isEmpty())
+            return 0;
+        notNull(conn, "Invalid null connection");
+
+        final String sql = "INSERT INTO audit_logs (company_id, timesheet_id, log, " + "timestamp) VALUES (?, ?, ?, ?)";
+
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
             for (final AuditLog auditLog : auditLogs) {
                 int index = 1;
                 ps.setInt(index++, auditLog.getCompanyId());
                 ps.setInt(index++, auditLog.getTimesheetId());
                 ps.setString(index++, auditLog.getLog());
                 ps.setTimestamp(index++, new Timestamp(auditLog.getTimestamp().getTime()));
-                count += ps.executeUpdate();
+                batch.add();
             }
+            return batch.execute();
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
-        return count;
     }
 
     /**
@@ -153,15 +178,18 @@ public class JdbcAuditLogDao implements AuditLogDao {
         if (timesheetIds == null || timesheetIds.isEmpty())
             return 0;
 
-        final String sql = "DELETE FROM audit_logs WHERE timesheet_id = ?";
-
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer timesheetId : timesheetIds) {
-                ps.setInt(1, timesheetId);
-                count += ps.executeUpdate();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+                final String sql = "DELETE FROM audit_logs WHERE timesheet_id IN ("
+                        + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    InClause.setInts(ps, 1, chunk);
+                    count += ps.executeUpdate();
+                }
             }
+            new JdbcTimesheetDao(this.connectionManager).touch(conn, timesheetIds);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -11,16 +11,21 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcBatch;
+import com.arcblaze.arccore.db.util.InClause;
 import com.arcblaze.arctime.common.model.Bill;
 import com.arcblaze.arctime.db.dao.BillDao;
 
@@ -101,22 +106,26 @@ public class JdbcBillDao implements BillDao {
         }
     }
 
-    protected Map<Integer, Set<Bill>> getForTimesheets(final Connection conn, final Set<Integer> timesheetIds)
-            throws DatabaseException {
+    protected Map<Integer, Set<Bill>> getForTimesheets(final Connection conn, final Integer companyId,
+            final Set<Integer> timesheetIds) throws DatabaseException {
         if (timesheetIds == null || timesheetIds.isEmpty())
             return Collections.emptyMap();
         notNull(conn, "Invalid null connection");
+        notNull(companyId, "Invalid null company id");
 
-        String sql = "SELECT t.id AS timesheet_id, b.* FROM bills b "
-                + "JOIN pay_periods p ON (b.day >= p.begin AND b.day <= p.end) "
-                + "JOIN timesheets t ON (t.pp_begin = p.begin) " + "WHERE t.id = ?";
+        final Map<Integer, Set<Bill>> billMap = new HashMap<>();
+        for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+            final String sql = "SELECT t.id AS timesheet_id, b.* FROM timesheets t "
+                    + "JOIN pay_periods p ON (p.begin = t.pp_begin AND p.company_id = t.company_id) "
+                    + "JOIN bills b ON (b.user_id = t.user_id AND b.day >= p.begin AND b.day <= p.end) "
+                    + "WHERE t.company_id = ? AND t.id IN (" + InClause.placeholders(chunk.size()) + ")";
 
-        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
-            final Map<Integer, Set<Bill>> billMap = new HashMap<>();
-            for (final Integer timesheetId : timesheetIds) {
-                ps.setInt(1, timesheetId);
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, companyId);
+                InClause.setInts(ps, 2, chunk);
                 try (final ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
+                        final int timesheetId = rs.getInt("timesheet_id");
                         final Bill bill = fromResultSet(rs);
                         Set<Bill> bills = billMap.get(timesheetId);
                         if (bills == null) {
@@ -126,12 +135,11 @@ public class JdbcBillDao implements BillDao {
                         bills.add(bill);
                     }
                 }
+            } catch (final SQLException sqlException) {
+                throw new DatabaseException(sqlException);
             }
-
-            return billMap;
-        } catch (final SQLException sqlException) {
-            throw new DatabaseException(sqlException);
         }
+        return billMap;
     }
 
     /**
@@ -150,12 +158,28 @@ public class JdbcBillDao implements BillDao {
         if (bills == null || bills.isEmpty())
             return 0;
 
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            final int count = add(conn, bills);
+            updateCurrent(conn, getUserIds(bills));
+            return count;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to add bills using an existing database connection, possibly as part of a larger transaction.
+     */
+    protected int add(final Connection conn, final Collection<Bill> bills) throws DatabaseException {
+        if (bills == null || bills.isEmpty())
+            return 0;
+        notNull(conn, "Invalid null connection");
+
         final String sql = "INSERT INTO bills (assignment_id, task_id, "
                 + "user_id, day, hours, timestamp) VALUES (?, ?, ?, ?, ?, ?)";
 
-        int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (final PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize(), true);
             for (final Bill bill : bills) {
                 int index = 1;
                 if (bill.getAssignmentId() != null)
@@ -167,17 +191,19 @@ public class JdbcBillDao implements BillDao {
                 ps.setDate(index++, new Date(bill.getDay().getTime()));
                 ps.setString(index++, bill.getHours().toPlainString());
                 ps.setTimestamp(index++, new Timestamp(bill.getTimestamp().getTime()));
-                count += ps.executeUpdate();
-
-                try (final ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next())
-                        bill.setId(rs.getInt(1));
-                }
+                batch.add();
             }
+            final int count = batch.execute();
+
+            final Iterator<Integer> keys = batch.getGeneratedKeys().iterator();
+            for (final Bill bill : bills)
+                if (keys.hasNext())
+                    bill.setId(keys.next());
+
+            return count;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
-        return count;
     }
 
     /**
@@ -196,12 +222,31 @@ public class JdbcBillDao implements BillDao {
         if (bills == null || bills.isEmpty())
             return 0;
 
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            // The bills may be moving from one user to another.
+            final Set<Integer> userIds = getUserIds(conn, getIds(bills));
+            final int count = update(conn, bills);
+            userIds.addAll(getUserIds(bills));
+            updateCurrent(conn, userIds);
+            return count;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to update bills using an existing database connection, possibly as part of a larger transaction.
+     */
+    protected int update(final Connection conn, final Collection<Bill> bills) throws DatabaseException {
+        if (bills == null || bills.isEmpty())
+            return 0;
+        notNull(conn, "Invalid null connection");
+
         final String sql = "UPDATE bills SET assignment_id = ?, task_id = ?, "
                 + "user_id = ?, day = ?, hours = ?, timestamp = ? " + "WHERE id = ?";
 
-        int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
             for (final Bill bill : bills) {
                 int index = 1;
                 if (bill.getAssignmentId() != null)
@@ -214,12 +259,98 @@ public class JdbcBillDao implements BillDao {
                 ps.setString(index++, bill.getHours().toPlainString());
                 ps.setTimestamp(index++, new Timestamp(bill.getTimestamp().getTime()));
                 ps.setInt(index++, bill.getId());
-                count += ps.executeUpdate();
+                batch.add();
             }
+            return batch.execute();
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Bill> upsert(final Bill... bills) throws DatabaseException {
+        return this.upsert(bills == null ? null : Arrays.asList(bills));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Bill> upsert(final Collection<Bill> bills) throws DatabaseException {
+        if (bills == null || bills.isEmpty())
+            return Collections.emptyList();
+
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            final List<Bill> changed = upsert(conn, bills);
+            updateCurrent(conn, getUserIds(changed));
+            return changed;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to insert or update bills using an existing database connection, possibly as part of a larger transaction.
+     * MySQL finds the existing bills through the unique bill constraint, while other databases use a standard merge.
+     * The existing bills are not read, before or after the write, so the changed bills are found from the update count
+     * reported for each bill by the statement itself: the merge leaves out the bills with unchanged hours, and MySQL
+     * reports no affected rows for them when the connection uses {@code useAffectedRows=true}. Bills are assumed
+     * changed when the driver does not report individual counts, as with {@code rewriteBatchedStatements=true}.
+     */
+    protected List<Bill> upsert(final Connection conn, final Collection<Bill> bills) throws DatabaseException {
+        if (bills == null || bills.isEmpty())
+            return Collections.emptyList();
+        notNull(conn, "Invalid null connection");
+
+        final String sql;
+        if (this.connectionManager.isMySql())
+            // The timestamp is assigned before the hours so that it is compared with the existing hours.
+            sql = "INSERT INTO bills (assignment_id, task_id, user_id, day, hours, timestamp) "
+                    + "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+                    + "timestamp = IF(hours = VALUES(hours), timestamp, VALUES(timestamp)), hours = VALUES(hours)";
+        else
+            // Bills with unchanged hours are left out of the merged rows, so they are not rewritten.
+            sql = "MERGE INTO bills b USING (SELECT * FROM (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER), "
+                    + "CAST(? AS INTEGER), CAST(? AS DATE), CAST(? AS VARCHAR(6)), CAST(? AS TIMESTAMP))) "
+                    + "AS n (assignment_id, task_id, user_id, day, hours, timestamp) WHERE NOT EXISTS "
+                    + "(SELECT e.id FROM bills e WHERE e.task_id = n.task_id AND e.user_id = n.user_id "
+                    + "AND e.day = n.day AND e.hours = n.hours AND (e.assignment_id = n.assignment_id "
+                    + "OR (e.assignment_id IS NULL AND n.assignment_id IS NULL)))) AS v "
+                    + "ON (b.task_id = v.task_id AND b.user_id = v.user_id AND b.day = v.day AND "
+                    + "(b.assignment_id = v.assignment_id OR (b.assignment_id IS NULL AND v.assignment_id IS NULL))) "
+                    + "WHEN MATCHED THEN UPDATE SET hours = v.hours, timestamp = v.timestamp "
+                    + "WHEN NOT MATCHED THEN INSERT (assignment_id, task_id, user_id, day, hours, timestamp) "
+                    + "VALUES (v.assignment_id, v.task_id, v.user_id, v.day, v.hours, v.timestamp)";
+
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
+            for (final Bill bill : bills) {
+                int index = 1;
+                if (bill.getAssignmentId() != null)
+                    ps.setInt(index++, bill.getAssignmentId());
+                else
+                    ps.setNull(index++, Types.INTEGER);
+                ps.setInt(index++, bill.getTaskId());
+                ps.setInt(index++, bill.getUserId());
+                ps.setDate(index++, new Date(bill.getDay().getTime()));
+                ps.setString(index++, bill.getHours().toPlainString());
+                ps.setTimestamp(index++, new Timestamp(bill.getTimestamp().getTime()));
+                batch.add();
+            }
+            batch.execute();
+
+            final List<Bill> changed = new ArrayList<>();
+            final Iterator<Integer> counts = batch.getUpdateCounts().iterator();
+            for (final Bill bill : bills)
+                if (!counts.hasNext() || counts.next() != 0)
+                    changed.add(bill);
+            return changed;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
-        return count;
     }
 
     /**
@@ -238,18 +369,87 @@ public class JdbcBillDao implements BillDao {
         if (ids == null || ids.isEmpty())
             return 0;
 
-        final String sql = "DELETE FROM bills WHERE id = ?";
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            final Set<Integer> userIds = getUserIds(conn, ids);
+            final int count = delete(conn, ids);
+            updateCurrent(conn, userIds);
+            return count;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to delete bills using an existing database connection, possibly as part of a larger transaction.
+     */
+    protected int delete(final Connection conn, final Collection<Integer> ids) throws DatabaseException {
+        if (ids == null || ids.isEmpty())
+            return 0;
+        notNull(conn, "Invalid null connection");
 
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer id : ids) {
-                ps.setInt(1, id);
-                count += ps.executeUpdate();
+        try {
+            for (final List<Integer> chunk : InClause.chunk(ids)) {
+                final String sql = "DELETE FROM bills WHERE id IN ("
+                        + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    InClause.setInts(ps, 1, chunk);
+                    count += ps.executeUpdate();
+                }
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
         return count;
     }
+
+    /**
+     * Used to keep the current timesheet and the timesheet versions of each user consistent with the bills that were
+     * written.
+     */
+    protected void updateCurrent(final Connection conn, final Set<Integer> userIds) throws DatabaseException {
+        final JdbcTimesheetDao timesheetDao = new JdbcTimesheetDao(this.connectionManager);
+        timesheetDao.updateCurrent(conn, userIds);
+        try {
+            timesheetDao.touchUsers(conn, userIds);
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    protected Set<Integer> getIds(final Collection<Bill> bills) {
+        final Set<Integer> ids = new TreeSet<>();
+        for (final Bill bill : bills)
+            if (bill.getId() != null)
+                ids.add(bill.getId());
+        return ids;
+    }
+
+    protected Set<Integer> getUserIds(final Collection<Bill> bills) {
+        final Set<Integer> userIds = new TreeSet<>();
+        for (final Bill bill : bills)
+            userIds.add(bill.getUserId());
+        return userIds;
+    }
+
+    /**
+     * Used to retrieve the unique ids of the users that own the specified bills.
+     */
+    protected Set<Integer> getUserIds(final Connection conn, final Collection<Integer> ids) throws SQLException {
+        final Set<Integer> userIds = new TreeSet<>();
+        for (final List<Integer> chunk : InClause.chunk(ids)) {
+            final String sql = "SELECT DISTINCT user_id FROM bills WHERE id IN ("
+                    + InClause.placeholders(chunk.size()) + ")";
+
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                InClause.setInts(ps, 1, chunk);
+                try (final ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        userIds.add(rs.getInt(1));
+                }
+            }
+        }
+        return userIds;
+    }
 }
@@ -9,13 +9,17 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
 
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.cache.EntityCache;
 import com.arcblaze.arctime.common.model.Holiday;
 import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.util.HolidayCalendar;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
 import com.arcblaze.arctime.db.dao.HolidayDao;
 
@@ -23,6 +27,9 @@ import com.arcblaze.arctime.db.dao.HolidayDao;
  * Manages holidays within the back-end database.
  */
 public class JdbcHolidayDao implements HolidayDao {
+    /** The name of the entity cache holding the calendar of holidays in each company, keyed by company id. */
+    public final static String CACHE = "holidays";
+
     /** Used to retrieve database connection objects. */
     private final ConnectionManager connectionManager;
 
@@ -49,6 +56,56 @@ public class JdbcHolidayDao implements HolidayDao {
         return holiday;
     }
 
+    protected EntityCache<Integer, HolidayCalendar> getCache() {
+        return this.connectionManager.getCache(CACHE);
+    }
+
+    /**
+     * Used to increment the versions of the timesheets affected by holiday changes, since the holidays are included
+     * in the assembled timesheet documents.
+     */
+    protected JdbcTimesheetDao getTimesheetDao() {
+        return new JdbcTimesheetDao(this.connectionManager);
+    }
+
+    protected Set<Integer> getCompanyIds(final Collection<Holiday> holidays) {
+        final Set<Integer> companyIds = new HashSet<>();
+        for (final Holiday holiday : holidays)
+            companyIds.add(holiday.getCompanyId());
+        return companyIds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HolidayCalendar getCalendar(final Integer companyId) throws DatabaseException,
+            HolidayConfigurationException {
+        notNull(companyId, "Invalid null company id");
+
+        final HolidayCalendar cached = getCache().get(companyId);
+        if (cached != null)
+            return cached;
+
+        final String sql = "SELECT * FROM holidays WHERE company_id = ?";
+
+        final long stamp = getCache().stamp();
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, companyId);
+            final Set<Holiday> holidays = new TreeSet<>();
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    holidays.add(fromResultSet(rs, true));
+            }
+            final HolidayCalendar calendar = new HolidayCalendar(holidays);
+            getCache().put(stamp, companyId, companyId, calendar);
+            return calendar;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -58,6 +115,13 @@ public class JdbcHolidayDao implements HolidayDao {
         notNull(companyId, "Invalid null company id");
         notNull(id, "Invalid null id");
 
+        if (getCache().isEnabled()) {
+            for (final Holiday holiday : getCalendar(companyId).getHolidays())
+                if (id.equals(holiday.getId()))
+                    return new Holiday(holiday);
+            return null;
+        }
+
         final String sql = "SELECT * FROM holidays " + "WHERE company_id = ? AND id = ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
@@ -82,20 +146,10 @@ public class JdbcHolidayDao implements HolidayDao {
         if (companyId == null)
             throw new IllegalArgumentException("Invalid null company id");
 
-        final String sql = "SELECT * FROM holidays WHERE company_id = ?";
-
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, companyId);
-            final Set<Holiday> holidays = new TreeSet<>();
-            try (final ResultSet rs = ps.executeQuery()) {
-                while (rs.next())
-                    holidays.add(fromResultSet(rs, true));
-            }
-            return holidays;
-        } catch (final SQLException sqlException) {
-            throw new DatabaseException(sqlException);
-        }
+        final Set<Holiday> holidays = new TreeSet<>();
+        for (final Holiday holiday : getCalendar(companyId).getHolidays())
+            holidays.add(new Holiday(holiday));
+        return holidays;
     }
 
     /**
@@ -127,12 +181,9 @@ public class JdbcHolidayDao implements HolidayDao {
         notNull(companyId, "Invalid null company id");
         notNull(payPeriod, "Invalid null pay period");
 
-        final Set<Holiday> all = getAll(companyId);
-        Set<Holiday> inPayPeriod = new TreeSet<>();
-        for (final Holiday holiday : all) {
-            if (payPeriod.contains(holiday))
-                inPayPeriod.add(holiday);
-        }
+        final Set<Holiday> inPayPeriod = new TreeSet<>();
+        for (final Holiday holiday : getCalendar(companyId).getForPayPeriod(payPeriod))
+            inPayPeriod.add(new Holiday(holiday));
         return inPayPeriod;
     }
 
@@ -169,8 +220,11 @@ public class JdbcHolidayDao implements HolidayDao {
                         holiday.setId(rs.getInt(1));
                 }
             }
+            getTimesheetDao().touchCompanies(conn, getCompanyIds(holidays));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            getCache().invalidate(getCompanyIds(holidays));
         }
         return count;
     }
@@ -204,8 +258,12 @@ public class JdbcHolidayDao implements HolidayDao {
                 ps.setInt(index++, holiday.getId());
                 count += ps.executeUpdate();
             }
+            getTimesheetDao().touchAll(conn);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            // The company of a holiday may change, and the previous company is not known here.
+            getCache().invalidateAll();
         }
         return count;
     }
@@ -237,8 +295,11 @@ public class JdbcHolidayDao implements HolidayDao {
                 ps.setInt(2, id);
                 count += ps.executeUpdate();
             }
+            getTimesheetDao().touchCompanies(conn, Collections.singleton(companyId));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            getCache().invalidate(companyId);
         }
         return count;
     }
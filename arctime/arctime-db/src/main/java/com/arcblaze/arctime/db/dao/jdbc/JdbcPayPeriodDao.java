@@ -6,29 +6,40 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.commons.lang.time.DateUtils;
 
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.cache.EntityCache;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcBatch;
+import com.arcblaze.arccore.db.util.InClause;
 import com.arcblaze.arctime.common.model.PayPeriod;
 import com.arcblaze.arctime.common.model.PayPeriodType;
+import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.common.model.util.EpochDays;
+import com.arcblaze.arctime.common.model.util.PayPeriodCalculator;
+import com.arcblaze.arctime.common.model.util.PayPeriodIndex;
 import com.arcblaze.arctime.db.dao.PayPeriodDao;
 
 /**
  * Performs operations on pay periods in the system.
  */
 public class JdbcPayPeriodDao implements PayPeriodDao {
+    /** The name of the entity cache holding an index of all the pay periods in each company, keyed by company id. */
+    public final static String CACHE = "payPeriods";
+
     /** Used to retrieve database connection objects. */
     private final ConnectionManager connectionManager;
 
@@ -49,6 +60,47 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
         return payPeriod;
     }
 
+    protected EntityCache<Integer, PayPeriodIndex> getCache() {
+        return this.connectionManager.getCache(CACHE);
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company whose pay periods will be retrieved
+     * 
+     * @return the index of all the pay periods in the specified company, retrieved from the entity cache when
+     *         possible, or {@code null} if the entity cache is not available
+     * 
+     * @throws DatabaseException
+     *             if there is an error communicating with the database
+     */
+    protected PayPeriodIndex getIndex(final Integer companyId) throws DatabaseException {
+        if (!getCache().isEnabled())
+            return null;
+
+        final PayPeriodIndex cached = getCache().get(companyId);
+        if (cached != null)
+            return cached;
+
+        final String sql = "SELECT * FROM pay_periods WHERE company_id = ?";
+
+        final long stamp = getCache().stamp();
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, companyId);
+            final List<PayPeriod> payPeriods = new ArrayList<>();
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    payPeriods.add(fromResultSet(rs));
+            }
+            final PayPeriodIndex index = new PayPeriodIndex(payPeriods);
+            getCache().put(stamp, companyId, companyId, index);
+            return index;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -57,6 +109,10 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
         notNull(companyId, "Invalid null company id");
         notNull(begin, "Invalid null begin date");
 
+        final PayPeriodIndex index = getIndex(companyId);
+        if (index != null)
+            return index.exists(begin);
+
         final String sql = "SELECT COUNT(*) FROM pay_periods WHERE " + "company_id = ? AND begin = ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
@@ -81,6 +137,10 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
         notNull(companyId, "Invalid null company id");
         notNull(begin, "Invalid null begin date");
 
+        final PayPeriodIndex index = getIndex(companyId);
+        if (index != null)
+            return index.get(begin);
+
         final String sql = "SELECT * FROM pay_periods WHERE company_id = ? AND " + "begin = ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
@@ -105,6 +165,13 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
         notNull(companyId, "Invalid null company id");
         notNull(day, "Invalid null day");
 
+        final PayPeriodIndex index = getIndex(companyId);
+        if (index != null) {
+            final PayPeriod payPeriod = index.getContaining(day);
+            // When not indexed, the pay period does not exist yet.
+            return payPeriod != null ? payPeriod : addThrough(companyId, day);
+        }
+
         final Date truncated = DateUtils.truncate(day, Calendar.DATE);
 
         final String sql = "SELECT * FROM pay_periods WHERE company_id = ? AND " + "begin <= ? AND end >= ?";
@@ -128,6 +195,7 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
 
     /**
      * Make sure all of the pay periods exist in the database through the specified day (either forwards or backwards).
+     * The missing pay periods are calculated directly from the nearest existing pay period and inserted as a batch.
      * 
      * @param companyId
      *            the company for which timesheets should be created
@@ -149,35 +217,37 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
         if (latest == null || earliest == null)
             return null;
 
-        PayPeriod payPeriod = null;
-        if (earliest.isAfter(day))
-            payPeriod = earliest;
-        else if (latest.isBefore(day))
-            payPeriod = latest;
-        else {
+        final int target = EpochDays.of(day);
+        final PayPeriod reference;
+        final int first;
+        final int last;
+        if (earliest.isAfter(day)) {
+            // Fill in everything from the target day up to the earliest existing pay period.
+            reference = earliest;
+            first = target;
+            last = EpochDays.of(earliest.getBegin()) - 1;
+        } else if (latest.isBefore(day)) {
+            // Fill in everything after the latest existing pay period through the target day.
+            reference = latest;
+            first = EpochDays.of(latest.getEnd()) + 1;
+            last = target;
+        } else {
             // An unexpected situation where a pay period containing the
             // specified date does not exist, though there are pay periods
             // both before and after?
             throw new DatabaseException("Unexpected missing pay period " + "that should contain: " + day);
         }
 
-        if (PayPeriodType.CUSTOM.equals(payPeriod.getType())) {
+        if (PayPeriodType.CUSTOM.equals(reference.getType())) {
             throw new DatabaseException("Unable to create additional pay " + "periods based on custom type: "
-                    + payPeriod);
-        }
-
-        final List<PayPeriod> toAdd = new LinkedList<>();
-        while (!payPeriod.contains(day)) {
-            if (payPeriod.isAfter(day))
-                payPeriod = payPeriod.getPrevious();
-            else
-                payPeriod = payPeriod.getNext();
-            toAdd.add(payPeriod);
+                    + reference);
         }
 
+        final PayPeriodCalculator calculator = new PayPeriodCalculator(reference);
+        final List<PayPeriod> toAdd = calculator.getBetween(first, last);
         add(toAdd);
 
-        return payPeriod;
+        return calculator.getContaining(target);
     }
 
     /**
@@ -195,6 +265,10 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
     public PayPeriod getEarliest(final Integer companyId) throws DatabaseException {
         notNull(companyId, "Invalid null company id");
 
+        final PayPeriodIndex index = getIndex(companyId);
+        if (index != null)
+            return index.getEarliest();
+
         final String sql = "SELECT * FROM pay_periods WHERE company_id = ? " + "ORDER BY begin LIMIT 1";
 
         try (final Connection conn = this.connectionManager.getConnection();
@@ -217,6 +291,10 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
     public PayPeriod getLatest(final Integer companyId) throws DatabaseException {
         notNull(companyId, "Invalid null company id");
 
+        final PayPeriodIndex index = getIndex(companyId);
+        if (index != null)
+            return index.getLatest();
+
         final String sql = "SELECT * FROM pay_periods WHERE company_id = ? " + "ORDER BY begin DESC LIMIT 1";
 
         try (final Connection conn = this.connectionManager.getConnection();
@@ -232,6 +310,77 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PayPeriod> provision(final Date day) throws DatabaseException {
+        notNull(day, "Invalid null day");
+
+        final String sql = "SELECT p.* FROM pay_periods p JOIN companies c ON (c.id = p.company_id) "
+                + "WHERE c.active = TRUE AND p.begin = "
+                + "(SELECT MAX(l.begin) FROM pay_periods l WHERE l.company_id = p.company_id)";
+
+        final List<PayPeriod> latest = new ArrayList<>();
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql);
+                final ResultSet rs = ps.executeQuery()) {
+            while (rs.next())
+                latest.add(fromResultSet(rs));
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+
+        final int target = EpochDays.of(day);
+        final List<PayPeriod> containing = new ArrayList<>(latest.size());
+        final List<PayPeriod> toAdd = new ArrayList<>();
+        for (final PayPeriod payPeriod : latest) {
+            if (payPeriod.contains(day))
+                containing.add(payPeriod);
+            else if (payPeriod.isAfter(day)) {
+                // The day falls within the existing pay periods.
+                final PayPeriod existing = getContaining(payPeriod.getCompanyId(), day);
+                if (existing != null)
+                    containing.add(existing);
+            } else if (!PayPeriodType.CUSTOM.equals(payPeriod.getType())) {
+                final PayPeriodCalculator calculator = new PayPeriodCalculator(payPeriod);
+                toAdd.addAll(calculator.getBetween(EpochDays.of(payPeriod.getEnd()) + 1, target));
+                containing.add(calculator.getContaining(target));
+            }
+        }
+
+        add(toAdd);
+        return containing;
+    }
+
+    /**
+     * Used to enrich timesheet data. The pay periods are found in the index using the begin date of each timesheet,
+     * and only the timesheets whose pay periods are not indexed are retrieved from the database.
+     */
+    protected Map<Integer, PayPeriod> getForTimesheets(final Connection conn, final Integer companyId,
+            final Collection<Timesheet> timesheets) throws DatabaseException {
+        if (timesheets == null || timesheets.isEmpty())
+            return Collections.emptyMap();
+        notNull(companyId, "Invalid null company id");
+
+        final PayPeriodIndex index = getIndex(companyId);
+        final Map<Integer, PayPeriod> timesheetMap = new TreeMap<>();
+        final Set<Integer> missing = new TreeSet<>();
+        for (final Timesheet timesheet : timesheets) {
+            if (timesheet.getId() == null)
+                continue;
+            final PayPeriod payPeriod = index == null || timesheet.getBegin() == null ? null : index.get(timesheet
+                    .getBegin());
+            if (payPeriod != null)
+                timesheetMap.put(timesheet.getId(), payPeriod);
+            else
+                missing.add(timesheet.getId());
+        }
+
+        timesheetMap.putAll(getForTimesheets(conn, companyId, missing));
+        return timesheetMap;
+    }
+
     /**
      * Used to enrich timesheet data.
      */
@@ -241,23 +390,26 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
             return Collections.emptyMap();
         notNull(conn, "Invalid null connection");
 
-        final String sql = "SELECT p.* FROM timesheets t " + "JOIN pay_periods p ON (p.begin = t.pp_begin AND "
-                + "p.company_id = t.company_id) " + "WHERE p.company_id = ? AND t.id = ?";
+        notNull(companyId, "Invalid null company id");
+
+        final Map<Integer, PayPeriod> timesheetMap = new TreeMap<>();
+        for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+            final String sql = "SELECT t.id AS timesheet_id, p.* FROM timesheets t "
+                    + "JOIN pay_periods p ON (p.begin = t.pp_begin AND p.company_id = t.company_id) "
+                    + "WHERE p.company_id = ? AND t.id IN (" + InClause.placeholders(chunk.size()) + ")";
 
-        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
-            final Map<Integer, PayPeriod> timesheetMap = new TreeMap<>();
-            for (final Integer timesheetId : timesheetIds) {
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setInt(1, companyId);
-                ps.setInt(2, timesheetId);
+                InClause.setInts(ps, 2, chunk);
                 try (final ResultSet rs = ps.executeQuery()) {
-                    if (rs.next())
-                        timesheetMap.put(timesheetId, fromResultSet(rs));
+                    while (rs.next())
+                        timesheetMap.put(rs.getInt("timesheet_id"), fromResultSet(rs));
                 }
+            } catch (final SQLException sqlException) {
+                throw new DatabaseException(sqlException);
             }
-            return timesheetMap;
-        } catch (final SQLException sqlException) {
-            throw new DatabaseException(sqlException);
         }
+        return timesheetMap;
     }
 
     /**
@@ -278,20 +430,55 @@ public class JdbcPayPeriodDao implements PayPeriodDao {
 
         final String sql = "INSERT INTO pay_periods (company_id, begin, end, " + "type) VALUES (?, ?, ?, ?)";
 
-        int count = 0;
+        boolean added = false;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
             for (final PayPeriod payPeriod : payPeriods) {
                 int index = 1;
                 ps.setInt(index++, payPeriod.getCompanyId());
                 ps.setDate(index++, new java.sql.Date(payPeriod.getBegin().getTime()));
                 ps.setDate(index++, new java.sql.Date(payPeriod.getEnd().getTime()));
                 ps.setString(index++, payPeriod.getType().name());
-                count += ps.executeUpdate();
+                batch.add();
             }
+            final int count = batch.execute();
+            added = true;
+            return count;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            updateIndexes(payPeriods, added);
+        }
+    }
+
+    /**
+     * Bring the cached pay period indexes up to date after pay periods have been added. Cached indexes are updated in
+     * place so they remain available; when a company has no cached index, invalidating it prevents a concurrent load
+     * from caching an index that was read before the new pay periods were added.
+     * 
+     * @param payPeriods
+     *            the pay periods that were added
+     * @param added
+     *            whether the pay periods were successfully added, otherwise the indexes are invalidated
+     */
+    protected void updateIndexes(final Collection<PayPeriod> payPeriods, final boolean added) {
+        final Map<Integer, List<PayPeriod>> companyMap = new TreeMap<>();
+        for (final PayPeriod payPeriod : payPeriods) {
+            List<PayPeriod> list = companyMap.get(payPeriod.getCompanyId());
+            if (list == null) {
+                list = new ArrayList<>();
+                companyMap.put(payPeriod.getCompanyId(), list);
+            }
+            list.add(payPeriod);
+        }
+
+        for (final Map.Entry<Integer, List<PayPeriod>> entry : companyMap.entrySet()) {
+            final PayPeriodIndex index = added ? getCache().get(entry.getKey()) : null;
+            if (index != null)
+                index.add(entry.getValue());
+            else
+                getCache().invalidate(entry.getKey());
         }
-        return count;
     }
 }
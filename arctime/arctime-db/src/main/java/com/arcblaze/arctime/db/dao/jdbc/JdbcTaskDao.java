@@ -8,18 +8,29 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.cache.EntityCache;
+import com.arcblaze.arccore.db.cache.SearchIndex;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcBatch;
+import com.arcblaze.arccore.db.util.InClause;
+import com.arcblaze.arccore.db.util.SqlParams;
 import com.arcblaze.arctime.common.model.Assignment;
 import com.arcblaze.arctime.common.model.PayPeriod;
 import com.arcblaze.arctime.common.model.Task;
@@ -29,6 +40,49 @@ import com.arcblaze.arctime.db.dao.TaskDao;
  * Manages tasks within the back-end database.
  */
 public class JdbcTaskDao implements TaskDao {
+    /** The name of the entity cache holding all of the tasks in each company, keyed by company id. */
+    public final static String CACHE = "tasks";
+
+    /** The name of the entity cache holding the search index of the tasks in each company, keyed by company id. */
+    public final static String SEARCH_CACHE = "taskSearch";
+
+    /**
+     * Indexes the description and job code of the tasks in a company, ordered by description and job code.
+     */
+    protected static class TaskSearchIndex extends SearchIndex<Task> {
+        /** Orders tasks the same way as the search queries. */
+        private final static Comparator<Task> ORDER = new Comparator<Task>() {
+            @Override
+            public int compare(final Task first, final Task second) {
+                final int result = first.getDescription().compareTo(second.getDescription());
+                return result != 0 ? result : first.getJobCode().compareTo(second.getJobCode());
+            }
+        };
+
+        /**
+         * @param maxSize
+         *            the maximum number of tasks to hold in the index
+         */
+        public TaskSearchIndex(final int maxSize) {
+            super(ORDER, maxSize);
+        }
+
+        @Override
+        protected Integer getId(final Task task) {
+            return task.getId();
+        }
+
+        @Override
+        protected String[] getText(final Task task) {
+            return new String[] { task.getDescription(), task.getJobCode() };
+        }
+
+        @Override
+        protected Task copy(final Task task) {
+            return new Task(task);
+        }
+    }
+
     /** Used to retrieve database connection objects. */
     private final ConnectionManager connectionManager;
 
@@ -51,6 +105,109 @@ public class JdbcTaskDao implements TaskDao {
         return task;
     }
 
+    protected EntityCache<Integer, List<Task>> getCache() {
+        return this.connectionManager.getCache(CACHE);
+    }
+
+    protected EntityCache<Integer, SearchIndex<Task>> getSearchCache() {
+        return this.connectionManager.getCache(SEARCH_CACHE);
+    }
+
+    /**
+     * @param tasks
+     *            the tasks that were modified, whose companies will be removed from the entity caches
+     */
+    protected void invalidate(final Collection<Task> tasks) {
+        final Set<Integer> companyIds = getCompanyIds(tasks);
+        getCache().invalidate(companyIds);
+        getSearchCache().invalidate(companyIds);
+    }
+
+    protected Set<Integer> getCompanyIds(final Collection<Task> tasks) {
+        final Set<Integer> companyIds = new HashSet<>();
+        for (final Task task : tasks)
+            companyIds.add(task.getCompanyId());
+        return companyIds;
+    }
+
+    /**
+     * Used to increment the versions of the timesheets affected by task changes, since the tasks are included in the
+     * assembled timesheet documents.
+     */
+    protected JdbcTimesheetDao getTimesheetDao() {
+        return new JdbcTimesheetDao(this.connectionManager);
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company whose tasks were modified, which will be removed from the entity caches
+     */
+    protected void invalidate(final Integer companyId) {
+        getCache().invalidate(companyId);
+        getSearchCache().invalidate(companyId);
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company whose tasks will be searched
+     * @param filter
+     *            the search filter that will be used
+     * 
+     * @return the search index of the tasks in the company, built from the cached company tasks when not yet cached,
+     *         or {@code null} if the search needs to be performed in the database
+     * 
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    protected SearchIndex<Task> getSearchIndex(final Integer companyId, final String filter) throws DatabaseException {
+        final int maxSize = this.connectionManager.getSearchIndexMaxSize();
+        if (maxSize == 0 || !getSearchCache().isEnabled() || !SearchIndex.supports(filter))
+            return null;
+
+        SearchIndex<Task> index = getSearchCache().get(companyId);
+        if (index == null) {
+            // Task writes drop the company tasks and the index together, so the index is rebuilt from the tasks.
+            final long stamp = getSearchCache().stamp();
+            index = new TaskSearchIndex(maxSize);
+            index.put(getCompanyTasks(companyId));
+            getSearchCache().put(stamp, companyId, companyId, index);
+        }
+        return index.isAvailable() ? index : null;
+    }
+
+    /**
+     * @param companyId
+     *            the unique id of the company whose tasks will be retrieved
+     * 
+     * @return all of the tasks in the specified company, ordered by description and job code, retrieved from the
+     *         entity cache when possible
+     * 
+     * @throws DatabaseException
+     *             if there is an error communicating with the database
+     */
+    protected List<Task> getCompanyTasks(final Integer companyId) throws DatabaseException {
+        final List<Task> cached = getCache().get(companyId);
+        if (cached != null)
+            return cached;
+
+        final String sql = "SELECT * FROM tasks WHERE company_id = ? ORDER BY description, job_code";
+
+        final long stamp = getCache().stamp();
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, companyId);
+            final List<Task> tasks = new ArrayList<>();
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    tasks.add(fromResultSet(rs));
+            }
+            getCache().put(stamp, companyId, companyId, Collections.unmodifiableList(tasks));
+            return tasks;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -59,6 +216,13 @@ public class JdbcTaskDao implements TaskDao {
         notNull(companyId, "Invalid null company id");
         notNull(taskId, "Invalid null task id");
 
+        if (getCache().isEnabled()) {
+            for (final Task task : getCompanyTasks(companyId))
+                if (taskId.equals(task.getId()))
+                    return new Task(task);
+            return null;
+        }
+
         final String sql = "SELECT * FROM tasks " + "WHERE company_id = ? AND id = ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
@@ -83,26 +247,75 @@ public class JdbcTaskDao implements TaskDao {
             final Integer limit, final Integer offset) throws DatabaseException {
         notNull(companyId, "Invalid null company id");
 
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM tasks WHERE company_id = ?");
-        if (!includeAdmin)
-            sql.append(" AND admin = false");
-        if (!includeInactive)
-            sql.append(" AND active = true");
-        sql.append(" ORDER BY description, job_code");
-        if (limit != null)
-            sql.append(" LIMIT ?");
-        if (offset != null)
-            sql.append(" OFFSET ?");
+        if (getCache().isEnabled()) {
+            // Filtering the ordered company tasks gives the same results as the query below.
+            final Set<Task> tasks = new TreeSet<>();
+            int skip = SqlParams.offset(offset);
+            for (final Task task : getCompanyTasks(companyId)) {
+                if (tasks.size() >= SqlParams.limit(limit))
+                    break;
+                if ((!includeAdmin && task.isAdministrative()) || (!includeInactive && !task.isActive()))
+                    continue;
+                if (skip > 0)
+                    skip--;
+                else
+                    tasks.add(new Task(task));
+            }
+            return tasks;
+        }
+
+        final String sql = "SELECT * FROM tasks"
+                + SqlParams.where("company_id = ?", includeAdmin ? null : "admin = FALSE",
+                        includeInactive ? null : "active = TRUE") + " ORDER BY description, job_code LIMIT ? OFFSET ?";
 
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
-            ps.setInt(1, index++);
-            if (limit != null)
-                ps.setInt(index++, limit);
-            if (offset != null)
-                ps.setInt(index++, offset);
+            ps.setInt(index++, companyId);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
+            try (final ResultSet rs = ps.executeQuery()) {
+                final Set<Task> tasks = new TreeSet<>();
+                while (rs.next())
+                    tasks.add(fromResultSet(rs));
+                return tasks;
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Task> search(final Integer companyId, final String filter, final boolean includeAdmin,
+            final boolean includeInactive, final Integer limit, final Integer offset) throws DatabaseException {
+        notNull(companyId, "Invalid null company id");
+
+        final SearchIndex<Task> searchIndex = getSearchIndex(companyId, filter);
+        if (searchIndex != null) {
+            final SearchIndex.Condition<Task> condition = new SearchIndex.Condition<Task>() {
+                @Override
+                public boolean matches(final Task task) {
+                    return (includeAdmin || !task.isAdministrative()) && (includeInactive || task.isActive());
+                }
+            };
+            return new TreeSet<>(searchIndex.search(filter, condition, null, limit, offset));
+        }
+
+        final String sql = "SELECT * FROM tasks"
+                + SqlParams.where("company_id = ?", SqlParams.like(filter, "description", "job_code"),
+                        includeAdmin ? null : "admin = FALSE", includeInactive ? null : "active = TRUE")
+                + " ORDER BY description, job_code LIMIT ? OFFSET ?";
+
+        try (final Connection conn = this.connectionManager.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            ps.setInt(index++, companyId);
+            index = SqlParams.setLike(ps, index, filter, 2);
+            ps.setInt(index++, SqlParams.limit(limit));
+            ps.setInt(index++, SqlParams.offset(offset));
             try (final ResultSet rs = ps.executeQuery()) {
                 final Set<Task> tasks = new TreeSet<>();
                 while (rs.next())
@@ -144,32 +357,41 @@ public class JdbcTaskDao implements TaskDao {
     }
 
     /**
-     * Used to enrich timesheets with task information.
+     * Used to enrich timesheets with task information. The returned map is keyed by timesheet id, and each timesheet
+     * receives its own task objects containing only the assignments of the timesheet owner that overlap the timesheet
+     * pay period. Administrative tasks are included for every timesheet.
      */
-    protected Map<Integer, Set<Task>> getForPayPeriod(final Connection conn, final PayPeriod payPeriod,
-            final Set<Integer> userIds) throws DatabaseException {
-        if (userIds == null || userIds.isEmpty())
+    protected Map<Integer, Set<Task>> getForTimesheets(final Connection conn, final Integer companyId,
+            final Set<Integer> timesheetIds) throws DatabaseException {
+        if (timesheetIds == null || timesheetIds.isEmpty())
             return Collections.emptyMap();
         notNull(conn, "Invalid null connection");
-        notNull(payPeriod, "Invalid null pay period");
+        notNull(companyId, "Invalid null company id");
 
-        final String sql = "SELECT t.id, t.id AS task_id, t.company_id, "
-                + "description, job_code, admin, active, a.id AS assmnt_id, "
-                + "user_id, labor_cat, item_name, begin, end "
-                + "FROM tasks t LEFT JOIN assignments a ON (a.task_id = t.id) "
-                + "WHERE (a.user_id = ? OR t.admin = TRUE) AND " + "(begin IS NULL OR begin <= ?) AND "
-                + "(end IS NULL OR end >= ?) AND active = TRUE";
-
-        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
-            final Map<Integer, Set<Task>> userTaskMap = new TreeMap<>();
-            for (final Integer userId : userIds) {
-                ps.setInt(1, userId);
-                ps.setDate(2, new java.sql.Date(payPeriod.getEnd().getTime()));
-                ps.setDate(3, new java.sql.Date(payPeriod.getBegin().getTime()));
-
-                final Map<Integer, Task> taskMap = new HashMap<>();
+        final Map<Integer, Map<Integer, Task>> timesheetTaskMap = new TreeMap<>();
+        for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+            final String sql = "SELECT ts.id AS timesheet_id, t.id, t.id AS task_id, t.company_id, "
+                    + "t.description, t.job_code, t.admin, t.active, a.id AS assmnt_id, "
+                    + "a.user_id, a.labor_cat, a.item_name, a.begin, a.end FROM timesheets ts "
+                    + "JOIN pay_periods p ON (p.begin = ts.pp_begin AND p.company_id = ts.company_id) "
+                    + "JOIN tasks t ON (t.company_id = ts.company_id) "
+                    + "LEFT JOIN assignments a ON (a.task_id = t.id AND a.user_id = ts.user_id "
+                    + "AND (a.begin IS NULL OR a.begin <= p.end) AND (a.end IS NULL OR a.end >= p.begin)) "
+                    + "WHERE ts.company_id = ? AND ts.id IN (" + InClause.placeholders(chunk.size()) + ") "
+                    + "AND t.active = TRUE AND (t.admin = TRUE OR a.id IS NOT NULL)";
+
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, companyId);
+                InClause.setInts(ps, 2, chunk);
                 try (final ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
+                        final int timesheetId = rs.getInt("timesheet_id");
+                        Map<Integer, Task> taskMap = timesheetTaskMap.get(timesheetId);
+                        if (taskMap == null) {
+                            taskMap = new HashMap<>();
+                            timesheetTaskMap.put(timesheetId, taskMap);
+                        }
+
                         final int taskId = rs.getInt("task_id");
                         Task task = taskMap.get(taskId);
                         if (task == null) {
@@ -178,27 +400,23 @@ public class JdbcTaskDao implements TaskDao {
                             taskMap.put(taskId, task);
                         }
 
-                        Assignment assignment = null;
                         final int assignmentId = rs.getInt("assmnt_id");
                         if (!rs.wasNull()) {
-                            assignment = JdbcAssignmentDao.fromResultSet(rs);
+                            final Assignment assignment = JdbcAssignmentDao.fromResultSet(rs);
                             assignment.setId(assignmentId);
                             task.addAssignments(assignment);
                         }
-
-                        Set<Task> tasks = userTaskMap.get(userId);
-                        if (tasks == null) {
-                            tasks = new TreeSet<>();
-                            userTaskMap.put(userId, tasks);
-                        }
-                        tasks.add(task);
                     }
                 }
+            } catch (final SQLException sqlException) {
+                throw new DatabaseException(sqlException);
             }
-            return userTaskMap;
-        } catch (final SQLException sqlException) {
-            throw new DatabaseException(sqlException);
         }
+
+        final Map<Integer, Set<Task>> taskMap = new TreeMap<>();
+        for (final Entry<Integer, Map<Integer, Task>> entry : timesheetTaskMap.entrySet())
+            taskMap.put(entry.getKey(), new TreeSet<>(entry.getValue().values()));
+        return taskMap;
     }
 
     /**
@@ -261,9 +479,9 @@ public class JdbcTaskDao implements TaskDao {
         final String sql = "INSERT INTO tasks (company_id, description, "
                 + "job_code, admin, active) VALUES (?, ?, ?, ?, ?)";
 
-        int count = 0;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize(), true);
             for (final Task task : tasks) {
                 int index = 1;
                 ps.setInt(index++, task.getCompanyId());
@@ -271,17 +489,22 @@ public class JdbcTaskDao implements TaskDao {
                 ps.setString(index++, task.getJobCode());
                 ps.setBoolean(index++, task.isAdministrative());
                 ps.setBoolean(index++, task.isActive());
-                count += ps.executeUpdate();
-
-                try (final ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next())
-                        task.setId(rs.getInt(1));
-                }
+                batch.add();
             }
+            final int count = batch.execute();
+
+            final Iterator<Integer> keys = batch.getGeneratedKeys().iterator();
+            for (final Task task : tasks)
+                if (keys.hasNext())
+                    task.setId(keys.next());
+
+            getTimesheetDao().touchCompanies(conn, getCompanyIds(tasks));
+            return count;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(tasks);
         }
-        return count;
     }
 
     /**
@@ -301,18 +524,23 @@ public class JdbcTaskDao implements TaskDao {
             return 0;
         notNull(companyId, "Invalid null company id");
 
-        final String sql = "UPDATE tasks SET active = true " + "WHERE company_id = ? AND id = ?";
-
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer id : ids) {
-                ps.setInt(1, companyId);
-                ps.setInt(2, id);
-                count += ps.executeUpdate();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(ids)) {
+                final String sql = "UPDATE tasks SET active = true WHERE company_id = ? AND id IN ("
+                        + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, companyId);
+                    InClause.setInts(ps, 2, chunk);
+                    count += ps.executeUpdate();
+                }
             }
+            getTimesheetDao().touchCompanies(conn, Collections.singleton(companyId));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(companyId);
         }
         return count;
     }
@@ -334,18 +562,23 @@ public class JdbcTaskDao implements TaskDao {
             return 0;
         notNull(companyId, "Invalid null company id");
 
-        final String sql = "UPDATE tasks SET active = false " + "WHERE company_id = ? AND id = ?";
-
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer id : ids) {
-                ps.setInt(1, companyId);
-                ps.setInt(2, id);
-                count += ps.executeUpdate();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(ids)) {
+                final String sql = "UPDATE tasks SET active = false WHERE company_id = ? AND id IN ("
+                        + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, companyId);
+                    InClause.setInts(ps, 2, chunk);
+                    count += ps.executeUpdate();
+                }
             }
+            getTimesheetDao().touchCompanies(conn, Collections.singleton(companyId));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(companyId);
         }
         return count;
     }
@@ -369,9 +602,9 @@ public class JdbcTaskDao implements TaskDao {
         final String sql = "UPDATE tasks SET description = ?, job_code = ?, "
                 + "admin = ?, active = ? WHERE company_id = ? AND id = ?";
 
-        int count = 0;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql)) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
             for (final Task task : tasks) {
                 int index = 1;
                 ps.setString(index++, task.getDescription());
@@ -380,12 +613,16 @@ public class JdbcTaskDao implements TaskDao {
                 ps.setBoolean(index++, task.isActive());
                 ps.setInt(index++, task.getCompanyId());
                 ps.setInt(index++, task.getId());
-                count += ps.executeUpdate();
+                batch.add();
             }
+            final int count = batch.execute();
+            getTimesheetDao().touchCompanies(conn, getCompanyIds(tasks));
+            return count;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(tasks);
         }
-        return count;
     }
 
     /**
@@ -403,19 +640,25 @@ public class JdbcTaskDao implements TaskDao {
     public int delete(final Integer companyId, final Collection<Integer> ids) throws DatabaseException {
         if (ids == null || ids.isEmpty())
             return 0;
-
-        final String sql = "DELETE FROM tasks WHERE company_id = ? AND id = ?";
+        notNull(companyId, "Invalid null company id");
 
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer id : ids) {
-                ps.setInt(1, companyId);
-                ps.setInt(2, id);
-                count += ps.executeUpdate();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(ids)) {
+                final String sql = "DELETE FROM tasks WHERE company_id = ? AND id IN ("
+                        + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, companyId);
+                    InClause.setInts(ps, 2, chunk);
+                    count += ps.executeUpdate();
+                }
             }
+            getTimesheetDao().touchCompanies(conn, Collections.singleton(companyId));
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } finally {
+            invalidate(companyId);
         }
         return count;
     }
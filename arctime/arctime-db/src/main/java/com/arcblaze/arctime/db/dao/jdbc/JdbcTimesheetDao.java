@@ -3,44 +3,63 @@ package com.arcblaze.arctime.db.dao.jdbc;
 import static org.apache.commons.lang.Validate.isTrue;
 import static org.apache.commons.lang.Validate.notNull;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 
 import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.BoundConnectionManager;
 import com.arcblaze.arccore.db.ConnectionManager;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.DatabaseVersionException;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcBatch;
 import com.arcblaze.arccore.db.dao.jdbc.JdbcUserDao;
+import com.arcblaze.arccore.db.util.InClause;
 import com.arcblaze.arctime.common.model.Assignment;
 import com.arcblaze.arctime.common.model.AuditLog;
 import com.arcblaze.arctime.common.model.Bill;
 import com.arcblaze.arctime.common.model.Enrichment;
 import com.arcblaze.arctime.common.model.Holiday;
 import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
 import com.arcblaze.arctime.common.model.Task;
 import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.common.model.TimesheetChanges;
+import com.arcblaze.arctime.common.model.util.HolidayCalendar;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
 import com.arcblaze.arctime.db.dao.TimesheetDao;
+import com.arcblaze.arctime.db.dao.TimesheetDocument;
+import com.arcblaze.arctime.db.dao.TimesheetExportHandler;
 
 /**
  * Manages timesheets within the back-end database.
  */
 public class JdbcTimesheetDao implements TimesheetDao {
+    /** The enrichments included in the assembled timesheet documents. */
+    public final static Set<Enrichment> DOCUMENT_ENRICHMENTS = Collections.unmodifiableSet(new LinkedHashSet<>(
+            Arrays.asList(Enrichment.PAY_PERIODS, Enrichment.AUDIT_LOGS, Enrichment.HOLIDAYS, Enrichment.USERS,
+                    Enrichment.TASKS, Enrichment.BILLS)));
+
     /** Used to retrieve database connection objects. */
     private final ConnectionManager connectionManager;
 
@@ -95,11 +114,22 @@ public class JdbcTimesheetDao implements TimesheetDao {
         notNull(companyId, "Invalid null company id");
         notNull(timesheetId, "Invalid null timesheet id");
 
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            return get(conn, companyId, timesheetId, enrichments);
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to retrieve a single timesheet using an existing database connection.
+     */
+    protected Timesheet get(final Connection conn, final Integer companyId, final Integer timesheetId,
+            final Set<Enrichment> enrichments) throws SQLException, DatabaseException, HolidayConfigurationException {
         final String sql = "SELECT t.* FROM timesheets t JOIN users e ON "
                 + "(t.user_id = e.id AND e.company_id = ?) WHERE t.id = ?";
 
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, companyId);
             ps.setInt(2, timesheetId);
             try (final ResultSet rs = ps.executeQuery();) {
@@ -110,8 +140,233 @@ public class JdbcTimesheetDao implements TimesheetDao {
                 }
             }
             return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TimesheetDocument getDocument(final Integer companyId, final Integer timesheetId)
+            throws DatabaseException, HolidayConfigurationException {
+        notNull(companyId, "Invalid null company id");
+        notNull(timesheetId, "Invalid null timesheet id");
+
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            // The version is read before the timesheet is assembled, so changes made while assembling leave the
+            // document behind the stored version and it is assembled again on the next read.
+            final Integer version = getVersion(conn, companyId, timesheetId);
+            if (version == null)
+                return null;
+
+            final Timesheet stored = getStoredDocument(conn, timesheetId, version);
+            if (stored != null)
+                return new TimesheetDocument(version, stored);
+
+            final Timesheet timesheet = get(conn, companyId, timesheetId, DOCUMENT_ENRICHMENTS);
+            if (timesheet == null)
+                return null;
+            storeDocument(conn, timesheetId, version, timesheet);
+            return new TimesheetDocument(version, timesheet);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
+        } catch (final IOException badDocument) {
+            throw new DatabaseException(badDocument);
+        }
+    }
+
+    /**
+     * Used to retrieve the stored document of a timesheet, which is shared by all of the servers using the database.
+     * 
+     * @return the timesheet read from the stored document, or {@code null} if the stored document was not assembled
+     *         from the specified version of the timesheet
+     */
+    protected Timesheet getStoredDocument(final Connection conn, final Integer timesheetId, final Integer version)
+            throws SQLException, IOException {
+        final String sql = "SELECT document FROM timesheet_documents WHERE timesheet_id = ? AND version = ?";
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, timesheetId);
+            ps.setInt(2, version);
+            try (final ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? TimesheetDocumentMapper.read(rs.getString(1)) : null;
+            }
+        }
+    }
+
+    /**
+     * Used to store the document of a timesheet assembled from the specified version, unless a document assembled
+     * from the same or a later version has already been stored by another request.
+     */
+    protected void storeDocument(final Connection conn, final Integer timesheetId, final Integer version,
+            final Timesheet timesheet) throws SQLException, IOException {
+        final String sql;
+        if (this.connectionManager.isMySql())
+            // The document is assigned before the version so that it is compared with the existing version.
+            sql = "INSERT INTO timesheet_documents (timesheet_id, version, document) VALUES (?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE document = IF(VALUES(version) > version, VALUES(document), document), "
+                    + "version = GREATEST(version, VALUES(version))";
+        else
+            sql = "MERGE INTO timesheet_documents d USING (SELECT * FROM (VALUES (CAST(? AS INTEGER), "
+                    + "CAST(? AS INTEGER), CAST(? AS LONGVARCHAR))) AS n (timesheet_id, version, document) "
+                    + "WHERE NOT EXISTS (SELECT e.timesheet_id FROM timesheet_documents e "
+                    + "WHERE e.timesheet_id = n.timesheet_id AND e.version >= n.version)) AS v "
+                    + "ON (d.timesheet_id = v.timesheet_id) "
+                    + "WHEN MATCHED THEN UPDATE SET version = v.version, document = v.document "
+                    + "WHEN NOT MATCHED THEN INSERT (timesheet_id, version, document) "
+                    + "VALUES (v.timesheet_id, v.version, v.document)";
+
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, timesheetId);
+            ps.setInt(2, version);
+            ps.setString(3, TimesheetDocumentMapper.write(timesheet));
+            ps.executeUpdate();
+        } catch (final SQLIntegrityConstraintViolationException alreadyStored) {
+            // Another request stored the first document of the timesheet at the same time.
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Integer getVersion(final Integer companyId, final Integer timesheetId) throws DatabaseException {
+        notNull(companyId, "Invalid null company id");
+        notNull(timesheetId, "Invalid null timesheet id");
+
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            return getVersion(conn, companyId, timesheetId);
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to retrieve the version of a timesheet. The versions are created along with the timesheets, so reading
+     * them never writes to the database.
+     * 
+     * @return the version of the timesheet, or {@code null} if the timesheet does not exist
+     */
+    protected Integer getVersion(final Connection conn, final Integer companyId, final Integer timesheetId)
+            throws SQLException {
+        final String sql = "SELECT v.version FROM timesheet_versions v JOIN timesheets t ON "
+                + "(t.id = v.timesheet_id) WHERE v.timesheet_id = ? AND t.company_id = ?";
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, timesheetId);
+            ps.setInt(2, companyId);
+            try (final ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Used to create the initial versions of newly added timesheets.
+     */
+    protected void addVersions(final Connection conn, final Collection<Integer> timesheetIds) throws SQLException {
+        final String sql = "INSERT INTO timesheet_versions (timesheet_id, version) VALUES (?, 0)";
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
+            for (final Integer timesheetId : timesheetIds) {
+                ps.setInt(1, timesheetId);
+                batch.add();
+            }
+            batch.execute();
+        }
+    }
+
+    /**
+     * Used to increment the version of a timesheet only if it is still at the expected version, which locks the
+     * version row until the surrounding transaction completes so concurrent saves of the timesheet are serialized.
+     * 
+     * @throws DatabaseVersionException
+     *             if the timesheet is no longer at the expected version
+     */
+    protected void claimVersion(final Connection conn, final Integer timesheetId, final Integer version)
+            throws DatabaseVersionException, DatabaseException {
+        final String sql = "UPDATE timesheet_versions SET version = version + 1 WHERE timesheet_id = ? "
+                + "AND version = ?";
+
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, timesheetId);
+            ps.setInt(2, version);
+            if (ps.executeUpdate() == 0)
+                throw new DatabaseVersionException("The timesheet has been modified since version " + version);
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to increment the versions of the specified timesheets after any of the data included in their documents
+     * has changed, using an existing database connection.
+     */
+    protected int touch(final Connection conn, final Collection<Integer> timesheetIds) throws SQLException {
+        if (timesheetIds == null || timesheetIds.isEmpty())
+            return 0;
+
+        int count = 0;
+        for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+            final String sql = "UPDATE timesheet_versions SET version = version + 1 WHERE timesheet_id IN ("
+                    + InClause.placeholders(chunk.size()) + ")";
+
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                InClause.setInts(ps, 1, chunk);
+                count += ps.executeUpdate();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Used to increment the versions of all the timesheets owned by the specified users, after their bills have
+     * changed, using an existing database connection.
+     */
+    protected int touchUsers(final Connection conn, final Collection<Integer> userIds) throws SQLException {
+        if (userIds == null || userIds.isEmpty())
+            return 0;
+
+        int count = 0;
+        for (final List<Integer> chunk : InClause.chunk(userIds)) {
+            final String sql = "UPDATE timesheet_versions SET version = version + 1 WHERE timesheet_id IN "
+                    + "(SELECT id FROM timesheets WHERE user_id IN (" + InClause.placeholders(chunk.size()) + "))";
+
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                InClause.setInts(ps, 1, chunk);
+                count += ps.executeUpdate();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Used to increment the versions of all the timesheets in the specified companies, after company-wide data such
+     * as tasks, assignments or holidays has changed, using an existing database connection.
+     */
+    protected int touchCompanies(final Connection conn, final Collection<Integer> companyIds) throws SQLException {
+        if (companyIds == null || companyIds.isEmpty())
+            return 0;
+
+        int count = 0;
+        for (final List<Integer> chunk : InClause.chunk(companyIds)) {
+            final String sql = "UPDATE timesheet_versions SET version = version + 1 WHERE timesheet_id IN "
+                    + "(SELECT id FROM timesheets WHERE company_id IN (" + InClause.placeholders(chunk.size()) + "))";
+
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                InClause.setInts(ps, 1, chunk);
+                count += ps.executeUpdate();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Used to increment the versions of all the timesheets when the affected companies are not known, using an
+     * existing database connection.
+     */
+    protected int touchAll(final Connection conn) throws SQLException {
+        final String sql = "UPDATE timesheet_versions SET version = version + 1";
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            return ps.executeUpdate();
         }
     }
 
@@ -136,18 +391,20 @@ public class JdbcTimesheetDao implements TimesheetDao {
             return Collections.emptySet();
         notNull(companyId, "Invalid null company id");
 
-        final String sql = "SELECT t.* FROM timesheets t JOIN users e ON "
-                + "(t.user_id = e.id AND e.company_id = ?) WHERE t.id = ?";
-
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (final Connection conn = this.connectionManager.getConnection()) {
             final Set<Timesheet> timesheets = new TreeSet<>();
-            for (final Integer timesheetId : timesheetIds) {
-                ps.setInt(1, companyId);
-                ps.setInt(2, timesheetId);
-                try (final ResultSet rs = ps.executeQuery()) {
-                    while (rs.next())
-                        timesheets.add(fromResultSet(rs));
+            for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+                final String sql = "SELECT t.* FROM timesheets t JOIN users e ON "
+                        + "(t.user_id = e.id AND e.company_id = ?) WHERE t.id IN ("
+                        + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, companyId);
+                    InClause.setInts(ps, 2, chunk);
+                    try (final ResultSet rs = ps.executeQuery()) {
+                        while (rs.next())
+                            timesheets.add(fromResultSet(rs));
+                    }
                 }
             }
             enrich(conn, companyId, timesheets, enrichments);
@@ -217,30 +474,100 @@ public class JdbcTimesheetDao implements TimesheetDao {
             HolidayConfigurationException {
         notNull(userId, "Invalid null user id");
 
-        final String sql = "(SELECT t.* FROM timesheets t JOIN pay_periods p ON "
-                + "(t.pp_begin = p.begin AND t.company_id = p.company_id) "
-                + "JOIN bills b ON (b.day >= p.begin AND b.day <= p.end "
-                + "AND b.user_id = t.user_id) WHERE t.user_id = ? "
-                + "GROUP BY t.id ORDER BY completed, pp_begin DESC LIMIT 1) "
-                + "UNION (SELECT * FROM timesheets WHERE user_id = ? " + "ORDER BY completed, pp_begin DESC LIMIT 1)";
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            // Only read here, the current timesheets are maintained by the writers and the provisioning task.
+            final Timesheet timesheet = getCurrent(conn, userId);
+            if (timesheet != null)
+                enrich(conn, timesheet.getCompanyId(), Collections.singleton(timesheet), enrichments);
+            return timesheet;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
 
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
+    /**
+     * Used to retrieve the timesheet pointed to by the current timesheet of a user.
+     */
+    protected Timesheet getCurrent(final Connection conn, final Integer userId) throws SQLException {
+        final String sql = "SELECT t.* FROM current_timesheets c JOIN timesheets t ON (t.id = c.timesheet_id) "
+                + "WHERE c.user_id = ?";
+
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, userId);
-            ps.setInt(2, userId);
             try (final ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    final Timesheet timesheet = fromResultSet(rs);
-                    enrich(conn, timesheet.getCompanyId(), Collections.singleton(timesheet), enrichments);
-                    return timesheet;
+                return rs.next() ? fromResultSet(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Used to recalculate the current timesheet of each of the specified users after their bills or timesheets have
+     * changed, using an existing database connection. The current timesheet is the latest incomplete timesheet
+     * containing bills, falling back to the latest timesheet when no timesheets contain bills. Timesheets provisioned
+     * ahead of their pay periods are only used as a fallback once no other timesheets remain. The users are
+     * recalculated in chunks, each with a single set-based upsert rather than queries for each user, so concurrent
+     * writers for the same users cannot both insert a current timesheet. Users without any timesheets are left out,
+     * and their current timesheets are removed along with their last timesheet by the foreign key.
+     */
+    protected void updateCurrent(final Connection conn, final Collection<Integer> userIds) throws DatabaseException {
+        if (userIds == null || userIds.isEmpty())
+            return;
+        notNull(conn, "Invalid null connection");
+
+        final String billed = "SELECT t.id FROM timesheets t JOIN pay_periods p ON "
+                + "(t.pp_begin = p.begin AND t.company_id = p.company_id) WHERE t.user_id = u.id AND EXISTS "
+                + "(SELECT b.id FROM bills b WHERE b.user_id = t.user_id AND b.day >= p.begin AND b.day <= p.end) "
+                + "ORDER BY t.completed, t.pp_begin DESC LIMIT 1";
+        final String latest = "SELECT l.id FROM timesheets l WHERE l.user_id = u.id ORDER BY l.completed, "
+                + "CASE WHEN l.pp_begin > CURRENT_DATE THEN 1 ELSE 0 END, l.pp_begin DESC LIMIT 1";
+
+        try {
+            for (final List<Integer> chunk : InClause.chunk(new TreeSet<>(userIds))) {
+                final String current = "SELECT u.id AS user_id, COALESCE((" + billed + "), (" + latest
+                        + ")) AS timesheet_id FROM users u WHERE u.id IN (" + InClause.placeholders(chunk.size())
+                        + ") AND EXISTS (SELECT e.id FROM timesheets e WHERE e.user_id = u.id)";
+
+                final String sql;
+                if (this.connectionManager.isMySql())
+                    sql = "INSERT INTO current_timesheets (user_id, timesheet_id) SELECT * FROM (" + current
+                            + ") AS n ON DUPLICATE KEY UPDATE timesheet_id = n.timesheet_id";
+                else
+                    sql = "MERGE INTO current_timesheets c USING (" + current + ") AS n ON (c.user_id = n.user_id) "
+                            + "WHEN MATCHED THEN UPDATE SET timesheet_id = n.timesheet_id "
+                            + "WHEN NOT MATCHED THEN INSERT (user_id, timesheet_id) VALUES (n.user_id, n.timesheet_id)";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    InClause.setInts(ps, 1, chunk);
+                    ps.executeUpdate();
                 }
             }
-            return null;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
     }
 
+    /**
+     * Used to retrieve the unique ids of the users that own the specified timesheets.
+     */
+    protected Set<Integer> getOwnerIds(final Connection conn, final Integer companyId,
+            final Collection<Integer> timesheetIds) throws SQLException {
+        final Set<Integer> userIds = new TreeSet<>();
+        for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+            final String sql = "SELECT DISTINCT user_id FROM timesheets WHERE company_id = ? AND id IN ("
+                    + InClause.placeholders(chunk.size()) + ")";
+
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, companyId);
+                InClause.setInts(ps, 2, chunk);
+                try (final ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        userIds.add(rs.getInt(1));
+                }
+            }
+        }
+        return userIds;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -260,10 +587,10 @@ public class JdbcTimesheetDao implements TimesheetDao {
         final String sql = "INSERT INTO timesheets (company_id, user_id, "
                 + "pp_begin, completed, approved, verified, exported) VALUES " + "(?, ?, ?, ?, ?, ?, ?)";
 
-        int count = 0;
         try (final Connection conn = this.connectionManager.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            for (Timesheet timesheet : timesheets) {
+            final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize(), true);
+            for (final Timesheet timesheet : timesheets) {
                 int index = 1;
                 ps.setInt(index++, timesheet.getCompanyId());
                 ps.setInt(index++, timesheet.getUserId());
@@ -272,17 +599,105 @@ public class JdbcTimesheetDao implements TimesheetDao {
                 ps.setBoolean(index++, timesheet.isApproved());
                 ps.setBoolean(index++, timesheet.isVerified());
                 ps.setBoolean(index++, timesheet.isExported());
-                count += ps.executeUpdate();
+                batch.add();
+            }
+            final int count = batch.execute();
+
+            addVersions(conn, batch.getGeneratedKeys());
+
+            final Iterator<Integer> keys = batch.getGeneratedKeys().iterator();
+            final Set<Integer> userIds = new TreeSet<>();
+            for (final Timesheet timesheet : timesheets) {
+                if (keys.hasNext())
+                    timesheet.setId(keys.next());
+                userIds.add(timesheet.getUserId());
+            }
+            updateCurrent(conn, userIds);
 
-                try (final ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next())
-                        timesheet.setId(rs.getInt(1));
+            return count;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int provision(final Collection<PayPeriod> payPeriods) throws DatabaseException {
+        if (payPeriods == null || payPeriods.isEmpty())
+            return 0;
+
+        // A single statement for each pay period creates the timesheets, skipping the users that already have one.
+        final String sql = "INSERT INTO timesheets (company_id, user_id, pp_begin) SELECT u.company_id, u.id, ? "
+                + "FROM users u WHERE u.company_id = ? AND u.active = TRUE AND NOT EXISTS "
+                + "(SELECT t.id FROM timesheets t WHERE t.user_id = u.id AND t.pp_begin = ?)";
+
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            final int count;
+            try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
+                for (final PayPeriod payPeriod : payPeriods) {
+                    notNull(payPeriod, "Invalid null pay period");
+                    notNull(payPeriod.getCompanyId(), "Invalid null company id");
+                    notNull(payPeriod.getBegin(), "Invalid null begin date");
+
+                    final Date begin = new Date(payPeriod.getBegin().getTime());
+                    int index = 1;
+                    ps.setDate(index++, begin);
+                    ps.setInt(index++, payPeriod.getCompanyId());
+                    ps.setDate(index++, begin);
+                    batch.add();
                 }
+                count = batch.execute();
             }
+
+            // The versions of the new timesheets are created with one statement for each pay period as well.
+            final String versions = "INSERT INTO timesheet_versions (timesheet_id, version) SELECT t.id, 0 FROM "
+                    + "timesheets t WHERE t.company_id = ? AND t.pp_begin = ? AND NOT EXISTS "
+                    + "(SELECT v.timesheet_id FROM timesheet_versions v WHERE v.timesheet_id = t.id)";
+            try (final PreparedStatement ps = conn.prepareStatement(versions)) {
+                final JdbcBatch batch = new JdbcBatch(ps, this.connectionManager.getBatchSize());
+                for (final PayPeriod payPeriod : payPeriods) {
+                    ps.setInt(1, payPeriod.getCompanyId());
+                    ps.setDate(2, new Date(payPeriod.getBegin().getTime()));
+                    batch.add();
+                }
+                batch.execute();
+            }
+
+            final Set<Integer> userIds = new TreeSet<>();
+            for (final PayPeriod payPeriod : payPeriods)
+                userIds.addAll(getStaleCurrentIds(conn, payPeriod));
+            updateCurrent(conn, userIds);
+
+            return count;
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
-        return count;
+    }
+
+    /**
+     * Used to retrieve the ids of the active users in the company of the pay period that have no current timesheet
+     * yet, along with those whose current timesheet comes before the pay period once it has begun.
+     */
+    protected Set<Integer> getStaleCurrentIds(final Connection conn, final PayPeriod payPeriod) throws SQLException {
+        final boolean begun = !payPeriod.isAfter(new java.util.Date());
+        final String sql = "SELECT u.id FROM users u LEFT JOIN current_timesheets c ON (c.user_id = u.id) "
+                + "LEFT JOIN timesheets t ON (t.id = c.timesheet_id) WHERE u.company_id = ? AND u.active = TRUE "
+                + "AND (c.user_id IS NULL" + (begun ? " OR t.pp_begin < ?)" : ")");
+
+        final Set<Integer> userIds = new TreeSet<>();
+        try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, payPeriod.getCompanyId());
+            if (begun)
+                ps.setDate(2, new Date(payPeriod.getBegin().getTime()));
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    userIds.add(rs.getInt(1));
+            }
+        }
+        return userIds;
     }
 
     /**
@@ -304,17 +719,39 @@ public class JdbcTimesheetDao implements TimesheetDao {
             return 0;
         notNull(companyId, "Invalid null company id");
 
-        final String sql = "UPDATE timesheets SET completed = ? " + "WHERE id = ? AND company_id = ?";
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            final int count = complete(conn, companyId, completed, timesheetIds);
+            updateCurrent(conn, getOwnerIds(conn, companyId, timesheetIds));
+            touch(conn, timesheetIds);
+            return count;
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to update timesheet completion status using an existing database connection, possibly as part of a larger
+     * transaction.
+     */
+    protected int complete(final Connection conn, final Integer companyId, final boolean completed,
+            final Collection<Integer> timesheetIds) throws DatabaseException {
+        if (timesheetIds == null || timesheetIds.isEmpty())
+            return 0;
+        notNull(companyId, "Invalid null company id");
+        notNull(conn, "Invalid null connection");
 
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer timesheetId : timesheetIds) {
-                int index = 1;
-                ps.setBoolean(index++, completed);
-                ps.setInt(index++, timesheetId);
-                ps.setInt(index++, companyId);
-                count += ps.executeUpdate();
+        try {
+            for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+                final String sql = "UPDATE timesheets SET completed = ? WHERE company_id = ? AND id IN ("
+                        + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setBoolean(1, completed);
+                    ps.setInt(2, companyId);
+                    InClause.setInts(ps, 3, chunk);
+                    count += ps.executeUpdate();
+                }
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
@@ -342,24 +779,26 @@ public class JdbcTimesheetDao implements TimesheetDao {
         notNull(companyId, "Invalid null company id");
         isTrue(!approved || approverId != null, "Invalid null approver id");
 
-        final String sql = "UPDATE timesheets SET approved = ?, approver_id = ? " + "WHERE id = ? AND company_id = ?";
-
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer timesheetId : timesheetIds) {
-                int index = 1;
-                ps.setBoolean(index++, approved);
-                // approverId will always have a value when approved is true,
-                // based on the above Validate.isTrue
-                if (approved && approverId != null)
-                    ps.setInt(index++, approverId);
-                else
-                    ps.setNull(index++, Types.INTEGER);
-                ps.setInt(index++, timesheetId);
-                ps.setInt(index++, companyId);
-                count += ps.executeUpdate();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+                final String sql = "UPDATE timesheets SET approved = ?, approver_id = ? "
+                        + "WHERE company_id = ? AND id IN (" + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setBoolean(1, approved);
+                    // approverId will always have a value when approved is true,
+                    // based on the above Validate.isTrue
+                    if (approved && approverId != null)
+                        ps.setInt(2, approverId);
+                    else
+                        ps.setNull(2, Types.INTEGER);
+                    ps.setInt(3, companyId);
+                    InClause.setInts(ps, 4, chunk);
+                    count += ps.executeUpdate();
+                }
             }
+            touch(conn, timesheetIds);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -386,24 +825,26 @@ public class JdbcTimesheetDao implements TimesheetDao {
         notNull(companyId, "Invalid null company id");
         isTrue(!verified || verifierId != null, "Invalid null verifier id");
 
-        final String sql = "UPDATE timesheets SET verified = ?, verifier_id = ? " + "WHERE id = ? AND company_id = ?";
-
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer timesheetId : timesheetIds) {
-                int index = 1;
-                ps.setBoolean(index++, verified);
-                // verifierId will always have a value when verified is true,
-                // based on the above Validate.isTrue
-                if (verified && verifierId != null)
-                    ps.setInt(index++, verifierId);
-                else
-                    ps.setNull(index++, Types.INTEGER);
-                ps.setInt(index++, timesheetId);
-                ps.setInt(index++, companyId);
-                count += ps.executeUpdate();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+                final String sql = "UPDATE timesheets SET verified = ?, verifier_id = ? "
+                        + "WHERE company_id = ? AND id IN (" + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setBoolean(1, verified);
+                    // verifierId will always have a value when verified is true,
+                    // based on the above Validate.isTrue
+                    if (verified && verifierId != null)
+                        ps.setInt(2, verifierId);
+                    else
+                        ps.setNull(2, Types.INTEGER);
+                    ps.setInt(3, companyId);
+                    InClause.setInts(ps, 4, chunk);
+                    count += ps.executeUpdate();
+                }
             }
+            touch(conn, timesheetIds);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -430,30 +871,140 @@ public class JdbcTimesheetDao implements TimesheetDao {
         notNull(companyId, "Invalid null company id");
         isTrue(!exported || exporterId != null, "Invalid null exporter id");
 
-        final String sql = "UPDATE timesheets SET exported = ?, exporter_id = ? " + "WHERE id = ? AND company_id = ?";
+        int count = 0;
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+                final String sql = "UPDATE timesheets SET exported = ?, exporter_id = ? "
+                        + "WHERE company_id = ? AND id IN (" + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setBoolean(1, exported);
+                    // exporterId will always have a value when exported is true,
+                    // based on the above Validate.isTrue
+                    if (exported && exporterId != null)
+                        ps.setInt(2, exporterId);
+                    else
+                        ps.setNull(2, Types.INTEGER);
+                    ps.setInt(3, companyId);
+                    InClause.setInts(ps, 4, chunk);
+                    count += ps.executeUpdate();
+                }
+            }
+            touch(conn, timesheetIds);
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+        return count;
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int exportApproved(final Integer companyId, final Integer exporterId, final java.util.Date begin,
+            final TimesheetExportHandler handler) throws DatabaseException, IOException {
+        notNull(companyId, "Invalid null company id");
+        notNull(exporterId, "Invalid null exporter id");
+        notNull(handler, "Invalid null export handler");
+
+        final String sql = "SELECT t.*, u.login, u.email, u.first_name, u.last_name, p.end AS pp_end, "
+                + "p.type AS pp_type, b.id AS bill_id, b.assignment_id, b.task_id, b.day, b.hours, "
+                + "k.description, k.job_code FROM timesheets t "
+                + "JOIN users u ON (u.id = t.user_id) "
+                + "JOIN pay_periods p ON (p.begin = t.pp_begin AND p.company_id = t.company_id) "
+                + "LEFT JOIN bills b ON (b.user_id = t.user_id AND b.day >= p.begin AND b.day <= p.end) "
+                + "LEFT JOIN tasks k ON (k.id = b.task_id) "
+                + "WHERE t.company_id = ? AND t.approved = TRUE AND t.exported = FALSE"
+                + (begin == null ? "" : " AND t.pp_begin = ?") + " ORDER BY t.id, b.day, b.task_id, b.id";
+
+        final int batchSize = this.connectionManager.getBatchSize();
+        final List<Integer> batch = new ArrayList<>(batchSize);
         int count = 0;
+
+        // The forward-only, read-only cursor lets the driver read the rows a fetch at a time.
         try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer timesheetId : timesheetIds) {
-                int index = 1;
-                ps.setBoolean(index++, exported);
-                // exporterId will always have a value when exported is true,
-                // based on the above Validate.isTrue
-                if (exported && exporterId != null)
-                    ps.setInt(index++, exporterId);
-                else
-                    ps.setNull(index++, Types.INTEGER);
-                ps.setInt(index++, timesheetId);
-                ps.setInt(index++, companyId);
-                count += ps.executeUpdate();
+                final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(this.connectionManager.getFetchSize());
+            ps.setInt(1, companyId);
+            if (begin != null)
+                ps.setDate(2, new Date(begin.getTime()));
+
+            try (final ResultSet rs = ps.executeQuery()) {
+                Timesheet timesheet = null;
+                while (rs.next()) {
+                    if (timesheet == null || timesheet.getId() != rs.getInt("id")) {
+                        if (timesheet != null) {
+                            batch.add(timesheet.getId());
+                            if (batch.size() >= batchSize)
+                                count += markExported(companyId, exporterId, batch, handler);
+                        }
+                        timesheet = fromExportResultSet(rs);
+                    }
+
+                    Task task = null;
+                    Bill bill = null;
+                    final int billId = rs.getInt("bill_id");
+                    if (!rs.wasNull()) {
+                        bill = new Bill().setId(billId).setUserId(timesheet.getUserId()).setDay(rs.getDate("day"))
+                                .setHours(new BigDecimal(rs.getString("hours")));
+                        final int assignmentId = rs.getInt("assignment_id");
+                        if (!rs.wasNull())
+                            bill.setAssignmentId(assignmentId);
+                        final int taskId = rs.getInt("task_id");
+                        bill.setTaskId(taskId);
+                        task = new Task().setId(taskId).setCompanyId(companyId)
+                                .setDescription(rs.getString("description")).setJobCode(rs.getString("job_code"));
+                    }
+                    handler.handle(timesheet, task, bill);
+                }
+                if (timesheet != null)
+                    batch.add(timesheet.getId());
+            } finally {
+                // Pooled statements may be reused, so do not leave the fetch size behind.
+                ps.setFetchSize(0);
             }
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
+        return count + markExported(companyId, exporterId, batch, handler);
+    }
+
+    protected Timesheet fromExportResultSet(final ResultSet rs) throws SQLException {
+        final Timesheet timesheet = fromResultSet(rs);
+        timesheet.setUser(new User().setId(timesheet.getUserId()).setCompanyId(timesheet.getCompanyId())
+                .setLogin(rs.getString("login")).setEmail(rs.getString("email"))
+                .setFirstName(rs.getString("first_name")).setLastName(rs.getString("last_name")));
+        timesheet.setPayPeriod(new PayPeriod().setCompanyId(timesheet.getCompanyId()).setBegin(timesheet.getBegin())
+                .setEnd(rs.getDate("pp_end")).setType(PayPeriodType.parse(rs.getString("pp_type"))));
+        return timesheet;
+    }
+
+    /**
+     * Mark a batch of timesheets as exported after the rows written for them have been flushed by the handler. The
+     * update uses its own connection, since the export query is still reading from the original one.
+     */
+    protected int markExported(final Integer companyId, final Integer exporterId, final List<Integer> batch,
+            final TimesheetExportHandler handler) throws DatabaseException, IOException {
+        if (batch.isEmpty())
+            return 0;
+
+        handler.flush();
+        final int count = new JdbcTimesheetDao(getBatchConnectionManager()).export(companyId, exporterId, true, batch);
+        batch.clear();
         return count;
     }
 
+    /**
+     * @return the connection manager used to update timesheets while a streaming query is still reading from the
+     *         connection of this DAO, which is never the bound connection of a request session
+     */
+    protected ConnectionManager getBatchConnectionManager() {
+        if (this.connectionManager instanceof BoundConnectionManager)
+            return ((BoundConnectionManager) this.connectionManager).getParent();
+        return this.connectionManager;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -471,16 +1022,107 @@ public class JdbcTimesheetDao implements TimesheetDao {
             return 0;
         notNull(companyId, "Invalid null company id");
 
-        final String sql = "DELETE FROM timesheets WHERE company_id = ? " + " AND id = ?";
-
         int count = 0;
-        try (final Connection conn = this.connectionManager.getConnection();
-                final PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (final Integer timesheetId : timesheetIds) {
-                ps.setInt(1, companyId);
-                ps.setInt(2, timesheetId);
-                count += ps.executeUpdate();
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            // Deleting the timesheets removes the current timesheet pointers that refer to them.
+            final Set<Integer> userIds = getOwnerIds(conn, companyId, timesheetIds);
+            for (final List<Integer> chunk : InClause.chunk(timesheetIds)) {
+                final String sql = "DELETE FROM timesheets WHERE company_id = ? AND id IN ("
+                        + InClause.placeholders(chunk.size()) + ")";
+
+                try (final PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, companyId);
+                    InClause.setInts(ps, 2, chunk);
+                    count += ps.executeUpdate();
+                }
             }
+            updateCurrent(conn, userIds);
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int save(final TimesheetChanges changes) throws DatabaseVersionException, DatabaseException {
+        notNull(changes, "Invalid null timesheet changes");
+        if (changes.isEmpty())
+            return 0;
+
+        try (final Connection conn = this.connectionManager.getConnection()) {
+            // When the connection is already part of a session transaction, the session owns the commit.
+            if (!conn.getAutoCommit())
+                return save(conn, changes);
+
+            conn.setAutoCommit(false);
+            try {
+                final int count = save(conn, changes);
+                conn.commit();
+                return count;
+            } catch (final DatabaseException | RuntimeException failed) {
+                conn.rollback();
+                throw failed;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+
+    /**
+     * Used to create the other DAOs needed by this one so that they share the provided connection instead of
+     * retrieving their own connections from the pool.
+     */
+    protected ConnectionManager bind(final Connection conn) {
+        return new BoundConnectionManager(this.connectionManager, conn);
+    }
+
+    /**
+     * Used to apply timesheet changes using an existing database connection. Bill deletions are applied first so that
+     * re-added bills do not conflict with the unique bill constraint.
+     */
+    protected int save(final Connection conn, final TimesheetChanges changes) throws DatabaseVersionException,
+            DatabaseException {
+        notNull(conn, "Invalid null connection");
+        notNull(changes, "Invalid null timesheet changes");
+
+        if (changes.getVersion() != null)
+            claimVersion(conn, changes.getTimesheetId(), changes.getVersion());
+
+        final JdbcBillDao billDao = new JdbcBillDao(bind(conn));
+
+        int count = 0;
+        count += billDao.delete(conn, changes.getDeletedBillIds());
+
+        // Added and updated bills are written by their natural keys, so concurrent saves of the same days do not
+        // collide, and bills whose hours are unchanged are left alone.
+        final List<Bill> written = new ArrayList<>(changes.getUpdatedBills());
+        written.addAll(changes.getAddedBills());
+        count += billDao.upsert(conn, written).size();
+
+        if (changes.isCompleted() != null)
+            count += complete(conn, changes.getCompanyId(), changes.isCompleted(),
+                    Collections.singleton(changes.getTimesheetId()));
+        count += new JdbcAuditLogDao(bind(conn)).add(conn, changes.getAuditLogs());
+
+        // Deleted bills belong to the owner of the timesheet, but added and updated bills may be moved elsewhere.
+        final Set<Integer> userIds = new TreeSet<>();
+        try {
+            userIds.addAll(getOwnerIds(conn, changes.getCompanyId(), Collections.singleton(changes.getTimesheetId())));
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+        for (final Bill bill : changes.getAddedBills())
+            userIds.add(bill.getUserId());
+        for (final Bill bill : changes.getUpdatedBills())
+            userIds.add(bill.getUserId());
+        updateCurrent(conn, userIds);
+        try {
+            touchUsers(conn, userIds);
         } catch (final SQLException sqlException) {
             throw new DatabaseException(sqlException);
         }
@@ -518,7 +1160,7 @@ public class JdbcTimesheetDao implements TimesheetDao {
             throws DatabaseException {
         final Set<Integer> userIds = getUserIds(timesheets);
 
-        final Map<Integer, User> userMap = new JdbcUserDao(this.connectionManager).get(userIds);
+        final Map<Integer, User> userMap = new JdbcUserDao(bind(conn)).get(userIds);
 
         for (final Timesheet timesheet : timesheets) {
             User user = null;
@@ -550,13 +1192,12 @@ public class JdbcTimesheetDao implements TimesheetDao {
 
     protected void enrichWithPayPeriods(final Connection conn, final Integer companyId, final Set<Timesheet> timesheets)
             throws DatabaseException {
-        final Set<Integer> ids = getTimesheetIds(timesheets);
-        if (ids.isEmpty())
+        if (timesheets.isEmpty())
             return;
 
         final Map<Integer, Timesheet> timesheetMap = getTimesheetMap(timesheets);
-        final Map<Integer, PayPeriod> payPeriodMap = new JdbcPayPeriodDao(this.connectionManager).getForTimesheets(
-                conn, companyId, ids);
+        final Map<Integer, PayPeriod> payPeriodMap = new JdbcPayPeriodDao(bind(conn)).getForTimesheets(
+                conn, companyId, timesheets);
 
         for (final Entry<Integer, PayPeriod> entry : payPeriodMap.entrySet()) {
             final Timesheet timesheet = timesheetMap.get(entry.getKey());
@@ -564,26 +1205,34 @@ public class JdbcTimesheetDao implements TimesheetDao {
                 timesheet.setPayPeriod(entry.getValue());
         }
 
-        ids.clear();
         timesheetMap.clear();
         payPeriodMap.clear();
     }
 
     protected void enrichWithHolidays(final Connection conn, final Integer companyId, final Set<Timesheet> timesheets)
             throws DatabaseException, HolidayConfigurationException {
-        final Set<Holiday> holidays = new JdbcHolidayDao(this.connectionManager).getAll(companyId);
+        final HolidayCalendar calendar = new JdbcHolidayDao(bind(conn)).getCalendar(companyId);
+        if (calendar.getHolidays().isEmpty())
+            return;
 
+        // The calendar holds shared instances, so each timesheet is given copies.
+        final Map<Holiday, Holiday> copies = new HashMap<>();
         for (final Timesheet timesheet : timesheets) {
             final PayPeriod pp = timesheet.getPayPeriod();
             if (pp == null)
                 continue;
 
-            for (final Holiday holiday : holidays)
-                if (pp.contains(holiday))
-                    timesheet.addHolidays(holiday);
+            for (final Holiday holiday : calendar.getForPayPeriod(pp)) {
+                Holiday copy = copies.get(holiday);
+                if (copy == null) {
+                    copy = new Holiday(holiday);
+                    copies.put(holiday, copy);
+                }
+                timesheet.addHolidays(copy);
+            }
         }
 
-        holidays.clear();
+        copies.clear();
     }
 
     protected void enrichWithAuditLogs(final Connection conn, final Integer companyId, final Set<Timesheet> timesheets)
@@ -593,8 +1242,8 @@ public class JdbcTimesheetDao implements TimesheetDao {
             return;
 
         final Map<Integer, Timesheet> timesheetMap = getTimesheetMap(timesheets);
-        final Map<Integer, Set<AuditLog>> auditLogMap = new JdbcAuditLogDao(this.connectionManager).getForTimesheets(
-                conn, ids);
+        final Map<Integer, Set<AuditLog>> auditLogMap = new JdbcAuditLogDao(bind(conn)).getForTimesheets(
+                conn, companyId, ids);
 
         for (final Entry<Integer, Set<AuditLog>> entry : auditLogMap.entrySet()) {
             final Timesheet timesheet = timesheetMap.get(entry.getKey());
@@ -609,40 +1258,23 @@ public class JdbcTimesheetDao implements TimesheetDao {
 
     protected void enrichWithTasks(final Connection conn, final Integer companyId, final Set<Timesheet> timesheets)
             throws DatabaseException {
-        if (timesheets.isEmpty())
+        final Set<Integer> ids = getTimesheetIds(timesheets);
+        if (ids.isEmpty())
             return;
 
-        final Map<PayPeriod, Map<Integer, Timesheet>> userGroups = new HashMap<>();
-        for (final Timesheet timesheet : timesheets) {
-            final PayPeriod payPeriod = timesheet.getPayPeriod();
-            if (payPeriod == null)
-                continue;
-
-            Map<Integer, Timesheet> userIds = userGroups.get(payPeriod);
-            if (userIds == null) {
-                userIds = new TreeMap<>();
-                userGroups.put(payPeriod, userIds);
-            }
-            userIds.put(timesheet.getUserId(), timesheet);
-        }
-
-        final JdbcTaskDao taskDao = new JdbcTaskDao(this.connectionManager);
-        for (final Entry<PayPeriod, Map<Integer, Timesheet>> entry : userGroups.entrySet()) {
-            final Map<Integer, Set<Task>> userTasks = taskDao.getForPayPeriod(conn, entry.getKey(), entry.getValue()
-                    .keySet());
+        final Map<Integer, Timesheet> timesheetMap = getTimesheetMap(timesheets);
+        final Map<Integer, Set<Task>> taskMap = new JdbcTaskDao(bind(conn)).getForTimesheets(conn,
+                companyId, ids);
 
-            for (final Entry<Integer, Set<Task>> taskEntry : userTasks.entrySet()) {
-                if (taskEntry.getKey() == 0) {
-                    for (final Timesheet timesheet : timesheets)
-                        timesheet.addTasks(taskEntry.getValue());
-                } else {
-                    final Timesheet timesheet = entry.getValue().get(taskEntry.getKey());
-                    timesheet.addTasks(taskEntry.getValue());
-                }
-            }
+        for (final Entry<Integer, Set<Task>> entry : taskMap.entrySet()) {
+            final Timesheet timesheet = timesheetMap.get(entry.getKey());
+            if (timesheet != null)
+                timesheet.addTasks(entry.getValue());
         }
 
-        userGroups.clear();
+        ids.clear();
+        timesheetMap.clear();
+        taskMap.clear();
     }
 
     protected void enrichWithBills(final Connection conn, final Integer companyId, final Set<Timesheet> timesheets)
@@ -652,10 +1284,13 @@ public class JdbcTimesheetDao implements TimesheetDao {
             return;
 
         final Map<Integer, Timesheet> timesheetMap = getTimesheetMap(timesheets);
-        final Map<Integer, Set<Bill>> billMap = new JdbcBillDao(this.connectionManager).getForTimesheets(conn, ids);
+        final Map<Integer, Set<Bill>> billMap = new JdbcBillDao(bind(conn)).getForTimesheets(conn,
+                companyId, ids);
 
         for (final Entry<Integer, Set<Bill>> billEntry : billMap.entrySet()) {
             final Timesheet timesheet = timesheetMap.get(billEntry.getKey());
+            if (timesheet == null)
+                continue;
 
             for (final Bill bill : billEntry.getValue()) {
                 final Task task = timesheet.getTask(bill.getTaskId());
@@ -0,0 +1,129 @@
+package com.arcblaze.arctime.db.dao.jdbc;
+
+import static org.apache.commons.lang.Validate.notEmpty;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.map.AnnotationIntrospector;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.introspect.JacksonAnnotationIntrospector;
+import org.codehaus.jackson.map.module.SimpleModule;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+
+import com.arcblaze.arccore.common.model.Role;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arctime.common.model.Assignment;
+import com.arcblaze.arctime.common.model.AuditLog;
+import com.arcblaze.arctime.common.model.Bill;
+import com.arcblaze.arctime.common.model.Holiday;
+import com.arcblaze.arctime.common.model.Task;
+import com.arcblaze.arctime.common.model.Timesheet;
+
+/**
+ * Used to convert assembled timesheets to and from the JSON documents stored in the database. The timesheets are
+ * written using their JAXB annotations, the same way as the JSON responses, and values that are calculated from other
+ * values, such as the full names of users, are calculated again when the documents are read.
+ */
+public final class TimesheetDocumentMapper {
+    /** Used to write and read the documents. */
+    private final static ObjectMapper mapper = createMapper();
+
+    private TimesheetDocumentMapper() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * @return a new mapper for the timesheet documents
+     */
+    protected static ObjectMapper createMapper() {
+        // The model classes overload their collection setters, which would be ambiguous when reading the documents.
+        final SimpleModule module = new SimpleModule("TimesheetDocuments", new Version(1, 0, 0, null));
+        module.setMixInAnnotation(Timesheet.class, TimesheetMixIn.class);
+        module.setMixInAnnotation(Task.class, TaskMixIn.class);
+        module.setMixInAnnotation(Assignment.class, AssignmentMixIn.class);
+        module.setMixInAnnotation(Bill.class, BillMixIn.class);
+        module.setMixInAnnotation(User.class, UserMixIn.class);
+
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.setAnnotationIntrospector(AnnotationIntrospector.pair(new JacksonAnnotationIntrospector(),
+                new JaxbAnnotationIntrospector()));
+        mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.registerModule(module);
+        return mapper;
+    }
+
+    /**
+     * @param timesheet
+     *            the assembled timesheet to be stored
+     * 
+     * @return the document representing the provided timesheet
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided timesheet is invalid
+     * @throws IOException
+     *             if there is a problem writing the document
+     */
+    public static String write(final Timesheet timesheet) throws IOException {
+        notNull(timesheet, "Invalid null timesheet");
+
+        return mapper.writeValueAsString(timesheet);
+    }
+
+    /**
+     * @param document
+     *            the stored document to be read
+     * 
+     * @return the assembled timesheet represented by the provided document
+     * 
+     * @throws IllegalArgumentException
+     *             if the provided document is invalid
+     * @throws IOException
+     *             if there is a problem reading the document
+     */
+    public static Timesheet read(final String document) throws IOException {
+        notEmpty(document, "Invalid blank document");
+
+        return mapper.readValue(document, Timesheet.class);
+    }
+
+    static abstract class TimesheetMixIn {
+        @JsonIgnore
+        abstract Timesheet setTasks(final Task... tasks);
+
+        @JsonIgnore
+        abstract Timesheet setAuditLogs(final AuditLog... auditLogs);
+
+        @JsonIgnore
+        abstract Timesheet setHolidays(final Holiday... holidays);
+    }
+
+    static abstract class TaskMixIn {
+        @JsonIgnore
+        abstract Task setAssignments(final Assignment... assignments);
+
+        @JsonIgnore
+        abstract Task setBills(final Bill... bills);
+    }
+
+    static abstract class AssignmentMixIn {
+        @JsonIgnore
+        abstract Assignment setBills(final Bill... bills);
+    }
+
+    static abstract class BillMixIn {
+        @JsonIgnore
+        abstract Bill setHours(final Float hours);
+
+        @JsonIgnore
+        abstract Bill setHours(final String hours);
+    }
+
+    static abstract class UserMixIn {
+        @JsonIgnore
+        abstract User setRoles(final Role... roles);
+    }
+}
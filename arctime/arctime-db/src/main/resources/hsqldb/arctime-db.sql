@@ -2,12 +2,21 @@
 DROP TABLE common_holidays IF EXISTS;
 DROP TABLE holidays IF EXISTS;
 DROP TABLE audit_logs IF EXISTS;
+DROP TABLE timesheet_documents IF EXISTS;
+DROP TABLE timesheet_versions IF EXISTS;
+DROP TABLE current_timesheets IF EXISTS;
 DROP TABLE timesheets IF EXISTS;
 DROP TABLE bills IF EXISTS;
 DROP TABLE pay_periods IF EXISTS;
 DROP TABLE assignments IF EXISTS;
 DROP TABLE tasks IF EXISTS;
 DROP TABLE supervisors IF EXISTS;
+DROP TABLE rollup_locks IF EXISTS;
+DROP TABLE revenue_rollups IF EXISTS;
+DROP TABLE revenue_by_month IF EXISTS;
+DROP TABLE revenue_by_day IF EXISTS;
+DROP TABLE active_user_counts_by_month IF EXISTS;
+DROP TABLE active_company_counts_by_month IF EXISTS;
 DROP TABLE transactions IF EXISTS;
 DROP TABLE active_user_counts IF EXISTS;
 DROP TABLE active_company_counts IF EXISTS;
@@ -84,6 +93,43 @@ CREATE TABLE active_user_counts (
         REFERENCES companies(id) ON DELETE CASCADE
 );
 
+CREATE TABLE active_company_counts_by_month (
+    month          DATE         NOT NULL PRIMARY KEY,
+    active         INTEGER      NOT NULL
+);
+
+CREATE TABLE active_user_counts_by_month (
+    month          DATE         NOT NULL,
+    company_id     INTEGER      NOT NULL,
+    active         INTEGER      NOT NULL,
+
+    CONSTRAINT pk_active_user_counts_by_month PRIMARY KEY (company_id, month),
+
+    CONSTRAINT fk_active_user_counts_by_month_company_id FOREIGN KEY (company_id)
+        REFERENCES companies(id) ON DELETE CASCADE
+);
+
+CREATE TABLE revenue_by_day (
+    day            DATE         NOT NULL PRIMARY KEY,
+    amount         DECIMAL(12,2) NOT NULL
+);
+
+CREATE TABLE revenue_by_month (
+    month          DATE         NOT NULL PRIMARY KEY,
+    amount         DECIMAL(12,2) NOT NULL
+);
+
+CREATE TABLE revenue_rollups (
+    id             INTEGER      GENERATED BY DEFAULT AS IDENTITY
+                                (START WITH 1, INCREMENT BY 1) NOT NULL PRIMARY KEY,
+    day            DATE         NOT NULL
+);
+
+CREATE TABLE rollup_locks (
+    name           VARCHAR(50)  NOT NULL PRIMARY KEY,
+    locked         TIMESTAMP    NOT NULL
+);
+
 CREATE TABLE supervisors (
     company_id     INTEGER      NOT NULL,
     user_id        INTEGER      NOT NULL,
@@ -134,10 +180,12 @@ CREATE TABLE assignments (
 
 CREATE TABLE pay_periods (
     company_id     INTEGER      NOT NULL,
-    begin          DATE         NOT NULL PRIMARY KEY,
+    begin          DATE         NOT NULL,
     end            DATE         NOT NULL,
     type           VARCHAR(20)  NOT NULL,
 
+    CONSTRAINT pk_pay_periods PRIMARY KEY (company_id, begin),
+
     CONSTRAINT fk_pay_periods_company_id FOREIGN KEY (company_id)
         REFERENCES companies(id) ON DELETE CASCADE
 );
@@ -182,8 +230,8 @@ CREATE TABLE timesheets (
         REFERENCES companies(id) ON DELETE CASCADE,
     CONSTRAINT fk_timesheets_user_id FOREIGN KEY (user_id)
         REFERENCES users(id) ON DELETE CASCADE,
-    CONSTRAINT fk_timesheets_pp_begin FOREIGN KEY (pp_begin)
-        REFERENCES pay_periods(begin) ON DELETE CASCADE,
+    CONSTRAINT fk_timesheets_pp_begin FOREIGN KEY (company_id, pp_begin)
+        REFERENCES pay_periods(company_id, begin) ON DELETE CASCADE,
     CONSTRAINT fk_timesheets_approver_id FOREIGN KEY (approver_id)
         REFERENCES users(id) ON DELETE CASCADE,
     CONSTRAINT fk_timesheets_verifier_id FOREIGN KEY (verifier_id)
@@ -192,6 +240,33 @@ CREATE TABLE timesheets (
         REFERENCES users(id) ON DELETE CASCADE
 );
 
+CREATE TABLE current_timesheets (
+    user_id        INTEGER      NOT NULL PRIMARY KEY,
+    timesheet_id   INTEGER      NOT NULL,
+
+    CONSTRAINT fk_current_timesheets_user_id FOREIGN KEY (user_id)
+        REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT fk_current_timesheets_timesheet_id FOREIGN KEY (timesheet_id)
+        REFERENCES timesheets(id) ON DELETE CASCADE
+);
+
+CREATE TABLE timesheet_versions (
+    timesheet_id   INTEGER      NOT NULL PRIMARY KEY,
+    version        INTEGER      DEFAULT 0 NOT NULL,
+
+    CONSTRAINT fk_timesheet_versions_timesheet_id FOREIGN KEY (timesheet_id)
+        REFERENCES timesheets(id) ON DELETE CASCADE
+);
+
+CREATE TABLE timesheet_documents (
+    timesheet_id   INTEGER      NOT NULL PRIMARY KEY,
+    version        INTEGER      NOT NULL,
+    document       LONGVARCHAR  NOT NULL,
+
+    CONSTRAINT fk_timesheet_documents_timesheet_id FOREIGN KEY (timesheet_id)
+        REFERENCES timesheets(id) ON DELETE CASCADE
+);
+
 CREATE TABLE audit_logs (
     company_id     INTEGER      NOT NULL,
     timesheet_id   INTEGER      NOT NULL,
@@ -2,12 +2,21 @@
 DROP TABLE IF EXISTS common_holidays;
 DROP TABLE IF EXISTS holidays;
 DROP TABLE IF EXISTS audit_logs;
+DROP TABLE IF EXISTS timesheet_documents;
+DROP TABLE IF EXISTS timesheet_versions;
+DROP TABLE IF EXISTS current_timesheets;
 DROP TABLE IF EXISTS timesheets;
 DROP TABLE IF EXISTS bills;
 DROP TABLE IF EXISTS pay_periods;
 DROP TABLE IF EXISTS assignments;
 DROP TABLE IF EXISTS tasks;
 DROP TABLE IF EXISTS supervisors;
+DROP TABLE IF EXISTS rollup_locks;
+DROP TABLE IF EXISTS revenue_rollups;
+DROP TABLE IF EXISTS revenue_by_month;
+DROP TABLE IF EXISTS revenue_by_day;
+DROP TABLE IF EXISTS active_user_counts_by_month;
+DROP TABLE IF EXISTS active_company_counts_by_month;
 DROP TABLE IF EXISTS transactions;
 DROP TABLE IF EXISTS active_user_counts;
 DROP TABLE IF EXISTS active_company_counts;
@@ -73,6 +82,48 @@ CREATE TABLE IF NOT EXISTS active_user_counts (
     INDEX idx_active_company_counts_day USING HASH (`day`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
+CREATE TABLE IF NOT EXISTS active_company_counts_by_month (
+    `month`          DATE         NOT NULL PRIMARY KEY,
+    `active`         INTEGER      NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+CREATE TABLE IF NOT EXISTS active_user_counts_by_month (
+    `month`          DATE         NOT NULL,
+    `company_id`     INTEGER      NOT NULL,
+    `active`         INTEGER      NOT NULL,
+
+    PRIMARY KEY (`company_id`, `month`),
+
+    CONSTRAINT fk_active_user_counts_by_month_company_id FOREIGN KEY (`company_id`)
+        REFERENCES companies(`id`) ON DELETE CASCADE,
+
+    INDEX idx_active_user_counts_by_month_month (`month`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+CREATE TABLE IF NOT EXISTS revenue_by_day (
+    `day`            DATE          NOT NULL PRIMARY KEY,
+    `amount`         DECIMAL(12,2) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+CREATE TABLE IF NOT EXISTS revenue_by_month (
+    `month`          DATE          NOT NULL PRIMARY KEY,
+    `amount`         DECIMAL(12,2) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+-- The days whose revenue totals need to be recalculated by the next roll-up, queued as transactions are added.
+CREATE TABLE IF NOT EXISTS revenue_rollups (
+    `id`             INTEGER      NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    `day`            DATE         NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+-- The rows locked while each roll-up is recalculated, so that concurrent roll-ups do not collide.
+CREATE TABLE IF NOT EXISTS rollup_locks (
+    `name`           VARCHAR(50)  NOT NULL PRIMARY KEY,
+    `locked`         TIMESTAMP    NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+INSERT IGNORE INTO rollup_locks (`name`, `locked`) VALUES ('revenue', NOW());
+
 CREATE TABLE IF NOT EXISTS transactions (
     `id`             INTEGER      NOT NULL PRIMARY KEY AUTO_INCREMENT,
     `company_id`     INTEGER      NOT NULL,
@@ -150,10 +201,13 @@ CREATE TABLE IF NOT EXISTS assignments (
 
 CREATE TABLE IF NOT EXISTS pay_periods (
     `company_id`     INTEGER      NOT NULL,
-    `begin`          DATE         NOT NULL PRIMARY KEY,
+    `begin`          DATE         NOT NULL,
     `end`            DATE         NOT NULL,
     `type`           VARCHAR(20)  NOT NULL,
 
+    -- Each company has its own pay periods, so the same begin date may exist in several companies.
+    CONSTRAINT pk_pay_periods PRIMARY KEY (`company_id`, `begin`),
+
     CONSTRAINT fk_pay_periods_company_id FOREIGN KEY (`company_id`)
         REFERENCES companies(`id`) ON DELETE CASCADE,
 
@@ -170,7 +224,11 @@ CREATE TABLE IF NOT EXISTS bills (
     `hours`          VARCHAR(6)   NOT NULL,
     `timestamp`      TIMESTAMP    NOT NULL DEFAULT NOW(),
 
-    CONSTRAINT unique_bill UNIQUE (`assignment_id`, `task_id`, `user_id`, `day`),
+    -- Unique keys treat NULL values as distinct, so bills without an assignment use a key of 0 instead. This lets
+    -- the bill upserts find existing bills through the unique constraint.
+    `assignment_key` INTEGER      AS (IFNULL(`assignment_id`, 0)) STORED,
+
+    CONSTRAINT unique_bill UNIQUE (`assignment_key`, `task_id`, `user_id`, `day`),
 
     CONSTRAINT fk_bills_assignment_id FOREIGN KEY (`assignment_id`)
         REFERENCES assignments(`id`) ON DELETE CASCADE,
@@ -204,8 +262,8 @@ CREATE TABLE IF NOT EXISTS timesheets (
         REFERENCES companies(`id`) ON DELETE CASCADE,
     CONSTRAINT fk_timesheets_user_id FOREIGN KEY (`user_id`)
         REFERENCES users(`id`) ON DELETE CASCADE,
-    CONSTRAINT fk_timesheets_pp_begin FOREIGN KEY (`pp_begin`)
-        REFERENCES pay_periods(`begin`) ON DELETE CASCADE,
+    CONSTRAINT fk_timesheets_pp_begin FOREIGN KEY (`company_id`, `pp_begin`)
+        REFERENCES pay_periods(`company_id`, `begin`) ON DELETE CASCADE,
     CONSTRAINT fk_timesheets_approver_id FOREIGN KEY (`approver_id`)
         REFERENCES users(`id`) ON DELETE CASCADE,
     CONSTRAINT fk_timesheets_verifier_id FOREIGN KEY (`verifier_id`)
@@ -218,7 +276,38 @@ CREATE TABLE IF NOT EXISTS timesheets (
     INDEX idx_timesheets_approver_id USING HASH (`approver_id`),
     INDEX idx_timesheets_verifier_id USING HASH (`verifier_id`),
     INDEX idx_timesheets_exporter_id USING HASH (`exporter_id`),
-    INDEX idx_timesheets_pp_begin USING HASH (`pp_begin`)
+    INDEX idx_timesheets_pp_begin USING HASH (`pp_begin`),
+
+    -- Supports finding the approved timesheets that still need to be exported to payroll.
+    INDEX idx_timesheets_export (`company_id`, `approved`, `exported`, `pp_begin`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+-- Points each user at the timesheet displayed when they first log in, maintained as bills and timesheets change.
+CREATE TABLE IF NOT EXISTS current_timesheets (
+    `user_id`        INTEGER      NOT NULL PRIMARY KEY,
+    `timesheet_id`   INTEGER      NOT NULL,
+
+    CONSTRAINT fk_current_timesheets_user_id FOREIGN KEY (`user_id`)
+        REFERENCES users(`id`) ON DELETE CASCADE,
+    CONSTRAINT fk_current_timesheets_timesheet_id FOREIGN KEY (`timesheet_id`)
+        REFERENCES timesheets(`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+CREATE TABLE IF NOT EXISTS timesheet_versions (
+    `timesheet_id`   INTEGER      NOT NULL PRIMARY KEY,
+    `version`        INTEGER      NOT NULL DEFAULT 0,
+
+    CONSTRAINT fk_timesheet_versions_timesheet_id FOREIGN KEY (`timesheet_id`)
+        REFERENCES timesheets(`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+CREATE TABLE IF NOT EXISTS timesheet_documents (
+    `timesheet_id`   INTEGER      NOT NULL PRIMARY KEY,
+    `version`        INTEGER      NOT NULL,
+    `document`       LONGTEXT     NOT NULL,
+
+    CONSTRAINT fk_timesheet_documents_timesheet_id FOREIGN KEY (`timesheet_id`)
+        REFERENCES timesheets(`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
 
 CREATE TABLE IF NOT EXISTS audit_logs (
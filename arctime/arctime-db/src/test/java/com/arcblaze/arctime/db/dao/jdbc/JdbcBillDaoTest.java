@@ -0,0 +1,98 @@
+package com.arcblaze.arctime.db.dao.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Test;
+
+import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.dao.CompanyDao;
+import com.arcblaze.arccore.db.dao.UserDao;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcCompanyDao;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcUserDao;
+import com.arcblaze.arccore.db.util.TestDatabase;
+import com.arcblaze.arctime.common.model.Bill;
+import com.arcblaze.arctime.common.model.Task;
+import com.arcblaze.arctime.db.dao.BillDao;
+import com.arcblaze.arctime.db.dao.TaskDao;
+
+/**
+ * Perform database integration testing.
+ */
+public class JdbcBillDaoTest {
+    private final static String[] FMT = { "yyyyMMdd" };
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     */
+    @Test
+    public void upsert() throws DatabaseException, ParseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final TaskDao taskDao = new JdbcTaskDao(database.getConnectionManager());
+            final BillDao billDao = new JdbcBillDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("Company").setActive(true);
+            companyDao.add(company);
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("email").setFirstName("first").setLastName("last");
+            userDao.add(user);
+
+            final Task task = new Task().setCompanyId(company.getId()).setDescription("Task").setJobCode("task")
+                    .setAdministrative(false).setActive(true);
+            taskDao.add(task);
+
+            final Bill first = new Bill().setTaskId(task.getId()).setUserId(user.getId())
+                    .setDay(DateUtils.parseDate("20140102", FMT)).setHours("8.00").setTimestamp(new Date());
+            final Bill second = new Bill().setTaskId(task.getId()).setUserId(user.getId())
+                    .setDay(DateUtils.parseDate("20140103", FMT)).setHours("4.00").setTimestamp(new Date());
+            List<Bill> changed = billDao.upsert(first, second);
+            assertEquals(2, changed.size());
+
+            // Only the bill with different hours is changed.
+            final Bill same = new Bill().setTaskId(task.getId()).setUserId(user.getId()).setDay(first.getDay())
+                    .setHours("8.00").setTimestamp(new Date());
+            final Bill different = new Bill().setTaskId(task.getId()).setUserId(user.getId())
+                    .setDay(second.getDay()).setHours("6.00").setTimestamp(new Date());
+            changed = billDao.upsert(same, different);
+            assertEquals(1, changed.size());
+            assertTrue(changed.contains(different));
+
+            assertEquals("6.00", getHours(database, second.getDay()));
+            assertEquals("8.00", getHours(database, first.getDay()));
+            assertTrue(billDao.upsert(same, different).isEmpty());
+        }
+    }
+
+    private String getHours(final TestDatabase database, final Date day) throws DatabaseException {
+        final String sql = "SELECT hours FROM bills WHERE day = ?";
+        try (final Connection conn = database.getConnectionManager().getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, new java.sql.Date(day.getTime()));
+            try (final ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString("hours");
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+}
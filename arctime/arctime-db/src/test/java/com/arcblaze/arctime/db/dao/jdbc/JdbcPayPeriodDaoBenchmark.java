@@ -0,0 +1,120 @@
+package com.arcblaze.arctime.db.dao.jdbc;
+
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.hsqldb.jdbc.JDBCDriver;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.db.ConnectionManager;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.DatabaseProperty;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcCompanyDao;
+import com.arcblaze.arccore.db.util.TestDatabase;
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
+import com.arcblaze.arctime.db.dao.PayPeriodDao;
+
+/**
+ * A simple benchmark comparing the time spent looking up pay periods with the SQL queries and with the in-memory pay
+ * period index. This is not run as part of the unit tests; run the {@link #main} method directly to see the results.
+ */
+public class JdbcPayPeriodDaoBenchmark {
+    private final static String[] FMT = { "yyyyMMdd" };
+    private final static int WARMUP = 5000;
+    private final static int ITERATIONS = 50000;
+    private final static int DAYS = 3650;
+
+    /**
+     * @param args
+     *            the command-line arguments, which are ignored
+     * 
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     * @throws SQLException
+     *             if there is a problem closing the connection managers
+     */
+    public static void main(final String... args) throws DatabaseException, ParseException, SQLException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+            final Date first = DateUtils.parseDate("20040101", FMT);
+            final Integer companyId = populate(database.getConnectionManager(), first);
+
+            final ConnectionManager sql = new ConnectionManager(getConfig(0));
+            final ConnectionManager indexed = new ConnectionManager(getConfig(10000));
+            try {
+                // Alternate the runs so that neither benefits from a warmer JVM.
+                for (int run = 0; run < 2; run++) {
+                    benchmark("sql    ", new JdbcPayPeriodDao(sql), companyId, first);
+                    benchmark("indexed", new JdbcPayPeriodDao(indexed), companyId, first);
+                }
+            } finally {
+                sql.close();
+                indexed.close();
+            }
+        }
+    }
+
+    protected static Config getConfig(final int cacheSize) {
+        final Config config = new Config();
+        config.set(DatabaseProperty.DB_DRIVER, JDBCDriver.class.getName());
+        config.set(DatabaseProperty.DB_URL, "jdbc:hsqldb:mem:testdb");
+        config.set(DatabaseProperty.DB_USERNAME, "SA");
+        config.set(DatabaseProperty.DB_PASSWORD, "");
+        config.set(DatabaseProperty.DB_CACHE_MAX_SIZE, String.valueOf(cacheSize));
+        return config;
+    }
+
+    protected static void benchmark(final String name, final PayPeriodDao payPeriodDao, final Integer companyId,
+            final Date first) throws DatabaseException {
+        final Date[] days = new Date[ITERATIONS];
+        final Random random = new Random(1);
+        for (int i = 0; i < days.length; i++)
+            days[i] = DateUtils.addDays(first, random.nextInt(DAYS));
+
+        for (int i = 0; i < WARMUP; i++) {
+            payPeriodDao.getContaining(companyId, days[i]);
+            payPeriodDao.exists(companyId, days[i]);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            payPeriodDao.getContaining(companyId, days[i]);
+        report(name, "getContaining", (System.nanoTime() - start) / ITERATIONS);
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            payPeriodDao.exists(companyId, days[i]);
+        report(name, "exists", (System.nanoTime() - start) / ITERATIONS);
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            payPeriodDao.getCurrent(companyId);
+        report(name, "getCurrent", (System.nanoTime() - start) / ITERATIONS);
+    }
+
+    protected static void report(final String name, final String method, final long nanosPerCall) {
+        System.out.println(String.format("PayPeriodDao.%s %s: %,d ns/op", method, name, nanosPerCall));
+    }
+
+    protected static Integer populate(final ConnectionManager connectionManager, final Date first)
+            throws DatabaseException {
+        final Company company = new Company().setName("Company").setActive(true);
+        new JdbcCompanyDao(connectionManager).add(company);
+
+        final PayPeriodDao payPeriodDao = new JdbcPayPeriodDao(connectionManager);
+        payPeriodDao.add(new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                .setBegin(first).setEnd(DateUtils.addDays(first, 6)));
+
+        // Create ten years of weekly pay periods, along with the current one.
+        payPeriodDao.getContaining(company.getId(), DateUtils.addDays(first, DAYS));
+        payPeriodDao.getCurrent(company.getId());
+        return company.getId();
+    }
+}
@@ -0,0 +1,142 @@
+package com.arcblaze.arctime.db.dao.jdbc;
+
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.hsqldb.jdbc.JDBCDriver;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.ConnectionManager;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.DatabaseProperty;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcCompanyDao;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcUserDao;
+import com.arcblaze.arccore.db.pool.ConnectionPoolType;
+import com.arcblaze.arccore.db.util.TestDatabase;
+import com.arcblaze.arctime.common.model.Assignment;
+import com.arcblaze.arctime.common.model.AuditLog;
+import com.arcblaze.arctime.common.model.Bill;
+import com.arcblaze.arctime.common.model.Enrichment;
+import com.arcblaze.arctime.common.model.Holiday;
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
+import com.arcblaze.arctime.common.model.Task;
+import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
+import com.arcblaze.arctime.db.dao.TimesheetDao;
+
+/**
+ * A simple benchmark comparing the time spent retrieving a fully enriched timesheet with and without prepared
+ * statement pooling. The DBCP pool is used since it pools the statements itself, while the Hikari pool leaves this to
+ * the MySQL driver. This is not run as part of the unit tests; run the {@link #main} method directly to see the
+ * results.
+ */
+public class JdbcTimesheetDaoBenchmark {
+    private final static String[] FMT = { "yyyyMMdd" };
+    private final static int WARMUP = 2000;
+    private final static int ITERATIONS = 10000;
+
+    /**
+     * @param args
+     *            the command-line arguments, which are ignored
+     * 
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     * @throws SQLException
+     *             if there is a problem closing the connection managers
+     */
+    public static void main(final String... args) throws DatabaseException, HolidayConfigurationException,
+            ParseException, SQLException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+            final Timesheet timesheet = populate(database.getConnectionManager());
+
+            final ConnectionManager uncached = new ConnectionManager(getConfig(0));
+            final ConnectionManager cached = new ConnectionManager(getConfig(250));
+            try {
+                // Alternate the runs so that neither benefits from a warmer JVM.
+                for (int run = 0; run < 2; run++) {
+                    report("uncached", benchmark(new JdbcTimesheetDao(uncached), timesheet));
+                    report("cached  ", benchmark(new JdbcTimesheetDao(cached), timesheet));
+                }
+            } finally {
+                uncached.close();
+                cached.close();
+            }
+        }
+    }
+
+    protected static Config getConfig(final int statementCacheSize) {
+        final Config config = new Config();
+        config.set(DatabaseProperty.DB_DRIVER, JDBCDriver.class.getName());
+        config.set(DatabaseProperty.DB_URL, "jdbc:hsqldb:mem:testdb");
+        config.set(DatabaseProperty.DB_USERNAME, "SA");
+        config.set(DatabaseProperty.DB_PASSWORD, "");
+        config.set(DatabaseProperty.DB_POOL_TYPE, ConnectionPoolType.DBCP.name());
+        config.set(DatabaseProperty.DB_POOL_STATEMENT_CACHE_SIZE, String.valueOf(statementCacheSize));
+        return config;
+    }
+
+    protected static long benchmark(final TimesheetDao timesheetDao, final Timesheet timesheet)
+            throws DatabaseException, HolidayConfigurationException {
+        final Set<Enrichment> enrichments = EnumSet.allOf(Enrichment.class);
+        for (int i = 0; i < WARMUP; i++)
+            timesheetDao.get(timesheet.getCompanyId(), timesheet.getId(), enrichments);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            timesheetDao.get(timesheet.getCompanyId(), timesheet.getId(), enrichments);
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    protected static void report(final String name, final long nanosPerCall) {
+        System.out.println(String.format("TimesheetDao.get %s: %,d ns/op", name, nanosPerCall));
+    }
+
+    protected static Timesheet populate(final ConnectionManager connectionManager) throws DatabaseException,
+            HolidayConfigurationException, ParseException {
+        final Company company = new Company().setName("Company").setActive(true);
+        new JdbcCompanyDao(connectionManager).add(company);
+
+        final PayPeriod payPeriod = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+        new JdbcPayPeriodDao(connectionManager).add(payPeriod);
+
+        new JdbcHolidayDao(connectionManager).add(new Holiday().setCompanyId(company.getId()).setConfig("Jan 1st")
+                .setDescription("New Years"));
+
+        final Task task = new Task().setCompanyId(company.getId()).setDescription("Task").setJobCode("task")
+                .setAdministrative(false).setActive(true);
+        new JdbcTaskDao(connectionManager).add(task);
+
+        final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                .setSalt("salt").setEmail("email").setFirstName("first").setLastName("last");
+        new JdbcUserDao(connectionManager).add(user);
+
+        final Assignment assignment = new Assignment().setCompanyId(company.getId()).setTaskId(task.getId())
+                .setUserId(user.getId()).setLaborCat("labor cat").setItemName("item name")
+                .setBegin(payPeriod.getBegin()).setEnd(payPeriod.getEnd());
+        new JdbcAssignmentDao(connectionManager).add(assignment);
+
+        final Timesheet timesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                .setBegin(payPeriod.getBegin());
+        new JdbcTimesheetDao(connectionManager).add(timesheet);
+
+        new JdbcBillDao(connectionManager).add(new Bill().setAssignmentId(assignment.getId())
+                .setTaskId(task.getId()).setUserId(user.getId()).setDay(DateUtils.parseDate("20140102", FMT))
+                .setHours("8.00").setTimestamp(new Date()));
+        new JdbcAuditLogDao(connectionManager).add(new AuditLog().setCompanyId(company.getId())
+                .setTimesheetId(timesheet.getId()).setLog("Created"));
+        return timesheet;
+    }
+}
@@ -0,0 +1,755 @@
+package com.arcblaze.arctime.db.dao.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Test;
+
+import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.BoundConnectionManager;
+import com.arcblaze.arccore.db.ConnectionManager;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.DatabaseVersionException;
+import com.arcblaze.arccore.db.cache.EntityCache;
+import com.arcblaze.arccore.db.cache.LruEntityCache;
+import com.arcblaze.arccore.db.dao.CompanyDao;
+import com.arcblaze.arccore.db.dao.UserDao;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcCompanyDao;
+import com.arcblaze.arccore.db.dao.jdbc.JdbcUserDao;
+import com.arcblaze.arccore.db.util.TestDatabase;
+import com.arcblaze.arctime.common.model.Assignment;
+import com.arcblaze.arctime.common.model.AuditLog;
+import com.arcblaze.arctime.common.model.Bill;
+import com.arcblaze.arctime.common.model.Enrichment;
+import com.arcblaze.arctime.common.model.Holiday;
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
+import com.arcblaze.arctime.common.model.Task;
+import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.common.model.TimesheetChanges;
+import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
+import com.arcblaze.arctime.db.dao.AssignmentDao;
+import com.arcblaze.arctime.db.dao.AuditLogDao;
+import com.arcblaze.arctime.db.dao.BillDao;
+import com.arcblaze.arctime.db.dao.HolidayDao;
+import com.arcblaze.arctime.db.dao.PayPeriodDao;
+import com.arcblaze.arctime.db.dao.TaskDao;
+import com.arcblaze.arctime.db.dao.TimesheetDao;
+import com.arcblaze.arctime.db.dao.TimesheetDocument;
+import com.arcblaze.arctime.db.dao.TimesheetExportHandler;
+
+/**
+ * Perform database integration testing.
+ */
+public class JdbcTimesheetDaoTest {
+    private final static String[] FMT = { "yyyyMMdd HHmmss", "yyyyMMdd" };
+
+    /**
+     * Counts the number of statements prepared on the connections it provides, sharing the connection pool of the
+     * wrapped connection manager.
+     */
+    private static class CountingConnectionManager extends ConnectionManager {
+        private final AtomicInteger statements = new AtomicInteger();
+
+        public CountingConnectionManager(final ConnectionManager parent) {
+            super(parent);
+        }
+
+        @Override
+        public <K, V> EntityCache<K, V> getCache(final String name) {
+            // Count the statements that would be executed without any cached holidays or users.
+            return new LruEntityCache<>(name, 0, 0);
+        }
+
+        public int getStatements() {
+            return this.statements.get();
+        }
+
+        public void reset() {
+            this.statements.set(0);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection conn = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                                throws Throwable {
+                            if (method.getName().startsWith("prepare") || method.getName().equals("createStatement"))
+                                CountingConnectionManager.this.statements.incrementAndGet();
+                            try {
+                                return method.invoke(conn, args);
+                            } catch (final InvocationTargetException invocationFailed) {
+                                throw invocationFailed.getCause();
+                            }
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     */
+    @Test
+    public void enrichmentStatementCount() throws DatabaseException, HolidayConfigurationException, ParseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final PayPeriodDao payPeriodDao = new JdbcPayPeriodDao(database.getConnectionManager());
+            final HolidayDao holidayDao = new JdbcHolidayDao(database.getConnectionManager());
+            final TaskDao taskDao = new JdbcTaskDao(database.getConnectionManager());
+            final AssignmentDao assignmentDao = new JdbcAssignmentDao(database.getConnectionManager());
+            final BillDao billDao = new JdbcBillDao(database.getConnectionManager());
+            final AuditLogDao auditLogDao = new JdbcAuditLogDao(database.getConnectionManager());
+            final TimesheetDao timesheetDao = new JdbcTimesheetDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("Company").setActive(true);
+            companyDao.add(company);
+
+            final PayPeriod payPeriod = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+            payPeriodDao.add(payPeriod);
+
+            holidayDao.add(new Holiday().setCompanyId(company.getId()).setConfig("Jan 1st")
+                    .setDescription("New Years"));
+
+            final Task task = new Task().setCompanyId(company.getId()).setDescription("Task").setJobCode("task")
+                    .setAdministrative(false).setActive(true);
+            final Task admin = new Task().setCompanyId(company.getId()).setDescription("Admin").setJobCode("admin")
+                    .setAdministrative(true).setActive(true);
+            taskDao.add(task, admin);
+
+            final int userCount = 10;
+            final List<Timesheet> timesheets = new ArrayList<>();
+            for (int u = 0; u < userCount; u++) {
+                final User user = new User().setCompanyId(company.getId()).setLogin("user" + u)
+                        .setHashedPass("hashed").setSalt("salt").setEmail("email" + u).setFirstName("first")
+                        .setLastName("last" + u);
+                userDao.add(user);
+
+                final Assignment assignment = new Assignment().setCompanyId(company.getId()).setTaskId(task.getId())
+                        .setUserId(user.getId()).setLaborCat("labor cat").setItemName("item name")
+                        .setBegin(payPeriod.getBegin()).setEnd(payPeriod.getEnd());
+                assignmentDao.add(assignment);
+
+                final Timesheet timesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                        .setBegin(payPeriod.getBegin());
+                timesheetDao.add(timesheet);
+                timesheets.add(timesheet);
+
+                billDao.add(new Bill().setAssignmentId(assignment.getId()).setTaskId(task.getId())
+                        .setUserId(user.getId()).setDay(DateUtils.parseDate("20140102", FMT)).setHours("8.00")
+                        .setTimestamp(new Date()));
+                auditLogDao.add(new AuditLog().setCompanyId(company.getId()).setTimesheetId(timesheet.getId())
+                        .setLog("Created"));
+            }
+
+            final CountingConnectionManager counter = new CountingConnectionManager(database.getConnectionManager());
+            final TimesheetDao countingDao = new JdbcTimesheetDao(counter);
+            final Set<Enrichment> enrichments = EnumSet.allOf(Enrichment.class);
+
+            final Set<Integer> few = new TreeSet<>();
+            few.add(timesheets.get(0).getId());
+            few.add(timesheets.get(1).getId());
+            Set<Timesheet> result = countingDao.get(company.getId(), few, enrichments);
+            assertEquals(2, result.size());
+            final int fewStatements = counter.getStatements();
+
+            final Set<Integer> all = new TreeSet<>();
+            for (final Timesheet timesheet : timesheets)
+                all.add(timesheet.getId());
+            counter.reset();
+            result = countingDao.get(company.getId(), all, enrichments);
+            assertEquals(userCount, result.size());
+
+            // One query for the timesheets and one per enrichment, regardless
+            // of the number of timesheets retrieved.
+            assertEquals(1 + enrichments.size(), counter.getStatements());
+            assertEquals(fewStatements, counter.getStatements());
+
+            for (final Timesheet timesheet : result) {
+                assertNotNull(timesheet.getUser());
+                assertEquals(timesheet.getUserId(), timesheet.getUser().getId());
+                assertEquals(payPeriod, timesheet.getPayPeriod());
+                assertEquals(1, timesheet.getHolidays().size());
+                assertEquals(1, timesheet.getAuditLogs().size());
+                assertEquals(2, timesheet.getTasks().size());
+
+                final Task billable = timesheet.getTask(task.getId());
+                assertNotNull(billable);
+                assertEquals(1, billable.getAssignments().size());
+                final Assignment assignment = billable.getAssignments().iterator().next();
+                assertEquals(timesheet.getUserId(), assignment.getUserId());
+                assertEquals(1, assignment.getBills().size());
+                assertEquals(timesheet.getUserId(), assignment.getBills().iterator().next().getUserId());
+
+                final Task adminTask = timesheet.getTask(admin.getId());
+                assertNotNull(adminTask);
+                assertEquals(0, adminTask.getAssignments().size());
+            }
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     */
+    @Test
+    public void saveIsAtomic() throws DatabaseException, HolidayConfigurationException, ParseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final PayPeriodDao payPeriodDao = new JdbcPayPeriodDao(database.getConnectionManager());
+            final TaskDao taskDao = new JdbcTaskDao(database.getConnectionManager());
+            final BillDao billDao = new JdbcBillDao(database.getConnectionManager());
+            final AuditLogDao auditLogDao = new JdbcAuditLogDao(database.getConnectionManager());
+            final TimesheetDao timesheetDao = new JdbcTimesheetDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("Company").setActive(true);
+            companyDao.add(company);
+
+            final PayPeriod payPeriod = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+            payPeriodDao.add(payPeriod);
+
+            final Task admin = new Task().setCompanyId(company.getId()).setDescription("Admin").setJobCode("admin")
+                    .setAdministrative(true).setActive(true);
+            taskDao.add(admin);
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("email").setFirstName("first").setLastName("last");
+            userDao.add(user);
+
+            final Timesheet timesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                    .setBegin(payPeriod.getBegin());
+            timesheetDao.add(timesheet);
+
+            final Bill existing = new Bill().setTaskId(admin.getId()).setUserId(user.getId())
+                    .setDay(DateUtils.parseDate("20140102", FMT)).setHours("8.00").setTimestamp(new Date());
+            billDao.add(existing);
+
+            // The invalid task id causes the insert to fail, so the deletion,
+            // audit log and completion must all be rolled back.
+            final TimesheetChanges failing = new TimesheetChanges(timesheet).setCompleted(true)
+                    .deleteBills(existing.getId())
+                    .addAuditLogs(new AuditLog().setCompanyId(company.getId()).setTimesheetId(timesheet.getId())
+                            .setLog("Failed"))
+                    .addBills(new Bill().setTaskId(admin.getId() + 1000).setUserId(user.getId())
+                            .setDay(DateUtils.parseDate("20140103", FMT)).setHours("4.00").setTimestamp(new Date()));
+            try {
+                timesheetDao.save(failing);
+                fail("Expected the save to fail");
+            } catch (final DatabaseException expected) {
+                // Expected.
+            }
+
+            assertNotNull(billDao.get(existing.getId()));
+            assertEquals(0, auditLogDao.getForTimesheet(timesheet.getId()).size());
+            assertFalse(timesheetDao.get(company.getId(), timesheet.getId()).isCompleted());
+
+            final TimesheetChanges valid = new TimesheetChanges(timesheet).setCompleted(true)
+                    .deleteBills(existing.getId())
+                    .addAuditLogs(new AuditLog().setCompanyId(company.getId()).setTimesheetId(timesheet.getId())
+                            .setLog("Completed"))
+                    .addBills(new Bill().setTaskId(admin.getId()).setUserId(user.getId())
+                            .setDay(DateUtils.parseDate("20140102", FMT)).setHours("4.00").setTimestamp(new Date()));
+            assertEquals(4, timesheetDao.save(valid));
+
+            assertNull(billDao.get(existing.getId()));
+            assertEquals(1, billDao.getForTimesheet(timesheet.getId()).size());
+            assertEquals(1, auditLogDao.getForTimesheet(timesheet.getId()).size());
+            assertTrue(timesheetDao.get(company.getId(), timesheet.getId()).isCompleted());
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws IOException
+     *             if there is a problem handling the exported rows
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     */
+    @Test
+    public void exportApproved() throws DatabaseException, HolidayConfigurationException, IOException,
+            ParseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final PayPeriodDao payPeriodDao = new JdbcPayPeriodDao(database.getConnectionManager());
+            final TaskDao taskDao = new JdbcTaskDao(database.getConnectionManager());
+            final BillDao billDao = new JdbcBillDao(database.getConnectionManager());
+            final TimesheetDao timesheetDao = new JdbcTimesheetDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("Company").setActive(true);
+            companyDao.add(company);
+
+            final PayPeriod payPeriod = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+            payPeriodDao.add(payPeriod);
+
+            final Task task = new Task().setCompanyId(company.getId()).setDescription("Task").setJobCode("task")
+                    .setAdministrative(false).setActive(true);
+            taskDao.add(task);
+
+            final List<Timesheet> timesheets = new ArrayList<>();
+            for (int u = 0; u < 3; u++) {
+                final User user = new User().setCompanyId(company.getId()).setLogin("user" + u)
+                        .setHashedPass("hashed").setSalt("salt").setEmail("email" + u).setFirstName("first")
+                        .setLastName("last" + u);
+                userDao.add(user);
+
+                final Timesheet timesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                        .setBegin(payPeriod.getBegin());
+                timesheetDao.add(timesheet);
+                timesheets.add(timesheet);
+            }
+
+            // The first timesheet has two bills, the second has none, and the third is not approved.
+            final Integer userId = timesheets.get(0).getUserId();
+            billDao.add(new Bill().setTaskId(task.getId()).setUserId(userId).setDay(DateUtils.parseDate("20140103", FMT))
+                    .setHours("4.00").setTimestamp(new Date()), new Bill().setTaskId(task.getId()).setUserId(userId)
+                    .setDay(DateUtils.parseDate("20140102", FMT)).setHours("8.00").setTimestamp(new Date()));
+            timesheetDao.approve(company.getId(), userId, true, timesheets.get(0).getId(), timesheets.get(1).getId());
+
+            final List<String> rows = new ArrayList<>();
+            final AtomicInteger flushes = new AtomicInteger();
+            final TimesheetExportHandler handler = new TimesheetExportHandler() {
+                @Override
+                public void handle(final Timesheet timesheet, final Task billed, final Bill bill) {
+                    assertNotNull(timesheet.getUser());
+                    assertEquals(payPeriod.getEnd(), timesheet.getPayPeriod().getEnd());
+                    rows.add(timesheet.getUser().getLogin() + " " + (billed == null ? null : billed.getJobCode())
+                            + " " + (bill == null ? null : bill.getHours()));
+                }
+
+                @Override
+                public void flush() {
+                    flushes.incrementAndGet();
+                }
+            };
+
+            assertEquals(2, timesheetDao.exportApproved(company.getId(), userId, payPeriod.getBegin(), handler));
+            assertEquals(3, rows.size());
+            assertEquals("user0 task 8.00", rows.get(0));
+            assertEquals("user0 task 4.00", rows.get(1));
+            assertEquals("user1 null null", rows.get(2));
+            assertEquals(1, flushes.get());
+
+            assertTrue(timesheetDao.get(company.getId(), timesheets.get(0).getId()).isExported());
+            assertTrue(timesheetDao.get(company.getId(), timesheets.get(1).getId()).isExported());
+            assertFalse(timesheetDao.get(company.getId(), timesheets.get(2).getId()).isExported());
+
+            // Exported timesheets are not exported again.
+            rows.clear();
+            assertEquals(0, timesheetDao.exportApproved(company.getId(), userId, null, handler));
+            assertTrue(rows.isEmpty());
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws IOException
+     *             if there is a problem handling the exported rows
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     * @throws SQLException
+     *             if there is a problem releasing the bound connection
+     */
+    @Test
+    public void exportApprovedInSession() throws DatabaseException, HolidayConfigurationException, IOException,
+            ParseException, SQLException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final PayPeriodDao payPeriodDao = new JdbcPayPeriodDao(database.getConnectionManager());
+            final TimesheetDao timesheetDao = new JdbcTimesheetDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("Company").setActive(true);
+            companyDao.add(company);
+
+            final PayPeriod payPeriod = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+            payPeriodDao.add(payPeriod);
+
+            final List<Integer> ids = new ArrayList<>();
+            for (int u = 0; u < 3; u++) {
+                final User user = new User().setCompanyId(company.getId()).setLogin("user" + u)
+                        .setHashedPass("hashed").setSalt("salt").setEmail("email" + u).setFirstName("first")
+                        .setLastName("last" + u);
+                userDao.add(user);
+
+                final Timesheet timesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                        .setBegin(payPeriod.getBegin());
+                timesheetDao.add(timesheet);
+                timesheetDao.approve(company.getId(), user.getId(), true, timesheet.getId());
+                ids.add(timesheet.getId());
+            }
+
+            // Batches of one timesheet are marked exported while the query is still reading from the bound connection,
+            // so the updates need to use connections from the pool instead.
+            final List<String> boundSql = new ArrayList<>();
+            final BoundConnectionManager session = new BoundConnectionManager(database.getConnectionManager()) {
+                @Override
+                public int getBatchSize() {
+                    return 1;
+                }
+
+                @Override
+                public synchronized Connection getConnection() throws SQLException {
+                    final Connection conn = super.getConnection();
+                    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                            new Class<?>[] { Connection.class }, new InvocationHandler() {
+                                @Override
+                                public Object invoke(final Object proxy, final Method method, final Object[] args)
+                                        throws Throwable {
+                                    if (method.getName().startsWith("prepare"))
+                                        boundSql.add((String) args[0]);
+                                    try {
+                                        return method.invoke(conn, args);
+                                    } catch (final InvocationTargetException invocationException) {
+                                        throw invocationException.getCause();
+                                    }
+                                }
+                            });
+                }
+            };
+
+            final AtomicInteger flushes = new AtomicInteger();
+            final TimesheetExportHandler handler = new TimesheetExportHandler() {
+                @Override
+                public void handle(final Timesheet timesheet, final Task billed, final Bill bill) {
+                    // Nothing to do.
+                }
+
+                @Override
+                public void flush() {
+                    flushes.incrementAndGet();
+                }
+            };
+
+            try {
+                final Integer exporterId = timesheetDao.get(company.getId(), ids.get(0)).getUserId();
+                assertEquals(3, new JdbcTimesheetDao(session).exportApproved(company.getId(), exporterId, null,
+                        handler));
+            } finally {
+                session.release();
+            }
+            assertEquals(3, flushes.get());
+            assertEquals(1, boundSql.size());
+            assertTrue(boundSql.get(0).startsWith("SELECT"));
+            for (final Integer id : ids)
+                assertTrue(timesheetDao.get(company.getId(), id).isExported());
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     */
+    @Test
+    public void currentTimesheet() throws DatabaseException, HolidayConfigurationException, ParseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final PayPeriodDao payPeriodDao = new JdbcPayPeriodDao(database.getConnectionManager());
+            final TaskDao taskDao = new JdbcTaskDao(database.getConnectionManager());
+            final BillDao billDao = new JdbcBillDao(database.getConnectionManager());
+            final TimesheetDao timesheetDao = new JdbcTimesheetDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("Company").setActive(true);
+            companyDao.add(company);
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("email").setFirstName("first").setLastName("last");
+            userDao.add(user);
+
+            final Task task = new Task().setCompanyId(company.getId()).setDescription("Task").setJobCode("task")
+                    .setAdministrative(false).setActive(true);
+            taskDao.add(task);
+
+            assertNull(timesheetDao.getLatestForUser(user.getId()));
+
+            final PayPeriod first = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+            final PayPeriod second = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140108", FMT)).setEnd(DateUtils.parseDate("20140114", FMT));
+            payPeriodDao.add(first, second);
+
+            final Timesheet firstTimesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                    .setBegin(first.getBegin());
+            final Timesheet secondTimesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                    .setBegin(second.getBegin());
+            timesheetDao.add(firstTimesheet, secondTimesheet);
+
+            // Without any bills, the most recent timesheet is current.
+            assertEquals(secondTimesheet.getId(), timesheetDao.getLatestForUser(user.getId()).getId());
+
+            // Otherwise, the most recent incomplete timesheet with bills is current.
+            billDao.add(new Bill().setTaskId(task.getId()).setUserId(user.getId())
+                    .setDay(DateUtils.parseDate("20140102", FMT)).setHours("8.00").setTimestamp(new Date()));
+            assertEquals(firstTimesheet.getId(), timesheetDao.getLatestForUser(user.getId()).getId());
+
+            billDao.add(new Bill().setTaskId(task.getId()).setUserId(user.getId())
+                    .setDay(DateUtils.parseDate("20140109", FMT)).setHours("8.00").setTimestamp(new Date()));
+            assertEquals(secondTimesheet.getId(), timesheetDao.getLatestForUser(user.getId()).getId());
+
+            timesheetDao.complete(company.getId(), true, secondTimesheet.getId());
+            assertEquals(firstTimesheet.getId(), timesheetDao.getLatestForUser(user.getId()).getId());
+
+            timesheetDao.delete(company.getId(), firstTimesheet.getId());
+            assertEquals(secondTimesheet.getId(), timesheetDao.getLatestForUser(user.getId()).getId());
+
+            timesheetDao.delete(company.getId(), secondTimesheet.getId());
+            assertNull(timesheetDao.getLatestForUser(user.getId()));
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     * @throws SQLException
+     *             if there is a problem removing the current timesheets
+     */
+    @Test
+    public void provision() throws DatabaseException, HolidayConfigurationException, ParseException, SQLException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcUserDao(database.getConnectionManager());
+            final PayPeriodDao payPeriodDao = new JdbcPayPeriodDao(database.getConnectionManager());
+            final TimesheetDao timesheetDao = new JdbcTimesheetDao(database.getConnectionManager());
+
+            // Both companies have pay periods beginning on the same day.
+            final List<User> users = new ArrayList<>();
+            for (int c = 0; c < 2; c++) {
+                final Company company = new Company().setName("Company" + c).setActive(true);
+                companyDao.add(company);
+
+                final User user = new User().setCompanyId(company.getId()).setLogin("user" + c)
+                        .setHashedPass("hashed").setSalt("salt").setEmail("email" + c).setFirstName("first")
+                        .setLastName("last");
+                userDao.add(user);
+                users.add(user);
+
+                payPeriodDao.add(new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                        .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT)));
+            }
+
+            final User inactive = new User().setCompanyId(users.get(0).getCompanyId()).setLogin("inactive")
+                    .setHashedPass("hashed").setSalt("salt").setEmail("inactive").setFirstName("first")
+                    .setLastName("last").setActive(false);
+            userDao.add(inactive);
+
+            final List<PayPeriod> payPeriods = payPeriodDao.provision(DateUtils.parseDate("20140110", FMT));
+            assertEquals(2, payPeriods.size());
+            for (final User user : users) {
+                final PayPeriod latest = payPeriodDao.getLatest(user.getCompanyId());
+                assertEquals(DateUtils.parseDate("20140108", FMT), latest.getBegin());
+                assertTrue(payPeriods.contains(latest));
+            }
+
+            assertEquals(2, timesheetDao.provision(payPeriods));
+            assertEquals(0, timesheetDao.provision(payPeriods));
+
+            // The provisioned pay periods have begun, so the new timesheets are current.
+            for (final User user : users) {
+                final Timesheet current = timesheetDao.getLatestForUser(user.getId());
+                assertEquals(DateUtils.parseDate("20140108", FMT), current.getBegin());
+            }
+            assertNull(timesheetDao.getLatestForUser(inactive.getId()));
+
+            // Retrieving the current timesheet never writes, so a missing current timesheet is restored by the
+            // provisioning task.
+            try (final Connection conn = database.getConnectionManager().getConnection();
+                    final Statement statement = conn.createStatement()) {
+                statement.executeUpdate("DELETE FROM current_timesheets");
+            }
+            assertNull(timesheetDao.getLatestForUser(users.get(0).getId()));
+            assertEquals(0, timesheetDao.provision(payPeriods));
+            for (final User user : users)
+                assertEquals(DateUtils.parseDate("20140108", FMT), timesheetDao.getLatestForUser(user.getId())
+                        .getBegin());
+        }
+    }
+
+    /**
+     * @throws DatabaseException
+     *             if there is a problem with the database
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     */
+    @Test
+    public void timesheetDocument() throws DatabaseException, HolidayConfigurationException, ParseException {
+        try (final TestDatabase database = new TestDatabase()) {
+            database.load("hsqldb/arctime-db.sql");
+
+            final CompanyDao companyDao = new JdbcCompanyDao(database.getConnectionManager());
+            final UserDao userDao = new JdbcArcTimeUserDao(database.getConnectionManager());
+            final PayPeriodDao payPeriodDao = new JdbcPayPeriodDao(database.getConnectionManager());
+            final TaskDao taskDao = new JdbcTaskDao(database.getConnectionManager());
+            final HolidayDao holidayDao = new JdbcHolidayDao(database.getConnectionManager());
+            final BillDao billDao = new JdbcBillDao(database.getConnectionManager());
+            final TimesheetDao timesheetDao = new JdbcTimesheetDao(database.getConnectionManager());
+
+            final Company company = new Company().setName("Company").setActive(true);
+            companyDao.add(company);
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("email").setFirstName("first").setLastName("last");
+            userDao.add(user);
+
+            final Task task = new Task().setCompanyId(company.getId()).setDescription("Task").setJobCode("task")
+                    .setAdministrative(true).setActive(true);
+            taskDao.add(task);
+
+            final PayPeriod payPeriod = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+            payPeriodDao.add(payPeriod);
+
+            final Timesheet timesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                    .setBegin(payPeriod.getBegin());
+            timesheetDao.add(timesheet);
+            assertEquals(Integer.valueOf(0), timesheetDao.getVersion(company.getId(), timesheet.getId()));
+
+            assertNull(timesheetDao.getDocument(company.getId(), timesheet.getId() + 1));
+            assertNull(timesheetDao.getDocument(company.getId() + 1, timesheet.getId()));
+
+            // Each caller receives its own copy of the assembled timesheet.
+            final Timesheet document = timesheetDao.getDocument(company.getId(), timesheet.getId()).getTimesheet();
+            assertEquals(user, document.getUser());
+            assertEquals(payPeriod, document.getPayPeriod());
+            document.setCompleted(true);
+            assertNotSame(document, timesheetDao.getDocument(company.getId(), timesheet.getId()).getTimesheet());
+            assertFalse(timesheetDao.getDocument(company.getId(), timesheet.getId()).getTimesheet().isCompleted());
+
+            billDao.add(new Bill().setTaskId(task.getId()).setUserId(user.getId())
+                    .setDay(DateUtils.parseDate("20140102", FMT)).setHours("8.00").setTimestamp(new Date()));
+            final TimesheetDocument billed = timesheetDao.getDocument(company.getId(), timesheet.getId());
+            assertEquals(timesheetDao.getVersion(company.getId(), timesheet.getId()).intValue(), billed.getVersion());
+            assertTrue(billed.getVersion() > 0);
+            assertEquals(1, billed.getTimesheet().getTask(task.getId()).getBills().size());
+            billed.getTimesheet().getTask(task.getId()).clearBills();
+            final Timesheet rebilled = timesheetDao.getDocument(company.getId(), timesheet.getId()).getTimesheet();
+            assertEquals(1, rebilled.getTask(task.getId()).getBills().size());
+
+            timesheetDao.complete(company.getId(), true, timesheet.getId());
+            final Timesheet completed = timesheetDao.getDocument(company.getId(), timesheet.getId()).getTimesheet();
+            assertTrue(completed.isCompleted());
+
+            holidayDao.add(new Holiday().setCompanyId(company.getId()).setDescription("New Year").setConfig("Jan 1st"));
+            final Timesheet holidays = timesheetDao.getDocument(company.getId(), timesheet.getId()).getTimesheet();
+            assertNotSame(completed, holidays);
+            assertEquals(1, holidays.getHolidays().size());
+
+            timesheetDao.approve(company.getId(), user.getId(), true, timesheet.getId());
+            assertTrue(timesheetDao.getDocument(company.getId(), timesheet.getId()).getTimesheet().isApproved());
+
+            // The assembled timesheet is stored in the database along with the version it was assembled from.
+            final Integer approved = timesheetDao.getVersion(company.getId(), timesheet.getId());
+            assertEquals(approved, getDocumentVersion(database, timesheet.getId()));
+            assertTrue(timesheetDao.getDocument(company.getId(), timesheet.getId()).getTimesheet().isApproved());
+
+            // User changes are included in the assembled timesheet.
+            userDao.update(user.setFirstName("changed"));
+            final TimesheetDocument renamed = timesheetDao.getDocument(company.getId(), timesheet.getId());
+            assertTrue(renamed.getVersion() > approved);
+            assertEquals("changed", renamed.getTimesheet().getUser().getFirstName());
+            assertEquals(Integer.valueOf(renamed.getVersion()), getDocumentVersion(database, timesheet.getId()));
+
+            // Changes calculated from an older version of the timesheet are rejected.
+            final Integer version = timesheetDao.getVersion(company.getId(), timesheet.getId());
+            assertNull(timesheetDao.getVersion(company.getId() + 1, timesheet.getId()));
+            final TimesheetChanges stale = new TimesheetChanges(timesheet).setCompleted(false).setVersion(version - 1);
+            try {
+                timesheetDao.save(stale);
+                fail("Expected the save to be rejected");
+            } catch (final DatabaseVersionException expected) {
+                // Expected.
+            }
+            assertTrue(timesheetDao.get(company.getId(), timesheet.getId()).isCompleted());
+            assertEquals(version, timesheetDao.getVersion(company.getId(), timesheet.getId()));
+
+            assertEquals(1, timesheetDao.save(stale.setVersion(version)));
+            assertFalse(timesheetDao.get(company.getId(), timesheet.getId()).isCompleted());
+            assertTrue(timesheetDao.getVersion(company.getId(), timesheet.getId()) > version);
+        }
+    }
+
+    private Integer getDocumentVersion(final TestDatabase database, final Integer timesheetId)
+            throws DatabaseException {
+        final String sql = "SELECT version FROM timesheet_documents WHERE timesheet_id = ?";
+        try (final Connection conn = database.getConnectionManager().getConnection();
+                final PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, timesheetId);
+            try (final ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt("version") : null;
+            }
+        } catch (final SQLException sqlException) {
+            throw new DatabaseException(sqlException);
+        }
+    }
+}
@@ -4,7 +4,12 @@ import javax.servlet.ServletContext;
 import javax.ws.rs.core.Context;
 
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.process.internal.RequestScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.arcblaze.arccore.db.DaoSession;
+import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.rest.factory.BaseServletContextFactory;
 import com.arcblaze.arctime.db.ArcTimeDaoFactory;
 
@@ -12,6 +17,8 @@ import com.arcblaze.arctime.db.ArcTimeDaoFactory;
  * Provides access to {@link ArcTimeDaoFactory} objects within the REST resource classes.
  */
 public class DaoFactoryFactory extends BaseServletContextFactory<ArcTimeDaoFactory> {
+    private final static Logger log = LoggerFactory.getLogger(DaoFactoryFactory.class);
+
     /**
      * @param servletContext
      *            the servlet context from which the metric registry will be retrieved
@@ -20,6 +27,33 @@ public class DaoFactoryFactory extends BaseServletContextFactory<ArcTimeDaoFacto
         super(servletContext, com.arcblaze.arccore.rest.factory.DaoFactoryFactory.DAO_FACTORY_CONFIG);
     }
 
+    /**
+     * Each web request is given its own session so that all of the DAOs used while processing the request share a
+     * single database connection, which is only retrieved from the pool if the request actually uses the database.
+     * 
+     * @return a factory bound to a new {@link DaoSession}, or {@code null} if no factory has been configured
+     */
+    @Override
+    public ArcTimeDaoFactory provide() {
+        final ArcTimeDaoFactory daoFactory = super.provide();
+        return daoFactory == null ? null : daoFactory.openSession();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispose(final ArcTimeDaoFactory daoFactory) {
+        if (daoFactory == null)
+            return;
+
+        try {
+            daoFactory.close();
+        } catch (final DatabaseException closeFailed) {
+            log.error("Failed to close the request database session", closeFailed);
+        }
+    }
+
     /**
      * @return a binder that can register this factory
      */
@@ -27,7 +61,7 @@ public class DaoFactoryFactory extends BaseServletContextFactory<ArcTimeDaoFacto
         return new AbstractBinder() {
             @Override
             protected void configure() {
-                bindFactory(DaoFactoryFactory.class).to(ArcTimeDaoFactory.class);
+                bindFactory(DaoFactoryFactory.class).to(ArcTimeDaoFactory.class).in(RequestScoped.class);
             }
         };
     }
@@ -18,6 +18,8 @@ import com.arcblaze.arccore.common.model.Transaction;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.DaoFactory;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.dao.Page;
+import com.arcblaze.arccore.db.dao.TransactionDao;
 import com.arcblaze.arccore.rest.BaseResource;
 import com.codahale.metrics.Timer;
 
@@ -45,6 +47,9 @@ public class TransactionResource extends BaseResource {
 
         @XmlElement
         public Integer total;
+
+        @XmlElement
+        public String next;
     }
 
     /**
@@ -68,18 +73,57 @@ public class TransactionResource extends BaseResource {
      * @throws DatabaseException
      *             if there is an error communicating with the back-end
      */
+    public AllResponse all(final SecurityContext security, final Config config, final DaoFactory daoFactory,
+            final Timer timer, final String filter, final Integer limit, final Integer offset)
+            throws DatabaseException {
+        return this.all(security, config, daoFactory, timer, filter, limit, offset, null);
+    }
+
+    /**
+     * @param security
+     *            the security information associated with the request
+     * @param config
+     *            the system configuration information
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     * @param timer
+     *            tracks performance metrics of this REST end-point
+     * @param filter
+     *            the search filter to use to restrict results
+     * @param limit
+     *            the maximum number of items to be retrieved
+     * @param offset
+     *            the offset into the items to be retrieved, only used when no page token is provided
+     * @param next
+     *            the page token returned with the previous page of transactions, or {@code null} for the first page
+     * 
+     * @return the transactions available for the current user's company
+     * 
+     * @throws DatabaseException
+     *             if there is an error communicating with the back-end
+     */
     @GET
     @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public AllResponse all(@Context final SecurityContext security, @Context final Config config,
             @Context final DaoFactory daoFactory, @Context final Timer timer,
             @QueryParam("filter") final String filter, @QueryParam("limit") @DefaultValue("100") final Integer limit,
-            @QueryParam("start") @DefaultValue("0") final Integer offset) throws DatabaseException {
+            @QueryParam("start") @DefaultValue("0") final Integer offset, @QueryParam("next") final String next)
+            throws DatabaseException {
         final User currentUser = (User) security.getUserPrincipal();
         try (final Timer.Context timerContext = timer.time()) {
+            final TransactionDao transactionDao = daoFactory.getTransactionDao();
+            final Integer companyId = currentUser.getCompanyId();
+
             final AllResponse response = new AllResponse();
-            response.transactions = daoFactory.getTransactionDao().searchForCompany(currentUser.getCompanyId(), filter,
-                    limit, offset);
-            response.total = daoFactory.getTransactionDao().count(filter);
+            if (next == null && offset != null && offset > 0)
+                // Offset paging is still supported for clients that do not use page tokens.
+                response.transactions = transactionDao.searchForCompany(companyId, filter, limit, offset);
+            else {
+                final Page<Transaction> page = getPage(transactionDao, companyId, filter, next, limit);
+                response.transactions = page.getItems();
+                response.next = page.getNext();
+            }
+            response.total = transactionDao.count(companyId, filter);
             response.limit = limit;
             response.offset = offset;
             return response;
@@ -87,4 +131,13 @@ public class TransactionResource extends BaseResource {
             throw dbError(config, currentUser, dbException);
         }
     }
+
+    private Page<Transaction> getPage(final TransactionDao transactionDao, final Integer companyId,
+            final String filter, final String next, final Integer limit) throws DatabaseException {
+        try {
+            return transactionDao.getPage(companyId, filter, next, limit);
+        } catch (final IllegalArgumentException invalidToken) {
+            throw badRequest("The provided page token is invalid.");
+        }
+    }
 }
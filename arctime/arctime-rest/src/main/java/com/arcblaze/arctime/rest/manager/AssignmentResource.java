@@ -218,8 +218,9 @@ public class AssignmentResource extends BaseResource {
                 throw badRequest("A user id must be provided.");
             assignment.setCompanyId(currentUser.getCompanyId());
             final int updated = daoFactory.getAssignmentDao().update(assignment);
+            // Unchanged rows are not counted as updated, so only fail when the assignment does not exist.
             final UpdateResponse response = new UpdateResponse();
-            if (updated == 0) {
+            if (updated == 0 && daoFactory.getAssignmentDao().get(assignment.getId()) == null) {
                 response.success = false;
                 response.msg = "Failed to save the modified assignment.";
             } else
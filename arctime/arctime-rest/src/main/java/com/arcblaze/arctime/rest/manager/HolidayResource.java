@@ -143,7 +143,9 @@ public class HolidayResource extends BaseResource {
             throws HolidayConfigurationException {
         final User currentUser = (User) security.getUserPrincipal();
         try (final Timer.Context timerContext = timer.time()) {
-            return daoFactory.getHolidayDao().getAll(currentUser.getCompanyId());
+            final Set<Holiday> holidays = daoFactory.getHolidayDao().getAll(currentUser.getCompanyId());
+            checkModified(contentTag(holidays));
+            return holidays;
         } catch (final DatabaseException dbException) {
             throw dbError(config, currentUser, dbException);
         }
@@ -253,19 +255,24 @@ public class HolidayResource extends BaseResource {
      *            the holiday to add to the back-end database
      * 
      * @return the updated holiday that was modified
+     * 
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing the holiday configuration information
      */
     @PUT
     @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public UpdateResponse update(@Context final SecurityContext security, @Context final Config config,
-            @Context final ArcTimeDaoFactory daoFactory, @Context final Timer timer, @Context final Holiday holiday) {
+            @Context final ArcTimeDaoFactory daoFactory, @Context final Timer timer, @Context final Holiday holiday)
+            throws HolidayConfigurationException {
         final User currentUser = (User) security.getUserPrincipal();
         try (final Timer.Context timerContext = timer.time()) {
             if (holiday == null || holiday.getId() == null)
                 throw badRequest("A holiday with an id must be provided.");
             holiday.setCompanyId(currentUser.getCompanyId());
             final int updated = daoFactory.getHolidayDao().update(holiday);
+            // Unchanged rows are not counted as updated, so only fail when the holiday does not exist.
             final UpdateResponse response = new UpdateResponse();
-            if (updated == 0) {
+            if (updated == 0 && daoFactory.getHolidayDao().get(currentUser.getCompanyId(), holiday.getId()) == null) {
                 response.success = false;
                 response.msg = "Failed to save the updated holiday.";
             } else
@@ -18,6 +18,8 @@ import javax.ws.rs.core.SecurityContext;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.apache.commons.lang.StringUtils;
+
 import com.arcblaze.arccore.common.config.Config;
 import com.arcblaze.arccore.common.model.IdSet;
 import com.arcblaze.arccore.common.model.User;
@@ -136,18 +138,55 @@ public class TaskResource extends BaseResource {
      * 
      * @return all of the available tasks in the same company as the current user
      */
+    public Set<Task> all(final SecurityContext security, final Config config, final ArcTimeDaoFactory daoFactory,
+            final Timer timer, final Boolean includeAdministrative, final Boolean includeInactive,
+            final Integer limit, final Integer offset) {
+        return this.all(security, config, daoFactory, timer, null, includeAdministrative, includeInactive, limit,
+                offset);
+    }
+
+    /**
+     * @param security
+     *            the security information associated with the request
+     * @param config
+     *            the system configuration properties
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     * @param timer
+     *            tracks performance metrics of this REST end-point
+     * @param filter
+     *            the search filter to match against the task description and job code, possibly {@code null}
+     * @param includeAdministrative
+     *            whether administrative tasks should be included in the returned tasks
+     * @param includeInactive
+     *            whether inactive tasks should be included in the returned tasks
+     * @param limit
+     *            the maximum number of items to be retrieved
+     * @param offset
+     *            the offset into the items to be retrieved
+     * 
+     * @return all of the matching tasks in the same company as the current user
+     */
     @GET
     @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public Set<Task> all(@Context final SecurityContext security, @Context final Config config,
             @Context final ArcTimeDaoFactory daoFactory, @Context final Timer timer,
+            @QueryParam("filter") final String filter,
             @QueryParam("includeAdministrative") @DefaultValue("true") final Boolean includeAdministrative,
             @QueryParam("includeInactive") @DefaultValue("true") final Boolean includeInactive,
             @QueryParam("limit") @DefaultValue("100") final Integer limit,
             @QueryParam("start") @DefaultValue("0") final Integer offset) {
         final User currentUser = (User) security.getUserPrincipal();
         try (final Timer.Context timerContext = timer.time()) {
-            return daoFactory.getTaskDao().getAll(currentUser.getCompanyId(), includeAdministrative, includeInactive,
-                    limit, offset);
+            final Set<Task> tasks;
+            if (StringUtils.isNotBlank(filter))
+                tasks = daoFactory.getTaskDao().search(currentUser.getCompanyId(), filter, includeAdministrative,
+                        includeInactive, limit, offset);
+            else
+                tasks = daoFactory.getTaskDao().getAll(currentUser.getCompanyId(), includeAdministrative,
+                        includeInactive, limit, offset);
+            checkModified(contentTag(tasks));
+            return tasks;
         } catch (final DatabaseException dbException) {
             throw dbError(config, currentUser, dbException);
         }
@@ -285,8 +324,9 @@ public class TaskResource extends BaseResource {
                 throw badRequest("A user with id must be provided.");
             task.setCompanyId(currentUser.getCompanyId());
             final int updated = daoFactory.getTaskDao().update(task);
+            // Unchanged rows are not counted as updated, so only fail when the task does not exist.
             final UpdateResponse response = new UpdateResponse();
-            if (updated == 0) {
+            if (updated == 0 && daoFactory.getTaskDao().get(currentUser.getCompanyId(), task.getId()) == null) {
                 response.success = false;
                 response.msg = "Failed to save the provided task.";
             } else
@@ -1,5 +1,7 @@
 package com.arcblaze.arctime.rest.manager;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -27,6 +29,8 @@ import com.arcblaze.arccore.common.model.Role;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.DaoFactory;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.dao.Page;
+import com.arcblaze.arccore.db.dao.UserDao;
 import com.arcblaze.arccore.rest.BaseResource;
 import com.arcblaze.arctime.db.ArcTimeDaoFactory;
 import com.codahale.metrics.Timer;
@@ -55,6 +59,9 @@ public class UserResource extends BaseResource {
 
         @XmlElement
         public Integer total;
+
+        @XmlElement
+        public String next;
     }
 
     @XmlRootElement
@@ -161,6 +168,34 @@ public class UserResource extends BaseResource {
      * 
      * @return all of the available users in the same company as the current user
      */
+    public AllResponse all(final SecurityContext security, final Config config, final ArcTimeDaoFactory daoFactory,
+            final Timer timer, final String filter, final Boolean includeInactive, final Integer limit,
+            final Integer offset) {
+        return this.all(security, config, daoFactory, timer, filter, includeInactive, limit, offset, null);
+    }
+
+    /**
+     * @param security
+     *            the security information associated with the request
+     * @param config
+     *            the system configuration properties
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     * @param timer
+     *            tracks performance metrics of this REST end-point
+     * @param filter
+     *            the search filter to use to restrict results
+     * @param includeInactive
+     *            whether inactive user accounts should be included in the response
+     * @param limit
+     *            the maximum number of items to be retrieved
+     * @param offset
+     *            the offset into the items to be retrieved, only used when no page token is provided
+     * @param next
+     *            the page token returned with the previous page of users, or {@code null} for the first page
+     * 
+     * @return all of the available users in the same company as the current user
+     */
     @GET
     @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
     public AllResponse all(@Context final SecurityContext security, @Context final Config config,
@@ -168,21 +203,47 @@ public class UserResource extends BaseResource {
             @QueryParam("filter") final String filter,
             @QueryParam("includeInactive") @DefaultValue("true") final Boolean includeInactive,
             @QueryParam("limit") @DefaultValue("100") final Integer limit,
-            @QueryParam("start") @DefaultValue("0") final Integer offset) {
+            @QueryParam("start") @DefaultValue("0") final Integer offset, @QueryParam("next") final String next) {
         final User currentUser = (User) security.getUserPrincipal();
         try (final Timer.Context timerContext = timer.time()) {
+            final UserDao userDao = daoFactory.getUserDao();
+            final Integer companyId = currentUser.getCompanyId();
+            final boolean inactive = includeInactive == null || includeInactive;
+
             final AllResponse response = new AllResponse();
-            response.users = daoFactory.getUserDao().getAll(currentUser.getCompanyId(), includeInactive, limit, offset);
+            if (next == null && offset != null && offset > 0)
+                // Offset paging is still supported for clients that do not use page tokens.
+                response.users = userDao.search(companyId, filter, inactive, limit, offset);
+            else {
+                final Page<User> page = getPage(userDao, companyId, filter, inactive, next, limit);
+                response.users = page.getItems();
+                response.next = page.getNext();
+            }
             daoFactory.getRoleDao().populateUsers(response.users);
-            response.total = daoFactory.getUserDao().count(filter, includeInactive);
+            response.total = userDao.count(companyId, filter, inactive);
             response.limit = limit;
             response.offset = offset;
+
+            // The roles are not part of the user hash codes, so they are included separately.
+            final List<Object> roles = new ArrayList<>();
+            for (final User user : response.users)
+                roles.add(user.getRoles());
+            checkModified(contentTag(response.users, roles, response.total, response.next, limit, offset));
             return response;
         } catch (final DatabaseException dbException) {
             throw dbError(config, currentUser, dbException);
         }
     }
 
+    private Page<User> getPage(final UserDao userDao, final Integer companyId, final String filter,
+            final boolean includeInactive, final String next, final Integer limit) throws DatabaseException {
+        try {
+            return userDao.getPage(companyId, filter, includeInactive, next, limit);
+        } catch (final IllegalArgumentException invalidToken) {
+            throw badRequest("The provided page token is invalid.");
+        }
+    }
+
     /**
      * @param security
      *            the security information associated with the request
@@ -328,8 +389,9 @@ public class UserResource extends BaseResource {
             updated += daoFactory.getRoleDao().delete(user.getId(), currentUser.getRoles());
             updated += daoFactory.getRoleDao().add(user.getId(), user.getRoles());
 
+            // Unchanged rows are not counted as updated, so only fail when the user does not exist.
             final UpdateResponse response = new UpdateResponse();
-            if (updated == 0) {
+            if (updated == 0 && daoFactory.getUserDao().get(currentUser.getCompanyId(), user.getId()) == null) {
                 response.success = false;
                 response.msg = "Failed to update the specified user.";
             } else
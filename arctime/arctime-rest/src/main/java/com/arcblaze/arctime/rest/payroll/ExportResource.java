@@ -0,0 +1,264 @@
+package com.arcblaze.arctime.rest.payroll;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Date;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.apache.commons.lang.time.FastDateFormat;
+import org.codehaus.jackson.io.JsonStringEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.rest.BaseResource;
+import com.arcblaze.arctime.common.model.Bill;
+import com.arcblaze.arctime.common.model.Task;
+import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.db.ArcTimeDaoFactory;
+import com.arcblaze.arctime.db.dao.TimesheetExportHandler;
+import com.codahale.metrics.Timer;
+
+/**
+ * The REST end-point for exporting the approved timesheets to payroll. The timesheets are streamed to the client as
+ * they are read from the database, one row per bill, and are marked as exported in batches once their rows have been
+ * written.
+ */
+@Path("/payroll/export")
+public class ExportResource extends BaseResource {
+    private final static Logger log = LoggerFactory.getLogger(ExportResource.class);
+
+    private final static String[] FMT = { "yyyyMMdd" };
+
+    private final static FastDateFormat DAY = FastDateFormat.getInstance("yyyy-MM-dd");
+
+    /** The media type used for comma-separated value exports. */
+    public final static String TEXT_CSV = "text/csv";
+
+    /** The media type used for newline-delimited JSON exports. */
+    public final static String APPLICATION_NDJSON = "application/x-ndjson";
+
+    /** The names of the exported fields, in order. */
+    private final static String[] FIELDS = { "timesheet_id", "user_id", "login", "first_name", "last_name", "email",
+            "pp_begin", "pp_end", "day", "task_id", "job_code", "description", "assignment_id", "hours" };
+
+    /**
+     * Writes the exported rows to the response.
+     */
+    static abstract class ExportWriter implements TimesheetExportHandler {
+        protected final Writer writer;
+
+        public ExportWriter(final OutputStream output) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Called before any rows are written.
+         * 
+         * @throws IOException
+         *             if there is a problem writing to the response
+         */
+        public void begin() throws IOException {
+            // Nothing to write by default.
+        }
+
+        protected static Object[] getValues(final Timesheet timesheet, final Task task, final Bill bill) {
+            final User user = timesheet.getUser();
+            return new Object[] { timesheet.getId(), timesheet.getUserId(), user.getLogin(), user.getFirstName(),
+                    user.getLastName(), user.getEmail(), timesheet.getBegin(), timesheet.getPayPeriod().getEnd(),
+                    bill == null ? null : bill.getDay(), task == null ? null : task.getId(),
+                    task == null ? null : task.getJobCode(), task == null ? null : task.getDescription(),
+                    bill == null ? null : bill.getAssignmentId(), bill == null ? null : bill.getHours() };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() throws IOException {
+            this.writer.flush();
+        }
+    }
+
+    /**
+     * Writes the exported rows as comma-separated values, preceded by a header row.
+     */
+    static class CsvWriter extends ExportWriter {
+        public CsvWriter(final OutputStream output) {
+            super(output);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void begin() throws IOException {
+            this.writer.write(StringUtils.join(FIELDS, ','));
+            this.writer.write("\r\n");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handle(final Timesheet timesheet, final Task task, final Bill bill) throws IOException {
+            final Object[] values = getValues(timesheet, task, bill);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    this.writer.write(',');
+                if (values[i] instanceof Date)
+                    this.writer.write(DAY.format((Date) values[i]));
+                else if (values[i] != null)
+                    this.writer.write(StringEscapeUtils.escapeCsv(values[i].toString()));
+            }
+            this.writer.write("\r\n");
+        }
+    }
+
+    /**
+     * Writes the exported rows as newline-delimited JSON, one object per line.
+     */
+    static class NdjsonWriter extends ExportWriter {
+        public NdjsonWriter(final OutputStream output) {
+            super(output);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handle(final Timesheet timesheet, final Task task, final Bill bill) throws IOException {
+            final Object[] values = getValues(timesheet, task, bill);
+            this.writer.write('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    this.writer.write(',');
+                this.writer.write('"');
+                this.writer.write(FIELDS[i]);
+                this.writer.write("\":");
+                if (values[i] == null)
+                    this.writer.write("null");
+                else if (values[i] instanceof Number)
+                    this.writer.write(values[i].toString());
+                else {
+                    final String value = values[i] instanceof Date ? DAY.format((Date) values[i]) : values[i]
+                            .toString();
+                    this.writer.write('"');
+                    this.writer.write(JsonStringEncoder.getInstance().quoteAsString(value));
+                    this.writer.write('"');
+                }
+            }
+            this.writer.write("}\n");
+        }
+    }
+
+    /**
+     * @param security
+     *            the security information associated with the request
+     * @param config
+     *            the system configuration properties
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     * @param timer
+     *            tracks performance metrics of this REST end-point
+     * @param begin
+     *            the beginning of the pay period (in yyyyMMdd format) to export, or {@code null} to export all of the
+     *            approved timesheets that have not yet been exported
+     * 
+     * @return the response streaming the exported timesheets as comma-separated values
+     */
+    @GET
+    @Path("csv")
+    @Produces(TEXT_CSV)
+    public Response csv(@Context final SecurityContext security, @Context final Config config,
+            @Context final ArcTimeDaoFactory daoFactory, @Context final Timer timer,
+            @QueryParam("begin") final String begin) {
+        log.debug("Payroll CSV export request");
+        final User currentUser = (User) security.getUserPrincipal();
+        final Date day = parse(begin);
+        final StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(final OutputStream stream) throws IOException {
+                export(config, daoFactory, timer, currentUser, day, new CsvWriter(stream));
+            }
+        };
+        return Response.ok(output, TEXT_CSV)
+                .header("Content-Disposition", "attachment; filename=\"timesheets.csv\"").build();
+    }
+
+    /**
+     * @param security
+     *            the security information associated with the request
+     * @param config
+     *            the system configuration properties
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     * @param timer
+     *            tracks performance metrics of this REST end-point
+     * @param begin
+     *            the beginning of the pay period (in yyyyMMdd format) to export, or {@code null} to export all of the
+     *            approved timesheets that have not yet been exported
+     * 
+     * @return the response streaming the exported timesheets as newline-delimited JSON
+     */
+    @GET
+    @Path("ndjson")
+    @Produces(APPLICATION_NDJSON)
+    public Response ndjson(@Context final SecurityContext security, @Context final Config config,
+            @Context final ArcTimeDaoFactory daoFactory, @Context final Timer timer,
+            @QueryParam("begin") final String begin) {
+        log.debug("Payroll NDJSON export request");
+        final User currentUser = (User) security.getUserPrincipal();
+        final Date day = parse(begin);
+        final StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(final OutputStream stream) throws IOException {
+                export(config, daoFactory, timer, currentUser, day, new NdjsonWriter(stream));
+            }
+        };
+        return Response.ok(output, APPLICATION_NDJSON)
+                .header("Content-Disposition", "attachment; filename=\"timesheets.ndjson\"").build();
+    }
+
+    protected Date parse(final String begin) {
+        if (StringUtils.isBlank(begin))
+            return null;
+        try {
+            return DateUtils.parseDate(begin, FMT);
+        } catch (final ParseException badDate) {
+            throw badRequest("Invalid pay period begin date: " + begin);
+        }
+    }
+
+    protected void export(final Config config, final ArcTimeDaoFactory daoFactory, final Timer timer,
+            final User currentUser, final Date begin, final ExportWriter writer) throws IOException {
+        try (final Timer.Context timerContext = timer.time()) {
+            writer.begin();
+            final int count = daoFactory.getTimesheetDao().exportApproved(currentUser.getCompanyId(),
+                    currentUser.getId(), begin, writer);
+            writer.flush();
+            log.info("Exported {} timesheets to payroll for user {}", count, currentUser.getLogin());
+        } catch (final DatabaseException dbException) {
+            // The response has likely been committed already, so the client sees a truncated export.
+            throw dbError(config, currentUser, dbException);
+        }
+    }
+}
@@ -31,6 +31,7 @@ import com.arcblaze.arctime.common.model.AuditLog;
 import com.arcblaze.arctime.common.model.Enrichment;
 import com.arcblaze.arctime.common.model.PayPeriod;
 import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.common.model.TimesheetChanges;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
 import com.arcblaze.arctime.db.ArcTimeDaoFactory;
 import com.arcblaze.arctime.db.dao.PayPeriodDao;
@@ -93,15 +94,15 @@ public class TimesheetCompleteResource extends BaseResource {
                 throw forbidden(config, currentUser, "Unable to save "
                         + "timesheet data into a timesheet you do not own.");
 
-            log.debug("Saving timesheet data");
-            TimesheetSaveResource.saveTimesheet(daoFactory, timesheet, data);
-
-            log.debug("Marking timesheet as complete");
-            dao.complete(timesheet.getCompanyId(), true, timesheet.getId());
-            daoFactory.getAuditLogDao().add(
-                    new AuditLog().setCompanyId(currentUser.getCompanyId()).setTimesheetId(timesheet.getId())
-                            .setLog("Timesheet completed"));
+            log.debug("Saving timesheet data and marking timesheet as complete");
+            final TimesheetChanges changes = TimesheetSaveResource.getChanges(timesheet, data);
+            changes.setCompleted(true);
+            changes.addAuditLogs(new AuditLog().setCompanyId(currentUser.getCompanyId())
+                    .setTimesheetId(timesheet.getId()).setLog("Timesheet completed"));
+            dao.save(changes);
 
+            // The next pay period and timesheet are normally provisioned ahead of time by a background task, so they
+            // are only created here when that has not happened yet.
             log.debug("Finding next pay period");
             final PayPeriod nextPayPeriod = timesheet.getPayPeriod().getNext();
             final PayPeriodDao ppdao = daoFactory.getPayPeriodDao();
@@ -1,17 +1,7 @@
 package com.arcblaze.arctime.rest.user;
 
-import static com.arcblaze.arctime.common.model.Enrichment.AUDIT_LOGS;
-import static com.arcblaze.arctime.common.model.Enrichment.BILLS;
-import static com.arcblaze.arctime.common.model.Enrichment.HOLIDAYS;
-import static com.arcblaze.arctime.common.model.Enrichment.PAY_PERIODS;
-import static com.arcblaze.arctime.common.model.Enrichment.TASKS;
-import static com.arcblaze.arctime.common.model.Enrichment.USERS;
-
 import java.text.ParseException;
-import java.util.Arrays;
 import java.util.Date;
-import java.util.LinkedHashSet;
-import java.util.Set;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -31,13 +21,13 @@ import com.arcblaze.arccore.common.config.Config;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.DatabaseException;
 import com.arcblaze.arccore.rest.BaseResource;
-import com.arcblaze.arctime.common.model.Enrichment;
 import com.arcblaze.arctime.common.model.PayPeriod;
 import com.arcblaze.arctime.common.model.Timesheet;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
 import com.arcblaze.arctime.db.ArcTimeDaoFactory;
 import com.arcblaze.arctime.db.dao.PayPeriodDao;
 import com.arcblaze.arctime.db.dao.TimesheetDao;
+import com.arcblaze.arctime.db.dao.TimesheetDocument;
 import com.codahale.metrics.Timer;
 
 /**
@@ -77,9 +67,6 @@ public class TimesheetPreviousResource extends BaseResource {
         log.debug("Previous timesheet request");
         final User currentUser = (User) security.getUserPrincipal();
         try (final Timer.Context timerContext = timer.time()) {
-            final Set<Enrichment> timesheetEnrichments = new LinkedHashSet<>(Arrays.asList(PAY_PERIODS, AUDIT_LOGS,
-                    HOLIDAYS, USERS, TASKS, BILLS));
-
             log.debug("Getting previous pay period");
             final Date begin = DateUtils.parseDate(date, FMT);
             final PayPeriodDao ppdao = daoFactory.getPayPeriodDao();
@@ -92,7 +79,7 @@ public class TimesheetPreviousResource extends BaseResource {
 
             log.debug("Getting previous timesheet");
             final TimesheetDao dao = daoFactory.getTimesheetDao();
-            Timesheet timesheet = dao.getForUser(currentUser.getId(), previous, timesheetEnrichments);
+            Timesheet timesheet = dao.getForUser(currentUser.getId(), previous);
             log.debug("Found timesheet: {}", timesheet);
 
             if (timesheet == null) {
@@ -103,11 +90,25 @@ public class TimesheetPreviousResource extends BaseResource {
                 timesheet.setBegin(previous.getBegin());
                 dao.add(timesheet);
                 log.debug("Created timesheet: {}", timesheet);
-
-                // Retrieve an enriched version of the newly created timesheet.
-                timesheet = dao.getForUser(currentUser.getId(), previous, timesheetEnrichments);
             }
 
+            // Clients that already have the current version of the timesheet are not sent it again, so the version is
+            // checked before the timesheet is assembled.
+            final Integer version = dao.getVersion(currentUser.getCompanyId(), timesheet.getId());
+            if (version == null)
+                throw notFound("The requested timesheet was not found");
+            checkModified(representationTag("timesheet", timesheet.getId(), version));
+
+            // Retrieve the assembled timesheet, which is only assembled again after the timesheet has changed.
+            final TimesheetDocument document = dao.getDocument(currentUser.getCompanyId(), timesheet.getId());
+            if (document == null)
+                throw notFound("The requested timesheet was not found");
+
+            // The timesheet may have changed since its version was checked, so it is tagged with the assembled version.
+            if (version != document.getVersion())
+                checkModified(representationTag("timesheet", timesheet.getId(), document.getVersion()));
+            timesheet = document.getTimesheet();
+
             final PreviousResponse response = new PreviousResponse();
             response.timesheet = timesheet;
             return response;
@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import com.arcblaze.arccore.common.config.Config;
 import com.arcblaze.arccore.common.model.User;
 import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.db.DatabaseVersionException;
 import com.arcblaze.arccore.rest.BaseResource;
 import com.arcblaze.arctime.common.model.Assignment;
 import com.arcblaze.arctime.common.model.AuditLog;
@@ -35,10 +36,9 @@ import com.arcblaze.arctime.common.model.Bill;
 import com.arcblaze.arctime.common.model.Enrichment;
 import com.arcblaze.arctime.common.model.Task;
 import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.common.model.TimesheetChanges;
 import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
 import com.arcblaze.arctime.db.ArcTimeDaoFactory;
-import com.arcblaze.arctime.db.dao.AuditLogDao;
-import com.arcblaze.arctime.db.dao.BillDao;
 import com.arcblaze.arctime.db.dao.TimesheetDao;
 import com.codahale.metrics.Timer;
 
@@ -89,6 +89,7 @@ public class TimesheetSaveResource extends BaseResource {
 
             log.debug("Retrieving current timesheet");
             final TimesheetDao dao = daoFactory.getTimesheetDao();
+            final Integer version = dao.getVersion(currentUser.getCompanyId(), id);
             final Timesheet timesheet = dao.get(currentUser.getCompanyId(), id, timesheetEnrichments);
 
             if (timesheet == null)
@@ -97,10 +98,16 @@ public class TimesheetSaveResource extends BaseResource {
                 throw forbidden(config, currentUser, "Unable to save "
                         + "timesheet data into a timesheet you do not own.");
 
+            // Clients that send the entity tag of the timesheet they edited have their changes rejected when the
+            // timesheet has been modified since.
+            evaluatePreconditions(representationTag("timesheet", id, version));
+
             log.debug("Saving timesheet data");
-            saveTimesheet(daoFactory, timesheet, data);
+            saveTimesheet(daoFactory, timesheet, version, data);
 
             return new SaveResponse();
+        } catch (final DatabaseVersionException modified) {
+            throw conflict("The timesheet was modified by another request, please reload it and try again.");
         } catch (final DatabaseException dbException) {
             throw dbError(config, currentUser, dbException);
         } catch (final HolidayConfigurationException badHoliday) {
@@ -110,11 +117,45 @@ public class TimesheetSaveResource extends BaseResource {
         }
     }
 
-    protected static void saveTimesheet(final ArcTimeDaoFactory daoFactory, final Timesheet timesheet, final String data)
-            throws DatabaseException {
+    /**
+     * Save the provided timesheet data into the timesheet, applying all of the resulting changes within a single
+     * database transaction.
+     * 
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     * @param timesheet
+     *            the enriched timesheet (including tasks and bills) into which the data will be saved
+     * @param version
+     *            the version of the timesheet read before it was retrieved, so that the changes are rejected if the
+     *            timesheet was modified in the meantime
+     * @param data
+     *            the updated timesheet data to save
+     * 
+     * @throws DatabaseVersionException
+     *             if the timesheet was modified after the version was read
+     * @throws DatabaseException
+     *             if there is a problem communicating with the database
+     */
+    protected static void saveTimesheet(final ArcTimeDaoFactory daoFactory, final Timesheet timesheet,
+            final Integer version, final String data) throws DatabaseVersionException, DatabaseException {
+        daoFactory.getTimesheetDao().save(getChanges(timesheet, data).setVersion(version));
+    }
+
+    /**
+     * Compare the provided timesheet data with the current contents of the timesheet to determine the bills that need
+     * to be added, updated and deleted, along with the audit logs describing those changes. No database access is
+     * performed.
+     * 
+     * @param timesheet
+     *            the enriched timesheet (including tasks and bills) into which the data will be saved
+     * @param data
+     *            the updated timesheet data to save
+     * 
+     * @return the changes to apply to the timesheet
+     */
+    protected static TimesheetChanges getChanges(final Timesheet timesheet, final String data) {
         final Date now = new Date();
-        final BillDao billDao = daoFactory.getBillDao();
-        final AuditLogDao auditLogDao = daoFactory.getAuditLogDao();
+        final TimesheetChanges changes = new TimesheetChanges(timesheet);
 
         // Keep track of the processed bills sent from the client.
         final Set<String> processed = new TreeSet<>();
@@ -135,39 +176,35 @@ public class TimesheetSaveResource extends BaseResource {
             if (existing != null && !existing.getHours().equals(bill.getHours())) {
                 bill.setId(existing.getId());
                 bill.setUserId(existing.getUserId());
-                billDao.update(bill);
-
-                auditLogDao.add(getUpdatedLog(timesheet, task, assignment, existing, bill));
+                changes.updateBills(bill);
+                changes.addAuditLogs(getUpdatedLog(timesheet, task, assignment, existing, bill));
             } else if (existing == null) {
                 bill.setUserId(timesheet.getUserId());
-                billDao.add(bill);
-
-                auditLogDao.add(getAddedLog(timesheet, task, assignment, bill));
+                changes.addBills(bill);
+                changes.addAuditLogs(getAddedLog(timesheet, task, assignment, bill));
             }
         }
 
-        final Set<Integer> toDelete = new TreeSet<>();
         for (final Task task : timesheet.getTasks()) {
             for (final Bill bill : task.getBills()) {
                 if (processed.contains(bill.getUniqueId()))
                     continue;
 
-                toDelete.add(bill.getId());
-                auditLogDao.add(getDeletedLog(timesheet, task, null, bill));
+                changes.deleteBills(bill.getId());
+                changes.addAuditLogs(getDeletedLog(timesheet, task, null, bill));
             }
             for (final Assignment assignment : task.getAssignments()) {
                 for (final Bill bill : assignment.getBills()) {
                     if (processed.contains(bill.getUniqueId()))
                         continue;
 
-                    toDelete.add(bill.getId());
-                    auditLogDao.add(getDeletedLog(timesheet, task, assignment, bill));
+                    changes.deleteBills(bill.getId());
+                    changes.addAuditLogs(getDeletedLog(timesheet, task, assignment, bill));
                 }
             }
         }
 
-        if (!toDelete.isEmpty())
-            billDao.delete(toDelete);
+        return changes;
     }
 
     /**
@@ -0,0 +1,135 @@
+package com.arcblaze.arctime.rest.payroll;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Date;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.common.model.Company;
+import com.arcblaze.arccore.common.model.User;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arctime.common.model.Bill;
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.common.model.PayPeriodType;
+import com.arcblaze.arctime.common.model.Task;
+import com.arcblaze.arctime.common.model.Timesheet;
+import com.arcblaze.arctime.common.model.util.HolidayConfigurationException;
+import com.arcblaze.arctime.db.ArcTimeDaoFactory;
+import com.arcblaze.arctime.db.util.TestDatabase;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Perform testing of the payroll export resource capabilities.
+ */
+public class ExportResourceTest {
+    private final static String[] FMT = { "yyyyMMdd" };
+
+    private static String write(final Response response) throws IOException {
+        assertEquals(200, response.getStatus());
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test how the resource responds to exporting the approved timesheets.
+     * 
+     * @throws DatabaseException
+     *             if there is a database problem
+     * @throws HolidayConfigurationException
+     *             if there is a problem parsing holiday configurations
+     * @throws IOException
+     *             if there is a problem writing the export
+     * @throws ParseException
+     *             if there is a date-parsing issue
+     */
+    @Test
+    public void testExport() throws DatabaseException, HolidayConfigurationException, IOException, ParseException {
+        final Config config = new Config();
+        try (final TestDatabase testDatabase = new TestDatabase()) {
+            testDatabase.load("hsqldb/arctime-db.sql");
+            final ArcTimeDaoFactory daoFactory = testDatabase.getDaoFactory();
+            final MetricRegistry metricRegistry = new MetricRegistry();
+            final Timer timer = metricRegistry.timer("test");
+
+            final Company company = new Company().setName("company");
+            daoFactory.getCompanyDao().add(company);
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("email").setFirstName("first").setLastName("o'last, jr");
+            daoFactory.getUserDao().add(user);
+
+            final PayPeriod payPeriod = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+            daoFactory.getPayPeriodDao().add(payPeriod);
+
+            final Task task = new Task().setCompanyId(company.getId()).setDescription("Task \"one\"")
+                    .setJobCode("task").setAdministrative(false).setActive(true);
+            daoFactory.getTaskDao().add(task);
+
+            final Timesheet timesheet = new Timesheet().setCompanyId(company.getId()).setUserId(user.getId())
+                    .setBegin(payPeriod.getBegin());
+            daoFactory.getTimesheetDao().add(timesheet);
+            daoFactory.getBillDao().add(
+                    new Bill().setTaskId(task.getId()).setUserId(user.getId())
+                            .setDay(DateUtils.parseDate("20140102", FMT)).setHours("8.00").setTimestamp(new Date()));
+            daoFactory.getTimesheetDao().approve(company.getId(), user.getId(), true, timesheet.getId());
+
+            final SecurityContext securityContext = Mockito.mock(SecurityContext.class);
+            Mockito.when(securityContext.getUserPrincipal()).thenReturn(user);
+
+            final ExportResource resource = new ExportResource();
+            final String ndjson = write(resource.ndjson(securityContext, config, daoFactory, timer, "20140101"));
+            assertEquals("{\"timesheet_id\":" + timesheet.getId() + ",\"user_id\":" + user.getId()
+                    + ",\"login\":\"user\",\"first_name\":\"first\",\"last_name\":\"o'last, jr\",\"email\":\"email\","
+                    + "\"pp_begin\":\"2014-01-01\",\"pp_end\":\"2014-01-07\",\"day\":\"2014-01-02\",\"task_id\":"
+                    + task.getId() + ",\"job_code\":\"task\",\"description\":\"Task \\\"one\\\"\","
+                    + "\"assignment_id\":null,\"hours\":8.00}\n", ndjson);
+            assertTrue(daoFactory.getTimesheetDao().get(company.getId(), timesheet.getId()).isExported());
+
+            // Once exported, the timesheet is not included again.
+            String csv = write(resource.csv(securityContext, config, daoFactory, timer, null));
+            assertEquals("timesheet_id,user_id,login,first_name,last_name,email,pp_begin,pp_end,day,task_id,"
+                    + "job_code,description,assignment_id,hours\r\n", csv);
+
+            daoFactory.getTimesheetDao().export(company.getId(), user.getId(), false, timesheet.getId());
+            csv = write(resource.csv(securityContext, config, daoFactory, timer, null));
+            assertTrue(csv.endsWith("\r\n" + timesheet.getId() + "," + user.getId()
+                    + ",user,first,\"o'last, jr\",email,2014-01-01,2014-01-07,2014-01-02," + task.getId()
+                    + ",task,\"Task \"\"one\"\"\",,8.00\r\n"));
+        }
+    }
+
+    /**
+     * Test how the resource responds to an invalid pay period.
+     */
+    @Test
+    public void testInvalidBegin() {
+        final User user = new User().setId(1).setCompanyId(1).setLogin("user");
+        final SecurityContext securityContext = Mockito.mock(SecurityContext.class);
+        Mockito.when(securityContext.getUserPrincipal()).thenReturn(user);
+
+        try {
+            new ExportResource().csv(securityContext, new Config(), null, null, "invalid");
+            fail("Expected a bad request");
+        } catch (final BadRequestException badRequest) {
+            assertEquals(400, badRequest.getResponse().getStatus());
+        }
+    }
+}
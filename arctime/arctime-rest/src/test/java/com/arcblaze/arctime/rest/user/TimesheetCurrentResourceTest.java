@@ -2,20 +2,31 @@ package com.arcblaze.arctime.rest.user;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.text.ParseException;
 import java.util.Date;
 import java.util.Set;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.NotFoundException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.Variant;
 
 import org.apache.commons.lang.time.DateFormatUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import com.arcblaze.arccore.common.config.Config;
@@ -597,4 +608,81 @@ public class TimesheetCurrentResourceTest {
             }
         }
     }
+
+    /**
+     * Test how the resource responds to conditional requests.
+     * 
+     * @throws DatabaseException
+     *             if there is a database issue
+     * @throws ParseException
+     *             if there is a problem parsing dates
+     */
+    @Test
+    public void testConditionalRequests() throws DatabaseException, ParseException {
+        final Config config = new Config();
+        try (final TestDatabase testDatabase = new TestDatabase()) {
+            testDatabase.load("hsqldb/arctime-db.sql");
+            final ArcTimeDaoFactory daoFactory = testDatabase.getDaoFactory();
+            final MetricRegistry metricRegistry = new MetricRegistry();
+            final Timer timer = metricRegistry.timer("test");
+
+            final Company company = new Company().setName("company").setActive(true);
+            daoFactory.getCompanyDao().add(company);
+
+            final PayPeriod payPeriod = new PayPeriod().setCompanyId(company.getId()).setType(PayPeriodType.WEEKLY)
+                    .setBegin(DateUtils.parseDate("20140101", FMT)).setEnd(DateUtils.parseDate("20140107", FMT));
+            daoFactory.getPayPeriodDao().add(payPeriod);
+
+            final User user = new User().setCompanyId(company.getId()).setLogin("user").setHashedPass("hashed")
+                    .setSalt("salt").setEmail("email@whatever.com").setFirstName("first").setLastName("last")
+                    .setActive(true);
+            daoFactory.getUserDao().add(user);
+
+            final Task task = new Task().setCompanyId(company.getId()).setDescription("Admin").setJobCode("admin")
+                    .setAdministrative(true).setActive(true);
+            daoFactory.getTaskDao().add(task);
+
+            final SecurityContext security = Mockito.mock(SecurityContext.class);
+            Mockito.when(security.getUserPrincipal()).thenReturn(user);
+            final Request request = Mockito.mock(Request.class);
+            final HttpServletResponse httpResponse = Mockito.mock(HttpServletResponse.class);
+
+            final TimesheetCurrentResource resource = new TimesheetCurrentResource();
+            resource.setRequest(request);
+            resource.setResponse(httpResponse);
+
+            final CurrentResponse response = resource.current(security, config, daoFactory, timer);
+            final ArgumentCaptor<String> header = ArgumentCaptor.forClass(String.class);
+            Mockito.verify(httpResponse).setHeader(Mockito.eq(HttpHeaders.ETAG), header.capture());
+            final EntityTag tag = EntityTag.valueOf(header.getValue());
+
+            // The client already has the current version of the timesheet.
+            Mockito.when(request.evaluatePreconditions(tag)).thenReturn(Response.notModified());
+            try {
+                resource.current(security, config, daoFactory, timer);
+                fail("Expected the timesheet to be unmodified");
+            } catch (final WebApplicationException notModified) {
+                assertEquals(304, notModified.getResponse().getStatus());
+            }
+
+            // Adding a bill changes the version of the timesheet.
+            daoFactory.getBillDao().add(
+                    new Bill().setTaskId(task.getId()).setUserId(user.getId())
+                            .setDay(response.timesheet.getPayPeriod().getBegin()).setHours("8.00")
+                            .setTimestamp(new Date()));
+            final CurrentResponse modified = resource.current(security, config, daoFactory, timer);
+            Mockito.verify(httpResponse, Mockito.times(2)).setHeader(Mockito.eq(HttpHeaders.ETAG), header.capture());
+            assertNotEquals(tag, EntityTag.valueOf(header.getValue()));
+            assertEquals(response.timesheet.getId(), modified.timesheet.getId());
+            assertEquals(1, modified.timesheet.getTask(task.getId()).getBills().size());
+            final EntityTag json = EntityTag.valueOf(header.getValue());
+
+            // The XML representation of the same version of the timesheet has a different tag.
+            Mockito.when(request.selectVariant(Mockito.anyListOf(Variant.class))).thenReturn(
+                    new Variant(MediaType.APPLICATION_XML_TYPE, (String) null, null));
+            resource.current(security, config, daoFactory, timer);
+            Mockito.verify(httpResponse, Mockito.times(3)).setHeader(Mockito.eq(HttpHeaders.ETAG), header.capture());
+            assertNotEquals(json, EntityTag.valueOf(header.getValue()));
+        }
+    }
 }
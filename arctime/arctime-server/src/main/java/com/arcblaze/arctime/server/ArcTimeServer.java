@@ -18,6 +18,7 @@ import com.arcblaze.arccore.server.BaseServer;
 import com.arcblaze.arccore.server.tasks.BackgroundTask;
 import com.arcblaze.arctime.db.ArcTimeDaoFactory;
 import com.arcblaze.arctime.rest.ArcTimeApplication;
+import com.arcblaze.arctime.server.tasks.TimesheetProvisioningTask;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheckRegistry;
 
@@ -103,7 +104,9 @@ public class ArcTimeServer extends BaseServer {
      */
     @Override
     public Collection<BackgroundTask> getBackgroundTasks(final Config config, final MetricRegistry metricRegistry,
-            final HealthCheckRegistry healthCheckRegistry) {
-        return null;
+            final HealthCheckRegistry healthCheckRegistry, final DaoFactory daoFactory) {
+        final BackgroundTask timesheetProvisioning = new TimesheetProvisioningTask(config, metricRegistry,
+                healthCheckRegistry, (ArcTimeDaoFactory) daoFactory);
+        return Arrays.asList(timesheetProvisioning);
     }
 }
@@ -0,0 +1,83 @@
+package com.arcblaze.arctime.server.tasks;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.arcblaze.arccore.common.config.Config;
+import com.arcblaze.arccore.db.DatabaseException;
+import com.arcblaze.arccore.server.tasks.BackgroundTask;
+import com.arcblaze.arccore.server.tasks.BackgroundTaskException;
+import com.arcblaze.arctime.common.model.PayPeriod;
+import com.arcblaze.arctime.db.ArcTimeDaoFactory;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+
+/**
+ * Responsible for periodically creating the upcoming pay periods in each company, along with an empty timesheet in
+ * each pay period for every active user, ahead of each pay period boundary. This way the pay periods and timesheets
+ * already exist when users start to work in them, instead of being created by many requests at once.
+ */
+public class TimesheetProvisioningTask extends BackgroundTask {
+    private final static Logger log = LoggerFactory.getLogger(TimesheetProvisioningTask.class);
+
+    /** The number of days ahead of each pay period boundary that the next pay period and timesheets are created. */
+    public final static int PROVISION_DAYS = 2;
+
+    /** Used to communicate with the back-end database. */
+    private final ArcTimeDaoFactory daoFactory;
+
+    /**
+     * @param config
+     *            the system configuration information
+     * @param metricRegistry
+     *            the registry of metrics used to track system performance information
+     * @param healthCheckRegistry
+     *            the registry of system health and status information
+     * @param daoFactory
+     *            used to communicate with the back-end database
+     */
+    public TimesheetProvisioningTask(final Config config, final MetricRegistry metricRegistry,
+            final HealthCheckRegistry healthCheckRegistry, final ArcTimeDaoFactory daoFactory) {
+        super(config, metricRegistry, healthCheckRegistry);
+
+        notNull(daoFactory, "Invalid null DAO factory");
+        this.daoFactory = daoFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void schedule(final ScheduledExecutorService executor) {
+        executor.scheduleAtFixedRate(this, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process() throws BackgroundTaskException {
+        final Date today = new Date();
+        try {
+            // The current pay periods are included so the timesheets of users added since the last run are created.
+            final Set<PayPeriod> payPeriods = new LinkedHashSet<>();
+            payPeriods.addAll(this.daoFactory.getPayPeriodDao().provision(today));
+            payPeriods.addAll(this.daoFactory.getPayPeriodDao().provision(DateUtils.addDays(today, PROVISION_DAYS)));
+
+            final int timesheets = this.daoFactory.getTimesheetDao().provision(payPeriods);
+
+            log.info("Provisioned {} timesheets in {} pay periods", timesheets, payPeriods.size());
+        } catch (final DatabaseException dbException) {
+            throw new BackgroundTaskException("Failed to provision pay periods and timesheets", dbException);
+        }
+    }
+}